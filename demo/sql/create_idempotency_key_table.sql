@@ -0,0 +1,27 @@
+-- SQL Server script: bảng idempotency cho các API ghi dữ liệu (IdempotencyFilter, app.idempotency.store=jdbc)
+-- Lưu response theo Idempotency-Key, dùng chung giữa các node: request gửi lại cùng key ở node khác
+-- vẫn nhận lại response cũ thay vì chạy lại /transaction/create, /vehicle/PinSwap, ...
+-- requestKey = SHA-256 (hex) của method + path + user + Idempotency-Key
+-- responseStatus NULL = đang xử lý (đến leaseUntil), dòng hết hạn sau expiresAt (job purgeIdempotencyKeys xóa)
+-- Run in your database: USE TestSchedule; then execute this script
+
+IF OBJECT_ID('dbo.IdempotencyKey', 'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.IdempotencyKey (
+        requestKey CHAR(64) NOT NULL PRIMARY KEY,
+        fingerprint CHAR(64) NOT NULL,
+        responseStatus INT NULL,
+        contentType VARCHAR(100) NULL,
+        responseBody VARBINARY(MAX) NULL,
+        createdAt DATETIME2 NOT NULL DEFAULT SYSDATETIME(),
+        leaseUntil DATETIME2 NOT NULL,
+        expiresAt DATETIME2 NOT NULL
+    );
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_IdempotencyKey_expiresAt' AND object_id = OBJECT_ID('dbo.IdempotencyKey'))
+BEGIN
+    CREATE INDEX IX_IdempotencyKey_expiresAt ON dbo.IdempotencyKey (expiresAt);
+END
+GO
@@ -0,0 +1,32 @@
+-- SQL Server script: bảng idempotency cho /api/swap/execute
+-- Mỗi lần swap thành công lưu 1 dòng theo Idempotency-Key trong cùng DB transaction với swap,
+-- client gửi lại cùng key (retry sau timeout, mất kết nối, ...) sẽ nhận lại kết quả cũ thay vì swap lần 2.
+-- Run in your database: USE TestSchedule; then execute this script
+
+IF OBJECT_ID('dbo.SwapRequest', 'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.SwapRequest (
+        requestKey VARCHAR(64) NOT NULL PRIMARY KEY,
+        userID INT NOT NULL,
+        vehicleID INT NOT NULL,
+        stationID INT NOT NULL,
+        pinID INT NOT NULL,
+        pack INT NULL,
+        amount INT NULL,
+        transactionID INT NOT NULL,
+        vehiclePinPercent INT NOT NULL,
+        vehiclePinHealth INT NOT NULL,
+        slotPinPercent INT NOT NULL,
+        slotPinHealth INT NOT NULL,
+        remainingTotal INT NOT NULL,
+        createdAt DATETIME2 NOT NULL DEFAULT SYSDATETIME()
+    );
+END
+GO
+
+-- Bảng tạo trước khi thêm pack / amount: dòng cũ để NULL, gửi lại key cũ sẽ bị coi là IDEMPOTENCY_KEY_CONFLICT
+IF COL_LENGTH('dbo.SwapRequest', 'pack') IS NULL
+BEGIN
+    ALTER TABLE dbo.SwapRequest ADD pack INT NULL, amount INT NULL;
+END
+GO
@@ -0,0 +1,29 @@
+-- SQL Server script: indexes cho keyset pagination của lịch sử giao dịch
+-- (/transaction/list, /transaction/getByUser, /transaction/getByVehicle, /transaction/getByStation)
+-- Các API sắp xếp theo (createAt DESC, transactionID DESC) và đọc tiếp từ giá trị (createAt, transactionID)
+-- ghi trong cursor, nên mỗi trang chỉ seek trên index thay vì scan + sort toàn bảng.
+-- Run in your database: USE TestSchedule; then execute this script
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Transaction_createAt_transactionID' AND object_id = OBJECT_ID('dbo.[Transaction]'))
+BEGIN
+    CREATE INDEX IX_Transaction_createAt_transactionID ON dbo.[Transaction] (createAt DESC, transactionID DESC);
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Transaction_userID_createAt' AND object_id = OBJECT_ID('dbo.[Transaction]'))
+BEGIN
+    CREATE INDEX IX_Transaction_userID_createAt ON dbo.[Transaction] (userID, createAt DESC, transactionID DESC);
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Transaction_vehicleID_createAt' AND object_id = OBJECT_ID('dbo.[Transaction]'))
+BEGIN
+    CREATE INDEX IX_Transaction_vehicleID_createAt ON dbo.[Transaction] (vehicleID, createAt DESC, transactionID DESC);
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_Transaction_stationID_createAt' AND object_id = OBJECT_ID('dbo.[Transaction]'))
+BEGIN
+    CREATE INDEX IX_Transaction_stationID_createAt ON dbo.[Transaction] (stationID, createAt DESC, transactionID DESC);
+END
+GO
@@ -0,0 +1,38 @@
+-- SQL Server script: inbox cho IPN của VNPay (VNPayIpnInboxService)
+-- /vnpay/ipn chỉ kiểm tra chữ ký, ghi 1 dòng vào inbox rồi trả lời VNPay ngay,
+-- worker xử lý sau (cập nhật VNPayPaymentDTO), lỗi database thì thử lại với backoff.
+-- Mỗi vnp_TxnRef chỉ có 1 dòng: IPN VNPay gửi lại (retry) không tạo việc mới.
+-- status: 0 = chờ xử lý, 1 = đã xử lý (result = VNPayCallbackResult), 2 = bỏ sau quá số lần thử (xem lastError)
+-- Run in your database: USE TestSchedule; then execute this script
+
+IF OBJECT_ID('dbo.VNPayIpnInbox', 'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.VNPayIpnInbox (
+        inboxID BIGINT IDENTITY(1,1) PRIMARY KEY,
+        txnRef VARCHAR(64) NOT NULL,
+        payload NVARCHAR(MAX) NOT NULL,
+        status TINYINT NOT NULL DEFAULT 0,
+        attempts INT NOT NULL DEFAULT 0,
+        result VARCHAR(24) NULL,
+        lastError NVARCHAR(400) NULL,
+        receivedAt DATETIME2 NOT NULL DEFAULT SYSDATETIME(),
+        nextAttemptAt DATETIME2 NOT NULL DEFAULT SYSDATETIME(),
+        lockedUntil DATETIME2 NULL,
+        processedAt DATETIME2 NULL
+    );
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'UX_VNPayIpnInbox_txnRef' AND object_id = OBJECT_ID('dbo.VNPayIpnInbox'))
+BEGIN
+    CREATE UNIQUE INDEX UX_VNPayIpnInbox_txnRef ON dbo.VNPayIpnInbox (txnRef);
+END
+GO
+
+-- Worker chỉ quét các dòng đang chờ
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_VNPayIpnInbox_pending' AND object_id = OBJECT_ID('dbo.VNPayIpnInbox'))
+BEGIN
+    CREATE INDEX IX_VNPayIpnInbox_pending ON dbo.VNPayIpnInbox (nextAttemptAt) INCLUDE (lockedUntil, receivedAt)
+    WHERE status = 0;
+END
+GO
@@ -0,0 +1,12 @@
+-- SQL Server script: index cho job hết hạn payment VNPay (VNPayPaymentExpiryService)
+-- Payment pending (status = 0) quá expiredAt được chuyển sang 3 (EXPIRED) theo từng lô.
+-- Index lọc chỉ chứa payment đang pending nên mỗi lô seek theo expiredAt,
+-- không quét các payment đã thành công / thất bại / hết hạn.
+-- Run in your database: USE TestSchedule; then execute this script
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_VNPayPaymentDTO_pending_expiredAt' AND object_id = OBJECT_ID('dbo.VNPayPaymentDTO'))
+BEGIN
+    CREATE INDEX IX_VNPayPaymentDTO_pending_expiredAt ON dbo.VNPayPaymentDTO (expiredAt)
+    WHERE status = 0;
+END
+GO
@@ -0,0 +1,51 @@
+package com.example.demo.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ghi nhận các pin slot bị thay đổi pinPercent / pinHealth / pinStatus ngoài ChargingEngine
+ * (updatePinSlot, swap, procedure UpdatePinPercent, ...) để engine đọc lại trước lần sạc tiếp theo
+ */
+public final class ChargingStaleTracker {
+
+    private static final Set<Integer> stalePins = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean allStale = new AtomicBoolean();
+
+    private ChargingStaleTracker() {
+    }
+
+    public static void markPinStale(int pinID) {
+        stalePins.add(pinID);
+    }
+
+    /**
+     * Nhiều slot bị thay đổi cùng lúc, engine sẽ load lại toàn bộ
+     */
+    public static void markAllStale() {
+        allStale.set(true);
+    }
+
+    /**
+     * @return true nếu có markAllStale() kể từ lần gọi trước (đồng thời xóa cờ)
+     */
+    public static boolean consumeAllStale() {
+        return allStale.getAndSet(false);
+    }
+
+    /**
+     * Lấy và xóa danh sách pin cần đọc lại
+     */
+    public static List<Integer> drainStalePins() {
+        List<Integer> drained = new ArrayList<>();
+        for (Integer pinID : stalePins) {
+            if (stalePins.remove(pinID)) {
+                drained.add(pinID);
+            }
+        }
+        return drained;
+    }
+}
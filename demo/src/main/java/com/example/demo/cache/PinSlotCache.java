@@ -0,0 +1,255 @@
+package com.example.demo.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.demo.dto.PinSlotDTO;
+import com.example.demo.dto.StationAvailabilityDTO;
+
+/**
+ * Cache trong bộ nhớ cho danh sách pin slot theo từng station (/pinSlot/list?stationID=)
+ * và số slot theo trạng thái của từng station (/pinSlot/availability)
+ *
+ * - Đọc: PinSlotDAO.getListPinSlotByStation / getStationAvailability trả về từ cache nếu có, không chạm SQL Server
+ * - Ghi: mọi method thay đổi pinSlot trong DAO (update, reserve, swap, job updatePinPercent, ...)
+ *   gọi invalidate để lần đọc sau load lại từ database (write-through invalidation)
+ * - Reserve / unreserve biết chính xác slot đổi trạng thái gì nên cập nhật số đếm tại chỗ (delta)
+ *   thay vì xóa, để API availability không phải query lại sau mỗi lần đặt chỗ
+ * - TTL ngắn để giới hạn dữ liệu cũ khi database bị thay đổi từ bên ngoài JVM này
+ *   (stored procedure, trigger, node khác)
+ */
+public final class PinSlotCache {
+
+    // Thời gian sống của 1 entry
+    private static final long TTL_MILLIS = 30_000;
+
+    private static final Map<Integer, Entry> byStation = new ConcurrentHashMap<>();
+
+    // stationID -> số slot theo trạng thái
+    private static final Map<Integer, AvailabilityEntry> availability = new ConcurrentHashMap<>();
+
+    // Thời điểm load số đếm của tất cả station (-1 nếu đã có invalidate sau đó)
+    private static volatile long allAvailabilityLoadedAt = -1;
+
+    // pinID -> stationID, để invalidate đúng station khi chỉ biết pinID
+    private static final Map<Integer, Integer> stationOfPin = new ConcurrentHashMap<>();
+
+    // Tăng mỗi lần invalidate, dùng để bỏ kết quả load bị "chồng" lên một lần ghi
+    private static final AtomicLong generation = new AtomicLong();
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder invalidations = new LongAdder();
+    private static final LongAdder availabilityHits = new LongAdder();
+    private static final LongAdder availabilityMisses = new LongAdder();
+    private static final LongAdder availabilityDeltas = new LongAdder();
+
+    private PinSlotCache() {
+    }
+
+    private static final class Entry {
+        final List<PinSlotDTO> slots;
+        final long loadedAt;
+
+        Entry(List<PinSlotDTO> slots, long loadedAt) {
+            this.slots = slots;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class AvailabilityEntry {
+        final StationAvailabilityDTO counts;
+        final long loadedAt;
+        // generation lúc bắt đầu load, để biết entry có thể đã chứa kết quả của 1 lần ghi hay chưa
+        final long loadedAtGeneration;
+
+        AvailabilityEntry(StationAvailabilityDTO counts, long loadedAt, long loadedAtGeneration) {
+            this.counts = counts;
+            this.loadedAt = loadedAt;
+            this.loadedAtGeneration = loadedAtGeneration;
+        }
+    }
+
+    /**
+     * Lấy danh sách slot của station từ cache
+     * @return list (không sửa được) hoặc null nếu chưa có / đã hết hạn
+     */
+    public static List<PinSlotDTO> get(int stationID) {
+        Entry entry = byStation.get(stationID);
+        if (entry != null && System.currentTimeMillis() - entry.loadedAt < TTL_MILLIS) {
+            hits.increment();
+            return entry.slots;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Gọi trước khi query database, truyền lại vào put()
+     */
+    public static long currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Lưu kết quả vừa load từ database
+     * Nếu có invalidate xảy ra trong lúc load thì bỏ kết quả này (có thể đã cũ)
+     */
+    public static List<PinSlotDTO> put(int stationID, List<PinSlotDTO> slots, long loadedAtGeneration) {
+        List<PinSlotDTO> copy = List.copyOf(slots);
+        for (PinSlotDTO slot : copy) {
+            stationOfPin.put(slot.getPinID(), stationID);
+        }
+        Entry entry = new Entry(copy, System.currentTimeMillis());
+        byStation.put(stationID, entry);
+        if (generation.get() != loadedAtGeneration) {
+            byStation.remove(stationID, entry);
+        }
+        return copy;
+    }
+
+    /**
+     * Lấy số slot theo trạng thái của station từ cache
+     * @return null nếu chưa có / đã hết hạn
+     */
+    public static StationAvailabilityDTO getAvailability(int stationID) {
+        AvailabilityEntry entry = availability.get(stationID);
+        if (entry != null && System.currentTimeMillis() - entry.loadedAt < TTL_MILLIS) {
+            availabilityHits.increment();
+            return entry.counts;
+        }
+        availabilityMisses.increment();
+        return null;
+    }
+
+    /**
+     * Lấy số đếm của tất cả station
+     * @return null nếu chưa load đủ tất cả station hoặc đã có invalidate / hết hạn
+     */
+    public static List<StationAvailabilityDTO> getAllAvailability() {
+        long loadedAt = allAvailabilityLoadedAt;
+        if (loadedAt < 0 || System.currentTimeMillis() - loadedAt >= TTL_MILLIS) {
+            availabilityMisses.increment();
+            return null;
+        }
+        List<StationAvailabilityDTO> result = new ArrayList<>();
+        for (AvailabilityEntry entry : availability.values()) {
+            result.add(entry.counts);
+        }
+        result.sort(Comparator.comparingInt(StationAvailabilityDTO::getStationID));
+        availabilityHits.increment();
+        return result;
+    }
+
+    public static StationAvailabilityDTO putAvailability(StationAvailabilityDTO counts, long loadedAtGeneration) {
+        AvailabilityEntry entry = new AvailabilityEntry(counts, System.currentTimeMillis(), loadedAtGeneration);
+        availability.put(counts.getStationID(), entry);
+        if (generation.get() != loadedAtGeneration) {
+            availability.remove(counts.getStationID(), entry);
+        }
+        return counts;
+    }
+
+    /**
+     * Lưu số đếm của tất cả station (kết quả GROUP BY toàn bảng)
+     */
+    public static List<StationAvailabilityDTO> putAllAvailability(List<StationAvailabilityDTO> all, long loadedAtGeneration) {
+        long now = System.currentTimeMillis();
+        availability.clear();
+        for (StationAvailabilityDTO counts : all) {
+            availability.put(counts.getStationID(), new AvailabilityEntry(counts, now, loadedAtGeneration));
+        }
+        if (generation.get() == loadedAtGeneration) {
+            allAvailabilityLoadedAt = now;
+        } else {
+            availability.clear();
+        }
+        return all;
+    }
+
+    /**
+     * Gọi ngay trước khi ghi vào pinSlot, truyền lại vào reservationChanged()
+     * Các load bắt đầu trước thời điểm này (và chưa put) sẽ bị bỏ
+     */
+    public static long beginWrite() {
+        return generation.incrementAndGet();
+    }
+
+    /**
+     * Slot vừa được reserve (status 1 -> 2) hoặc unreserve (status 2 -> 1)
+     * Xóa danh sách slot của station nhưng cập nhật số đếm tại chỗ.
+     * Entry được load sau beginWrite() có thể đã chứa lần ghi này nên bị xóa thay vì cộng thêm.
+     * @param pinStatus pinStatus hiện tại của slot
+     */
+    public static void reservationChanged(int stationID, boolean reserved, int pinStatus, long writeGeneration) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        byStation.remove(stationID);
+        availability.computeIfPresent(stationID, (id, entry) -> {
+            if (entry.loadedAtGeneration >= writeGeneration) {
+                allAvailabilityLoadedAt = -1;
+                return null;
+            }
+            StationAvailabilityDTO c = entry.counts;
+            int availableDelta = pinStatus == 1 ? (reserved ? -1 : 1) : 0;
+            StationAvailabilityDTO updated = new StationAvailabilityDTO(id, c.getTotalSlots(),
+                    c.getAvailable() + availableDelta, c.getReserved() + (reserved ? 1 : -1),
+                    c.getCharging(), c.getFull());
+            return new AvailabilityEntry(updated, entry.loadedAt, entry.loadedAtGeneration);
+        });
+        availabilityDeltas.increment();
+    }
+
+    public static void invalidateStation(int stationID) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        byStation.remove(stationID);
+        availability.remove(stationID);
+        allAvailabilityLoadedAt = -1;
+    }
+
+    /**
+     * Invalidate station chứa pin slot này (không biết station thì xóa toàn bộ cache)
+     */
+    public static void invalidatePin(int pinID) {
+        Integer stationID = stationOfPin.get(pinID);
+        if (stationID != null) {
+            invalidateStation(stationID);
+        } else {
+            invalidateAll();
+        }
+    }
+
+    public static void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.increment();
+        byStation.clear();
+        availability.clear();
+        allAvailabilityLoadedAt = -1;
+    }
+
+    public static Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedStations", byStation.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : hitCount / (double) total);
+        stats.put("invalidations", invalidations.sum());
+        stats.put("availabilityStations", availability.size());
+        stats.put("availabilityHits", availabilityHits.sum());
+        stats.put("availabilityMisses", availabilityMisses.sum());
+        stats.put("availabilityDeltas", availabilityDeltas.sum());
+        stats.put("ttlMillis", TTL_MILLIS);
+        return stats;
+    }
+}
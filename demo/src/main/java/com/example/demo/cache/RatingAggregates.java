@@ -0,0 +1,135 @@
+package com.example.demo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thống kê rating theo station giữ trong bộ nhớ: histogram số lượng 1-5 sao
+ * (tổng số rating và tổng số sao tính từ histogram), phục vụ /rating/average và /rating/statistics trong O(1)
+ *
+ * - Load toàn bộ bằng 1 câu GROUP BY khi ứng dụng khởi động (StartupCacheLoader) và định kỳ
+ *   (ScheduledJobs.rebuildRatingAggregates, mọi node) để thấy rating ghi qua node khác
+ * - RatingDAO.createRating gọi beginWrite() trước INSERT và record() sau khi INSERT thành công
+ * - Kết quả load bị bỏ nếu có rating mới được ghi trong lúc đang load (tránh mất rating đó),
+ *   rating mà kết quả load có thể đã đếm (load bắt đầu sau beginWrite) không được cộng thêm lần nữa
+ */
+public final class RatingAggregates {
+
+    private static final Map<Integer, AtomicIntegerArray> byStation = new ConcurrentHashMap<>();
+
+    // Tăng trước và sau mỗi lần ghi rating
+    private static final AtomicLong version = new AtomicLong();
+    private static volatile boolean loaded = false;
+    // version lúc bắt đầu load của thống kê đang dùng
+    private static long loadedAtVersion = -1;
+
+    private static final LongAdder reads = new LongAdder();
+    private static final LongAdder records = new LongAdder();
+    private static final LongAdder rebuilds = new LongAdder();
+    private static final LongAdder discardedRebuilds = new LongAdder();
+    private static final LongAdder invalidations = new LongAdder();
+
+    private RatingAggregates() {
+    }
+
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Gọi trước khi query database, truyền lại vào rebuild()
+     */
+    public static long currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * Thay toàn bộ thống kê bằng kết quả vừa load
+     * @param histograms stationID -> int[6] (index 1-5 là số rating 1-5 sao)
+     * @return false nếu có rating mới trong lúc load (kết quả bị bỏ)
+     */
+    public static synchronized boolean rebuild(Map<Integer, int[]> histograms, long loadedAtVersion) {
+        if (version.get() != loadedAtVersion) {
+            discardedRebuilds.increment();
+            return false;
+        }
+        byStation.clear();
+        for (Map.Entry<Integer, int[]> entry : histograms.entrySet()) {
+            byStation.put(entry.getKey(), new AtomicIntegerArray(entry.getValue()));
+        }
+        RatingAggregates.loadedAtVersion = loadedAtVersion;
+        loaded = true;
+        rebuilds.increment();
+        return true;
+    }
+
+    /**
+     * Gọi ngay trước khi INSERT rating, truyền lại vào record()
+     * Các load bắt đầu trước thời điểm này (và chưa rebuild) sẽ bị bỏ
+     */
+    public static long beginWrite() {
+        return version.incrementAndGet();
+    }
+
+    /**
+     * Ghi nhận 1 rating mới (gọi sau khi INSERT thành công)
+     * Thống kê được load sau beginWrite() có thể đã đếm rating này: đánh dấu cần load lại thay vì cộng thêm
+     */
+    public static synchronized void record(int stationID, int rating, long writeVersion) {
+        if (rating < 1 || rating > 5) {
+            return;
+        }
+        version.incrementAndGet();
+        if (loadedAtVersion >= writeVersion) {
+            loaded = false;
+            invalidations.increment();
+            return;
+        }
+        byStation.computeIfAbsent(stationID, id -> new AtomicIntegerArray(6)).incrementAndGet(rating);
+        records.increment();
+    }
+
+    /**
+     * Bản sao histogram của station, index 0 không dùng, 1-5 cho 1-5 sao
+     */
+    public static int[] getHistogram(int stationID) {
+        reads.increment();
+        int[] statistics = new int[6];
+        AtomicIntegerArray histogram = byStation.get(stationID);
+        if (histogram != null) {
+            for (int star = 1; star <= 5; star++) {
+                statistics[star] = histogram.get(star);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Rating trung bình từ histogram (0.0 nếu chưa có rating)
+     */
+    public static double average(int[] histogram) {
+        long count = 0;
+        long sum = 0;
+        for (int star = 1; star <= 5; star++) {
+            count += histogram[star];
+            sum += (long) star * histogram[star];
+        }
+        return count == 0 ? 0.0 : sum / (double) count;
+    }
+
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", loaded);
+        stats.put("stations", byStation.size());
+        stats.put("reads", reads.sum());
+        stats.put("records", records.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("discardedRebuilds", discardedRebuilds.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+}
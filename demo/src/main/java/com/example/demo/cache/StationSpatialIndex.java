@@ -0,0 +1,334 @@
+package com.example.demo.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.example.demo.dto.NearbyStationDTO;
+import com.example.demo.dto.PinStationDTO;
+
+/**
+ * Spatial index (lưới ô vuông theo độ) cho các station đang active (status = 1), phục vụ /pinStation/nearby
+ *
+ * - Tọa độ theo quy ước GIS: x = kinh độ (longitude), y = vĩ độ (latitude), khoảng cách tính bằng haversine (km)
+ * - Tìm trong bán kính: chỉ duyệt các ô nằm trong bounding box của hình tròn
+ * - Tìm k station gần nhất: tìm trong bán kính tăng dần (gấp đôi) đến khi có đủ k station
+ * - PinStationDAO cập nhật từng station khi create / update / đổi status, và load lại toàn bộ định kỳ
+ *   để bắt các thay đổi từ bên ngoài JVM này
+ */
+public final class StationSpatialIndex {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    // Kích thước 1 ô lưới (độ), ~5.5 km theo vĩ độ
+    public static final double DEFAULT_CELL_DEGREES = 0.05;
+
+    // Sau khoảng thời gian này thì load lại toàn bộ từ database
+    private static final long REBUILD_INTERVAL_MILLIS = 5 * 60_000;
+
+    // Bán kính bắt đầu khi tìm k station gần nhất
+    private static final double INITIAL_KNN_RADIUS_KM = 2.0;
+
+    private static final double MAX_DISTANCE_KM = Math.PI * EARTH_RADIUS_KM;
+
+    private static final StationSpatialIndex SHARED = new StationSpatialIndex(DEFAULT_CELL_DEGREES);
+
+    private final double cellDegrees;
+    private final int columns;
+    private final int rows;
+
+    // cell key -> station trong ô; stationID -> entry
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+    private final Map<Integer, Entry> byStation = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Tăng mỗi lần thay đổi, dùng để bỏ kết quả rebuild bị "chồng" lên một lần ghi
+    private final AtomicLong version = new AtomicLong();
+    private volatile long loadedAt = -1;
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+
+    public StationSpatialIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.columns = (int) Math.ceil(360.0 / cellDegrees);
+        this.rows = (int) Math.ceil(180.0 / cellDegrees) + 1;
+    }
+
+    /**
+     * Index dùng chung cho toàn ứng dụng (DAO được tạo bằng new nên không inject được)
+     */
+    public static StationSpatialIndex shared() {
+        return SHARED;
+    }
+
+    private static final class Entry {
+        final PinStationDTO station;
+        final double lat;
+        final double lng;
+        final long cell;
+
+        Entry(PinStationDTO station, double lat, double lng, long cell) {
+            this.station = station;
+            this.lat = lat;
+            this.lng = lng;
+            this.cell = cell;
+        }
+    }
+
+    /**
+     * Index cần load lại từ database (chưa load, hết hạn hoặc bị đánh dấu cũ)
+     */
+    public boolean needsRebuild() {
+        long loaded = loadedAt;
+        return loaded < 0 || System.currentTimeMillis() - loaded >= REBUILD_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Gọi trước khi query database, truyền lại vào rebuild()
+     */
+    public long currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * Thay toàn bộ index bằng danh sách station vừa load
+     * Nếu có thay đổi xảy ra trong lúc load thì vẫn dùng kết quả này nhưng để lần query sau load lại
+     */
+    public void rebuild(Collection<PinStationDTO> stations, long loadedAtVersion) {
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+            byStation.clear();
+            for (PinStationDTO station : stations) {
+                insert(station);
+            }
+            loadedAt = version.get() == loadedAtVersion ? System.currentTimeMillis() : -1;
+            rebuilds.increment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Thêm / cập nhật 1 station; station không active (hoặc tọa độ không hợp lệ) sẽ bị bỏ khỏi index
+     */
+    public void upsert(PinStationDTO station) {
+        lock.writeLock().lock();
+        try {
+            version.incrementAndGet();
+            updates.increment();
+            removeEntry(station.getStationID());
+            insert(station);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int stationID) {
+        lock.writeLock().lock();
+        try {
+            version.incrementAndGet();
+            updates.increment();
+            removeEntry(stationID);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Đánh dấu index đã cũ, lần query sau sẽ load lại toàn bộ
+     */
+    public void markStale() {
+        version.incrementAndGet();
+        loadedAt = -1;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byStation.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Các station trong bán kính radiusKm, sắp xếp theo khoảng cách tăng dần
+     * @param limit số kết quả tối đa (<= 0 là không giới hạn)
+     */
+    public List<NearbyStationDTO> withinRadius(double lat, double lng, double radiusKm, int limit) {
+        queries.increment();
+        lock.readLock().lock();
+        try {
+            List<NearbyStationDTO> result = collectWithinRadius(lat, lng, radiusKm);
+            result.sort(Comparator.comparingDouble(NearbyStationDTO::getDistanceKm));
+            return limit > 0 && result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * k station gần nhất, sắp xếp theo khoảng cách tăng dần
+     * @param maxRadiusKm chỉ lấy station trong bán kính này (null là không giới hạn)
+     */
+    public List<NearbyStationDTO> nearest(double lat, double lng, int k, Double maxRadiusKm) {
+        queries.increment();
+        lock.readLock().lock();
+        try {
+            double limitKm = maxRadiusKm != null ? Math.min(maxRadiusKm, MAX_DISTANCE_KM) : MAX_DISTANCE_KM;
+            double radius = Math.min(INITIAL_KNN_RADIUS_KM, limitKm);
+            List<NearbyStationDTO> found = collectWithinRadius(lat, lng, radius);
+            // Mọi station trong bán kính đều đã được tìm thấy, nên khi đủ k thì k station gần nhất nằm trong đó
+            while (found.size() < k && found.size() < byStation.size() && radius < limitKm) {
+                radius = Math.min(radius * 2, limitKm);
+                found = collectWithinRadius(lat, lng, radius);
+            }
+            found.sort(Comparator.comparingDouble(NearbyStationDTO::getDistanceKm));
+            return found.size() > k ? new ArrayList<>(found.subList(0, k)) : found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("indexedStations", byStation.size());
+            stats.put("occupiedCells", cells.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("cellDegrees", cellDegrees);
+        stats.put("queries", queries.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("incrementalUpdates", updates.sum());
+        stats.put("loadedAt", loadedAt);
+        return stats;
+    }
+
+    /**
+     * Khoảng cách haversine giữa 2 điểm (km)
+     */
+    public static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                        * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    // ===== Phần nội bộ, gọi khi đang giữ lock =====
+
+    private void insert(PinStationDTO station) {
+        double lat = station.getY();
+        double lng = station.getX();
+        if (station.getStatus() != 1 || !isValidCoordinate(lat, lng)) {
+            return;
+        }
+        Entry entry = new Entry(station, lat, lng, cellKey(rowOf(lat), columnOf(lng)));
+        byStation.put(station.getStationID(), entry);
+        cells.computeIfAbsent(entry.cell, key -> new ArrayList<>()).add(entry);
+    }
+
+    private void removeEntry(int stationID) {
+        Entry old = byStation.remove(stationID);
+        if (old != null) {
+            List<Entry> cell = cells.get(old.cell);
+            cell.remove(old);
+            if (cell.isEmpty()) {
+                cells.remove(old.cell);
+            }
+        }
+    }
+
+    private List<NearbyStationDTO> collectWithinRadius(double lat, double lng, double radiusKm) {
+        List<NearbyStationDTO> result = new ArrayList<>();
+        if (byStation.isEmpty() || radiusKm < 0) {
+            return result;
+        }
+
+        // Bounding box của hình tròn trên mặt cầu
+        double latDelta = Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+        double minLat = lat - latDelta;
+        double maxLat = lat + latDelta;
+        boolean allLongitudes = minLat <= -90 || maxLat >= 90;
+        double lngDelta = 180;
+        if (!allLongitudes) {
+            double ratio = Math.sin(radiusKm / EARTH_RADIUS_KM) / Math.cos(Math.toRadians(lat));
+            allLongitudes = ratio >= 1;
+            if (!allLongitudes) {
+                lngDelta = Math.toDegrees(Math.asin(ratio));
+            }
+        }
+
+        int firstRow = rowOf(Math.max(minLat, -90));
+        int lastRow = rowOf(Math.min(maxLat, 90));
+        int firstColumn;
+        int columnCount;
+        if (allLongitudes || lngDelta >= 180) {
+            firstColumn = 0;
+            columnCount = columns;
+        } else {
+            firstColumn = (int) Math.floor((lng - lngDelta + 180) / cellDegrees);
+            int lastColumn = (int) Math.floor((lng + lngDelta + 180) / cellDegrees);
+            columnCount = Math.min(lastColumn - firstColumn + 1, columns);
+        }
+
+        // Ít station hơn số ô cần duyệt thì duyệt thẳng danh sách station
+        if ((long) (lastRow - firstRow + 1) * columnCount > byStation.size()) {
+            for (Entry entry : byStation.values()) {
+                addIfWithin(result, entry, lat, lng, radiusKm);
+            }
+            return result;
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int i = 0; i < columnCount; i++) {
+                // Kinh độ vượt qua ±180 thì quay vòng
+                int column = Math.floorMod(firstColumn + i, columns);
+                List<Entry> cell = cells.get(cellKey(row, column));
+                if (cell != null) {
+                    for (Entry entry : cell) {
+                        addIfWithin(result, entry, lat, lng, radiusKm);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void addIfWithin(List<NearbyStationDTO> result, Entry entry, double lat, double lng, double radiusKm) {
+        double distance = distanceKm(lat, lng, entry.lat, entry.lng);
+        if (distance <= radiusKm) {
+            result.add(new NearbyStationDTO(entry.station, distance));
+        }
+    }
+
+    private static boolean isValidCoordinate(double lat, double lng) {
+        return lat >= -90 && lat <= 90 && lng >= -180 && lng <= 180;
+    }
+
+    private int rowOf(double lat) {
+        return Math.min((int) Math.floor((lat + 90) / cellDegrees), rows - 1);
+    }
+
+    private int columnOf(double lng) {
+        return Math.floorMod((int) Math.floor((lng + 180) / cellDegrees), columns);
+    }
+
+    private long cellKey(int row, int column) {
+        return (long) row * columns + column;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Danh sách thu hồi token đăng nhập theo user (trong bộ nhớ)
+ * Token của user được cấp trước thời điểm thu hồi sẽ bị từ chối.
+ *
+ * UserDAO.update / updateStatus gọi revokeUser vì role hoặc status trong token đã cũ.
+ * Entry chỉ cần giữ trong thời gian sống của token, sau đó token cũ tự hết hạn.
+ *
+ * Danh sách chỉ có trên node đã ghi bảng users: chạy nhiều node thì node khác vẫn nhận token cũ
+ * cho đến khi hết hạn (app.auth.token-ttl-seconds), nên để TTL ngắn khi chạy nhiều node.
+ */
+public final class TokenRevocationList {
+
+    // userID -> thời điểm thu hồi (millis)
+    private static final Map<Integer, Long> revokedAt = new ConcurrentHashMap<>();
+
+    private TokenRevocationList() {
+    }
+
+    public static void revokeUser(int userID) {
+        revokedAt.put(userID, System.currentTimeMillis());
+    }
+
+    /**
+     * @param issuedAt thời điểm cấp token (millis)
+     */
+    public static boolean isRevoked(int userID, long issuedAt) {
+        Long revoked = revokedAt.get(userID);
+        // Token cấp cùng millisecond với lần thu hồi (đăng nhập lại ngay sau khi cập nhật) vẫn hợp lệ
+        return revoked != null && issuedAt < revoked;
+    }
+
+    /**
+     * Xóa các entry cũ hơn thời gian sống của token
+     */
+    public static void prune(long tokenTtlMillis) {
+        long cutoff = System.currentTimeMillis() - tokenTtlMillis;
+        revokedAt.values().removeIf(revoked -> revoked < cutoff);
+    }
+
+    public static int size() {
+        return revokedAt.size();
+    }
+}
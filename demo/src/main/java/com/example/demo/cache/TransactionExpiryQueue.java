@@ -0,0 +1,114 @@
+package com.example.demo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hàng đợi hết hạn của các transaction pending (status = 0), sắp theo expireAt
+ *
+ * - TransactionDAO đăng ký transaction ngay khi tạo, TransactionExpiryService load lại lúc khởi động
+ * - Worker của TransactionExpiryService lấy ra đúng thời điểm hết hạn và chuyển status 0 -> 2
+ * - Mỗi transactionID chỉ có 1 deadline, đăng ký lại thì thay deadline cũ
+ * - Thời điểm tính theo đồng hồ JVM (DAO đổi expireAt của database thành "còn bao nhiêu ms")
+ */
+public final class TransactionExpiryQueue {
+
+    private static final DelayQueue<Expiry> queue = new DelayQueue<>();
+
+    // transactionID -> deadline đang chờ, để bỏ qua phần tử đã bị thay / hủy khi lấy ra
+    private static final Map<Integer, Expiry> pending = new ConcurrentHashMap<>();
+
+    private static final LongAdder registered = new LongAdder();
+    private static final LongAdder cancelled = new LongAdder();
+
+    private TransactionExpiryQueue() {
+    }
+
+    public static final class Expiry implements Delayed {
+        private final int transactionID;
+        private final int stationID;
+        private final int pinID;
+        private final long expireAtMillis;
+
+        Expiry(int transactionID, int stationID, int pinID, long expireAtMillis) {
+            this.transactionID = transactionID;
+            this.stationID = stationID;
+            this.pinID = pinID;
+            this.expireAtMillis = expireAtMillis;
+        }
+
+        public int getTransactionID() { return transactionID; }
+
+        public int getStationID() { return stationID; }
+
+        public int getPinID() { return pinID; }
+
+        public long getExpireAtMillis() { return expireAtMillis; }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expireAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof Expiry) {
+                return Long.compare(expireAtMillis, ((Expiry) other).expireAtMillis);
+            }
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Đăng ký (hoặc thay) deadline của 1 transaction pending
+     * @param expiresInMillis số ms còn lại tới expireAt (<= 0 thì hết hạn ngay)
+     */
+    public static void register(int transactionID, int stationID, int pinID, long expiresInMillis) {
+        Expiry expiry = new Expiry(transactionID, stationID, pinID, System.currentTimeMillis() + expiresInMillis);
+        pending.put(transactionID, expiry);
+        queue.put(expiry);
+        registered.increment();
+    }
+
+    /**
+     * Transaction không còn pending (completed, cancelled, ...) -> không cần hết hạn nữa
+     */
+    public static void cancel(int transactionID) {
+        if (pending.remove(transactionID) != null) {
+            cancelled.increment();
+        }
+    }
+
+    /**
+     * Chờ tới deadline gần nhất còn hiệu lực
+     * Phần tử đã bị cancel / đăng ký lại được bỏ qua.
+     */
+    public static Expiry take() throws InterruptedException {
+        while (true) {
+            Expiry expiry = queue.take();
+            if (pending.remove(expiry.getTransactionID(), expiry)) {
+                return expiry;
+            }
+        }
+    }
+
+    public static int size() {
+        return pending.size();
+    }
+
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("queued", queue.size());
+        stats.put("registered", registered.sum());
+        stats.put("cancelled", cancelled.sum());
+        Expiry next = queue.peek();
+        stats.put("nextExpiresInMillis", next != null ? next.getDelay(TimeUnit.MILLISECONDS) : null);
+        return stats;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache roleID / status của user, dùng chung cho các kiểm tra quyền trong DAO
+ * (ReportDAO, PinStationDAO, TransactionDAO đều đi qua UserRoleDAO)
+ * Chỉ dùng cho user khác người gọi (staff được gán trạm, user có report): role của người gọi lấy từ token
+ *
+ * - TTL ngắn để giới hạn dữ liệu cũ khi bảng users bị sửa từ bên ngoài JVM này
+ * - UserDAO.update / updateStatus gọi invalidate ngay sau khi ghi
+ * - User không tồn tại thì không cache (user mới tạo dùng được ngay)
+ * - Chỉ nạp từ database (UserRoleDAO), không nạp từ token đăng nhập: role / status trong token
+ *   có thể đã cũ (user bị khóa / đổi quyền sau khi đăng nhập)
+ */
+public final class UserRoleCache {
+
+    private static final long TTL_MILLIS = 60_000;
+
+    private static final Map<Integer, UserRole> byUser = new ConcurrentHashMap<>();
+
+    // Tăng mỗi lần invalidate, dùng để bỏ kết quả load bị "chồng" lên một lần ghi
+    private static final AtomicLong generation = new AtomicLong();
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder loads = new LongAdder();
+    private static final LongAdder invalidations = new LongAdder();
+
+    private UserRoleCache() {
+    }
+
+    /**
+     * roleID (1 driver, 2 staff, 3 admin) và status (0 inactive, 1 active) của 1 user
+     */
+    public static final class UserRole {
+        private final int userID;
+        private final int roleID;
+        private final int status;
+        private final long loadedAt;
+
+        public UserRole(int userID, int roleID, int status) {
+            this.userID = userID;
+            this.roleID = roleID;
+            this.status = status;
+            this.loadedAt = System.currentTimeMillis();
+        }
+
+        public int getUserID() {
+            return userID;
+        }
+
+        public int getRoleID() {
+            return roleID;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean isActive() {
+            return status == 1;
+        }
+    }
+
+    /**
+     * @return role của user hoặc null nếu chưa có / đã hết hạn
+     */
+    public static UserRole get(int userID) {
+        UserRole role = byUser.get(userID);
+        if (role != null && System.currentTimeMillis() - role.loadedAt < TTL_MILLIS) {
+            hits.increment();
+            return role;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Gọi trước khi query database, truyền lại vào put()
+     */
+    public static long currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Lưu kết quả vừa load từ database (mỗi lần gọi tính là 1 lần query users)
+     */
+    public static UserRole put(UserRole role, long loadedAtGeneration) {
+        loads.increment();
+        byUser.put(role.getUserID(), role);
+        if (generation.get() != loadedAtGeneration) {
+            byUser.remove(role.getUserID(), role);
+        }
+        return role;
+    }
+
+    /**
+     * Ghi nhận 1 lần query users không tìm thấy user (không cache)
+     */
+    public static void recordMissingUser() {
+        loads.increment();
+    }
+
+    public static void invalidate(int userID) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        byUser.remove(userID);
+    }
+
+    public static void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.increment();
+        byUser.clear();
+    }
+
+    public static Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedUsers", byUser.size());
+        stats.put("lookups", total);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : hitCount / (double) total);
+        stats.put("dbLoads", loads.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("ttlMillis", TTL_MILLIS);
+        return stats;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo.config;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.service.AuthTokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Kiểm tra header "Authorization: Bearer <token>" (token cấp khi /login)
+ *
+ * - Token hợp lệ: gắn AuthPrincipal vào request attribute, tham số định danh người gọi
+ *   (userID / adminID / adminUserID) phải trùng user của token; staff / admin (role trong token)
+ *   được truyền userID của người khác. Không query users: role / status đổi thì UserDAO thu hồi token
+ * - Token sai / hết hạn / bị thu hồi: trả 401, tham số định danh không khớp token: trả 403
+ * - API kiểm tra quyền theo người gọi (TOKEN_REQUIRED_PATHS: report, tạo / sửa service pack) bắt buộc token,
+ *   controller / DAO lấy userID và roleID từ AuthPrincipal
+ * - API khác không có header: cho qua như cũ (các API vẫn nhận userID qua parameter)
+ * - Không chạy cho /api/login (request đăng nhập lại có thể còn mang token cũ đã hết hạn)
+ */
+// Chạy trước IdempotencyFilter (Idempotency-Key tính theo user của token)
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 10)
+public class AuthTokenFilter extends OncePerRequestFilter {
+
+    public static final String PRINCIPAL_ATTRIBUTE = "authPrincipal";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private static final Set<String> EXCLUDED_PATHS = Set.of("/api/login");
+
+    // Tiền tố đường dẫn bắt buộc token (người gọi và role lấy từ AuthPrincipal)
+    private static final List<String> TOKEN_REQUIRED_PATHS = List.of(
+            "/api/report/", "/api/servicePack/create", "/api/servicePack/update");
+
+    // Tham số chỉ người gọi (admin thực hiện thao tác), luôn phải là user của token
+    private static final Set<String> CALLER_PARAMETERS = Set.of("adminID", "adminId", "adminUserID");
+    // Tham số user bị tác động, staff / admin được phép truyền user khác
+    private static final String USER_PARAMETER = "userID";
+
+    @Autowired
+    private AuthTokenService authTokenService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return EXCLUDED_PATHS.contains(path(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            if (requiresToken(path(request))) {
+                writeError(response, HttpStatus.UNAUTHORIZED, "Authorization token is required");
+                return;
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        AuthPrincipal principal = authTokenService.verify(header.substring(BEARER_PREFIX.length()).trim());
+        if (principal == null) {
+            writeError(response, HttpStatus.UNAUTHORIZED, "Invalid or expired token");
+            return;
+        }
+        String caller = String.valueOf(principal.getUserID());
+        for (String name : CALLER_PARAMETERS) {
+            String value = request.getParameter(name);
+            if (value != null && !value.equals(caller)) {
+                writeError(response, HttpStatus.FORBIDDEN, name + " does not match the authenticated user");
+                return;
+            }
+        }
+        String userID = request.getParameter(USER_PARAMETER);
+        if (userID != null && !userID.equals(caller) && principal.getRoleID() < 2) {
+            writeError(response, HttpStatus.FORBIDDEN, USER_PARAMETER + " does not match the authenticated user");
+            return;
+        }
+
+        request.setAttribute(PRINCIPAL_ATTRIBUTE, principal);
+        filterChain.doFilter(request, response);
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static boolean requiresToken(String path) {
+        for (String prefix : TOKEN_REQUIRED_PATHS) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), ApiResponse.error(message));
+    }
+}
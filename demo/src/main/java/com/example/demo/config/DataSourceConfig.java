@@ -0,0 +1,86 @@
+package com.example.demo.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.demo.dbUnits.DBUtils;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Gắn connection pool (HikariCP do Spring Boot tạo từ spring.datasource.*) vào DBUtils
+ * để tất cả DAO (khởi tạo bằng new) dùng chung một nguồn connection có giới hạn.
+ *
+ * Nếu có cấu hình app.datasource.read.url thì tạo thêm pool cho read replica,
+ * dùng cho các DAO method chỉ đọc (QueryExecutor.replica()).
+ * Pool này không đăng ký làm bean DataSource để không thay thế DataSource chính của Spring.
+ *
+ * app.db.max-concurrency giới hạn số connection primary được mượn cùng lúc (bulkhead trong DBUtils).
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${spring.datasource.driver-class-name}")
+    private String driverClassName;
+
+    @Value("${app.db.max-concurrency:0}")
+    private int maxConcurrency;
+
+    @Value("${app.db.max-concurrency-wait-ms:10000}")
+    private long maxConcurrencyWaitMs;
+
+    @Value("${app.datasource.read.url:}")
+    private String readUrl;
+
+    @Value("${app.datasource.read.username:}")
+    private String readUsername;
+
+    @Value("${app.datasource.read.password:}")
+    private String readPassword;
+
+    @Value("${app.datasource.read.maximum-pool-size:10}")
+    private int readMaximumPoolSize;
+
+    private HikariDataSource readDataSource;
+
+    @PostConstruct
+    public void registerDataSource() {
+        DBUtils.setDataSource(dataSource);
+        System.out.println("DataSourceConfig: DBUtils is now using pooled DataSource " + dataSource.getClass().getSimpleName());
+        DBUtils.setMaxConcurrency(maxConcurrency, maxConcurrencyWaitMs);
+
+        if (readUrl != null && !readUrl.isBlank()) {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("swp-read-pool");
+            config.setJdbcUrl(readUrl);
+            config.setUsername(readUsername);
+            config.setPassword(readPassword);
+            config.setDriverClassName(driverClassName);
+            config.setMaximumPoolSize(readMaximumPoolSize);
+            config.setReadOnly(true);
+            config.addDataSourceProperty("disableStatementPooling", "false");
+            config.addDataSourceProperty("statementPoolingCacheSize", "100");
+
+            readDataSource = new HikariDataSource(config);
+            DBUtils.setReadDataSource(readDataSource);
+            System.out.println("DataSourceConfig: read-only queries are routed to replica pool " + config.getPoolName());
+        }
+    }
+
+    @PreDestroy
+    public void closeReadDataSource() {
+        DBUtils.setReadDataSource(null);
+        if (readDataSource != null) {
+            readDataSource.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.demo.dao.IdempotencyKeyDAO;
+import com.example.demo.service.IdempotencyStore;
+import com.example.demo.service.InMemoryIdempotencyStore;
+
+/**
+ * Chọn nơi lưu Idempotency-Key cho IdempotencyFilter
+ * memory = trong bộ nhớ từng node (1 instance), jdbc = bảng IdempotencyKey dùng chung cho nhiều node
+ */
+@Configuration
+public class IdempotencyConfig {
+
+    @Value("${app.idempotency.store:memory}")
+    private String store;
+
+    @Value("${app.idempotency.ttl-seconds:86400}")
+    private int ttlSeconds;
+
+    @Value("${app.idempotency.lease-seconds:60}")
+    private int leaseSeconds;
+
+    @Value("${app.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${app.idempotency.max-in-progress:1000}")
+    private int maxInProgress;
+
+    @Bean
+    public IdempotencyStore idempotencyStore() {
+        if ("jdbc".equalsIgnoreCase(store)) {
+            System.out.println("Idempotency store: jdbc (dbo.IdempotencyKey)");
+            return new IdempotencyKeyDAO(ttlSeconds, leaseSeconds);
+        }
+        System.out.println("Idempotency store: memory (max " + maxEntries + " keys, " + maxInProgress + " in progress)");
+        return new InMemoryIdempotencyStore(ttlSeconds * 1000L, leaseSeconds * 1000L, maxEntries, maxInProgress);
+    }
+}
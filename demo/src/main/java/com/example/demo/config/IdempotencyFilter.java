@@ -0,0 +1,334 @@
+package com.example.demo.config;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.service.IdempotencyStore;
+import com.example.demo.service.IdempotencyStore.Claim;
+import com.example.demo.service.IdempotencyStore.StoredResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Header "Idempotency-Key" cho các API ghi dữ liệu (app.idempotency.paths)
+ *
+ * Client mạng chập chờn gửi lại request (timeout, mất kết nối) với cùng key:
+ * - Lần đầu: xử lý bình thường, chỉ lưu response thành công (2xx và body không phải ApiResponse.error) vào IdempotencyStore;
+ *   response lỗi (kể cả 200 + ApiResponse.error như "Database is busy") thì bỏ key để client gửi lại được xử lý lại
+ * - Gửi lại cùng key + cùng tham số: trả lại response đã lưu (header Idempotent-Replayed: true), không chạy lại DAO
+ * - Request trước cùng key đang xử lý: 409
+ * - Cùng key nhưng tham số khác: 422
+ * Key tính theo method + path + user (token đăng nhập, nếu có) + Idempotency-Key. Không gửi header thì xử lý như cũ.
+ * /api/swap/execute có idempotency riêng trong DB transaction (SwapDAO), không đi qua filter này.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 64;
+    // Body request lớn hơn thì không hỗ trợ idempotency (các API này chỉ nhận vài tham số)
+    private static final int MAX_REQUEST_BODY_BYTES = 64 * 1024;
+    // Response lớn hơn thì không lưu (client gửi lại sẽ được xử lý lại)
+    private static final int MAX_STORED_RESPONSE_BYTES = 256 * 1024;
+
+    private static final Set<String> MUTATING_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    @Autowired
+    private IdempotencyStore store;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.idempotency.paths:/api/transaction/create,/api/vehicle/PinSwap,/api/subscription/decrementTotal,/vnpay/create}")
+    private Set<String> paths;
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder inProgressRejected = new LongAdder();
+    private final LongAdder mismatchRejected = new LongAdder();
+    private final LongAdder notStored = new LongAdder();
+    private final LongAdder storeErrors = new LongAdder();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled
+                || !MUTATING_METHODS.contains(request.getMethod())
+                || request.getHeader(HEADER) == null
+                || !paths.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(HEADER).trim();
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            writeError(response, HttpStatus.BAD_REQUEST, ApiResponse.error("Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters"));
+            return;
+        }
+        if (request.getContentLengthLong() > MAX_REQUEST_BODY_BYTES) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // Form (x-www-form-urlencoded) đọc qua getParameterMap, body khác đọc trước và giữ lại cho controller
+        HttpServletRequest effectiveRequest = request;
+        byte[] body = new byte[0];
+        if (!isFormRequest(request)) {
+            body = request.getInputStream().readNBytes(MAX_REQUEST_BODY_BYTES + 1);
+            if (body.length > MAX_REQUEST_BODY_BYTES) {
+                writeError(response, HttpStatus.PAYLOAD_TOO_LARGE, ApiResponse.error("Request body too large for an idempotent request"));
+                return;
+            }
+            effectiveRequest = new CachedBodyRequest(request, body);
+        }
+
+        String key = sha256Hex(scope(request, idempotencyKey).getBytes(StandardCharsets.UTF_8));
+        String fingerprint = fingerprint(effectiveRequest, body);
+
+        Claim claim;
+        try {
+            claim = store.claim(key, fingerprint);
+        } catch (SQLException e) {
+            storeErrors.increment();
+            System.out.println("SQLException at IdempotencyFilter claim: " + e.getMessage());
+            writeError(response, HttpStatus.SERVICE_UNAVAILABLE, ApiResponse.error("Idempotency store unavailable, please retry"));
+            return;
+        }
+
+        switch (claim.getState()) {
+            case COMPLETED -> {
+                replayed.increment();
+                StoredResponse stored = claim.getResponse();
+                response.setStatus(stored.getStatus());
+                if (stored.getContentType() != null) {
+                    response.setContentType(stored.getContentType());
+                }
+                response.setHeader(REPLAYED_HEADER, "true");
+                response.setContentLength(stored.getBody().length);
+                response.getOutputStream().write(stored.getBody());
+            }
+            case IN_PROGRESS -> {
+                inProgressRejected.increment();
+                writeError(response, HttpStatus.CONFLICT,
+                        ApiResponse.error("A request with this Idempotency-Key is still being processed", "IDEMPOTENCY_KEY_IN_PROGRESS"));
+            }
+            case FINGERPRINT_MISMATCH -> {
+                mismatchRejected.increment();
+                writeError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                        ApiResponse.error("Idempotency-Key was already used with different request parameters", "IDEMPOTENCY_KEY_CONFLICT"));
+            }
+            case ACQUIRED -> execute(effectiveRequest, response, filterChain, key);
+        }
+    }
+
+    /**
+     * Xử lý request lần đầu, lưu response nếu thành công,
+     * lỗi (4xx / 5xx / exception / ApiResponse.error) thì bỏ key để client gửi lại được xử lý lại
+     */
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain, String key)
+            throws ServletException, IOException {
+        executed.increment();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            filterChain.doFilter(request, wrapper);
+            byte[] content = wrapper.getContentAsByteArray();
+            if (isSuccess(wrapper.getStatus(), wrapper.getContentType(), content) && content.length <= MAX_STORED_RESPONSE_BYTES) {
+                store.complete(key, new StoredResponse(wrapper.getStatus(), wrapper.getContentType(), content));
+                stored = true;
+            }
+        } catch (SQLException e) {
+            storeErrors.increment();
+            System.out.println("SQLException at IdempotencyFilter complete: " + e.getMessage());
+        } finally {
+            if (!stored) {
+                notStored.increment();
+                release(key);
+            }
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    // Controller trả lỗi bằng ApiResponse.error với HTTP 200 (ví dụ /vnpay/create), nên phải đọc cả body
+    private boolean isSuccess(int status, String contentType, byte[] content) {
+        if (status < 200 || status >= 300) {
+            return false;
+        }
+        if (contentType == null || !contentType.contains("json") || content.length == 0) {
+            return true;
+        }
+        try {
+            JsonNode bodyStatus = objectMapper.readTree(content).get("status");
+            return bodyStatus == null || !"error".equals(bodyStatus.asText());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void release(String key) {
+        try {
+            store.release(key);
+        } catch (SQLException e) {
+            storeErrors.increment();
+            System.out.println("SQLException at IdempotencyFilter release: " + e.getMessage());
+        }
+    }
+
+    private static String scope(HttpServletRequest request, String idempotencyKey) {
+        Object principal = request.getAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE);
+        String user = principal instanceof AuthPrincipal p ? String.valueOf(p.getUserID()) : "-";
+        return request.getMethod() + " " + request.getRequestURI() + " " + user + " " + idempotencyKey;
+    }
+
+    /**
+     * SHA-256 của tham số (sắp xếp theo tên) và body, để phát hiện key dùng lại cho request khác
+     */
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String[]> entry : new TreeMap<>(request.getParameterMap()).entrySet()) {
+            sb.append(entry.getKey()).append('=').append(Arrays.toString(entry.getValue())).append('&');
+        }
+        MessageDigest digest = newSha256();
+        digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(body);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(newSha256().digest(data));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static boolean isFormRequest(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && (contentType.startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+                || contentType.startsWith(MediaType.MULTIPART_FORM_DATA_VALUE));
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, ApiResponse<?> body) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("paths", paths);
+        stats.put("executed", executed.sum());
+        stats.put("replayed", replayed.sum());
+        stats.put("inProgressRejected", inProgressRejected.sum());
+        stats.put("mismatchRejected", mismatchRejected.sum());
+        stats.put("notStored", notStored.sum());
+        stats.put("storeErrors", storeErrors.sum());
+        stats.put("store", store.getStats());
+        return stats;
+    }
+
+    /**
+     * Request với body đã đọc trước (để tính fingerprint), controller đọc lại được từ bộ nhớ
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // Body đã nằm trong bộ nhớ: báo có dữ liệu ngay, listener đọc hết thì báo đã đọc xong
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            listener.onAllDataRead();
+                        }
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Thread pool riêng cho các @Scheduled job (ScheduledJobs, AuthTokenService, ...)
+ * Mặc định Spring chạy tất cả job trên 1 thread, job chạy lâu (database chậm) làm trễ các job khác.
+ */
+@Configuration
+public class SchedulingConfig implements SchedulingConfigurer {
+
+    @Value("${app.scheduling.pool-size:4}")
+    private int poolSize;
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolTaskScheduler jobTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("swp-job-");
+        scheduler.setErrorHandler(t -> System.out.println("Scheduled job error: " + t));
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.setTaskScheduler(jobTaskScheduler());
+    }
+}
@@ -1,11 +1,13 @@
 
 package com.example.demo.controller;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import com.example.demo.dao.UserDAO;
 import com.example.demo.dto.UserDTO;
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.service.AuthTokenService;
 import jakarta.servlet.http.HttpServletRequest;
 
 /**
@@ -16,6 +18,11 @@ import jakarta.servlet.http.HttpServletRequest;
 @RestController
 @RequestMapping("/api")
 public class LoginController {
+
+    // Cấp token đăng nhập (gửi lại qua header Authorization: Bearer <token>)
+    @Autowired
+    private AuthTokenService authTokenService;
+
     /**
      * Xử lý logic đăng nhập chính
      * @param Email - Email người dùng nhập vào
@@ -37,7 +44,8 @@ public class LoginController {
 
             // Kiểm tra xem đăng nhập có thành công hay không
             if (loginUser != null) {
-                // Đăng nhập thành công - trả về thông tin user
+                // Đăng nhập thành công - trả về thông tin user kèm token
+                loginUser.setToken(authTokenService.issueToken(loginUser));
                 return ResponseEntity.ok(ApiResponse.success("Login successful", loginUser));
             } else {
                 // Đăng nhập thất bại - email hoặc password không đúng
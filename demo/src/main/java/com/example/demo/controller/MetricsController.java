@@ -0,0 +1,179 @@
+package com.example.demo.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.cache.PinSlotCache;
+import com.example.demo.cache.RatingAggregates;
+import com.example.demo.cache.StationSpatialIndex;
+import com.example.demo.cache.UserRoleCache;
+import com.example.demo.config.IdempotencyFilter;
+import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.service.ChargingEngine;
+import com.example.demo.service.JobRunner;
+import com.example.demo.service.SwapService;
+import com.example.demo.service.TransactionExpiryService;
+import com.example.demo.service.VNPayIpnInboxService;
+import com.example.demo.service.VNPayPaymentExpiryService;
+import com.example.demo.service.VNPayService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+/**
+ * Controller xem metrics vận hành (connection pool, cache, ...)
+ */
+@RestController
+@RequestMapping("/api/metrics")
+@Tag(name = "Metrics", description = "APIs for runtime performance metrics")
+public class MetricsController {
+
+    @Autowired
+    private ChargingEngine chargingEngine;
+
+    @Autowired
+    private TransactionExpiryService transactionExpiryService;
+
+    @Autowired
+    private JobRunner jobRunner;
+
+    @Autowired
+    private SwapService swapService;
+
+    @Autowired
+    private IdempotencyFilter idempotencyFilter;
+
+    @Autowired
+    private VNPayService vnpayService;
+
+    @Autowired
+    private VNPayIpnInboxService vnpayIpnInboxService;
+
+    @Autowired
+    private VNPayPaymentExpiryService vnpayPaymentExpiryService;
+
+    /**
+     * API xem trạng thái connection pool
+     * active / idle / waiting connections và thời gian lấy connection (acquire latency)
+     */
+    @GetMapping("/dbPool")
+    @Operation(summary = "Database pool metrics", description = "Active, idle and waiting connections plus connection acquire latency")
+    public ResponseEntity<ApiResponse<Object>> getDbPoolMetrics() {
+        Map<String, Object> stats = DBUtils.getPoolStats();
+        return ResponseEntity.ok(ApiResponse.success("Database pool metrics", stats));
+    }
+
+    /**
+     * API xem hit/miss của cache danh sách pin slot theo station
+     */
+    @GetMapping("/pinSlotCache")
+    @Operation(summary = "Pin slot cache metrics", description = "Hit/miss counters of the per-station slot list cache")
+    public ResponseEntity<ApiResponse<Object>> getPinSlotCacheMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("Pin slot cache metrics", PinSlotCache.getStats()));
+    }
+
+    /**
+     * API xem trạng thái spatial index dùng cho /pinStation/nearby
+     */
+    @GetMapping("/stationIndex")
+    @Operation(summary = "Station spatial index metrics", description = "Indexed stations, occupied grid cells, queries and rebuild counters of the nearby-station index")
+    public ResponseEntity<ApiResponse<Object>> getStationIndexMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("Station spatial index metrics", StationSpatialIndex.shared().getStats()));
+    }
+
+    /**
+     * API xem trạng thái thống kê rating trong bộ nhớ
+     */
+    @GetMapping("/ratingAggregates")
+    @Operation(summary = "Rating aggregate metrics", description = "Load state, reads, incremental updates and rebuilds of the in-memory rating statistics")
+    public ResponseEntity<ApiResponse<Object>> getRatingAggregateMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("Rating aggregate metrics", RatingAggregates.getStats()));
+    }
+
+    /**
+     * API xem hit/miss và số lần query bảng users của cache role
+     */
+    @GetMapping("/userRoleCache")
+    @Operation(summary = "User role cache metrics", description = "Lookups, hits and database loads of the shared user role/status cache")
+    public ResponseEntity<ApiResponse<Object>> getUserRoleCacheMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("User role cache metrics", UserRoleCache.getStats()));
+    }
+
+    /**
+     * API xem trạng thái engine sạc pin (số slot đang sạc, số dòng ghi mỗi lần, thời gian chạy)
+     */
+    @GetMapping("/charging")
+    @Operation(summary = "Charging engine metrics", description = "Tracked and charging slots, rows written per tick and tick duration of the in-JVM charging engine")
+    public ResponseEntity<ApiResponse<Object>> getChargingMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("Charging engine metrics", chargingEngine.getStats()));
+    }
+
+    /**
+     * API xem hàng đợi hết hạn booking (số transaction đang chờ, đã hết hạn, độ trễ so với expireAt)
+     */
+    @GetMapping("/transactionExpiry")
+    @Operation(summary = "Transaction expiry metrics", description = "Pending deadlines, expired transactions and firing lag of the in-memory booking expiry queue")
+    public ResponseEntity<ApiResponse<Object>> getTransactionExpiryMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("Transaction expiry metrics", transactionExpiryService.getStats()));
+    }
+
+    /**
+     * API xem các scheduled job (thời gian chạy, độ trễ so với lịch, số lần bỏ qua, node có phải leader không)
+     */
+    @GetMapping("/jobs")
+    @Operation(summary = "Scheduled job metrics", description = "Run duration, schedule lag, overlap/leader skips and failures of each scheduled job")
+    public ResponseEntity<ApiResponse<Object>> getJobMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("Scheduled job metrics", jobRunner.getStats()));
+    }
+
+    /**
+     * API xem kết quả và latency từng phần (lấy connection, database, tổng) của /swap/execute
+     */
+    @GetMapping("/swap")
+    @Operation(summary = "Swap metrics", description = "Result counters, replays and per-phase latency of the atomic swap operation")
+    public ResponseEntity<ApiResponse<Object>> getSwapMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("Swap metrics", swapService.getStats()));
+    }
+
+    /**
+     * API xem Idempotency-Key (số request xử lý lần đầu, trả lại response đã lưu, bị từ chối, số key trong store)
+     */
+    @GetMapping("/idempotency")
+    @Operation(summary = "Idempotency metrics", description = "Executed, replayed and rejected requests plus store size of the Idempotency-Key filter")
+    public ResponseEntity<ApiResponse<Object>> getIdempotencyMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("Idempotency metrics", idempotencyFilter.getStats()));
+    }
+
+    /**
+     * API xem callback VNPay (return URL + IPN) theo kết quả và thời gian xử lý trung bình
+     */
+    @GetMapping("/vnpayCallback")
+    @Operation(summary = "VNPay callback metrics", description = "Results and average processing time of VNPay return/IPN callbacks")
+    public ResponseEntity<ApiResponse<Object>> getVNPayCallbackMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("VNPay callback metrics", vnpayService.getCallbackStats()));
+    }
+
+    /**
+     * API xem inbox IPN VNPay (số IPN đang chờ, IPN chờ lâu nhất, độ trễ xử lý, số lần thử lại)
+     */
+    @GetMapping("/vnpayIpnInbox")
+    @Operation(summary = "VNPay IPN inbox metrics", description = "Queue depth, oldest pending age, processing lag, retries and dead-lettered IPNs of the VNPay IPN inbox")
+    public ResponseEntity<ApiResponse<Object>> getVNPayIpnInboxMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("VNPay IPN inbox metrics", vnpayIpnInboxService.getStats()));
+    }
+
+    /**
+     * API xem job hết hạn payment VNPay (số payment quá hạn đang chờ, số đã hết hạn, độ trễ)
+     */
+    @GetMapping("/vnpayExpiry")
+    @Operation(summary = "VNPay payment expiry metrics", description = "Overdue pending payments, expired counts, batches and lag of the VNPay payment expiry sweeper")
+    public ResponseEntity<ApiResponse<Object>> getVNPayExpiryMetrics() {
+        return ResponseEntity.ok(ApiResponse.success("VNPay payment expiry metrics", vnpayPaymentExpiryService.getStats()));
+    }
+}
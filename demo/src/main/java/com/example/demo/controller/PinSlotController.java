@@ -4,7 +4,6 @@ import java.sql.SQLException;
 import java.util.List;
 
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -15,6 +14,8 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.demo.dao.PinSlotDAO;
 import com.example.demo.dto.ApiResponse;
 import com.example.demo.dto.PinSlotDTO;
+import com.example.demo.dto.SlotReservationResult;
+import com.example.demo.dto.StationAvailabilityDTO;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -61,31 +62,6 @@ public class PinSlotController {
         }
     }
 
-    /**
-     * Scheduled task tự động cập nhật pin
-     * Chạy mỗi phút (60000ms = 1 phút) để tăng phần trăm pin
-     */
-    // Scheduled task - chạy mỗi phút (60000ms = 1 phút)
-    @Scheduled(fixedRate = 60000)
-    public void updatePinSlotScheduled() {
-        try {
-            // Gọi DAO để cập nhật phần trăm pin tự động
-            boolean check = pinSlotDAO.updatePinPercent();
-
-            // Kiểm tra và log kết quả cập nhật
-            if (check) {
-                System.out.println(
-                        "Scheduled update: PinSlotDB procedure executed successfully at " + new java.util.Date());
-            } else {
-                System.out.println("Scheduled update: PinSlotDB procedure execution failed at " + new java.util.Date());
-            }
-
-        } catch (SQLException e) {
-            // Log lỗi nếu có
-            System.out.println("Scheduled update error: " + e.toString());
-        }
-    }
-
     /**
      * API lấy danh sách pin slot theo station ID
      * @param stationID - ID của trạm sạc (bắt buộc > 0)
@@ -121,6 +97,56 @@ public class PinSlotController {
         }
     }
 
+    /**
+     * API lấy số slot theo trạng thái của 1 station (available / reserved / charging / full)
+     * Không cần tải toàn bộ danh sách slot để đếm
+     * @param stationID - ID của trạm sạc (bắt buộc > 0)
+     * @return ResponseEntity chứa số slot theo trạng thái
+     */
+    @GetMapping("/pinSlot/availability")
+    @Operation(summary = "Get slot availability of a station", description = "Return the number of available (status 1 and fully charged), reserved, charging and fully charged slots of a station.")
+    public ResponseEntity<ApiResponse<Object>> getStationAvailability(
+            @Parameter(description = "Station ID to count slots for", required = true) @RequestParam int stationID) {
+        try {
+            // Kiểm tra tính hợp lệ của stationID
+            if (stationID <= 0) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("Station ID must be greater than 0"));
+            }
+
+            StationAvailabilityDTO availability = pinSlotDAO.getStationAvailability(stationID);
+            if (availability != null) {
+                return ResponseEntity.ok(ApiResponse
+                        .success("Get availability for station " + stationID + " successfully", availability));
+            } else {
+                return ResponseEntity.ok(ApiResponse.success("No PinSlots found for station " + stationID,
+                        new StationAvailabilityDTO(stationID, 0, 0, 0, 0, 0)));
+            }
+
+        } catch (SQLException e) {
+            // Xử lý lỗi database
+            System.out.println("Error at PinSlotController getStationAvailability: " + e.toString());
+            return ResponseEntity.internalServerError().body(ApiResponse.error("System error occurred"));
+        }
+    }
+
+    /**
+     * API lấy số slot theo trạng thái của tất cả station trong 1 lần gọi
+     * @return ResponseEntity chứa danh sách số slot theo từng station
+     */
+    @GetMapping("/pinSlot/availability/all")
+    @Operation(summary = "Get slot availability of all stations", description = "Return available, reserved, charging and fully charged slot counts for every station at once.")
+    public ResponseEntity<ApiResponse<Object>> getAllStationAvailability() {
+        try {
+            List<StationAvailabilityDTO> list = pinSlotDAO.getAllStationAvailability();
+            return ResponseEntity.ok(ApiResponse.success("Get availability for all stations successfully", list));
+
+        } catch (SQLException e) {
+            // Xử lý lỗi database
+            System.out.println("Error at PinSlotController getAllStationAvailability: " + e.toString());
+            return ResponseEntity.internalServerError().body(ApiResponse.error("System error occurred"));
+        }
+    }
+
     /**
      * API lấy danh sách pin slot theo vehicle ID
      * Trả về tất cả slots đã được đặt bởi vehicle cụ thể
@@ -277,16 +303,16 @@ public class PinSlotController {
             }
 
             // Gọi DAO để đặt chỗ pin slot
-            boolean success = pinSlotDAO.reservePinSlot(pinID, userID, vehicleID);
-            if (success) {
+            SlotReservationResult result = pinSlotDAO.tryReservePinSlot(pinID, userID, vehicleID);
+            if (result.isSuccess()) {
                 // Đặt chỗ thành công
-                return ResponseEntity.ok(ApiResponse.success("Pin slot reserved successfully", 
+                return ResponseEntity.ok(ApiResponse.success(result.getMessage(), 
                     "PinID: " + pinID + " reserved for UserID: " + userID + ", VehicleID: " + vehicleID));
             } else {
-                // Đặt chỗ thất bại (slot không tồn tại hoặc không available)
+                // Đặt chỗ thất bại, trả về lý do (slot không tồn tại / không available / chưa sạc đầy)
                 return ResponseEntity.badRequest()
                         .body(ApiResponse
-                                .error("Failed to reserve pin slot. PinID may not exist or is not available."));
+                                .error("Failed to reserve pin slot. " + result.getMessage(), result.name()));
             }
 
         } catch (Exception e) {
@@ -309,17 +335,17 @@ public class PinSlotController {
             @Parameter(description = "Pin slot ID to unreserve", required = true) @RequestParam int pinID) {
         try {
             // Gọi DAO để hủy đặt chỗ pin slot
-            boolean success = pinSlotDAO.unreservePinSlot(pinID);
+            SlotReservationResult result = pinSlotDAO.tryUnreservePinSlot(pinID);
             
             // Kiểm tra kết quả hủy đặt chỗ
-            if (success) {
+            if (result.isSuccess()) {
                 // Hủy đặt chỗ thành công
-                return ResponseEntity.ok(ApiResponse.success("Pin slot unreserved successfully", pinID));
+                return ResponseEntity.ok(ApiResponse.success(result.getMessage(), pinID));
             } else {
-                // Hủy đặt chỗ thất bại (slot không tồn tại hoặc chưa được đặt)
+                // Hủy đặt chỗ thất bại, trả về lý do (slot không tồn tại hoặc chưa được đặt)
                 return ResponseEntity.badRequest()
                         .body(ApiResponse
-                                .error("Failed to unreserve pin slot. PinID may not exist or is not currently reserved."));
+                                .error("Failed to unreserve pin slot. " + result.getMessage(), result.name()));
             }
 
         } catch (Exception e) {
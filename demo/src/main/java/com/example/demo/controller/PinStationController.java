@@ -16,6 +16,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.dao.PinStationDAO;
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.NearbyStationDTO;
 import com.example.demo.dto.PinStationDTO;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -33,6 +34,10 @@ public class PinStationController {
     
     // Khởi tạo DAO để truy cập database
     private final PinStationDAO pinStationDAO = new PinStationDAO();
+
+    // Số trạm trả về mặc định / tối đa của /pinStation/nearby
+    private static final int DEFAULT_NEARBY_RESULTS = 10;
+    private static final int MAX_NEARBY_RESULTS = 100;
     
     /**
      * API tạo trạm sạc mới
@@ -200,6 +205,53 @@ public class PinStationController {
         }
     }
     
+    // API để tìm các trạm sạc active gần vị trí hiện tại
+    @GetMapping("/pinStation/nearby")
+    @Operation(summary = "Find nearby charging stations", description = "Return active charging stations nearest to the given position (x = longitude, y = latitude), ordered by distance. Limit to the k nearest and/or to stations within radiusKm.")
+    public ResponseEntity<ApiResponse<Object>> getNearbyStations(
+            @Parameter(description = "Longitude of the current position", required = true) @RequestParam double x,
+            @Parameter(description = "Latitude of the current position", required = true) @RequestParam double y,
+            @Parameter(description = "Maximum number of stations to return (default 10, max 100)") @RequestParam(required = false) Integer k,
+            @Parameter(description = "Search radius in kilometers") @RequestParam(required = false) Double radiusKm) {
+        try {
+            // Validate input
+            if (y < -90 || y > 90 || x < -180 || x > 180) {
+                return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Coordinates must satisfy -90 <= y <= 90 and -180 <= x <= 180"));
+            }
+            if (k != null && k <= 0) {
+                return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("k must be greater than 0"));
+            }
+            if (radiusKm != null && (radiusKm <= 0 || radiusKm.isNaN())) {
+                return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("radiusKm must be greater than 0"));
+            }
+
+            // Chỉ truyền radius thì lấy tối đa MAX_NEARBY_RESULTS station trong bán kính
+            int limit = k != null ? Math.min(k, MAX_NEARBY_RESULTS)
+                    : (radiusKm != null ? MAX_NEARBY_RESULTS : DEFAULT_NEARBY_RESULTS);
+            List<NearbyStationDTO> stations = pinStationDAO.getNearbyStations(x, y, limit, radiusKm);
+
+            if (!stations.isEmpty()) {
+                return ResponseEntity.ok(
+                    ApiResponse.success("Found " + stations.size() + " nearby stations", stations));
+            } else {
+                return ResponseEntity.ok(
+                    ApiResponse.success("No active stations found nearby", stations));
+            }
+
+        } catch (SQLException e) {
+            System.out.println("Database error in getNearbyStations: " + e.getMessage());
+            return ResponseEntity.internalServerError()
+                .body(ApiResponse.error("Database error occurred: " + e.getMessage()));
+        } catch (Exception e) {
+            System.out.println("Error finding nearby stations: " + e.getMessage());
+            return ResponseEntity.internalServerError()
+                .body(ApiResponse.error("Error finding nearby stations: " + e.getMessage()));
+        }
+    }
+    
     // API để update PinStation
     @PutMapping("/pinStation/update")
     @Operation(summary = "Update charging station", description = "Update charging station information including name, location, status, and coordinates.")
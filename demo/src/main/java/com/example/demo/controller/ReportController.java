@@ -7,12 +7,15 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.config.AuthTokenFilter;
 import com.example.demo.dao.ReportDAO;
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.AuthPrincipal;
 import com.example.demo.dto.ReportDTO;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -28,6 +31,9 @@ import io.swagger.v3.oas.annotations.tags.Tag;
  * - roleID=2 (Staff): Không có quyền truy cập reports
  * - roleID=3 (Admin): Xem tất cả reports và cập nhật trạng thái
  * 
+ * Người gọi và role lấy từ token đăng nhập (AuthTokenFilter bắt buộc token cho /api/report/**),
+ * userID / adminID trên request chỉ giữ cho client cũ và phải trùng user của token.
+ *
  * Workflow:
  * 1. User tạo report (status=0-Pending)
  * 2. Admin xử lý và cập nhật (0-Pending -> 1-InProgress -> 2-Resolved)
@@ -60,9 +66,9 @@ public class ReportController {
                            "User selects issue type and provides detailed description (no character limit). " +
                            "System automatically sets status=0 (Pending) and created_at=now.")
     public ResponseEntity<ApiResponse<Object>> createReport(
-            @Parameter(description = "User ID from frontend session (automatic, user doesn't input)", 
-                      required = true) 
-            @RequestParam int userID,  // FE tự động gửi từ session, không hiển thị cho user
+            @Parameter(hidden = true) @RequestAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE) AuthPrincipal caller,
+            @Parameter(description = "User ID from frontend session (optional, must match the token)") 
+            @RequestParam(required = false) Integer userID,  // FE tự động gửi từ session, không hiển thị cho user
             @Parameter(description = "Issue type: 1=Station Problem, 2=Slot Malfunction, 3=Battery Issue, 4=Other", 
                       required = true) 
             @RequestParam int type,    // User chọn: 1=Station, 2=Slot, 3=Battery, 4=Other
@@ -73,12 +79,6 @@ public class ReportController {
             // Khởi tạo DAO để truy cập database
             ReportDAO dao = new ReportDAO();
             
-            // Kiểm tra userID hợp lệ và có quyền tạo report (roleID=1)
-            if (userID <= 0) {
-                return ResponseEntity.badRequest().body(
-                    ApiResponse.error("Invalid user ID from session"));
-            }
-            
             // Kiểm tra type trong khoảng 1-4 (Station/Slot/Battery/Other)
             if (type < 1 || type > 4) {
                 return ResponseEntity.badRequest().body(
@@ -91,12 +91,12 @@ public class ReportController {
                     ApiResponse.error("Description cannot be empty"));
             }
             
-            // Tạo đối tượng ReportDTO với userID từ session
+            // Tạo đối tượng ReportDTO với userID của token
             // Status tự động set = 0 (Pending), created_at = now
-            ReportDTO newReport = new ReportDTO(type, description.trim(), userID);
+            ReportDTO newReport = new ReportDTO(type, description.trim(), caller.getUserID());
             
-            // Gọi DAO để lưu report vào database
-            boolean result = dao.createReport(newReport);
+            // Gọi DAO để lưu report vào database (quyền roleID=1 kiểm tra theo token)
+            boolean result = dao.createReport(newReport, caller);
             
             // Kiểm tra kết quả tạo report
             if (result) {
@@ -129,19 +129,15 @@ public class ReportController {
                            "reporter info, handler info, status, type, and timestamps. " +
                            "Used for admin dashboard and system overview.")
     public ResponseEntity<ApiResponse<Object>> getAllReports(
-            @Parameter(description = "Admin user ID from session", required = true, example = "1")
-            @RequestParam int adminID) {
+            @Parameter(hidden = true) @RequestAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE) AuthPrincipal caller,
+            @Parameter(description = "Admin user ID from session (optional, must match the token)", example = "1")
+            @RequestParam(required = false) Integer adminID) {
         try {
             // Khởi tạo DAO để truy cập database
             ReportDAO dao = new ReportDAO();
             
-            // Kiểm tra adminID hợp lệ (phải > 0)
-            if (adminID <= 0) {
-                return ResponseEntity.badRequest().body(ApiResponse.error("Invalid admin ID"));
-            }
-            
-            // Gọi DAO để lấy tất cả reports (verify quyền admin bên trong DAO)
-            List<ReportDTO> reports = dao.getAllReports(adminID);
+            // Gọi DAO để lấy tất cả reports (verify quyền admin theo token bên trong DAO)
+            List<ReportDTO> reports = dao.getAllReports(caller);
             
             // Kiểm tra kết quả và trả về response phù hợp
             if (reports != null && !reports.isEmpty()) {
@@ -175,20 +171,16 @@ public class ReportController {
                            "This is the main dashboard for admins to see incoming issues. " +
                            "Reports are ordered by creation time (oldest first).")
     public ResponseEntity<ApiResponse<Object>> getPendingReports(
-            @Parameter(description = "Admin user ID from session", required = true, example = "1")
-            @RequestParam int adminID) {
+            @Parameter(hidden = true) @RequestAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE) AuthPrincipal caller,
+            @Parameter(description = "Admin user ID from session (optional, must match the token)", example = "1")
+            @RequestParam(required = false) Integer adminID) {
         try {
             // Khởi tạo DAO để truy cập database
             ReportDAO dao = new ReportDAO();
             
-            // Kiểm tra adminID hợp lệ
-            if (adminID <= 0) {
-                return ResponseEntity.badRequest().body(ApiResponse.error("Invalid admin ID"));
-            }
-            
             // Gọi DAO để lấy các reports có status=0 (Pending)
             // Sắp xếp theo thời gian tạo (cũ nhất trước) để admin ưu tiên xử lý
-            List<ReportDTO> pendingReports = dao.getPendingReports(adminID);
+            List<ReportDTO> pendingReports = dao.getPendingReports(caller);
             
             // Kiểm tra kết quả và trả về response
             if (pendingReports != null && !pendingReports.isEmpty()) {
@@ -233,8 +225,9 @@ public class ReportController {
             @PathVariable int reportId,
             @Parameter(description = "New status: 0=Pending, 1=InProgress, 2=Resolved", required = true, example = "2")
             @RequestParam int status,
-            @Parameter(description = "Admin user ID from session", required = true, example = "456")
-            @RequestParam int adminID) {
+            @Parameter(hidden = true) @RequestAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE) AuthPrincipal caller,
+            @Parameter(description = "Admin user ID from session (optional, must match the token)", example = "456")
+            @RequestParam(required = false) Integer adminID) {
         try {
             // Khởi tạo DAO để truy cập database
             ReportDAO dao = new ReportDAO();
@@ -244,20 +237,15 @@ public class ReportController {
                 return ResponseEntity.badRequest().body(ApiResponse.error("Invalid report ID"));
             }
             
-            // Kiểm tra adminID hợp lệ
-            if (adminID <= 0) {
-                return ResponseEntity.badRequest().body(ApiResponse.error("Invalid admin ID"));
-            }
-            
             // Kiểm tra status trong khoảng hợp lệ (0-2)
             if (status < 0 || status > 2) {
                 return ResponseEntity.badRequest().body(
                     ApiResponse.error("Invalid status. Must be 0=Pending, 1=InProgress, 2=Resolved"));
             }
             
-            // Gọi DAO để cập nhật status và set adminID làm handler
+            // Gọi DAO để cập nhật status và set admin của token làm handler
             // Khi admin cập nhật status, họ tự động trở thành người phụ trách
-            boolean result = dao.updateReportStatus(reportId, status, adminID);
+            boolean result = dao.updateReportStatus(reportId, status, caller);
             
             // Kiểm tra kết quả cập nhật
             if (result) {
@@ -293,20 +281,16 @@ public class ReportController {
                            "Users can track the status of their submitted issues. " +
                            "Ordered by creation time (newest first).")
     public ResponseEntity<ApiResponse<Object>> getMyReports(
-            @Parameter(description = "User ID from session", required = true, example = "123")
-            @RequestParam int userID) {
+            @Parameter(hidden = true) @RequestAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE) AuthPrincipal caller,
+            @Parameter(description = "User ID from session (optional, must match the token)", example = "123")
+            @RequestParam(required = false) Integer userID) {
         try {
             // Khởi tạo DAO để truy cập database
             ReportDAO dao = new ReportDAO();
             
-            // Kiểm tra userID hợp lệ
-            if (userID <= 0) {
-                return ResponseEntity.badRequest().body(ApiResponse.error("Invalid user ID"));
-            }
-            
-            // Gọi DAO để lấy reports của user này
+            // Gọi DAO để lấy reports của user trong token
             // Sắp xếp theo thời gian tạo (mới nhất trước) để user thấy reports gần đây
-            List<ReportDTO> myReports = dao.getReportsByReporter(userID);
+            List<ReportDTO> myReports = dao.getReportsByReporter(caller);
             
             // Kiểm tra kết quả và trả về response
             if (myReports != null && !myReports.isEmpty()) {
@@ -343,20 +327,21 @@ public class ReportController {
     public ResponseEntity<ApiResponse<Object>> getReportsByUserId(
             @Parameter(description = "Target user ID to get reports from", required = true, example = "123")
             @PathVariable int userId,
-            @Parameter(description = "Admin ID from session", required = true, example = "456") 
-            @RequestParam int adminID) {
+            @Parameter(hidden = true) @RequestAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE) AuthPrincipal caller,
+            @Parameter(description = "Admin ID from session (optional, must match the token)", example = "456") 
+            @RequestParam(required = false) Integer adminID) {
         try {
             // Khởi tạo DAO để truy cập database
             ReportDAO dao = new ReportDAO();
             
-            // Kiểm tra cả userId và adminID đều hợp lệ
-            if (userId <= 0 || adminID <= 0) {
-                return ResponseEntity.badRequest().body(ApiResponse.error("Invalid user ID or admin ID"));
+            // Kiểm tra userId hợp lệ
+            if (userId <= 0) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("Invalid user ID"));
             }
             
             // Gọi DAO để lấy reports của user được chỉ định
             // Verify quyền admin và lấy tất cả reports của userId
-            List<ReportDTO> userReports = dao.getReportsByUserId(userId, adminID);
+            List<ReportDTO> userReports = dao.getReportsByUserId(userId, caller);
             
             // Kiểm tra kết quả và trả về response
             if (userReports != null && !userReports.isEmpty()) {
@@ -7,12 +7,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.config.AuthTokenFilter;
 import com.example.demo.dao.ServicePackDAO;
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.AuthPrincipal;
 import com.example.demo.dto.ServicePackDTO;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -27,6 +30,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
  * - roleID=1 (User): Xem danh sách service packs có sẵn
  * - roleID=2 (Staff): Không có quyền truy cập service packs
  * - roleID=3 (Admin): Toàn quyền CRUD service packages
+ *   (admin lấy từ token đăng nhập, AuthTokenFilter bắt buộc token cho create / update / updateStatus)
  * 
  * Workflow:
  * 1. Admin tạo service packages với giá khác nhau
@@ -44,7 +48,7 @@ public class ServicePackController {
     /**
      * API admin tạo service pack mới
      * Chỉ admin (roleID=3) có quyền tạo gói dịch vụ
-     * @param adminUserID - ID admin từ session (verify quyền)
+     * @param adminUserID - ID admin từ session (không bắt buộc, phải trùng token, quyền admin lấy từ token)
      * @param packName - Tên gói (VD: "Gói cơ bản", "Gói VIP")
      * @param status - Trạng thái: 0=inactive, 1=active
      * @param description - Mô tả gói (optional)
@@ -56,7 +60,8 @@ public class ServicePackController {
     @PostMapping("/servicePack/create")
     @Operation(summary = "Create service pack", description = "Create a new service pack. Only admin users (roleID=3) can access this API.")
     public ResponseEntity<ApiResponse<Object>> createServicePack(
-            @Parameter(description = "Admin user ID (must have roleID=3)", required = true) @RequestParam int adminUserID,
+            @Parameter(hidden = true) @RequestAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE) AuthPrincipal caller,
+            @Parameter(description = "Admin user ID (optional, must match the token)") @RequestParam(required = false) Integer adminUserID,
             @Parameter(description = "Service pack name", required = true) @RequestParam String packName,
             @Parameter(description = "Service pack status (0=inactive, 1=active)", required = true) @RequestParam int status,
             @Parameter(description = "Service pack description", required = false) @RequestParam(required = false) String description,
@@ -64,12 +69,6 @@ public class ServicePackController {
             @Parameter(description = "Price in VND", required = true) @RequestParam int price) {
         
         try {
-            // Kiểm tra adminUserID hợp lệ (verify quyền admin trong DAO)
-            if (adminUserID <= 0) {
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("Admin user ID must be greater than 0"));
-            }
-
             // Kiểm tra tên gói không được rỗng
             if (packName == null || packName.trim().isEmpty()) {
                 return ResponseEntity.badRequest()
@@ -98,7 +97,7 @@ public class ServicePackController {
             ServicePackDTO servicePack = new ServicePackDTO(packName, status, description, total, price);
 
             // Gọi DAO để lưu service pack vào database
-            boolean success = servicePackDAO.createServicePack(servicePack, adminUserID);
+            boolean success = servicePackDAO.createServicePack(servicePack, caller);
 
             // Kiểm tra kết quả tạo service pack
             if (success) {
@@ -126,7 +125,7 @@ public class ServicePackController {
      * API admin cập nhật thông tin service pack
      * Chỉ admin (roleID=3) có quyền cập nhật gói dịch vụ
      * @param packID - ID của service pack cần cập nhật
-     * @param adminUserID - ID admin từ session (verify quyền)
+     * @param adminUserID - ID admin từ session (không bắt buộc, phải trùng token, quyền admin lấy từ token)
      * @param packName - Tên gói mới (optional)
      * @param description - Mô tả mới (optional)
      * @param total - Tổng dung lượng mới
@@ -138,7 +137,8 @@ public class ServicePackController {
     @Operation(summary = "Update service pack", description = "Update an existing service pack. Only admin users (roleID=3) can access this API.")
     public ResponseEntity<ApiResponse<Object>> updateServicePack(
             @Parameter(description = "Service pack ID to update", required = true) @RequestParam int packID,
-            @Parameter(description = "Admin user ID (must have roleID=3)", required = true) @RequestParam int adminUserID,
+            @Parameter(hidden = true) @RequestAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE) AuthPrincipal caller,
+            @Parameter(description = "Admin user ID (optional, must match the token)") @RequestParam(required = false) Integer adminUserID,
             @Parameter(description = "Service pack name") @RequestParam(required = false) String packName,
             @Parameter(description = "Service pack description", required = false) @RequestParam(required = false) String description,
             @Parameter(description = "Total amount/quantity", required = true) @RequestParam int total,
@@ -151,12 +151,6 @@ public class ServicePackController {
                         .body(ApiResponse.error("Pack ID must be greater than 0"));
             }
 
-            // Kiểm tra adminUserID hợp lệ (verify quyền admin trong DAO)
-            if (adminUserID <= 0) {
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("Admin user ID must be greater than 0"));
-            }
-
             // Kiểm tra tên gói không được rỗng (nếu có)
             if (packName == null || packName.trim().isEmpty()) {
                 return ResponseEntity.badRequest()
@@ -179,7 +173,7 @@ public class ServicePackController {
             ServicePackDTO servicePack = new ServicePackDTO(packName, description, total, price);
 
             // Gọi DAO để cập nhật service pack trong database
-            boolean success = servicePackDAO.updateServicePack(packID, servicePack, adminUserID);
+            boolean success = servicePackDAO.updateServicePack(packID, servicePack, caller);
 
             // Kiểm tra kết quả cập nhật
             if (success) {
@@ -209,7 +203,7 @@ public class ServicePackController {
      * API admin cập nhật chỉ trạng thái của service pack
      * Chỉ admin (roleID=3) có quyền enable/disable gói
      * @param packID - ID của service pack cần cập nhật
-     * @param adminUserID - ID admin từ session (verify quyền)
+     * @param adminUserID - ID admin từ session (không bắt buộc, phải trùng token, quyền admin lấy từ token)
      * @param status - Trạng thái mới: 0=inactive, 1=active
      * @return ResponseEntity chứa kết quả cập nhật trạng thái
      */
@@ -218,7 +212,8 @@ public class ServicePackController {
     @Operation(summary = "Update service pack status only", description = "Update only the status of an existing service pack. Only admin users (roleID=3) can access this API.")
     public ResponseEntity<ApiResponse<Object>> updateServicePackStatus(
             @Parameter(description = "Service pack ID to update", required = true) @RequestParam int packID,
-            @Parameter(description = "Admin user ID (must have roleID=3)", required = true) @RequestParam int adminUserID,
+            @Parameter(hidden = true) @RequestAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE) AuthPrincipal caller,
+            @Parameter(description = "Admin user ID (optional, must match the token)") @RequestParam(required = false) Integer adminUserID,
             @Parameter(description = "New service pack status (0=inactive, 1=active)", required = true) @RequestParam int status) {
         
         try {
@@ -228,12 +223,6 @@ public class ServicePackController {
                         .body(ApiResponse.error("Pack ID must be greater than 0"));
             }
 
-            // Kiểm tra adminUserID hợp lệ (verify quyền admin trong DAO)
-            if (adminUserID <= 0) {
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("Admin user ID must be greater than 0"));
-            }
-
             // Kiểm tra status hợp lệ (chỉ 0 hoặc 1)
             if (status < 0 || status > 1) {
                 return ResponseEntity.badRequest()
@@ -242,7 +231,7 @@ public class ServicePackController {
 
             // Gọi DAO để cập nhật chỉ status của service pack
             // Không thay đổi các thông tin khác (tên, giá, description...)
-            boolean success = servicePackDAO.updateServicePackStatus(packID, status, adminUserID);
+            boolean success = servicePackDAO.updateServicePackStatus(packID, status, caller);
 
             // Kiểm tra kết quả cập nhật
             if (success) {
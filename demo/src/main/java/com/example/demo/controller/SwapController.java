@@ -0,0 +1,76 @@
+package com.example.demo.controller;
+
+import java.sql.SQLException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.SwapResultDTO;
+import com.example.demo.service.SwapService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+/**
+ * Controller đổi pin trọn gói (đặt slot + tạo transaction + đổi pin + trừ subscription + hoàn tất transaction)
+ */
+@RestController
+@RequestMapping("/api")
+@Tag(name = "Swap", description = "APIs for executing a complete battery swap in one atomic operation")
+public class SwapController {
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+    @Autowired
+    private SwapService swapService;
+
+    /**
+     * API đổi pin trọn gói trong 1 DB transaction
+     * Client gửi lại cùng Idempotency-Key (retry) sẽ nhận lại kết quả của lần swap trước, không bị trừ lượt 2 lần
+     * @return ResponseEntity chứa kết quả swap và latency từng phần
+     */
+    @PostMapping("/swap/execute")
+    @Operation(summary = "Execute battery swap", description = "Validate vehicle/driver/slot, decrement subscription, exchange SOC/SOH between vehicle and slot and record a completed transaction in one database transaction. Idempotent per Idempotency-Key header.")
+    public ResponseEntity<ApiResponse<Object>> executeSwap(
+            @Parameter(description = "Unique key per swap attempt, reuse it when retrying", required = true) @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Parameter(description = "User ID (owner of the vehicle)", required = true) @RequestParam int userID,
+            @Parameter(description = "Vehicle ID", required = true) @RequestParam int vehicleID,
+            @Parameter(description = "Station ID", required = true) @RequestParam int stationID,
+            @Parameter(description = "Pin slot ID (available, or reserved by this user)", required = true) @RequestParam int pinID,
+            @Parameter(description = "Package ID", required = true) @RequestParam int pack,
+            @Parameter(description = "Transaction amount", required = false) @RequestParam(defaultValue = "0") int amount) {
+        try {
+            // Kiểm tra Idempotency-Key
+            if (idempotencyKey == null || idempotencyKey.isBlank()) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("Idempotency-Key header is required"));
+            }
+            if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("Idempotency-Key must be at most " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters"));
+            }
+            // Kiểm tra tính hợp lệ của các ID
+            if (userID <= 0 || vehicleID <= 0 || stationID <= 0 || pinID <= 0) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("User ID, Vehicle ID, Station ID and Pin ID must be greater than 0"));
+            }
+
+            SwapResultDTO result = swapService.executeSwap(idempotencyKey, userID, vehicleID, stationID, pinID, pack, amount);
+            if (result.isSuccess()) {
+                String message = result.isReplayed() ? "Swap already executed for this Idempotency-Key" : result.getResult().getMessage();
+                return ResponseEntity.ok(ApiResponse.success(message, result));
+            }
+            // Không swap được, trả về lý do (database không bị thay đổi)
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Failed to execute swap. " + result.getResult().getMessage(), result.getResult().name()));
+
+        } catch (SQLException e) {
+            System.out.println("SQLException at SwapController executeSwap: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(ApiResponse.error("Database error: " + e.getMessage()));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.demo.controller;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,6 +12,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.dto.VNPayCallbackResult;
 import com.example.demo.service.VNPayService;
 
 @RestController
@@ -34,7 +38,20 @@ public class TestController {
         params.put("vnp_PayDate", "20251012120000");
         params.put("vnp_BankCode", "NCB");
         
-        String result = vnpayService.handleVnPayCallback(params);
-        return ResponseEntity.ok("Callback result: " + result);
+        // Ký như VNPay (tên và giá trị encode US_ASCII) rồi chạy pipeline callback như /vnpay/ipn
+        Map<String, String> encoded = new HashMap<>();
+        Map<String, String[]> parameterMap = new HashMap<>();
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            encoded.put(URLEncoder.encode(entry.getKey(), StandardCharsets.US_ASCII), URLEncoder.encode(entry.getValue(), StandardCharsets.US_ASCII));
+            parameterMap.put(entry.getKey(), new String[] { entry.getValue() });
+        }
+        parameterMap.put("vnp_SecureHash", new String[] { vnpayService.hashAllFields(encoded) });
+
+        try {
+            VNPayCallbackResult result = vnpayService.processCallback(parameterMap);
+            return ResponseEntity.ok("Callback result: " + result + " (" + result.getRspCode() + " " + result.getMessage() + ")");
+        } catch (SQLException e) {
+            return ResponseEntity.internalServerError().body("Callback error: " + e.getMessage());
+        }
     }
 }
@@ -1,20 +1,25 @@
 package com.example.demo.controller;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.demo.dao.TransactionDAO;
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.PageCursor;
+import com.example.demo.dto.TransactionCreateResult;
 import com.example.demo.dto.TransactionDTO;
+import com.example.demo.service.JsonStreamService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -33,26 +38,34 @@ public class TransactionController {
     // Khởi tạo DAO để truy cập database
     private TransactionDAO transactionDAO = new TransactionDAO();
 
+    @Autowired
+    private JsonStreamService jsonStreamService;
+
     /**
      * API lấy tất cả giao dịch trong hệ thống
-     * Trả về toàn bộ transactions từ database (dành cho admin)
-     * @return ResponseEntity chứa danh sách tất cả transactions
+     * Trả về transactions theo trang, mới nhất trước (dành cho admin)
+     * @param cursor - nextCursor của trang trước (bỏ trống = trang đầu)
+     * @param limit - số dòng mỗi trang (mặc định 50, tối đa 200)
+     * @return ResponseEntity chứa 1 trang transactions và nextCursor (nếu còn trang sau)
      */
     // API để lấy tất cả transactions
     @GetMapping("/transaction/list")
-    @Operation(summary = "Get all transactions", description = "Retrieve all payment transactions from the database with full details.")
-    public ResponseEntity<ApiResponse<Object>> getAllTransactions() {
+    @Operation(summary = "Get all transactions", description = "Retrieve payment transactions page by page (newest first). Pass nextCursor from the previous response to get the next page.")
+    public ResponseEntity<ApiResponse<Object>> getAllTransactions(
+            @Parameter(description = "Cursor from previous page (nextCursor), empty for first page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (default 50, max 200)") @RequestParam(required = false) Integer limit) {
         try {
-            // Gọi DAO để lấy tất cả transactions từ database
-            List<TransactionDTO> listTransaction = transactionDAO.listTransaction();
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            int pageSize = PageCursor.normalizePageSize(limit);
+
+            // Gọi DAO để lấy 1 trang transactions (lấy dư 1 dòng để biết còn trang sau không)
+            List<TransactionDTO> listTransaction = transactionDAO.listTransaction(pageCursor, pageSize + 1);
 
             // Kiểm tra kết quả và trả về response tương ứng
-            if (listTransaction != null && !listTransaction.isEmpty()) {
-                return ResponseEntity.ok(ApiResponse.success("Get all transactions successfully", listTransaction));
-            } else {
-                return ResponseEntity.ok(ApiResponse.success("No transactions found", listTransaction));
-            }
+            return buildPageResponse(listTransaction, pageSize, "Get all transactions successfully", "No transactions found");
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         } catch (SQLException e) {
             // Xử lý lỗi database
             System.out.println("Error at TransactionController getAllTransactions: " + e.toString());
@@ -60,6 +73,17 @@ public class TransactionController {
         }
     }
 
+    /**
+     * API export tất cả giao dịch dạng streaming
+     * Ghi từng dòng ra response ngay khi đọc từ database (không buffer cả bảng),
+     * JSON giữ nguyên cấu trúc ApiResponse như /transaction/list
+     */
+    @GetMapping("/transaction/list/stream")
+    @Operation(summary = "Export all transactions (streaming)", description = "Stream every transaction (newest first) in the standard ApiResponse envelope without buffering the full list in memory.")
+    public ResponseEntity<StreamingResponseBody> streamAllTransactions() {
+        return jsonStreamService.streamList("Get all transactions successfully", transactionDAO::streamTransactions);
+    }
+
     /**
      * API lấy transactions theo user ID (MAINFLOW - Xem lịch sử)
      * Trả về tất cả giao dịch của user qua vehicles của họ
@@ -70,23 +94,26 @@ public class TransactionController {
     @GetMapping("/transaction/getByUser")
     @Operation(summary = "Get transactions by user ID", description = "Retrieve all transactions for a specific user through their vehicles, ordered by creation date (newest first).")
     public ResponseEntity<ApiResponse<Object>> getTransactionsByUser(
-            @Parameter(description = "User ID to get transactions for", required = true) @RequestParam int userID) {
+            @Parameter(description = "User ID to get transactions for", required = true) @RequestParam int userID,
+            @Parameter(description = "Cursor from previous page (nextCursor), empty for first page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (default 50, max 200)") @RequestParam(required = false) Integer limit) {
         try {
             // Kiểm tra tính hợp lệ của userID
             if (userID <= 0) {
                 return ResponseEntity.badRequest().body(ApiResponse.error("User ID must be greater than 0"));
             }
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            int pageSize = PageCursor.normalizePageSize(limit);
 
             // Gọi DAO để lấy transactions của user qua vehicles
-            List<TransactionDTO> listTransaction = transactionDAO.getTransactionsByUser(userID);
+            List<TransactionDTO> listTransaction = transactionDAO.getTransactionsByUser(userID, pageCursor, pageSize + 1);
 
             // Kiểm tra kết quả và trả về response tương ứng
-            if (listTransaction != null && !listTransaction.isEmpty()) {
-                return ResponseEntity.ok(ApiResponse.success("Get transactions for user successfully", listTransaction));
-            } else {
-                return ResponseEntity.ok(ApiResponse.success("No transactions found for user ID: " + userID, listTransaction));
-            }
+            return buildPageResponse(listTransaction, pageSize, "Get transactions for user successfully",
+                    "No transactions found for user ID: " + userID);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         } catch (SQLException e) {
             // Xử lý lỗi database
             System.out.println("Error at TransactionController getTransactionsByUser: " + e.toString());
@@ -104,25 +131,28 @@ public class TransactionController {
     @GetMapping("/transaction/getByVehicle")
     @Operation(summary = "Get transactions by vehicle ID", description = "Retrieve all transactions for a specific vehicle, ordered by creation date (newest first).")
     public ResponseEntity<ApiResponse<Object>> getTransactionsByVehicle(
-            @Parameter(description = "Vehicle ID to get transactions for", required = true) @RequestParam int vehicleID) {
+            @Parameter(description = "Vehicle ID to get transactions for", required = true) @RequestParam int vehicleID,
+            @Parameter(description = "Cursor from previous page (nextCursor), empty for first page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (default 50, max 200)") @RequestParam(required = false) Integer limit) {
         try {
             // Kiểm tra tính hợp lệ của vehicleID
             if (vehicleID <= 0) {
                 return ResponseEntity.badRequest().body(ApiResponse.error("Vehicle ID must be greater than 0"));
             }
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            int pageSize = PageCursor.normalizePageSize(limit);
 
-            // Gọi DAO để lấy tất cả transactions của vehicle này
+            // Gọi DAO để lấy transactions của vehicle này
             // Sắp xếp theo thời gian tạo (mới nhất trước)
-            List<TransactionDTO> listTransaction = transactionDAO.getTransactionsByVehicle(vehicleID);
+            List<TransactionDTO> listTransaction = transactionDAO.getTransactionsByVehicle(vehicleID, pageCursor, pageSize + 1);
 
             // Kiểm tra kết quả và trả về response tương ứng
-            if (listTransaction != null && !listTransaction.isEmpty()) {
-                return ResponseEntity.ok(ApiResponse.success("Get transactions for vehicle successfully", listTransaction));
-            } else {
-                // Vehicle chưa có transaction nào (xe chưa từng sạc)
-                return ResponseEntity.ok(ApiResponse.success("No transactions found for vehicle ID: " + vehicleID, listTransaction));
-            }
+            // (vehicle chưa có transaction nào = xe chưa từng sạc)
+            return buildPageResponse(listTransaction, pageSize, "Get transactions for vehicle successfully",
+                    "No transactions found for vehicle ID: " + vehicleID);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         } catch (SQLException e) {
             // Xử lý lỗi database và in ra console để debug
             System.out.println("Error at TransactionController getTransactionsByVehicle: " + e.toString());
@@ -140,25 +170,28 @@ public class TransactionController {
     @GetMapping("/transaction/getByStation")
     @Operation(summary = "Get transactions by station ID", description = "Retrieve all transactions for a specific station, ordered by creation date (newest first).")
     public ResponseEntity<ApiResponse<Object>> getTransactionsByStation(
-            @Parameter(description = "Station ID to get transactions for", required = true) @RequestParam int stationID) {
+            @Parameter(description = "Station ID to get transactions for", required = true) @RequestParam int stationID,
+            @Parameter(description = "Cursor from previous page (nextCursor), empty for first page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (default 50, max 200)") @RequestParam(required = false) Integer limit) {
         try {
             // Kiểm tra tính hợp lệ của stationID
             if (stationID <= 0) {
                 return ResponseEntity.badRequest().body(ApiResponse.error("Station ID must be greater than 0"));
             }
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            int pageSize = PageCursor.normalizePageSize(limit);
 
-            // Gọi DAO để lấy tất cả transactions tại station này
+            // Gọi DAO để lấy transactions tại station này
             // Bao gồm tất cả pin slots thuộc station
-            List<TransactionDTO> listTransaction = transactionDAO.getTransactionsByStation(stationID);
+            List<TransactionDTO> listTransaction = transactionDAO.getTransactionsByStation(stationID, pageCursor, pageSize + 1);
 
             // Kiểm tra kết quả và trả về response tương ứng
-            if (listTransaction != null && !listTransaction.isEmpty()) {
-                return ResponseEntity.ok(ApiResponse.success("Get transactions for station successfully", listTransaction));
-            } else {
-                // Station chưa có transaction nào (trạm mới hoặc chưa hoạt động)
-                return ResponseEntity.ok(ApiResponse.success("No transactions found for station ID: " + stationID, listTransaction));
-            }
+            // (station chưa có transaction nào = trạm mới hoặc chưa hoạt động)
+            return buildPageResponse(listTransaction, pageSize, "Get transactions for station successfully",
+                    "No transactions found for station ID: " + stationID);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         } catch (SQLException e) {
             // Xử lý lỗi database và in ra console để debug
             System.out.println("Error at TransactionController getTransactionsByStation: " + e.toString());
@@ -166,6 +199,17 @@ public class TransactionController {
         }
     }
 
+    // Cắt trang và tạo nextCursor (DAO trả về tối đa pageSize + 1 dòng, dòng dư = còn trang sau)
+    private ResponseEntity<ApiResponse<Object>> buildPageResponse(List<TransactionDTO> rows, int pageSize,
+            String message, String emptyMessage) {
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            nextCursor = PageCursor.encode(rows.get(pageSize - 1));
+        }
+        return ResponseEntity.ok(ApiResponse.success(rows.isEmpty() ? emptyMessage : message, rows, nextCursor));
+    }
+
     /**
      * API lấy transaction theo ID cụ thể
      * Trả về chi tiết một giao dịch dựa trên transaction ID
@@ -249,18 +293,18 @@ public class TransactionController {
                 return ResponseEntity.badRequest().body(ApiResponse.error("Status must be 0 (pending), 1 (completed), or 2 (failed)"));
             }
 
-            // Gọi DAO để tạo transaction với validation đầy đủ
-            boolean success = transactionDAO.createTransactionWithUserAndVehicle(userID, vehicleID, amount, pack, stationID, pinID, status);
+            // Gọi DAO để tạo transaction với validation đầy đủ (1 round trip)
+            TransactionCreateResult result = transactionDAO.tryCreateTransactionWithUserAndVehicle(userID, vehicleID, amount, pack, stationID, pinID, status);
 
             // Kiểm tra kết quả tạo transaction
-            if (success) {
+            if (result.isSuccess()) {
                 // Tạo thành công
                 return ResponseEntity.ok(ApiResponse.success("Transaction created successfully with userID and vehicleID", 
                     "UserID: " + userID + ", VehicleID: " + vehicleID + ", Amount: " + amount + ", Pack: " + pack + 
                     ", StationID: " + stationID + ", PinID: " + pinID + ", Status: " + status));
             } else {
-                // Tạo thất bại (validation không pass hoặc lỗi database)
-                return ResponseEntity.badRequest().body(ApiResponse.error("Failed to create transaction"));
+                // Tạo thất bại, trả về lý do (vehicle không thuộc user, không phải driver, slot không thuộc station, ...)
+                return ResponseEntity.badRequest().body(ApiResponse.error("Failed to create transaction. " + result.getMessage(), result.name()));
             }
 
         } catch (SQLException e) {
@@ -349,32 +393,6 @@ public class TransactionController {
         }
     }
 
-    /**
-     * Scheduled task tự động cập nhật transactions hết hạn
-     * Chạy mỗi 1 phút để kiểm tra và cập nhật transactions quá hạn
-     * Đảm bảo hệ thống tự động dọn dẹp các giao dịch không hoàn thành
-     */
-    // Scheduled task - chạy mỗi phút (60000ms = 1 phút) để update expired transactions
-    @Scheduled(fixedRate = 60000)
-    public void updateExpiredTransactionsScheduled() {
-        try {
-            // Tự động gọi DAO để cập nhật transactions hết hạn
-            // Thực thi stored procedure mỗi phút để dọn dẹp transactions cũ
-            boolean success = transactionDAO.updateExpiredTransactions();
-
-            // In log để tracking hoạt động của scheduled task
-            if (success) {
-                System.out.println("Scheduled update: UpdateExpiredTransactions procedure executed successfully at " + new java.util.Date());
-            } else {
-                System.out.println("Scheduled update: UpdateExpiredTransactions procedure execution failed at " + new java.util.Date());
-            }
-
-        } catch (SQLException e) {
-            // Xử lý lỗi và in ra console (không throw exception để không crash scheduler)
-            System.out.println("Scheduled update error: " + e.toString());
-        }
-    }
-
     /**
      * API kiểm tra trạng thái dịch vụ transaction
      * Xác nhận service đang hoạt động và scheduled task đang chạy
@@ -2,7 +2,6 @@ package com.example.demo.controller;
 
 import java.io.UnsupportedEncodingException;
 import java.sql.SQLException;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,11 +15,15 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.demo.dao.VNPayPaymentDAO;
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.VNPayCallbackResult;
 import com.example.demo.dto.VNPayPaymentDTO;
 import com.example.demo.dto.VNPayPaymentResponseDTO;
+import com.example.demo.service.JsonStreamService;
+import com.example.demo.service.VNPayIpnInboxService;
 import com.example.demo.service.VNPayService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -41,6 +44,12 @@ public class VNPayController {
     @Autowired
     private VNPayService vnpayService;
 
+    @Autowired
+    private VNPayIpnInboxService vnpayIpnInboxService;
+
+    @Autowired
+    private JsonStreamService jsonStreamService;
+
     /**
      * Tạo VNPay payment với QR code - API mới cho frontend
      */
@@ -123,51 +132,15 @@ public class VNPayController {
     public ResponseEntity<String> handleVNPayReturn(HttpServletRequest request) {
 
         try {
-            System.out.println("=== VNPay Return URL Handler START ===");
-
-            // Sử dụng VNPayService verifyPayment method thay vì tự tính signature
-            boolean isValidSignature = vnpayService.verifyPayment(request);
+            // Kiểm tra chữ ký + cập nhật trạng thái payment (dùng chung pipeline với IPN)
+            VNPayCallbackResult result = vnpayService.processCallback(request.getParameterMap());
+            boolean isValidSignature = result != VNPayCallbackResult.INVALID_SIGNATURE;
 
             String txnRef = request.getParameter("vnp_TxnRef");
             String responseCode = request.getParameter("vnp_ResponseCode");
             String transactionStatus = request.getParameter("vnp_TransactionStatus");
-            String vnp_SecureHash = request.getParameter("vnp_SecureHash");
-
-            System.out.println("=== VNPay Return URL Processing ===");
-            System.out.println("Signature valid: " + isValidSignature);
-            System.out.println("TxnRef: " + txnRef + ", ResponseCode: " + responseCode + ", TransactionStatus: "
-                    + transactionStatus);
-
             String orderInfo = request.getParameter("vnp_OrderInfo");
             String amount = request.getParameter("vnp_Amount");
-            String transactionNo = request.getParameter("vnp_TransactionNo");
-            String payDate = request.getParameter("vnp_PayDate");
-            String bankCode = request.getParameter("vnp_BankCode");
-
-            // Update payment status in database if signature is valid
-            if (isValidSignature) {
-                System.out.println("✅ Signature verification SUCCESS - proceeding with status update");
-
-                Map<String, String> vnpParams = new HashMap<>();
-                vnpParams.put("vnp_TxnRef", txnRef);
-                vnpParams.put("vnp_ResponseCode", responseCode);
-                vnpParams.put("vnp_TransactionNo", transactionNo);
-                vnpParams.put("vnp_TransactionStatus", transactionStatus);
-                vnpParams.put("vnp_PayDate", payDate);
-                vnpParams.put("vnp_BankCode", bankCode);
-
-                // Process payment response and update status
-                System.out.println("Calling processPaymentResponse...");
-                boolean updateResult = vnpayService.processPaymentResponse(vnpParams);
-                System.out.println("processPaymentResponse result: " + updateResult);
-
-                // Handle VNPay callback for subscription updates
-                System.out.println("Calling handleVnPayCallback...");
-                String callbackResult = vnpayService.handleVnPayCallback(vnpParams);
-                System.out.println("handleVnPayCallback result: " + callbackResult);
-            } else {
-                System.out.println("❌ Signature verification FAILED - no status update");
-            }
 
             // Tạo HTML response
             StringBuilder html = new StringBuilder();
@@ -239,100 +212,13 @@ public class VNPayController {
         Map<String, String> responseMap = new HashMap<>();
 
         try {
-            // Begin process return from VNPAY - theo code mẫu IPN chính thức
-            // ENCODE parameters khi put vào fields (lấy raw name/value rồi encode)
-            Map<String, String> fields = new HashMap<>();
-            for (Enumeration<String> params = request.getParameterNames(); params.hasMoreElements();) {
-                String rawName = params.nextElement();
-                String rawValue = request.getParameter(rawName);
-                if (rawValue != null && rawValue.length() > 0) {
-                    String fieldName = java.net.URLEncoder.encode(rawName,
-                            java.nio.charset.StandardCharsets.US_ASCII.toString());
-                    String fieldValue = java.net.URLEncoder.encode(rawValue,
-                            java.nio.charset.StandardCharsets.US_ASCII.toString());
-                    fields.put(fieldName, fieldValue);
-                }
-            }
-
-            // Lấy vnp_SecureHash từ request gốc (KHÔNG ENCODE) - Theo code mẫu VNPay IPN
-            String vnp_SecureHash = request.getParameter("vnp_SecureHash");
-
-            // Remove encoded secure hash keys (fields map chứa encoded keys)
-            String encSecureHashTypeIpn = java.net.URLEncoder.encode("vnp_SecureHashType",
-                    java.nio.charset.StandardCharsets.US_ASCII.toString());
-            String encSecureHashIpn = java.net.URLEncoder.encode("vnp_SecureHash",
-                    java.nio.charset.StandardCharsets.US_ASCII.toString());
-            if (fields.containsKey(encSecureHashTypeIpn)) {
-                fields.remove(encSecureHashTypeIpn);
-            }
-            if (fields.containsKey(encSecureHashIpn)) {
-                fields.remove(encSecureHashIpn);
-            }
-
-            // Check checksum - hashAllFields sẽ xử lý fields đã encode
-            String signValue = vnpayService.hashAllFields(fields);
-            if (signValue.equals(vnp_SecureHash)) {
-                // Checksum hợp lệ
-
-                String txnRef = request.getParameter("vnp_TxnRef");
-                String responseCode = request.getParameter("vnp_ResponseCode");
-                String transactionNo = request.getParameter("vnp_TransactionNo");
-                String transactionStatus = request.getParameter("vnp_TransactionStatus");
-                String payDate = request.getParameter("vnp_PayDate");
-                String bankCode = request.getParameter("vnp_BankCode");
-
-                // Check if payment exists in database
-                try {
-                    VNPayPaymentDTO existingPayment = vnpayService.getPaymentByTxnRef(txnRef);
-                    boolean checkOrderId = (existingPayment != null);
-                    boolean checkAmount = true; // Can add amount validation here
-                    boolean checkOrderStatus = (existingPayment != null && existingPayment.getStatus() == 0); // PENDING
-
-                    if (checkOrderId) {
-                        if (checkAmount) {
-                            if (checkOrderStatus) {
-                                // Update payment status in database
-                                Map<String, String> vnpParams = new HashMap<>();
-                                vnpParams.put("vnp_TxnRef", txnRef);
-                                vnpParams.put("vnp_ResponseCode", responseCode);
-                                vnpParams.put("vnp_TransactionNo", transactionNo);
-                                vnpParams.put("vnp_TransactionStatus", transactionStatus);
-                                vnpParams.put("vnp_PayDate", payDate);
-                                vnpParams.put("vnp_BankCode", bankCode);
-
-                                boolean updateSuccess = vnpayService.processPaymentResponse(vnpParams);
-
-                                // Handle VNPay callback for subscription updates
-                                String callbackResult = vnpayService.handleVnPayCallback(vnpParams);
-
-                                if (updateSuccess) {
-                                    responseMap.put("RspCode", "00");
-                                    responseMap.put("Message", "Confirm Success");
-                                } else {
-                                    responseMap.put("RspCode", "99");
-                                    responseMap.put("Message", "Failed to update payment status");
-                                }
-                            } else {
-                                responseMap.put("RspCode", "02");
-                                responseMap.put("Message", "Order already confirmed");
-                            }
-                        } else {
-                            responseMap.put("RspCode", "04");
-                            responseMap.put("Message", "Invalid Amount");
-                        }
-                    } else {
-                        responseMap.put("RspCode", "01");
-                        responseMap.put("Message", "Order not Found");
-                    }
-                } catch (Exception dbEx) {
-                    responseMap.put("RspCode", "99");
-                    responseMap.put("Message", "Database error: " + dbEx.getMessage());
-                }
-            } else {
-                responseMap.put("RspCode", "97");
-                responseMap.put("Message", "Invalid Checksum");
-            }
-
+            // Kiểm tra checksum rồi ghi inbox và trả lời ngay, worker cập nhật payment sau (VNPayIpnInboxService)
+            VNPayCallbackResult result = vnpayIpnInboxService.receive(request.getParameterMap());
+            responseMap.put("RspCode", result.getRspCode());
+            responseMap.put("Message", result.getMessage());
+        } catch (SQLException e) {
+            responseMap.put("RspCode", "99");
+            responseMap.put("Message", "Database error: " + e.getMessage());
         } catch (Exception e) {
             responseMap.put("RspCode", "99");
             responseMap.put("Message", "Unknown error");
@@ -480,4 +366,15 @@ public class VNPayController {
             return ResponseEntity.internalServerError().body(ApiResponse.error("System error occurred"));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * API export thống kê gói dịch vụ dạng streaming
+     * JSON giữ nguyên cấu trúc như /vnpay/statistic/ nhưng không buffer cả list trong bộ nhớ
+     */
+    @GetMapping("/statistic/stream")
+    @Operation(summary = "Export Service Pack Statistic (streaming)", description = "Stream dữ liệu thống kê gói dịch vụ, không buffer toàn bộ danh sách")
+    public ResponseEntity<StreamingResponseBody> streamStatistic() {
+        VNPayPaymentDAO dao = new VNPayPaymentDAO();
+        return jsonStreamService.streamList("Statistic retrieved successfully", dao::streamStatistic);
+    }
+}
@@ -3,12 +3,14 @@ package com.example.demo.controller;
 import java.sql.SQLException;
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.demo.dao.PinSlotDAO;
 import com.example.demo.dao.UserDAO;
@@ -16,6 +18,7 @@ import com.example.demo.dao.VehicleDAO;
 import com.example.demo.dto.ApiResponse;
 import com.example.demo.dto.UserDTO;
 import com.example.demo.dto.VehicleDTO;
+import com.example.demo.service.JsonStreamService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -35,6 +38,9 @@ public class VehicleController {
     private PinSlotDAO pinSlotDAO = new PinSlotDAO();
     private UserDAO userDAO = new UserDAO();
 
+    @Autowired
+    private JsonStreamService jsonStreamService;
+
     /**
      * API lấy tất cả vehicles trong hệ thống
      * Trả về danh sách tất cả phương tiện (dành cho admin)
@@ -60,6 +66,16 @@ public class VehicleController {
         }
     }
 
+    /**
+     * API export tất cả vehicles dạng streaming
+     * Ghi từng dòng ra response ngay khi đọc từ database, JSON giữ nguyên cấu trúc như /vehicle/list
+     */
+    @GetMapping("/vehicle/list/stream")
+    @Operation(summary = "Export all vehicles (streaming)", description = "Stream every vehicle in the standard ApiResponse envelope without buffering the full list in memory.")
+    public ResponseEntity<StreamingResponseBody> streamAllVehicles() {
+        return jsonStreamService.streamList("Vehicles retrieved successfully", vehicleDAO::streamAllVehicles);
+    }
+
     /**
      * API lấy vehicles theo user ID (MAINFLOW - Chọn xe để đặt slot)
      * Trả về danh sách phương tiện thuộc về user cụ thể
@@ -0,0 +1,156 @@
+package com.example.demo.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.QueryExecutor;
+import com.example.demo.dbUnits.StatementBinder;
+import com.example.demo.service.IdempotencyStore;
+
+/**
+ * IdempotencyStore trên database, dùng chung cho nhiều node (app.idempotency.store=jdbc)
+ * Database table: IdempotencyKey (sql/create_idempotency_key_table.sql)
+ */
+public class IdempotencyKeyDAO implements IdempotencyStore {
+
+    // Số dòng xóa mỗi lần khi dọn key hết hạn (tránh 1 lệnh DELETE khóa bảng lâu)
+    private static final int PURGE_BATCH_SIZE = 5000;
+
+    // Đọc key với UPDLOCK + HOLDLOCK để 2 request cùng key không cùng giữ được key.
+    // Key chưa có / đã hết hạn / đang xử lý quá lease -> giữ key cho request này
+    private static final String CLAIM_SQL =
+            "SET NOCOUNT ON; SET XACT_ABORT ON; " +
+            "DECLARE @key CHAR(64) = ?, @fingerprint CHAR(64) = ?, @ttlSeconds INT = ?, @leaseSeconds INT = ?; " +
+            "DECLARE @state VARCHAR(24), @found BIT = 0, @existing CHAR(64), @status INT, @contentType VARCHAR(100), " +
+            "        @body VARBINARY(MAX), @leaseUntil DATETIME2, @expiresAt DATETIME2; " +
+            "BEGIN TRAN; " +
+            "SELECT @found = 1, @existing = fingerprint, @status = responseStatus, @contentType = contentType, " +
+            "       @body = responseBody, @leaseUntil = leaseUntil, @expiresAt = expiresAt " +
+            "FROM dbo.IdempotencyKey WITH (UPDLOCK, HOLDLOCK) WHERE requestKey = @key; " +
+            "IF @found = 0 OR @expiresAt <= SYSDATETIME() OR (@status IS NULL AND @leaseUntil <= SYSDATETIME()) " +
+            "BEGIN " +
+            "    DELETE FROM dbo.IdempotencyKey WHERE requestKey = @key; " +
+            "    INSERT INTO dbo.IdempotencyKey (requestKey, fingerprint, leaseUntil, expiresAt) " +
+            "    VALUES (@key, @fingerprint, DATEADD(SECOND, @leaseSeconds, SYSDATETIME()), DATEADD(SECOND, @ttlSeconds, SYSDATETIME())); " +
+            "    SELECT @state = 'ACQUIRED', @status = NULL, @contentType = NULL, @body = NULL; " +
+            "END " +
+            "ELSE IF @existing <> @fingerprint SET @state = 'FINGERPRINT_MISMATCH' " +
+            "ELSE IF @status IS NULL SET @state = 'IN_PROGRESS' " +
+            "ELSE SET @state = 'COMPLETED'; " +
+            "COMMIT TRAN; " +
+            "SELECT @state AS state, @status AS responseStatus, @contentType AS contentType, " +
+            "       CASE WHEN @state = 'COMPLETED' THEN @body END AS responseBody";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE dbo.IdempotencyKey SET responseStatus = ?, contentType = ?, responseBody = ? " +
+            "WHERE requestKey = ? AND responseStatus IS NULL";
+
+    private static final String RELEASE_SQL =
+            "DELETE FROM dbo.IdempotencyKey WHERE requestKey = ? AND responseStatus IS NULL";
+
+    private static final String PURGE_SQL =
+            "DELETE TOP (" + PURGE_BATCH_SIZE + ") FROM dbo.IdempotencyKey " +
+            "WHERE expiresAt <= SYSDATETIME() OR (responseStatus IS NULL AND leaseUntil <= SYSDATETIME())";
+
+    private final QueryExecutor executor = QueryExecutor.primary();
+
+    private final int ttlSeconds;
+    private final int leaseSeconds;
+
+    public IdempotencyKeyDAO(int ttlSeconds, int leaseSeconds) {
+        this.ttlSeconds = ttlSeconds;
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    @Override
+    public Claim claim(String key, String fingerprint) throws SQLException {
+        try (Connection conn = DBUtils.getConnection();
+             PreparedStatement ptm = conn.prepareStatement(CLAIM_SQL)) {
+            ptm.setString(1, key);
+            ptm.setString(2, fingerprint);
+            ptm.setInt(3, ttlSeconds);
+            ptm.setInt(4, leaseSeconds);
+            try (ResultSet rs = QueryExecutor.executeForResultSet(ptm)) {
+                if (!rs.next()) {
+                    throw new SQLException("Idempotency claim returned no result");
+                }
+                ClaimState state = ClaimState.valueOf(rs.getString("state"));
+                if (state != ClaimState.COMPLETED) {
+                    return new Claim(state, null);
+                }
+                return new Claim(state, new StoredResponse(rs.getInt("responseStatus"), rs.getString("contentType"), rs.getBytes("responseBody")));
+            }
+        } catch (ClassNotFoundException e) {
+            System.out.println("ClassNotFoundException in claim: " + e.getMessage());
+            throw new SQLException("Database driver not found");
+        } catch (SQLException e) {
+            System.out.println("SQLException in claim: " + e.getMessage());
+            throw new SQLException("Error claiming idempotency key: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response) throws SQLException {
+        try {
+            executor.update(COMPLETE_SQL, ptm -> {
+                ptm.setInt(1, response.getStatus());
+                if (response.getContentType() == null) {
+                    ptm.setNull(2, Types.VARCHAR);
+                } else {
+                    ptm.setString(2, response.getContentType());
+                }
+                ptm.setBytes(3, response.getBody());
+                ptm.setString(4, key);
+            });
+        } catch (SQLException e) {
+            System.out.println("SQLException in complete: " + e.getMessage());
+            throw new SQLException("Error storing idempotent response: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void release(String key) throws SQLException {
+        try {
+            executor.update(RELEASE_SQL, ptm -> ptm.setString(1, key));
+        } catch (SQLException e) {
+            System.out.println("SQLException in release: " + e.getMessage());
+            throw new SQLException("Error releasing idempotency key: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int purgeExpired() throws SQLException {
+        int total = 0;
+        try {
+            int deleted;
+            do {
+                deleted = executor.update(PURGE_SQL, StatementBinder.NONE);
+                total += deleted;
+            } while (deleted == PURGE_BATCH_SIZE);
+        } catch (SQLException e) {
+            System.out.println("SQLException in purgeExpired: " + e.getMessage());
+            throw new SQLException("Error purging idempotency keys: " + e.getMessage());
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "jdbc");
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("leaseSeconds", leaseSeconds);
+        return stats;
+    }
+}
@@ -4,11 +4,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import com.example.demo.cache.ChargingStaleTracker;
+import com.example.demo.cache.PinSlotCache;
 import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.QueryExecutor;
+import com.example.demo.dbUnits.StatementBinder;
 import com.example.demo.dto.PinSlotDTO;
+import com.example.demo.dto.SlotReservationResult;
+import com.example.demo.dto.StationAvailabilityDTO;
+import com.example.demo.service.ChargingSimulation;
 
 public class PinSlotDAO {
 
@@ -25,6 +34,9 @@ public class PinSlotDAO {
             if (conn != null) {
                 ptm = conn.prepareStatement(sql);
                 int rowsAffected = ptm.executeUpdate();
+                // Procedure cập nhật pin của nhiều station -> xóa toàn bộ cache
+                PinSlotCache.invalidateAll();
+                ChargingStaleTracker.markAllStale();
                 System.out.println("UpdatePinPercent executed - Rows affected: " + rowsAffected);
                 check = true;
             }
@@ -47,156 +59,179 @@ public class PinSlotDAO {
     }
 
     public List<PinSlotDTO> getListPinSlot() throws SQLException {
-        List<PinSlotDTO> listPinSlot = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
         String sql = "SELECT pinID, pinPercent, pinHealth, pinStatus, status, userID, vehicleID, stationID FROM pinSlot";
 
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                rs = ptm.executeQuery();
-                while (rs.next()) {
-                    int pinID = rs.getInt("pinID");
-                    int pinPercent = rs.getInt("pinPercent");
-                    int pinHealth = rs.getInt("pinHealth");
-                    int pinStatus = rs.getInt("pinStatus");
-                    int status = rs.getInt("status");
-
-                    // Đọc userID, vehicleID và stationID từ database
-                    Integer userID = rs.getObject("userID", Integer.class);
-                    Integer vehicleID = rs.getObject("vehicleID", Integer.class);
-                    int stationID = rs.getInt("stationID");
-
-                    // Sử dụng constructor với đầy đủ fields bao gồm userID, vehicleID
-                    listPinSlot.add(new PinSlotDTO(pinID, pinPercent, pinHealth, pinStatus, status, userID, vehicleID, stationID));
-                }
-            }
-        } catch (ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException in getListPinSlot: " + e.getMessage());
-            throw new SQLException("Database driver not found");
+            return QueryExecutor.primary().query(sql, StatementBinder.NONE, RowMappers.PIN_SLOT);
         } catch (SQLException e) {
             System.out.println("SQLException in getListPinSlot: " + e.getMessage());
             throw new SQLException("Error getting pin slot list: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-        return listPinSlot;
     }
 
     // Method để lấy danh sách PinSlot theo stationID
     public List<PinSlotDTO> getListPinSlotByStation(int stationID) throws SQLException {
-        List<PinSlotDTO> listPinSlot = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
+        // Đọc từ cache trước (API được poll nhiều nhất)
+        List<PinSlotDTO> cached = PinSlotCache.get(stationID);
+        if (cached != null) {
+            return cached;
+        }
 
         String sql = "SELECT pinID, pinPercent, pinHealth, pinStatus, status, userID, vehicleID, stationID FROM dbo.pinSlot WHERE stationID = ?";
 
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, stationID);
-                rs = ptm.executeQuery();
+            long generation = PinSlotCache.currentGeneration();
+            List<PinSlotDTO> listPinSlot = QueryExecutor.primary().query(sql, ptm -> ptm.setInt(1, stationID), RowMappers.PIN_SLOT);
+            return PinSlotCache.put(stationID, listPinSlot, generation);
+        } catch (SQLException e) {
+            System.out.println("SQLException in getListPinSlotByStation: " + e.getMessage());
+            throw new SQLException("Error getting pin slot list by station: " + e.getMessage());
+        }
+    }
 
-                while (rs.next()) {
-                    int pinID = rs.getInt("pinID");
-                    int pinPercent = rs.getInt("pinPercent");
-                    int pinHealth = rs.getInt("pinHealth");
-                    int pinStatus = rs.getInt("pinStatus");
-                    int status = rs.getInt("status");
+    // Đếm slot theo trạng thái: available (status 1 và pinStatus 1), reserved (status 2), charging (pinStatus 0), full (pinStatus 1)
+    private static final String AVAILABILITY_COLUMNS = "stationID, COUNT(*) AS totalSlots, "
+            + "SUM(CASE WHEN status = 1 AND pinStatus = 1 THEN 1 ELSE 0 END) AS available, "
+            + "SUM(CASE WHEN status = 2 THEN 1 ELSE 0 END) AS reserved, "
+            + "SUM(CASE WHEN pinStatus = 0 THEN 1 ELSE 0 END) AS charging, "
+            + "SUM(CASE WHEN pinStatus = 1 THEN 1 ELSE 0 END) AS [full] ";
+
+    /**
+     * Số slot theo trạng thái của 1 station (từ cache, miss thì đếm trong database)
+     * @return null nếu station không có slot nào
+     */
+    public StationAvailabilityDTO getStationAvailability(int stationID) throws SQLException {
+        StationAvailabilityDTO cached = PinSlotCache.getAvailability(stationID);
+        if (cached != null) {
+            return cached;
+        }
 
-                    // Đọc userID, vehicleID và stationID từ database
-                    Integer userID = rs.getObject("userID", Integer.class);
-                    Integer vehicleID = rs.getObject("vehicleID", Integer.class);
-                    int stationIDFromDB = rs.getInt("stationID");
+        String sql = "SELECT " + AVAILABILITY_COLUMNS + "FROM dbo.pinSlot WHERE stationID = ? GROUP BY stationID";
 
-                    // Sử dụng constructor với đầy đủ fields bao gồm userID, vehicleID
-                    listPinSlot.add(new PinSlotDTO(pinID, pinPercent, pinHealth, pinStatus, status, userID, vehicleID, stationIDFromDB));
+        try {
+            long generation = PinSlotCache.currentGeneration();
+            StationAvailabilityDTO counts = QueryExecutor.primary().queryOne(sql, ptm -> ptm.setInt(1, stationID), RowMappers.STATION_AVAILABILITY);
+            return counts != null ? PinSlotCache.putAvailability(counts, generation) : null;
+        } catch (SQLException e) {
+            System.out.println("SQLException in getStationAvailability: " + e.getMessage());
+            throw new SQLException("Error getting station availability: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Số slot theo trạng thái của tất cả station, 1 lần GROUP BY toàn bảng khi cache miss
+     */
+    public List<StationAvailabilityDTO> getAllStationAvailability() throws SQLException {
+        List<StationAvailabilityDTO> cached = PinSlotCache.getAllAvailability();
+        if (cached != null) {
+            return cached;
+        }
+
+        String sql = "SELECT " + AVAILABILITY_COLUMNS + "FROM dbo.pinSlot GROUP BY stationID ORDER BY stationID";
+
+        try {
+            long generation = PinSlotCache.currentGeneration();
+            List<StationAvailabilityDTO> all = QueryExecutor.primary().query(sql, StatementBinder.NONE, RowMappers.STATION_AVAILABILITY);
+            return PinSlotCache.putAllAvailability(all, generation);
+        } catch (SQLException e) {
+            System.out.println("SQLException in getAllStationAvailability: " + e.getMessage());
+            throw new SQLException("Error getting station availability: " + e.getMessage());
+        }
+    }
+
+    // Số pinID tối đa trong 1 câu IN (...) / số dòng mỗi lần executeBatch
+    private static final int CHARGE_CHUNK_SIZE = 500;
+
+    /**
+     * Lấy các pin slot theo danh sách pinID (ChargingEngine đọc lại slot bị thay đổi)
+     */
+    public List<PinSlotDTO> getPinSlotsByIds(List<Integer> pinIDs) throws SQLException {
+        List<PinSlotDTO> result = new ArrayList<>();
+        try {
+            for (int from = 0; from < pinIDs.size(); from += CHARGE_CHUNK_SIZE) {
+                List<Integer> chunk = pinIDs.subList(from, Math.min(from + CHARGE_CHUNK_SIZE, pinIDs.size()));
+                String sql = "SELECT pinID, pinPercent, pinHealth, pinStatus, status, userID, vehicleID, stationID FROM dbo.pinSlot WHERE pinID IN ("
+                        + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+                result.addAll(QueryExecutor.primary().query(sql, ptm -> {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        ptm.setInt(i + 1, chunk.get(i));
+                    }
+                }, RowMappers.PIN_SLOT));
+            }
+            return result;
+        } catch (SQLException e) {
+            System.out.println("SQLException in getPinSlotsByIds: " + e.getMessage());
+            throw new SQLException("Error getting pin slots by id: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi pinPercent / pinStatus của các slot vừa sạc bằng JDBC batch
+     * Chỉ ghi nếu pinPercent trong database vẫn là giá trị engine đã biết (không đè lên swap / update đồng thời)
+     * @return danh sách pinID không ghi được (đã bị thay đổi từ bên ngoài)
+     */
+    public List<Integer> updateChargeBatch(List<ChargingSimulation.Change> changes) throws SQLException {
+        List<Integer> conflicts = new ArrayList<>();
+        if (changes.isEmpty()) {
+            return conflicts;
+        }
+
+        String sql = "UPDATE dbo.pinSlot SET pinPercent = ?, pinStatus = ? WHERE pinID = ? AND pinPercent = ?";
+        Connection conn = null;
+        PreparedStatement ptm = null;
+
+        try {
+            conn = DBUtils.getConnection();
+            conn.setAutoCommit(false);
+            ptm = conn.prepareStatement(sql);
+            for (int from = 0; from < changes.size(); from += CHARGE_CHUNK_SIZE) {
+                List<ChargingSimulation.Change> chunk = changes.subList(from, Math.min(from + CHARGE_CHUNK_SIZE, changes.size()));
+                for (ChargingSimulation.Change change : chunk) {
+                    ptm.setInt(1, change.getPinPercent());
+                    ptm.setInt(2, change.getPinStatus());
+                    ptm.setInt(3, change.getPinID());
+                    ptm.setInt(4, change.getPreviousPercent());
+                    ptm.addBatch();
+                }
+                int[] counts = ptm.executeBatch();
+                conn.commit();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        conflicts.add(chunk.get(i).getPinID());
+                    }
                 }
             }
+            return conflicts;
         } catch (ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException in getListPinSlotByStation: " + e.getMessage());
+            System.out.println("ClassNotFoundException in updateChargeBatch: " + e.getMessage());
             throw new SQLException("Database driver not found");
         } catch (SQLException e) {
-            System.out.println("SQLException in getListPinSlotByStation: " + e.getMessage());
-            throw new SQLException("Error getting pin slot list by station: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
+            System.out.println("SQLException in updateChargeBatch: " + e.getMessage());
+            if (conn != null) {
+                conn.rollback();
             }
+            throw new SQLException("Error updating pin charge: " + e.getMessage());
+        } finally {
             if (ptm != null) {
                 ptm.close();
             }
             if (conn != null) {
+                conn.setAutoCommit(true);
                 conn.close();
             }
         }
-        return listPinSlot;
     }
 
     // Method để lấy danh sách PinSlot theo vehicleID
     public List<PinSlotDTO> getListPinSlotByVehicle(int vehicleID) throws SQLException {
-        List<PinSlotDTO> listPinSlot = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
         String sql = "SELECT pinID, pinPercent, pinHealth, pinStatus, status, userID, vehicleID, stationID FROM dbo.pinSlot WHERE vehicleID = ?";
 
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, vehicleID);
-                rs = ptm.executeQuery();
-
-                while (rs.next()) {
-                    int pinID = rs.getInt("pinID");
-                    int pinPercent = rs.getInt("pinPercent");
-                    int pinHealth = rs.getInt("pinHealth");
-                    int pinStatus = rs.getInt("pinStatus");
-                    int status = rs.getInt("status");
-
-                    // Đọc userID, vehicleID và stationID từ database
-                    Integer userID = rs.getObject("userID", Integer.class);
-                    Integer vehID = rs.getObject("vehicleID", Integer.class);
-                    int stationID = rs.getInt("stationID");
-
-                    // Sử dụng constructor với đầy đủ fields bao gồm userID, vehicleID
-                    listPinSlot.add(new PinSlotDTO(pinID, pinPercent, pinHealth, pinStatus, status, userID, vehID, stationID));
-                }
-            }
-        } catch (ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException in getListPinSlotByVehicle: " + e.getMessage());
-            throw new SQLException("Database driver not found");
+            return QueryExecutor.primary().query(sql, ptm -> ptm.setInt(1, vehicleID), RowMappers.PIN_SLOT);
         } catch (SQLException e) {
             System.out.println("SQLException in getListPinSlotByVehicle: " + e.getMessage());
             throw new SQLException("Error getting pin slot list by vehicle: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-        return listPinSlot;
     }
 
     // Method để update PinSlot theo pinID - cho Update Pin Slot API
@@ -218,6 +253,8 @@ public class PinSlotDAO {
 
                 int rowsAffected = ptm.executeUpdate();
                 success = (rowsAffected > 0);
+                PinSlotCache.invalidatePin(pinID);
+                ChargingStaleTracker.markPinStale(pinID);
 
                 System.out.println("Update PinSlot - PinID: " + pinID + ", NewPercent: " + pinPercent + "%, PinHealth: " + pinHealth + "%, Status: "
                         + newStatus + ", Rows affected: " + rowsAffected);
@@ -255,6 +292,7 @@ public class PinSlotDAO {
                 ptm.setInt(2, pinID);
 
                 check = ptm.executeUpdate() > 0;
+                PinSlotCache.invalidatePin(pinID);
             }
         } catch (ClassNotFoundException e) {
             System.out.println("ClassNotFoundException in updatePinSlotStatus: " + e.getMessage());
@@ -273,105 +311,99 @@ public class PinSlotDAO {
         return check;
     }
 
-    public boolean reservePinSlot(int pinID, Integer userID, Integer vehicleID) throws SQLException {
-        boolean check = false;
-        Connection conn = null;
-        PreparedStatement ptm = null;
+    // Đặt chỗ / hủy đặt chỗ trong 1 round trip: UPDATE có điều kiện (compare-and-set) rồi đọc lại trạng thái
+    // trong cùng 1 batch để biết lý do thất bại. 2 request đồng thời cùng 1 pinID thì chỉ 1 request UPDATE được.
+    private static final String RESERVE_SQL =
+            "SET NOCOUNT ON; "
+            + "DECLARE @pinID INT = ?; "
+            + "UPDATE dbo.pinSlot SET status = 2, userID = ?, vehicleID = ? "
+            + "WHERE pinID = @pinID AND status = 1 AND pinStatus = 1; "
+            + "DECLARE @updated INT = @@ROWCOUNT; "
+            + "SELECT @updated AS updated, p.status, p.pinStatus, p.stationID "
+            + "FROM (SELECT 1 AS x) d LEFT JOIN dbo.pinSlot p ON p.pinID = @pinID";
+
+    private static final String UNRESERVE_SQL =
+            "SET NOCOUNT ON; "
+            + "DECLARE @pinID INT = ?; "
+            + "UPDATE dbo.pinSlot SET status = 1, userID = NULL, vehicleID = NULL "
+            + "WHERE pinID = @pinID AND status = 2; "
+            + "DECLARE @updated INT = @@ROWCOUNT; "
+            + "SELECT @updated AS updated, p.status, p.pinStatus, p.stationID "
+            + "FROM (SELECT 1 AS x) d LEFT JOIN dbo.pinSlot p ON p.pinID = @pinID";
 
-        String reserveSQL = "UPDATE dbo.pinSlot SET status = 2, userID = ?, vehicleID = ? WHERE pinID = ?";
-        String checkStatusSQL = "SELECT status, pinStatus FROM dbo.pinSlot WHERE pinID = ?";
+    public boolean reservePinSlot(int pinID, Integer userID, Integer vehicleID) throws SQLException {
+        return tryReservePinSlot(pinID, userID, vehicleID).isSuccess();
+    }
 
+    /**
+     * Đặt chỗ pin slot (status 1 -> 2) nếu slot đang available và đã sạc đầy
+     * @return RESERVED hoặc lý do không đặt được (NOT_FOUND, NOT_AVAILABLE, NOT_CHARGED)
+     */
+    public SlotReservationResult tryReservePinSlot(int pinID, Integer userID, Integer vehicleID) throws SQLException {
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                // Kiểm tra trạng thái hiện tại
-                ptm = conn.prepareStatement(checkStatusSQL);
+            long writeGeneration = PinSlotCache.beginWrite();
+            SlotReservationResult result = QueryExecutor.primary().queryOne(RESERVE_SQL, ptm -> {
                 ptm.setInt(1, pinID);
-                ResultSet rs = ptm.executeQuery();
-                if (rs.next()) {
-                    int status = rs.getInt("status");
-                    int pinStatus = rs.getInt("pinStatus");
-                    // Chỉ cho phép đặt chỗ nếu status hiện tại là 1 (available) và pinStatus là 1 (fully charged)
-                    if (status == 1 && pinStatus == 1) {
-                        ptm.close(); // Đóng PreparedStatement cũ trước khi tái sử dụng
-                        ptm = conn.prepareStatement(reserveSQL);
-                        ptm.setInt(1, userID);
-                        ptm.setInt(2, vehicleID);
-                        ptm.setInt(3, pinID);
-                        check = ptm.executeUpdate() > 0;
-                        System.out.println("Pin slot " + pinID + " reserved for userID: " + userID + ", vehicleID: " + vehicleID);
-                    } else {
-                        System.out.println("Pin slot cannot be reserved. Current status: " + status + ", Pin status: " + pinStatus);
-                    }
-                } else {
-                    System.out.println("Pin slot with ID " + pinID + " does not exist.");
-                }
-                rs.close();
-            }
-        } catch (ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException in reservePinSlot: " + e.getMessage());
-            throw new SQLException("Database driver not found");
+                ptm.setObject(2, userID, Types.INTEGER);
+                ptm.setObject(3, vehicleID, Types.INTEGER);
+            }, rs -> toReservationResult(rs, SlotReservationResult.RESERVED, writeGeneration));
+            if (result == SlotReservationResult.RESERVED) {
+                System.out.println("Pin slot " + pinID + " reserved for userID: " + userID + ", vehicleID: " + vehicleID);
+            } else {
+                System.out.println("Pin slot " + pinID + " cannot be reserved: " + result);
+            }
+            return result;
         } catch (SQLException e) {
             System.out.println("SQLException in reservePinSlot: " + e.getMessage());
             throw new SQLException("Error reserving pin slot: " + e.getMessage());
-        } finally {
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-        return check;
     }
 
     public boolean unreservePinSlot(int pinID) throws SQLException {
-        boolean check = false;
-        Connection conn = null;
-        PreparedStatement ptm = null;
-
-        String unreserveSQL = "UPDATE dbo.pinSlot SET status = 1, userID = NULL, vehicleID = NULL WHERE pinID = ?";
-        String checkStatusSQL = "SELECT status, pinStatus FROM dbo.pinSlot WHERE pinID = ?";
+        return tryUnreservePinSlot(pinID).isSuccess();
+    }
 
+    /**
+     * Hủy đặt chỗ pin slot (status 2 -> 1, xóa userID và vehicleID)
+     * @return UNRESERVED hoặc lý do không hủy được (NOT_FOUND, NOT_RESERVED)
+     */
+    public SlotReservationResult tryUnreservePinSlot(int pinID) throws SQLException {
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                // Kiểm tra trạng thái hiện tại
-                ptm = conn.prepareStatement(checkStatusSQL);
-                ptm.setInt(1, pinID);
-                ResultSet rs = ptm.executeQuery();
-                if (rs.next()) {
-                    int status = rs.getInt("status");
-                    // Chỉ cho phép unreserve nếu trạng thái hiện tại là 2 (reserved)
-                    if (status == 2) {
-                        ptm.close(); // Đóng PreparedStatement cũ trước khi tái sử dụng
-                        ptm = conn.prepareStatement(unreserveSQL);
-                        ptm.setInt(1, pinID);
-                        check = ptm.executeUpdate() > 0;
-                        System.out.println("Pin slot " + pinID + " unreserved (cleared userID and vehicleID)");
-                    } else {
-                        System.out.println("Pin slot cannot be unreserved. Current status: " + status + " (must be 2 to unreserve)");
-                    }
-                } else {
-                    System.out.println("Pin slot with ID " + pinID + " does not exist.");
-                }
-                rs.close();
-            }
-        } catch (ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException in unreservePinSlot: " + e.getMessage());
-            throw new SQLException("Database driver not found");
+            long writeGeneration = PinSlotCache.beginWrite();
+            SlotReservationResult result = QueryExecutor.primary().queryOne(UNRESERVE_SQL,
+                    ptm -> ptm.setInt(1, pinID),
+                    rs -> toReservationResult(rs, SlotReservationResult.UNRESERVED, writeGeneration));
+            if (result == SlotReservationResult.UNRESERVED) {
+                System.out.println("Pin slot " + pinID + " unreserved (cleared userID and vehicleID)");
+            } else {
+                System.out.println("Pin slot " + pinID + " cannot be unreserved: " + result);
+            }
+            return result;
         } catch (SQLException e) {
             System.out.println("SQLException in unreservePinSlot: " + e.getMessage());
             throw new SQLException("Error unreserving pin slot: " + e.getMessage());
-        } finally {
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-        return check;
+    }
+
+    // Đọc dòng kết quả của RESERVE_SQL / UNRESERVE_SQL
+    private static SlotReservationResult toReservationResult(ResultSet rs, SlotReservationResult success, long writeGeneration)
+            throws SQLException {
+        Integer status = rs.getObject("status", Integer.class);
+        if (status == null) {
+            return SlotReservationResult.NOT_FOUND;
+        }
+        if (rs.getInt("updated") > 0) {
+            PinSlotCache.reservationChanged(rs.getInt("stationID"), success == SlotReservationResult.RESERVED,
+                    rs.getInt("pinStatus"), writeGeneration);
+            return success;
+        }
+        if (success == SlotReservationResult.UNRESERVED) {
+            return SlotReservationResult.NOT_RESERVED;
+        }
+        if (status != 1) {
+            return SlotReservationResult.NOT_AVAILABLE;
+        }
+        return SlotReservationResult.NOT_CHARGED;
     }
 
     // Method để swap pin data giữa Vehicle và PinSlot - theo yêu cầu từ conversation
@@ -443,6 +475,8 @@ public class PinSlotDAO {
                 if (vehicleRowsAffected > 0 && pinSlotRowsAffected > 0) {
                     conn.commit();
                     success = true;
+                    PinSlotCache.invalidatePin(pinSlotID);
+                    ChargingStaleTracker.markPinStale(pinSlotID);
                     System.out.println("Pin data swapped successfully between Vehicle ID " + vehicleID + " and PinSlot ID " + pinSlotID);
                     System.out.println("Vehicle: " + vehiclePinPercent + "%, " + vehiclePinHealth + "% -> " + pinSlotPinPercent + "%, " + pinSlotPinHealth + "%");
                     System.out.println("PinSlot: " + pinSlotPinPercent + "%, " + pinSlotPinHealth + "% -> " + vehiclePinPercent + "%, " + vehiclePinHealth + "%");
@@ -538,6 +572,10 @@ public class PinSlotDAO {
                 if (pinSlot1RowsAffected > 0 && pinSlot2RowsAffected > 0) {
                     conn.commit();
                     success = true;
+                    PinSlotCache.invalidatePin(pinSlotID1);
+                    PinSlotCache.invalidatePin(pinSlotID2);
+                    ChargingStaleTracker.markPinStale(pinSlotID1);
+                    ChargingStaleTracker.markPinStale(pinSlotID2);
                     System.out.println("Pin data swapped successfully between PinSlot ID " + pinSlotID1 + " and PinSlot ID " + pinSlotID2);
                     System.out.println("PinSlot1: " + pinSlot1PinPercent + "%, " + pinSlot1PinHealth + "% -> " + pinSlot2PinPercent + "%, " + pinSlot2PinHealth + "%");
                     System.out.println("PinSlot2: " + pinSlot2PinPercent + "%, " + pinSlot2PinHealth + "% -> " + pinSlot1PinPercent + "%, " + pinSlot1PinHealth + "%");
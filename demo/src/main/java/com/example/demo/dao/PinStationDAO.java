@@ -4,10 +4,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.sql.Statement;
 import java.util.List;
 
+import com.example.demo.cache.ChargingStaleTracker;
+import com.example.demo.cache.PinSlotCache;
+import com.example.demo.cache.StationSpatialIndex;
 import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.QueryExecutor;
+import com.example.demo.dbUnits.StatementBinder;
+import com.example.demo.dto.NearbyStationDTO;
 import com.example.demo.dto.PinStationDTO;
 
 /**
@@ -33,6 +39,9 @@ import com.example.demo.dto.PinStationDTO;
  */
 public class PinStationDAO {
 
+    // Tra cứu role qua cache dùng chung (UserRoleCache)
+    private final UserRoleDAO userRoleDAO = new UserRoleDAO();
+
     /**
      * Kiểm tra tên trạm sạc đã tồn tại chưa
      * Đảm bảo tên trạm là duy nhất trong hệ thống
@@ -115,7 +124,7 @@ public class PinStationDAO {
         try {
             conn = DBUtils.getConnection();
             if (conn != null) {
-                ptm = conn.prepareStatement(sql);
+                ptm = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
                 ptm.setString(1, stationName.trim());
                 ptm.setString(2, location.trim());
                 ptm.setInt(3, status);
@@ -129,6 +138,19 @@ public class PinStationDAO {
 
                 int rowsAffected = ptm.executeUpdate();
                 success = (rowsAffected > 0);
+                // Trigger tạo pin slots cho station mới -> xóa cache slot, engine sạc load lại slot
+                PinSlotCache.invalidateAll();
+                ChargingStaleTracker.markAllStale();
+
+                if (success) {
+                    try (ResultSet keys = ptm.getGeneratedKeys()) {
+                        if (keys.next()) {
+                            syncSpatialIndex(keys.getInt(1));
+                        } else {
+                            StationSpatialIndex.shared().markStale();
+                        }
+                    }
+                }
 
                 System.out.println("Create PinStation - Name: " + stationName + ", Location: " + location + ", Status: "
                         + status + ", Rows affected: " + rowsAffected);
@@ -156,164 +178,45 @@ public class PinStationDAO {
 
     // Method để lấy danh sách tất cả PinStations
     public List<PinStationDTO> getListPinStation() throws SQLException {
-        List<PinStationDTO> listPinStation = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
         String sql = "SELECT stationID, stationName, location, status, x, y, userID, createAt FROM dbo.pinStation ORDER BY createAt DESC";
 
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                rs = ptm.executeQuery();
-
-                while (rs.next()) {
-                    PinStationDTO station = new PinStationDTO(
-                            rs.getInt("stationID"),
-                            rs.getString("stationName"),
-                            rs.getString("location"),
-                            rs.getInt("status"),
-                            rs.getTimestamp("createAt"),
-                            rs.getFloat("x"),
-                            rs.getFloat("y"),
-                            rs.getObject("userID", Integer.class));  // Handle nullable Integer
-                    listPinStation.add(station);
-                }
-
-                System.out.println("Retrieved " + listPinStation.size() + " pin stations from database");
-            }
-        } catch (ClassNotFoundException e) {
-            System.out.println("Database driver not found: " + e.getMessage());
-            throw new SQLException("Database driver not found: " + e.getMessage());
+            List<PinStationDTO> listPinStation = QueryExecutor.replica().query(sql, StatementBinder.NONE, RowMappers.PIN_STATION);
+            System.out.println("Retrieved " + listPinStation.size() + " pin stations from database");
+            return listPinStation;
         } catch (SQLException e) {
             System.out.println("Database error in getListPinStation: " + e.getMessage());
             throw e;
-        } catch (Exception e) {
-            System.out.println("Unexpected error in getListPinStation: " + e.getMessage());
-            throw new SQLException("Failed to get pin station list: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-
-        return listPinStation;
     }
 
     // Method để lấy PinStation theo ID
     public PinStationDTO getPinStationById(int stationID) throws SQLException {
-        PinStationDTO station = null;
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
         String sql = "SELECT stationID, stationName, location, status, x, y, userID, createAt FROM dbo.pinStation WHERE stationID = ?";
 
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, stationID);
-                rs = ptm.executeQuery();
-
-                if (rs.next()) {
-                    station = new PinStationDTO(
-                            rs.getInt("stationID"),
-                            rs.getString("stationName"),
-                            rs.getString("location"),
-                            rs.getInt("status"),
-                            rs.getTimestamp("createAt"),
-                            rs.getFloat("x"),
-                            rs.getFloat("y"),
-                            rs.getObject("userID", Integer.class));  // Handle nullable Integer
-                }
-
-                System.out.println("Retrieved pin station with ID: " + stationID);
-            }
-        } catch (ClassNotFoundException e) {
-            System.out.println("Database driver not found: " + e.getMessage());
-            throw new SQLException("Database driver not found: " + e.getMessage());
+            PinStationDTO station = QueryExecutor.primary().queryOne(sql, ptm -> ptm.setInt(1, stationID), RowMappers.PIN_STATION);
+            System.out.println("Retrieved pin station with ID: " + stationID);
+            return station;
         } catch (SQLException e) {
             System.out.println("Database error in getPinStationById: " + e.getMessage());
             throw e;
-        } catch (Exception e) {
-            System.out.println("Unexpected error in getPinStationById: " + e.getMessage());
-            throw new SQLException("Failed to get pin station: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-
-        return station;
     }
 
     // Method để lấy danh sách PinStation theo userID
     public List<PinStationDTO> getStationsByUserID(int userID) throws SQLException {
-        List<PinStationDTO> listPinStation = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
         String sql = "SELECT stationID, stationName, location, status, x, y, userID, createAt " +
                     "FROM dbo.pinStation WHERE userID = ? ORDER BY createAt DESC";
 
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, userID);
-                rs = ptm.executeQuery();
-
-                while (rs.next()) {
-                    PinStationDTO station = new PinStationDTO(
-                            rs.getInt("stationID"),
-                            rs.getString("stationName"),
-                            rs.getString("location"),
-                            rs.getInt("status"),
-                            rs.getTimestamp("createAt"),
-                            rs.getFloat("x"),
-                            rs.getFloat("y"),
-                            rs.getObject("userID", Integer.class));  // Handle nullable Integer
-                    
-                    listPinStation.add(station);
-                }
-
-                System.out.println("getStationsByUserID: Retrieved " + listPinStation.size() + " stations for user " + userID);
-            }
-        } catch (ClassNotFoundException e) {
-            System.err.println("getStationsByUserID error: Database driver not found - " + e.getMessage());
-            throw new SQLException("Database driver not found: " + e.getMessage());
+            List<PinStationDTO> listPinStation = QueryExecutor.primary().query(sql, ptm -> ptm.setInt(1, userID), RowMappers.PIN_STATION);
+            System.out.println("getStationsByUserID: Retrieved " + listPinStation.size() + " stations for user " + userID);
+            return listPinStation;
         } catch (SQLException e) {
             System.err.println("getStationsByUserID error: " + e.getMessage());
             throw new SQLException("Error getting stations for user: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-
-        return listPinStation;
     }
 
     // Method để kiểm tra duplicate station name khi update (loại trừ chính nó)
@@ -383,6 +286,53 @@ public class PinStationDAO {
         return false;
     }
 
+    /**
+     * Tìm station active gần vị trí (x = kinh độ, y = vĩ độ) từ spatial index trong bộ nhớ
+     * @param k số station tối đa trả về
+     * @param radiusKm chỉ lấy station trong bán kính này (null là không giới hạn)
+     */
+    public List<NearbyStationDTO> getNearbyStations(double x, double y, int k, Double radiusKm) throws SQLException {
+        StationSpatialIndex index = StationSpatialIndex.shared();
+        if (index.needsRebuild()) {
+            rebuildSpatialIndex(index);
+        }
+        if (radiusKm != null) {
+            return index.withinRadius(y, x, radiusKm, k);
+        }
+        return index.nearest(y, x, k, null);
+    }
+
+    // Load lại toàn bộ station active vào spatial index
+    private void rebuildSpatialIndex(StationSpatialIndex index) throws SQLException {
+        String sql = "SELECT stationID, stationName, location, status, x, y, userID, createAt FROM dbo.pinStation WHERE status = 1";
+
+        try {
+            long version = index.currentVersion();
+            List<PinStationDTO> stations = QueryExecutor.primary().query(sql, StatementBinder.NONE, RowMappers.PIN_STATION);
+            index.rebuild(stations, version);
+            System.out.println("Station spatial index rebuilt with " + stations.size() + " active stations");
+        } catch (SQLException e) {
+            System.out.println("Database error in rebuildSpatialIndex: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    // Cập nhật 1 station trong spatial index sau khi ghi; lỗi thì để lần query sau load lại toàn bộ
+    private void syncSpatialIndex(int stationID) {
+        StationSpatialIndex index = StationSpatialIndex.shared();
+        try {
+            PinStationDTO station = getPinStationById(stationID);
+            if (station != null) {
+                index.upsert(station);
+            } else {
+                index.remove(stationID);
+            }
+        } catch (SQLException e) {
+            System.out.println("Error syncing station spatial index: " + e.getMessage());
+            index.markStale();
+        }
+    }
+
     // Method để kiểm tra status hợp lệ
     public boolean isValidStatus(int status) {
         return status >= 0 && status <= 2; // 0: inactive, 1: active, 2: maintenance
@@ -455,6 +405,9 @@ public class PinStationDAO {
 
                 int rowsAffected = ptm.executeUpdate();
                 success = (rowsAffected > 0);
+                if (success) {
+                    syncSpatialIndex(stationID);
+                }
 
                 System.out.println("Update PinStation - ID: " + stationID +
                         ", Name: " + newStationName +
@@ -496,6 +449,10 @@ public class PinStationDAO {
                 ptm = conn.prepareStatement(UPDATE_PIN_STATION);
                 ptm.setInt(1, stationID);
                 check_pinStation = ptm.executeUpdate() > 0 ? true : false;
+                PinSlotCache.invalidateStation(stationID);
+                if (check_pinStation) {
+                    syncSpatialIndex(stationID);
+                }
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -513,33 +470,7 @@ public class PinStationDAO {
 
     // Method để kiểm tra user role
     private int getUserRole(int userID) throws SQLException {
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-        int roleID = -1;
-
-        String sql = "SELECT roleID FROM users WHERE userID = ?";
-
-        try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, userID);
-                rs = ptm.executeQuery();
-
-                if (rs.next()) {
-                    roleID = rs.getInt("roleID");
-                }
-            }
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("Database driver not found: " + e.getMessage());
-        } finally {
-            if (rs != null) rs.close();
-            if (ptm != null) ptm.close();
-            if (conn != null) conn.close();
-        }
-
-        return roleID;
+        return userRoleDAO.getRoleID(userID);
     }
 
     // Method để kiểm tra staff đã được assign vào trạm nào chưa
@@ -5,9 +5,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.example.demo.cache.RatingAggregates;
 import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.QueryExecutor;
+import com.example.demo.dbUnits.StatementBinder;
 import com.example.demo.dto.RatingDTO;
 
 /**
@@ -177,6 +182,8 @@ public class RatingDAO {
         String sql = "INSERT INTO dbo.rating (stationID, userID, rating, createAt) VALUES (?, ?, ?, GETDATE())";
         
         try {
+            // Trước INSERT: load thống kê chạy song song không bị tính rating này 2 lần
+            long writeVersion = RatingAggregates.beginWrite();
             conn = DBUtils.getConnection();
             if (conn != null) {
                 ptm = conn.prepareStatement(sql);
@@ -190,6 +197,9 @@ public class RatingDAO {
                 
                 int rowsAffected = ptm.executeUpdate();
                 success = (rowsAffected > 0);
+                if (success) {
+                    RatingAggregates.record(stationID, rating, writeVersion);
+                }
                 
                 System.out.println("Create Rating - StationID: " + stationID + ", UserID: " + userID + ", Rating: " + rating + " stars, Rows affected: " + rowsAffected);
             }
@@ -267,55 +277,50 @@ public class RatingDAO {
         return ratings;
     }
     
-    // Method để tính rating trung bình theo stationID
+    // Method để tính rating trung bình theo stationID (từ thống kê trong bộ nhớ)
     public double getAverageRating(int stationID) throws SQLException {
-        double averageRating = 0.0;
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-        
-        String sql = "SELECT AVG(CAST(rating AS FLOAT)) as avgRating, COUNT(*) as totalRatings FROM dbo.rating WHERE stationID = ?";
+        int[] statistics = getRatingStatistics(stationID);
+        double averageRating = RatingAggregates.average(statistics);
+        System.out.println("Station ID: " + stationID + " - Average Rating: " + String.format("%.2f", averageRating));
+        return averageRating;
+    }
+    
+    // Method để lấy thống kê rating (số lượng rating theo từng sao)
+    public int[] getRatingStatistics(int stationID) throws SQLException {
+        // Chưa load được thống kê trong bộ nhớ thì thử load lại, vẫn chưa được thì query trực tiếp
+        if (RatingAggregates.isLoaded() || rebuildRatingAggregates()) {
+            return RatingAggregates.getHistogram(stationID);
+        }
+        return queryRatingStatistics(stationID);
+    }
+    
+    /**
+     * Load lại thống kê rating của tất cả station bằng 1 câu GROUP BY
+     * @return false nếu kết quả bị bỏ do có rating mới trong lúc load
+     */
+    public boolean rebuildRatingAggregates() throws SQLException {
+        String sql = "SELECT stationID, rating, COUNT(*) AS total FROM dbo.rating GROUP BY stationID, rating";
         
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, stationID);
-                rs = ptm.executeQuery();
-                
-                if (rs.next()) {
-                    averageRating = rs.getDouble("avgRating");
-                    int totalRatings = rs.getInt("totalRatings");
-                    
-                    System.out.println("Station ID: " + stationID + " - Average Rating: " + String.format("%.2f", averageRating) + " (" + totalRatings + " ratings)");
+            long version = RatingAggregates.currentVersion();
+            Map<Integer, int[]> histograms = new HashMap<>();
+            QueryExecutor.primary().stream(sql, StatementBinder.NONE, rs -> new int[] {
+                    rs.getInt("stationID"), rs.getInt("rating"), rs.getInt("total") }, row -> {
+                if (row[1] >= 1 && row[1] <= 5) {
+                    histograms.computeIfAbsent(row[0], id -> new int[6])[row[1]] = row[2];
                 }
-            }
-        } catch (ClassNotFoundException e) {
-            System.out.println("Database driver not found: " + e.getMessage());
-            throw new SQLException("Database driver not found: " + e.getMessage());
+            });
+            boolean rebuilt = RatingAggregates.rebuild(histograms, version);
+            System.out.println("Rating aggregates " + (rebuilt ? "rebuilt" : "discarded") + " for " + histograms.size() + " stations");
+            return rebuilt;
         } catch (SQLException e) {
-            System.out.println("Database error in getAverageRating: " + e.getMessage());
+            System.out.println("Database error in rebuildRatingAggregates: " + e.getMessage());
             throw e;
-        } catch (Exception e) {
-            System.out.println("Unexpected error in getAverageRating: " + e.getMessage());
-            throw new SQLException("Failed to get average rating: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-        
-        return averageRating;
     }
     
-    // Method để lấy thống kê rating (số lượng rating theo từng sao)
-    public int[] getRatingStatistics(int stationID) throws SQLException {
+    // Query trực tiếp số lượng rating theo từng sao (khi chưa có thống kê trong bộ nhớ)
+    private int[] queryRatingStatistics(int stationID) throws SQLException {
         int[] statistics = new int[6]; // Index 0 không dùng, 1-5 cho 1-5 sao
         Connection conn = null;
         PreparedStatement ptm = null;
@@ -10,22 +10,26 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dto.AuthPrincipal;
 import com.example.demo.dto.ReportDTO;
 
 public class ReportDAO {
 
+    // Role của người gọi lấy từ token (AuthPrincipal), chỉ user được xem (không phải người gọi) mới tra qua UserRoleDAO
+    private final UserRoleDAO userRoleDAO = new UserRoleDAO();
+
     /**
      * Create a new report
-     * Only users with roleID = 1 can create reports
+     * Only users with roleID = 1 can create reports, reporter là người gọi (token)
      */
-    public boolean createReport(ReportDTO report) throws SQLException {
+    public boolean createReport(ReportDTO report, AuthPrincipal reporter) throws SQLException {
         // Validate input
         if (report == null || !report.isValidType() || !report.isValidDescription() || !report.isValidReporter()) {
             throw new SQLException("Invalid report data");
         }
 
         // Check if reporter has correct role (roleID = 1)
-        if (!isUserRole(report.getReporterId(), 1)) {
+        if (!isCallerRole(reporter, 1) || report.getReporterId() != reporter.getUserID()) {
             throw new SQLException("Only users with roleID = 1 can create reports");
         }
 
@@ -70,9 +74,9 @@ public class ReportDAO {
     /**
      * Get all reports - Only admins (roleID = 3) can access
      */
-    public List<ReportDTO> getAllReports(int adminId) throws SQLException {
+    public List<ReportDTO> getAllReports(AuthPrincipal admin) throws SQLException {
         // Check if user is admin
-        if (!isUserRole(adminId, 3)) {
+        if (!isCallerRole(admin, 3)) {
             throw new SQLException("Only admins can view all reports");
         }
 
@@ -113,9 +117,9 @@ public class ReportDAO {
     /**
      * Get pending reports - Only admins (roleID = 3) can access
      */
-    public List<ReportDTO> getPendingReports(int adminId) throws SQLException {
+    public List<ReportDTO> getPendingReports(AuthPrincipal admin) throws SQLException {
         // Check if user is admin
-        if (!isUserRole(adminId, 3)) {
+        if (!isCallerRole(admin, 3)) {
             throw new SQLException("Only admins can view pending reports");
         }
 
@@ -160,9 +164,9 @@ public class ReportDAO {
     /**
      * Update report status - Only admins (roleID = 3) can update
      */
-    public boolean updateReportStatus(int reportId, int newStatus, int adminId) throws SQLException {
+    public boolean updateReportStatus(int reportId, int newStatus, AuthPrincipal admin) throws SQLException {
         // Check if user is admin
-        if (!isUserRole(adminId, 3)) {
+        if (!isCallerRole(admin, 3)) {
             throw new SQLException("Only admins can update report status");
         }
 
@@ -184,7 +188,7 @@ public class ReportDAO {
                 
                 if (newStatus > 0) {
                     // If moving from Pending to InProgress or Resolved, set admin as handler
-                    ptm.setInt(2, adminId);
+                    ptm.setInt(2, admin.getUserID());
                 } else {
                     ptm.setNull(2, java.sql.Types.INTEGER);
                 }
@@ -193,7 +197,7 @@ public class ReportDAO {
                 int rowsAffected = ptm.executeUpdate();
                 result = rowsAffected > 0;
                 
-                System.out.println("updateReportStatus: " + rowsAffected + " rows affected - Report " + reportId + " status updated to " + newStatus + " by admin " + adminId);
+                System.out.println("updateReportStatus: " + rowsAffected + " rows affected - Report " + reportId + " status updated to " + newStatus + " by admin " + admin.getUserID());
             }
         } catch (ClassNotFoundException e) {
             System.err.println("updateReportStatus error: Database driver not found - " + e.getMessage());
@@ -212,11 +216,12 @@ public class ReportDAO {
     /**
      * Get reports by reporter (for users to view their own reports)
      */
-    public List<ReportDTO> getReportsByReporter(int reporterId) throws SQLException {
-        // Verify that the reporterId corresponds to a user (roleID = 1)
-        if (!isUserRole(reporterId, 1)) {
+    public List<ReportDTO> getReportsByReporter(AuthPrincipal reporter) throws SQLException {
+        // Verify that the reporter is a user (roleID = 1)
+        if (!isCallerRole(reporter, 1)) {
             throw new SQLException("Invalid reporter ID");
         }
+        int reporterId = reporter.getUserID();
 
         List<ReportDTO> reports = new ArrayList<>();
         Connection conn = null;
@@ -256,9 +261,9 @@ public class ReportDAO {
     /**
      * Get reports by user ID (for admin to view any user's reports)
      */
-    public List<ReportDTO> getReportsByUserId(int userId, int adminId) throws SQLException {
-        // Verify that adminId is an admin (roleID = 3)
-        if (!isUserRole(adminId, 3)) {
+    public List<ReportDTO> getReportsByUserId(int userId, AuthPrincipal admin) throws SQLException {
+        // Verify that the caller is an admin (roleID = 3)
+        if (!isCallerRole(admin, 3)) {
             throw new SQLException("Access denied. Only admins can view reports by user ID.");
         }
 
@@ -285,7 +290,7 @@ public class ReportDAO {
                     reports.add(mapResultSetToReport(rs));
                 }
                 
-                System.out.println("getReportsByUserId: Retrieved " + reports.size() + " reports for user " + userId + " by admin " + adminId);
+                System.out.println("getReportsByUserId: Retrieved " + reports.size() + " reports for user " + userId + " by admin " + admin.getUserID());
             }
         } catch (ClassNotFoundException e) {
             System.err.println("getReportsByUserId error: Database driver not found - " + e.getMessage());
@@ -319,43 +324,20 @@ public class ReportDAO {
 
 
 
-    // Helper method to check user role
+    // Helper method to check the caller's role: role trong token đã verify, không query users
+    // (UserDAO.update / updateStatus thu hồi token khi đổi role / khóa user)
+    private boolean isCallerRole(AuthPrincipal caller, int expectedRole) {
+        return caller != null && caller.getStatus() == 1 && caller.getRoleID() == expectedRole;
+    }
+
+    // Helper method to check role of another user (not the caller)
     private boolean isUserRole(int userId, int expectedRole) throws SQLException {
         return getUserRole(userId) == expectedRole;
     }
 
     // Helper method to get user role
     private int getUserRole(int userId) throws SQLException {
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-        int roleID = -1;
-        
-        String sql = "SELECT roleID FROM users WHERE userID = ?";
-        
-        try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, userId);
-                rs = ptm.executeQuery();
-                
-                if (rs.next()) {
-                    roleID = rs.getInt("roleID");
-                }
-            }
-        } catch (ClassNotFoundException e) {
-            System.err.println("getUserRole error: Database driver not found - " + e.getMessage());
-            throw new SQLException("Database driver not found: " + e.getMessage());
-        } catch (SQLException e) {
-            System.err.println("getUserRole error: " + e.getMessage());
-            throw new SQLException("Error checking user role: " + e.getMessage());
-        } finally {
-            if (rs != null) rs.close();
-            if (ptm != null) ptm.close();
-            if (conn != null) conn.close();
-        }
-        
-        return roleID;
+        // Đọc qua cache dùng chung, chỉ query users khi cache miss
+        return userRoleDAO.getRoleID(userId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.example.demo.dao;
+
+import com.example.demo.dbUnits.RowMapper;
+import com.example.demo.dto.PinSlotDTO;
+import com.example.demo.dto.PinStationDTO;
+import com.example.demo.dto.StationAvailabilityDTO;
+import com.example.demo.dto.TransactionDTO;
+import com.example.demo.dto.VNPayPaymentDTO;
+import com.example.demo.dto.VehicleDTO;
+
+/**
+ * Row mapper dùng chung cho các DAO (ResultSet -> DTO)
+ * Tên cột phải khớp với danh sách cột SELECT tương ứng trong DAO.
+ */
+public final class RowMappers {
+
+    private RowMappers() {
+    }
+
+    // SELECT pinID, pinPercent, pinHealth, pinStatus, status, userID, vehicleID, stationID
+    public static final RowMapper<PinSlotDTO> PIN_SLOT = rs -> new PinSlotDTO(
+            rs.getInt("pinID"),
+            rs.getInt("pinPercent"),
+            rs.getInt("pinHealth"),
+            rs.getInt("pinStatus"),
+            rs.getInt("status"),
+            rs.getObject("userID", Integer.class),
+            rs.getObject("vehicleID", Integer.class),
+            rs.getInt("stationID"));
+
+    // SELECT transactionID, userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt
+    public static final RowMapper<TransactionDTO> TRANSACTION = rs -> new TransactionDTO(
+            rs.getInt("transactionID"),
+            rs.getInt("userID"),
+            rs.getInt("vehicleID"),
+            rs.getInt("amount"),
+            rs.getInt("pack"),
+            rs.getInt("stationID"),
+            rs.getInt("pinID"),
+            rs.getInt("status"),
+            rs.getTimestamp("createAt"),
+            rs.getTimestamp("expireAt"));
+
+    // SELECT vehicleID, userID, licensePlate, vehicleType, pinPercent, pinHealth
+    public static final RowMapper<VehicleDTO> VEHICLE = rs -> new VehicleDTO(
+            rs.getInt("vehicleID"),
+            rs.getInt("userID"),
+            rs.getString("licensePlate"),
+            rs.getString("vehicleType"),
+            rs.getInt("pinPercent"),
+            rs.getInt("pinHealth"));
+
+    // SELECT stationID, stationName, location, status, x, y, userID, createAt
+    public static final RowMapper<PinStationDTO> PIN_STATION = rs -> new PinStationDTO(
+            rs.getInt("stationID"),
+            rs.getString("stationName"),
+            rs.getString("location"),
+            rs.getInt("status"),
+            rs.getTimestamp("createAt"),
+            rs.getFloat("x"),
+            rs.getFloat("y"),
+            rs.getObject("userID", Integer.class));
+
+    // SELECT paymentID, packID, vnp_Amount, updatedAt, total, userID (thống kê gói dịch vụ)
+    public static final RowMapper<VNPayPaymentDTO> PAYMENT_STATISTIC = rs -> new VNPayPaymentDTO(
+            rs.getInt("packID"),
+            rs.getInt("paymentID"),
+            rs.getLong("vnp_Amount"),
+            rs.getString("updatedAt"),
+            rs.getInt("total"),
+            rs.getInt("userID"));
+
+    // SELECT stationID, totalSlots, available, reserved, charging, [full] (đếm slot theo trạng thái)
+    public static final RowMapper<StationAvailabilityDTO> STATION_AVAILABILITY = rs -> new StationAvailabilityDTO(
+            rs.getInt("stationID"),
+            rs.getInt("totalSlots"),
+            rs.getInt("available"),
+            rs.getInt("reserved"),
+            rs.getInt("charging"),
+            rs.getInt("full"));
+}
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dto.AuthPrincipal;
 import com.example.demo.dto.ServicePackDTO;
 
 /**
@@ -32,58 +33,14 @@ import com.example.demo.dto.ServicePackDTO;
 public class ServicePackDAO {
 
     /**
-     * Kiểm tra user có phải admin không (roleID = 3)
+     * Kiểm tra người gọi có phải admin không (roleID = 3)
      * Sử dụng để validate quyền trước khi thực hiện các thao tác CRUD
-     * @param userID ID của user cần kiểm tra
-     * @return true nếu user là admin (roleID=3), false nếu không
-     * @throws SQLException nếu có lỗi database
+     * @param caller người gọi lấy từ token đăng nhập (đã verify chữ ký, hạn và danh sách thu hồi)
+     * @return true nếu người gọi là admin (roleID=3) đang active, false nếu không
      */
-    // Method để check admin role (roleID = 3)
-    private boolean isAdminUser(int userID) throws SQLException {
-        // Khởi tạo các đối tượng database connection
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
-        // SQL lấy roleID từ bảng users
-        String sql = "SELECT roleID FROM users WHERE userID = ?";
-
-        try {
-            // Mở kết nối database
-            conn = DBUtils.getConnection();
-            
-            // Kiểm tra kết nối thành công
-            if (conn != null) {
-                // Chuẩn bị prepared statement
-                ptm = conn.prepareStatement(sql);
-                
-                // Gán userID vào parameter
-                ptm.setInt(1, userID);
-                
-                // Thực thi query
-                rs = ptm.executeQuery();
-
-                // Kiểm tra có kết quả (user tồn tại)
-                if (rs.next()) {
-                    // Lấy roleID từ database
-                    int roleID = rs.getInt("roleID");
-                    
-                    // Kiểm tra roleID = 3 (Admin)
-                    return roleID == 3; // Admin role
-                }
-            }
-        } catch (ClassNotFoundException e) {
-            // Lỗi không tìm thấy database driver
-            throw new SQLException("Database driver not found: " + e.getMessage());
-        } finally {
-            // Đóng tất cả resources
-            if (rs != null) rs.close();        // Đóng ResultSet
-            if (ptm != null) ptm.close();      // Đóng PreparedStatement
-            if (conn != null) conn.close();    // Đóng Connection
-        }
-
-        // Trả về false nếu user không tồn tại hoặc không phải admin
-        return false; // User không tồn tại hoặc không phải admin
+    // Method để check admin role (roleID = 3), không query users
+    private boolean isAdminUser(AuthPrincipal caller) {
+        return caller != null && caller.getStatus() == 1 && caller.getRoleID() == 3; // Admin role
     }
 
 
@@ -141,15 +98,15 @@ public class ServicePackDAO {
      * Tạo gói dịch vụ mới trong hệ thống
      * Chỉ admin (roleID=3) mới được phép thực hiện thao tác này
      * @param servicePack Thông tin gói dịch vụ cần tạo
-     * @param adminUserID ID của admin thực hiện tạo
+     * @param admin admin thực hiện tạo (token đăng nhập)
      * @return true nếu tạo thành công, false nếu thất bại
      * @throws SQLException nếu có lỗi validation hoặc database
      */
     // Method để tạo ServicePack mới (chỉ admin)
-    public boolean createServicePack(ServicePackDTO servicePack, int adminUserID) throws SQLException {
+    public boolean createServicePack(ServicePackDTO servicePack, AuthPrincipal admin) throws SQLException {
         // Kiểm tra quyền admin trước khi thực hiện
         // Validate admin permission
-        if (!isAdminUser(adminUserID)) {
+        if (!isAdminUser(admin)) {
             throw new SQLException("Access denied. Only admin users (roleID=3) can create service packs");
         }
 
@@ -234,9 +191,9 @@ public class ServicePackDAO {
     }
 
     // Method để update ServicePack (chỉ admin) - Update toàn bộ thông tin
-    public boolean updateServicePack(int packID, ServicePackDTO servicePack, int adminUserID) throws SQLException {
+    public boolean updateServicePack(int packID, ServicePackDTO servicePack, AuthPrincipal admin) throws SQLException {
         // Validate admin permission
-        if (!isAdminUser(adminUserID)) {
+        if (!isAdminUser(admin)) {
             throw new SQLException("Access denied. Only admin users (roleID=3) can update service packs");
         }
 
@@ -291,9 +248,9 @@ public class ServicePackDAO {
     }
 
     // Method để update chỉ status của ServicePack (chỉ admin)
-    public boolean updateServicePackStatus(int packID, int status, int adminUserID) throws SQLException {
+    public boolean updateServicePackStatus(int packID, int status, AuthPrincipal admin) throws SQLException {
         // Validate admin permission
-        if (!isAdminUser(adminUserID)) {
+        if (!isAdminUser(admin)) {
             throw new SQLException("Access denied. Only admin users (roleID=3) can update service pack status");
         }
 
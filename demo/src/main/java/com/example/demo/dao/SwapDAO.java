@@ -0,0 +1,175 @@
+package com.example.demo.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.example.demo.cache.ChargingStaleTracker;
+import com.example.demo.cache.PinSlotCache;
+import com.example.demo.cache.TransactionExpiryQueue;
+import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.QueryExecutor;
+import com.example.demo.dto.SwapResult;
+import com.example.demo.dto.SwapResultDTO;
+
+/**
+ * DAO thực hiện trọn 1 lần đổi pin trong 1 DB transaction, 1 round trip
+ *
+ * Thay cho chuỗi API client phải tự gọi: /pinSlot/reserve -> /transaction/create -> /vehicle/PinSwap
+ * -> /subscription/decrementTotal -> /transaction/updateStatus (crash giữa chừng để lại dữ liệu dở dang).
+ *
+ * Database table: SwapRequest (sql/create_swap_request_table.sql) - kết quả swap theo Idempotency-Key
+ */
+public class SwapDAO {
+
+    // 1. Idempotency: key đã swap thành công với cùng tham số (user, xe, trạm, slot, pack, amount) -> trả lại kết quả cũ,
+    //    key dùng cho swap khác -> IDEMPOTENCY_KEY_CONFLICT, không trả dữ liệu của swap cũ
+    //    (UPDLOCK + HOLDLOCK để request trùng key chờ nhau)
+    // 2. Kiểm tra vehicle / driver / slot (khóa dòng vehicle và slot đến hết transaction)
+    // 3. Trừ 1 lượt trong Subscription, đổi pinPercent / pinHealth giữa xe và slot,
+    //    slot trở về available (pinStatus theo pin vừa nhận), hoàn tất booking pending của user trên slot hoặc tạo transaction mới
+    // 4. Lưu SwapRequest, commit
+    private static final String EXECUTE_SWAP_SQL =
+            "SET NOCOUNT ON; SET XACT_ABORT ON; " +
+            "DECLARE @key VARCHAR(64) = ?, @userID INT = ?, @vehicleID INT = ?, @stationID INT = ?, @pinID INT = ?, " +
+            "        @pack INT = ?, @amount INT = ?; " +
+            "DECLARE @started DATETIME2 = SYSDATETIME(); " +
+            "DECLARE @reason VARCHAR(32), @replayed BIT = 0, @transactionID INT, @remaining INT, " +
+            "        @vehicleFound BIT = 0, @owner INT, @roleID INT, @userStatus INT, @vPercent INT, @vHealth INT, " +
+            "        @slotStation INT, @slotStatus INT, @slotPinStatus INT, @slotUser INT, @sPercent INT, @sHealth INT, " +
+            "        @found BIT = 0, @rUser INT, @rVehicle INT, @rPin INT, @rStation INT, @rPack INT, @rAmount INT, " +
+            "        @newVehiclePercent INT, @newVehicleHealth INT, @newSlotPercent INT, @newSlotHealth INT; " +
+            "BEGIN TRAN; " +
+            "SELECT @found = 1, @transactionID = transactionID, @rUser = userID, @rVehicle = vehicleID, @rPin = pinID, " +
+            "       @rStation = stationID, @rPack = pack, @rAmount = amount, " +
+            "       @newVehiclePercent = vehiclePinPercent, @newVehicleHealth = vehiclePinHealth, " +
+            "       @newSlotPercent = slotPinPercent, @newSlotHealth = slotPinHealth, @remaining = remainingTotal " +
+            "FROM dbo.SwapRequest WITH (UPDLOCK, HOLDLOCK) WHERE requestKey = @key; " +
+            "IF @found = 1 AND @rUser = @userID AND @rVehicle = @vehicleID AND @rPin = @pinID AND @rStation = @stationID " +
+            "   AND @rPack = @pack AND @rAmount = @amount " +
+            "    SELECT @reason = 'SWAPPED', @replayed = 1 " +
+            "ELSE IF @found = 1 " +
+            "    SELECT @reason = 'IDEMPOTENCY_KEY_CONFLICT', @transactionID = NULL, @remaining = NULL, " +
+            "           @newVehiclePercent = NULL, @newVehicleHealth = NULL, @newSlotPercent = NULL, @newSlotHealth = NULL " +
+            "ELSE " +
+            "BEGIN " +
+            "    SELECT @vehicleFound = 1, @owner = v.userID, @roleID = u.roleID, @userStatus = u.status, " +
+            "           @vPercent = v.pinPercent, @vHealth = v.pinHealth " +
+            "    FROM Vehicle v WITH (UPDLOCK) LEFT JOIN users u ON u.userID = v.userID WHERE v.vehicleID = @vehicleID; " +
+            "    SELECT @slotStation = stationID, @slotStatus = status, @slotPinStatus = pinStatus, @slotUser = userID, " +
+            "           @sPercent = pinPercent, @sHealth = pinHealth " +
+            "    FROM pinSlot WITH (UPDLOCK) WHERE pinID = @pinID; " +
+            "    IF @vehicleFound = 0 SET @reason = 'VEHICLE_NOT_FOUND' " +
+            "    ELSE IF @owner IS NULL OR @owner <> @userID SET @reason = 'VEHICLE_NOT_OWNED' " +
+            "    ELSE IF @roleID IS NULL OR @roleID <> 1 OR @userStatus <> 1 SET @reason = 'NOT_ACTIVE_DRIVER' " +
+            "    ELSE IF @slotStation IS NULL SET @reason = 'PIN_SLOT_NOT_FOUND' " +
+            "    ELSE IF @slotStation <> @stationID SET @reason = 'PIN_SLOT_NOT_IN_STATION' " +
+            "    ELSE IF NOT (@slotStatus = 1 OR (@slotStatus = 2 AND @slotUser = @userID)) SET @reason = 'PIN_SLOT_NOT_AVAILABLE' " +
+            "    ELSE IF @slotPinStatus <> 1 SET @reason = 'PIN_SLOT_NOT_CHARGED'; " +
+            "    IF @reason IS NULL " +
+            "    BEGIN " +
+            "        UPDATE Subscription SET @remaining = total = total - 1 WHERE userID = @userID AND total > 0; " +
+            "        IF @@ROWCOUNT = 0 SET @reason = 'NO_SUBSCRIPTION_BALANCE'; " +
+            "    END; " +
+            "    IF @reason IS NULL " +
+            "    BEGIN " +
+            "        SELECT @newVehiclePercent = @sPercent, @newVehicleHealth = @sHealth, " +
+            "               @newSlotPercent = @vPercent, @newSlotHealth = @vHealth; " +
+            "        UPDATE Vehicle SET pinPercent = @newVehiclePercent, pinHealth = @newVehicleHealth WHERE vehicleID = @vehicleID; " +
+            "        UPDATE pinSlot SET pinPercent = @newSlotPercent, pinHealth = @newSlotHealth, " +
+            "               pinStatus = CASE WHEN @newSlotPercent >= 100 THEN 1 ELSE 0 END, " +
+            "               status = 1, userID = NULL, vehicleID = NULL " +
+            "        WHERE pinID = @pinID; " +
+            "        UPDATE TOP (1) dbo.[Transaction] SET @transactionID = transactionID, status = 1 " +
+            "        WHERE userID = @userID AND pinID = @pinID AND status = 0; " +
+            "        IF @transactionID IS NULL " +
+            "        BEGIN " +
+            "            INSERT INTO dbo.[Transaction] (userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt) " +
+            "            VALUES (@userID, @vehicleID, @amount, @pack, @stationID, @pinID, 1, GETDATE(), DATEADD(HOUR, 1, GETDATE())); " +
+            "            SET @transactionID = CAST(SCOPE_IDENTITY() AS INT); " +
+            "        END; " +
+            "        INSERT INTO dbo.SwapRequest (requestKey, userID, vehicleID, stationID, pinID, pack, amount, transactionID, " +
+            "               vehiclePinPercent, vehiclePinHealth, slotPinPercent, slotPinHealth, remainingTotal) " +
+            "        VALUES (@key, @userID, @vehicleID, @stationID, @pinID, @pack, @amount, @transactionID, " +
+            "               @newVehiclePercent, @newVehicleHealth, @newSlotPercent, @newSlotHealth, @remaining); " +
+            "        SET @reason = 'SWAPPED'; " +
+            "    END; " +
+            "END; " +
+            "IF @reason = 'SWAPPED' AND @replayed = 0 BEGIN COMMIT TRAN; END ELSE BEGIN ROLLBACK TRAN; END; " +
+            "SELECT @reason AS reason, @replayed AS replayed, @transactionID AS transactionID, @remaining AS remainingTotal, " +
+            "       @newVehiclePercent AS vehiclePinPercent, @newVehicleHealth AS vehiclePinHealth, " +
+            "       @newSlotPercent AS slotPinPercent, @newSlotHealth AS slotPinHealth, " +
+            "       DATEDIFF(MICROSECOND, @started, SYSDATETIME()) AS serverMicros";
+
+    /**
+     * Đổi pin cho xe tại 1 slot: kiểm tra, trừ lượt subscription, đổi dữ liệu pin, ghi transaction, tất cả hoặc không gì cả
+     * @param requestKey Idempotency-Key của client (gửi lại cùng key -> nhận lại kết quả cũ, không swap lần 2)
+     * @return kết quả kèm latency: connectionAcquire, database (round trip), databaseServer
+     * @throws SQLException nếu có lỗi database (transaction đã rollback)
+     */
+    public SwapResultDTO executeSwap(String requestKey, int userID, int vehicleID, int stationID, int pinID, int pack, int amount) throws SQLException {
+        SwapResultDTO dto = new SwapResultDTO();
+        dto.setUserID(userID);
+        dto.setVehicleID(vehicleID);
+        dto.setStationID(stationID);
+        dto.setPinID(pinID);
+
+        long start = System.nanoTime();
+        long acquired = start;
+        long executed;
+        long serverMicros = 0;
+
+        try (Connection conn = DBUtils.getConnection()) {
+            acquired = System.nanoTime();
+            try (PreparedStatement ptm = conn.prepareStatement(EXECUTE_SWAP_SQL)) {
+                ptm.setString(1, requestKey);
+                ptm.setInt(2, userID);
+                ptm.setInt(3, vehicleID);
+                ptm.setInt(4, stationID);
+                ptm.setInt(5, pinID);
+                ptm.setInt(6, pack);
+                ptm.setInt(7, amount);
+                try (ResultSet rs = QueryExecutor.executeForResultSet(ptm)) {
+                    if (!rs.next()) {
+                        throw new SQLException("Swap batch returned no result");
+                    }
+                    dto.setResult(SwapResult.valueOf(rs.getString("reason")));
+                    dto.setReplayed(rs.getBoolean("replayed"));
+                    // Chỉ swap thành công (hoặc replay) mới có dữ liệu, còn lại để null
+                    if (dto.isSuccess()) {
+                        dto.setTransactionID(rs.getInt("transactionID"));
+                        dto.setRemainingTotal(rs.getInt("remainingTotal"));
+                        dto.setVehiclePinPercent(rs.getInt("vehiclePinPercent"));
+                        dto.setVehiclePinHealth(rs.getInt("vehiclePinHealth"));
+                        dto.setSlotPinPercent(rs.getInt("slotPinPercent"));
+                        dto.setSlotPinHealth(rs.getInt("slotPinHealth"));
+                    }
+                    serverMicros = rs.getLong("serverMicros");
+                }
+            }
+            executed = System.nanoTime();
+        } catch (ClassNotFoundException e) {
+            System.out.println("ClassNotFoundException in executeSwap: " + e.getMessage());
+            throw new SQLException("Database driver not found");
+        } catch (SQLException e) {
+            System.out.println("SQLException in executeSwap: " + e.getMessage());
+            throw new SQLException("Error executing swap: " + e.getMessage());
+        }
+
+        if (dto.isSuccess() && !dto.isReplayed()) {
+            // Slot đổi pin + trạng thái, booking pending (nếu có) đã hoàn tất
+            PinSlotCache.invalidateStation(stationID);
+            ChargingStaleTracker.markPinStale(pinID);
+            TransactionExpiryQueue.cancel(dto.getTransactionID());
+        }
+
+        dto.getLatencyMillis().put("connectionAcquire", (acquired - start) / 1e6);
+        dto.getLatencyMillis().put("database", (executed - acquired) / 1e6);
+        dto.getLatencyMillis().put("databaseServer", serverMicros / 1e3);
+
+        System.out.println("Swap " + requestKey + " - UserID: " + userID + ", VehicleID: " + vehicleID + ", StationID: " + stationID
+                + ", PinID: " + pinID + ", Result: " + dto.getResult() + (dto.isReplayed() ? " (replayed)" : ""));
+        return dto;
+    }
+}
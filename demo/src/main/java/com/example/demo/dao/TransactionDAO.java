@@ -4,11 +4,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Date;
+import java.sql.Timestamp;
 import java.util.List;
 
+import com.example.demo.cache.PinSlotCache;
+import com.example.demo.cache.TransactionExpiryQueue;
+import com.example.demo.cache.UserRoleCache.UserRole;
 import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.QueryExecutor;
+import com.example.demo.dbUnits.RowHandler;
+import com.example.demo.dbUnits.StatementBinder;
+import com.example.demo.dto.PageCursor;
+import com.example.demo.dto.TransactionCreateResult;
 import com.example.demo.dto.TransactionDTO;
 
 /**
@@ -35,231 +42,128 @@ import com.example.demo.dto.TransactionDTO;
  */
 public class TransactionDAO {
 
+    // Tra cứu role qua cache dùng chung (UserRoleCache)
+    private final UserRoleDAO userRoleDAO = new UserRoleDAO();
+
     /**
-     * Lấy danh sách tất cả giao dịch trong hệ thống
+     * Lấy danh sách giao dịch trong hệ thống (theo trang, mới nhất trước)
      * Sử dụng bởi admin để xem tổng quan giao dịch
-     * @return List chứa tất cả TransactionDTO
+     * @param cursor cursor của trang trước (null = trang đầu)
+     * @param limit số dòng tối đa
+     * @return List TransactionDTO của trang
      * @throws SQLException nếu có lỗi database
      */
-    // Method để lấy tất cả transactions
-    public List<TransactionDTO> listTransaction() throws SQLException {
-        // Khởi tạo list chứa kết quả
-        List<TransactionDTO> listTransaction = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
-        // SQL lấy tất cả thông tin giao dịch từ bảng Transaction
-        String sql = "SELECT transactionID, userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt FROM [TestSchedule].[dbo].[Transaction]";
-
+    // Method để lấy transactions (keyset pagination)
+    public List<TransactionDTO> listTransaction(PageCursor cursor, int limit) throws SQLException {
         try {
-            // Mở kết nối database
-            conn = DBUtils.getConnection();
-            
-            // Kiểm tra kết nối thành công
-            if (conn != null) {
-                // Chuẩn bị prepared statement
-                ptm = conn.prepareStatement(sql);
-                
-                // Thực thi query
-                rs = ptm.executeQuery();
+            List<TransactionDTO> listTransaction = getTransactionPage(QueryExecutor.replica(), null, 0, cursor, limit);
 
-                // Duyệt qua tất cả kết quả
-                while (rs.next()) {
-                    // Lấy từng field từ ResultSet
-                    int transactionID = rs.getInt("transactionID");    // ID giao dịch (PK)
-                    int userID = rs.getInt("userID");                  // ID user thực hiện
-                    int vehicleID = rs.getInt("vehicleID");            // ID xe được sạc
-                    int amount = rs.getInt("amount");                  // Số tiền giao dịch
-                    int pack = rs.getInt("pack");                      // ID gói dịch vụ
-                    int stationID = rs.getInt("stationID");            // ID trạm sạc
-                    int pinID = rs.getInt("pinID");                    // ID cổng sạc
-                    int status = rs.getInt("status");                  // Trạng thái giao dịch
-                    Date createAt = rs.getTimestamp("createAt");       // Thời gian tạo
-                    Date expireAt = rs.getTimestamp("expireAt");       // Thời gian hết hạn
-
-                    // Tạo TransactionDTO với constructor đầy đủ bao gồm cả userID và vehicleID
-                    TransactionDTO transaction = new TransactionDTO(transactionID, userID, vehicleID, amount, pack, 
-                                                                   stationID, pinID, status, createAt, expireAt);
-                    
-                    // Thêm vào list kết quả
-                    listTransaction.add(transaction);
-                }
-
-                // Log số lượng giao dịch đã lấy được (cho debugging)
-                System.out.println("Retrieved " + listTransaction.size() + " transactions from database");
-            }
-        } catch (Exception e) {
+            // Log số lượng giao dịch đã lấy được (cho debugging)
+            System.out.println("Retrieved " + listTransaction.size() + " transactions from database");
+            return listTransaction;
+        } catch (SQLException e) {
             // Log lỗi và ném SQLException
             System.out.println("Error getting transaction list: " + e.getMessage());
             throw new SQLException("Error getting transaction list: " + e.getMessage());
-        } finally {
-            // Đóng tất cả resources
-            if (rs != null) {
-                rs.close();                    // Đóng ResultSet
-            }
-            if (ptm != null) {
-                ptm.close();                   // Đóng PreparedStatement
-            }
-            if (conn != null) {
-                conn.close();                  // Đóng Connection
-            }
         }
-
-        // Trả về list chứa tất cả giao dịch
-        return listTransaction;
     }
 
-    // Method để lấy danh sách transaction theo vehicleID
-    public List<TransactionDTO> getTransactionsByVehicle(int vehicleID) throws SQLException {
-        List<TransactionDTO> listTransaction = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
+    /**
+     * Export toàn bộ giao dịch dạng streaming (mới nhất trước)
+     * Mỗi dòng được đưa ngay cho handler, không buffer cả bảng vào list
+     * @return số dòng đã export
+     */
+    public int streamTransactions(RowHandler<TransactionDTO> handler) throws SQLException {
         String sql = "SELECT transactionID, userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt " +
-                    "FROM [TestSchedule].[dbo].[Transaction] WHERE vehicleID = ? ORDER BY createAt DESC";
+                    "FROM dbo.[Transaction] ORDER BY createAt DESC, transactionID DESC";
 
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, vehicleID);
-                rs = ptm.executeQuery();
-
-                while (rs.next()) {
-                    int transactionID = rs.getInt("transactionID");
-                    int userID = rs.getInt("userID");
-                    int txnVehicleID = rs.getInt("vehicleID");
-                    int amount = rs.getInt("amount");
-                    int pack = rs.getInt("pack");
-                    int stationID = rs.getInt("stationID");
-                    int pinID = rs.getInt("pinID");
-                    int status = rs.getInt("status");
-                    Date createAt = rs.getTimestamp("createAt");
-                    Date expireAt = rs.getTimestamp("expireAt");
-
-                    // Tạo TransactionDTO với constructor đầy đủ bao gồm userID và vehicleID
-                    TransactionDTO transaction = new TransactionDTO(transactionID, userID, txnVehicleID, amount, pack, 
-                                                                   stationID, pinID, status, createAt, expireAt);
-                    listTransaction.add(transaction);
-                }
+            return QueryExecutor.replica().stream(sql, StatementBinder.NONE, RowMappers.TRANSACTION, handler);
+        } catch (SQLException e) {
+            System.out.println("Error streaming transactions: " + e.getMessage());
+            throw new SQLException("Error streaming transactions: " + e.getMessage());
+        }
+    }
 
-                System.out.println("getTransactionsByVehicle: Retrieved " + listTransaction.size() + " transactions for vehicle " + vehicleID);
-            }
-        } catch (ClassNotFoundException e) {
-            System.err.println("getTransactionsByVehicle error: Database driver not found - " + e.getMessage());
-            throw new SQLException("Database driver not found: " + e.getMessage());
+    // Method để lấy danh sách transaction theo vehicleID
+    public List<TransactionDTO> getTransactionsByVehicle(int vehicleID, PageCursor cursor, int limit) throws SQLException {
+        try {
+            List<TransactionDTO> listTransaction = getTransactionPage(QueryExecutor.primary(), "vehicleID", vehicleID, cursor, limit);
+            System.out.println("getTransactionsByVehicle: Retrieved " + listTransaction.size() + " transactions for vehicle " + vehicleID);
+            return listTransaction;
         } catch (SQLException e) {
             System.err.println("getTransactionsByVehicle error: " + e.getMessage());
             throw new SQLException("Error getting transactions for vehicle: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-
-        return listTransaction;
     }
 
     // Method để lấy danh sách transaction theo userID
-    public List<TransactionDTO> getTransactionsByUser(int userID) throws SQLException {
-        List<TransactionDTO> listTransaction = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
-        String sql = "SELECT transactionID, userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt " +
-                    "FROM [TestSchedule].[dbo].[Transaction] " +
-                    "WHERE userID = ? ORDER BY createAt DESC";
-
+    public List<TransactionDTO> getTransactionsByUser(int userID, PageCursor cursor, int limit) throws SQLException {
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, userID);
-                rs = ptm.executeQuery();
-
-                while (rs.next()) {
-                    int transactionID = rs.getInt("transactionID");
-                    int txnUserID = rs.getInt("userID");
-                    int vehicleID = rs.getInt("vehicleID");
-                    int amount = rs.getInt("amount");
-                    int pack = rs.getInt("pack");
-                    int stationID = rs.getInt("stationID");
-                    int pinID = rs.getInt("pinID");
-                    int status = rs.getInt("status");
-                    Date createAt = rs.getTimestamp("createAt");
-                    Date expireAt = rs.getTimestamp("expireAt");
-
-                    // Tạo TransactionDTO với constructor đầy đủ bao gồm userID và vehicleID
-                    TransactionDTO transaction = new TransactionDTO(transactionID, txnUserID, vehicleID, amount, pack, 
-                                                                   stationID, pinID, status, createAt, expireAt);
-                    listTransaction.add(transaction);
-                }
-
-                System.out.println("getTransactionsByUser: Retrieved " + listTransaction.size() + " transactions for user " + userID);
-            }
-        } catch (ClassNotFoundException e) {
-            System.err.println("getTransactionsByUser error: Database driver not found - " + e.getMessage());
-            throw new SQLException("Database driver not found: " + e.getMessage());
+            List<TransactionDTO> listTransaction = getTransactionPage(QueryExecutor.primary(), "userID", userID, cursor, limit);
+            System.out.println("getTransactionsByUser: Retrieved " + listTransaction.size() + " transactions for user " + userID);
+            return listTransaction;
         } catch (SQLException e) {
             System.err.println("getTransactionsByUser error: " + e.getMessage());
             throw new SQLException("Error getting transactions for user: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
+        }
+    }
+
+    /**
+     * Keyset pagination cho các API lịch sử giao dịch
+     * Sắp xếp (createAt DESC, transactionID DESC), chỉ lấy các dòng đứng sau (createAt, transactionID) của cursor.
+     * createAt NULL đứng sau mọi createAt khác (cách SQL Server sắp DESC), nên:
+     * - cursor có createAt: lấy createAt nhỏ hơn, cùng createAt và transactionID nhỏ hơn, hoặc createAt NULL
+     * - cursor createAt NULL: chỉ còn các dòng createAt NULL có transactionID nhỏ hơn
+     * @param filterColumn cột lọc (userID / vehicleID / stationID) hoặc null để lấy tất cả
+     * @param limit số dòng tối đa (controller truyền pageSize + 1 để biết còn trang sau không)
+     */
+    private List<TransactionDTO> getTransactionPage(QueryExecutor executor, String filterColumn, int filterValue,
+            PageCursor cursor, int limit) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT TOP (?) t.transactionID, t.userID, t.vehicleID, t.amount, t.pack, t.stationID, t.pinID, t.status, t.createAt, t.expireAt " +
+                "FROM dbo.[Transaction] t WHERE 1 = 1");
+        if (filterColumn != null) {
+            sql.append(" AND t.").append(filterColumn).append(" = ?");
+        }
+        Timestamp anchorCreateAt = cursor != null ? cursor.getCreateAt() : null;
+        if (cursor != null) {
+            if (anchorCreateAt != null) {
+                sql.append(" AND (t.createAt < ? OR (t.createAt = ? AND t.transactionID < ?) OR t.createAt IS NULL)");
+            } else {
+                sql.append(" AND t.createAt IS NULL AND t.transactionID < ?");
             }
         }
+        sql.append(" ORDER BY t.createAt DESC, t.transactionID DESC");
 
-        return listTransaction;
+        return executor.query(sql.toString(), ptm -> {
+            int index = 1;
+            ptm.setInt(index++, limit);
+            if (filterColumn != null) {
+                ptm.setInt(index++, filterValue);
+            }
+            if (cursor != null) {
+                if (anchorCreateAt != null) {
+                    // Timestamp gửi dạng DATETIME (sendTimeAsDatetime mặc định), cùng độ chính xác với cột createAt
+                    ptm.setTimestamp(index++, anchorCreateAt);
+                    ptm.setTimestamp(index++, anchorCreateAt);
+                }
+                ptm.setInt(index, cursor.getTransactionID());
+            }
+        }, RowMappers.TRANSACTION);
     }
 
     // Method để kiểm tra user có role = 1 (driver) không
     private boolean isDriverUser(int userID) throws SQLException {
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
-        String sql = "SELECT roleID FROM users WHERE userID = ? AND status = 1";
-
-        try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, userID);
-                rs = ptm.executeQuery();
-
-                if (rs.next()) {
-                    int roleID = rs.getInt("roleID");
-                    boolean isDriver = (roleID == 1);
-                    System.out.println("User " + userID + " role check - RoleID: " + roleID + ", IsDriver: " + isDriver);
-                    return isDriver;
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Error checking user role: " + e.getMessage());
-            throw new SQLException("Error checking user role: " + e.getMessage(), e);
-        } finally {
-            if (rs != null) rs.close();
-            if (ptm != null) ptm.close();
-            if (conn != null) conn.close();
+        UserRole role = userRoleDAO.getUserRole(userID);
+        if (role == null || !role.isActive()) {
+            System.out.println("User " + userID + " not found or inactive");
+            return false; // User không tồn tại hoặc không active
         }
 
-        System.out.println("User " + userID + " not found or inactive");
-        return false; // User không tồn tại hoặc không active
+        boolean isDriver = (role.getRoleID() == 1);
+        System.out.println("User " + userID + " role check - RoleID: " + role.getRoleID() + ", IsDriver: " + isDriver);
+        return isDriver;
     }
 
     // Method để kiểm tra pinSlot có thuộc về stationID không
@@ -336,7 +240,7 @@ public class TransactionDAO {
         }
 
         // SQL với cả userID và vehicleID
-        String sql = "INSERT INTO [TestSchedule].[dbo].[Transaction] (userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt) " +
+        String sql = "INSERT INTO dbo.[Transaction] (userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, GETDATE(), DATEADD(HOUR, 1, GETDATE()))";
 
         System.out.println("Executing SQL: " + sql);
@@ -454,7 +358,7 @@ public class TransactionDAO {
         PreparedStatement ptm = null;
 
         // SQL với GETDATE() cho createAt và DATEADD để thêm 1 tiếng cho expireAt
-        String sql = "INSERT INTO [TestSchedule].[dbo].[Transaction] (userID, amount, pack, stationID, pinID, status, createAt, expireAt) " +
+        String sql = "INSERT INTO dbo.[Transaction] (userID, amount, pack, stationID, pinID, status, createAt, expireAt) " +
                     "VALUES (?, ?, ?, ?, ?, ?, GETDATE(), DATEADD(HOUR, 1, GETDATE()))";
 
         System.out.println("Executing SQL: " + sql);
@@ -507,7 +411,7 @@ public class TransactionDAO {
         Connection conn = null;
         PreparedStatement ptm = null;
 
-        String sql = "UPDATE [TestSchedule].[dbo].[Transaction] SET status = ? WHERE transactionID = ?";
+        String sql = "UPDATE dbo.[Transaction] SET status = ? WHERE transactionID = ?";
 
         try {
             conn = DBUtils.getConnection();
@@ -518,6 +422,10 @@ public class TransactionDAO {
 
                 int rowsAffected = ptm.executeUpdate();
                 success = (rowsAffected > 0);
+                // Không còn pending thì bỏ khỏi hàng đợi hết hạn
+                if (success && newStatus != 0) {
+                    TransactionExpiryQueue.cancel(transactionID);
+                }
 
                 System.out.println("Update Transaction Status - TransactionID: " + transactionID + 
                                  ", New Status: " + newStatus + ", Rows affected: " + rowsAffected);
@@ -539,109 +447,27 @@ public class TransactionDAO {
 
     // Method để lấy transaction theo transactionID
     public TransactionDTO getTransactionById(int transactionID) throws SQLException {
-        TransactionDTO transaction = null;
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
-        String sql = "SELECT transactionID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt " +
-                    "FROM [TestSchedule].[dbo].[Transaction] WHERE transactionID = ?";
+        String sql = "SELECT transactionID, userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt " +
+                    "FROM dbo.[Transaction] WHERE transactionID = ?";
 
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, transactionID);
-                rs = ptm.executeQuery();
-
-                if (rs.next()) {
-                    int vehicleID = rs.getInt("vehicleID");
-                    int amount = rs.getInt("amount");
-                    int pack = rs.getInt("pack");
-                    int stationID = rs.getInt("stationID");
-                    int pinID = rs.getInt("pinID");
-                    int status = rs.getInt("status");
-                    Date createAt = rs.getTimestamp("createAt");
-                    Date expireAt = rs.getTimestamp("expireAt");
-
-                    transaction = new TransactionDTO(transactionID, vehicleID, amount, pack, 
-                                                   stationID, pinID, status, createAt, expireAt);
-                }
-            }
-        } catch (Exception e) {
+            return QueryExecutor.primary().queryOne(sql, ptm -> ptm.setInt(1, transactionID), RowMappers.TRANSACTION);
+        } catch (SQLException e) {
             System.out.println("Error getting transaction by ID: " + e.getMessage());
             throw new SQLException("Error getting transaction by ID: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-
-        return transaction;
     }
 
      // Method để lấy danh sách transaction theo stationID
-    public List<TransactionDTO> getTransactionsByStation(int stationID) throws SQLException {
-        List<TransactionDTO> listTransaction = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-
-        String sql = "SELECT transactionID, userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt " +
-                    "FROM [TestSchedule].[dbo].[Transaction] WHERE stationID = ? ORDER BY createAt DESC";
-
+    public List<TransactionDTO> getTransactionsByStation(int stationID, PageCursor cursor, int limit) throws SQLException {
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, stationID);
-                rs = ptm.executeQuery();
-
-                while (rs.next()) {
-                    int transactionID = rs.getInt("transactionID");
-                    int userID = rs.getInt("userID");
-                    int vehicleID = rs.getInt("vehicleID");
-                    int amount = rs.getInt("amount");
-                    int pack = rs.getInt("pack");
-                    int txnStationID = rs.getInt("stationID");
-                    int pinID = rs.getInt("pinID");
-                    int status = rs.getInt("status");
-                    Date createAt = rs.getTimestamp("createAt");
-                    Date expireAt = rs.getTimestamp("expireAt");
-
-                    // Tạo TransactionDTO với constructor đầy đủ bao gồm userID và vehicleID
-                    TransactionDTO transaction = new TransactionDTO(transactionID, userID, vehicleID, amount, pack, 
-                                                                   txnStationID, pinID, status, createAt, expireAt);
-                    listTransaction.add(transaction);
-                }
-
-                System.out.println("getTransactionsByStation: Retrieved " + listTransaction.size() + " transactions for station " + stationID);
-            }
-        } catch (ClassNotFoundException e) {
-            System.err.println("getTransactionsByStation error: Database driver not found - " + e.getMessage());
-            throw new SQLException("Database driver not found: " + e.getMessage());
+            List<TransactionDTO> listTransaction = getTransactionPage(QueryExecutor.primary(), "stationID", stationID, cursor, limit);
+            System.out.println("getTransactionsByStation: Retrieved " + listTransaction.size() + " transactions for station " + stationID);
+            return listTransaction;
         } catch (SQLException e) {
             System.err.println("getTransactionsByStation error: " + e.getMessage());
             throw new SQLException("Error getting transactions for station: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-
-        return listTransaction;
     }
 
     // Method để chạy stored procedure UpdateExpiredTransactions
@@ -659,6 +485,8 @@ public class TransactionDAO {
                 
                 int rowsAffected = ptm.executeUpdate();
                 success = true; // Stored procedure executed successfully
+                // Procedure có thể trả lại các slot đã giữ chỗ -> xóa cache slot
+                PinSlotCache.invalidateAll();
 
                 System.out.println("UpdateExpiredTransactions procedure executed successfully. Rows affected: " + rowsAffected);
             }
@@ -677,6 +505,70 @@ public class TransactionDAO {
         return success;
     }
 
+    // Hết hạn 1 booking: chỉ đổi status 0 -> 2 nếu vẫn còn pending,
+    // rồi trả slot đang giữ chỗ (status 2 -> 1, bỏ userID / vehicleID như unreserve) nếu không còn booking pending nào khác trên slot đó
+    private static final String EXPIRE_SQL =
+            "UPDATE dbo.[Transaction] SET status = 2 " +
+            "WHERE transactionID = ? AND status = 0 AND expireAt <= GETDATE(); " +
+            "DECLARE @expired INT = @@ROWCOUNT; " +
+            "IF @expired > 0 " +
+            "    UPDATE pinSlot SET status = 1, userID = NULL, vehicleID = NULL WHERE pinID = ? AND status = 2 " +
+            "    AND NOT EXISTS (SELECT 1 FROM dbo.[Transaction] WHERE pinID = ? AND status = 0); " +
+            "SELECT @expired AS expired, " +
+            "       (SELECT DATEDIFF_BIG(MILLISECOND, GETDATE(), expireAt) FROM dbo.[Transaction] " +
+            "        WHERE transactionID = ? AND status = 0) AS expiresInMillis";
+
+    /**
+     * Hết hạn 1 transaction pending đúng thời điểm expireAt (gọi bởi TransactionExpiryService)
+     * - Đã completed / cancelled / expired trước đó: không làm gì
+     * - expireAt trên database chưa tới (lệch đồng hồ, expireAt bị sửa): đăng ký lại với thời gian còn lại
+     * @return true nếu transaction vừa được chuyển sang expired
+     */
+    public boolean expireTransaction(TransactionExpiryQueue.Expiry expiry) throws SQLException {
+        int transactionID = expiry.getTransactionID();
+        try {
+            long[] result = QueryExecutor.primary().queryOne(EXPIRE_SQL, ptm -> {
+                ptm.setInt(1, transactionID);
+                ptm.setInt(2, expiry.getPinID());
+                ptm.setInt(3, expiry.getPinID());
+                ptm.setInt(4, transactionID);
+            }, rs -> {
+                int expired = rs.getInt("expired");
+                long remaining = rs.getLong("expiresInMillis");
+                return new long[] { expired, rs.wasNull() ? -1 : remaining };
+            });
+
+            if (result != null && result[0] > 0) {
+                PinSlotCache.invalidateStation(expiry.getStationID());
+                return true;
+            }
+            if (result != null && result[1] >= 0) {
+                TransactionExpiryQueue.register(transactionID, expiry.getStationID(), expiry.getPinID(), result[1]);
+            }
+            return false;
+        } catch (SQLException e) {
+            System.out.println("Error expiring transaction " + transactionID + ": " + e.getMessage());
+            throw new SQLException("Error expiring transaction: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Đăng ký lại tất cả transaction pending vào hàng đợi hết hạn (khởi động ứng dụng)
+     * @return số transaction đã đăng ký
+     */
+    public int registerPendingExpiries() throws SQLException {
+        String sql = "SELECT transactionID, stationID, pinID, DATEDIFF_BIG(MILLISECOND, GETDATE(), expireAt) AS expiresInMillis " +
+                     "FROM dbo.[Transaction] WHERE status = 0 AND expireAt IS NOT NULL";
+        try {
+            return QueryExecutor.primary().stream(sql, StatementBinder.NONE,
+                    rs -> new long[] { rs.getInt("transactionID"), rs.getInt("stationID"), rs.getInt("pinID"), rs.getLong("expiresInMillis") },
+                    row -> TransactionExpiryQueue.register((int) row[0], (int) row[1], (int) row[2], row[3]));
+        } catch (SQLException e) {
+            System.out.println("Error loading pending transactions for expiry: " + e.getMessage());
+            throw new SQLException("Error loading pending transactions for expiry: " + e.getMessage());
+        }
+    }
+
     // Helper method để lấy userID từ vehicleID
     private int getUserIDFromVehicle(int vehicleID) throws SQLException {
         int userID = 0;
@@ -717,8 +609,40 @@ public class TransactionDAO {
         return userID;
     }
 
-    // Method để tạo transaction mới với cả userID và vehicleID
-    public boolean createTransactionWithUserAndVehicle(int userID, int vehicleID, int amount, int pack, int stationID, int pinID, int status) throws SQLException {
+    // Kiểm tra vehicle thuộc user, user là driver đang hoạt động, slot thuộc station, rồi insert,
+    // tất cả trong 1 batch (1 connection, 1 round trip). reason = mã TransactionCreateResult.
+    private static final String CREATE_VALIDATED_SQL =
+            "SET NOCOUNT ON; " +
+            "DECLARE @userID INT = ?, @vehicleID INT = ?, @stationID INT = ?, @pinID INT = ?; " +
+            "DECLARE @vehicleFound BIT = 0, @owner INT, @roleID INT, @userStatus INT, @slotStation INT, " +
+            "        @reason VARCHAR(32), @transactionID INT, @expireAt DATETIME; " +
+            "SELECT @vehicleFound = 1, @owner = v.userID, @roleID = u.roleID, @userStatus = u.status " +
+            "FROM Vehicle v LEFT JOIN users u ON u.userID = v.userID WHERE v.vehicleID = @vehicleID; " +
+            "SELECT @slotStation = stationID FROM pinSlot WHERE pinID = @pinID; " +
+            "IF @vehicleFound = 0 SET @reason = 'VEHICLE_NOT_FOUND' " +
+            "ELSE IF @owner IS NULL OR @owner <> @userID SET @reason = 'VEHICLE_NOT_OWNED' " +
+            "ELSE IF @roleID IS NULL OR @roleID <> 1 OR @userStatus <> 1 SET @reason = 'NOT_ACTIVE_DRIVER' " +
+            "ELSE IF @slotStation IS NULL SET @reason = 'PIN_SLOT_NOT_FOUND' " +
+            "ELSE IF @slotStation <> @stationID SET @reason = 'PIN_SLOT_NOT_IN_STATION'; " +
+            "IF @reason IS NULL " +
+            "BEGIN " +
+            "    SET @expireAt = DATEADD(HOUR, 1, GETDATE()); " +
+            "    INSERT INTO dbo.[Transaction] (userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt) " +
+            "    VALUES (@userID, @vehicleID, ?, ?, @stationID, @pinID, ?, GETDATE(), @expireAt); " +
+            "    SET @transactionID = CAST(SCOPE_IDENTITY() AS INT); " +
+            "    SET @reason = 'CREATED'; " +
+            "END; " +
+            "SELECT @reason AS reason, @transactionID AS transactionID, " +
+            "       DATEDIFF_BIG(MILLISECOND, GETDATE(), @expireAt) AS expiresInMillis";
+
+    /**
+     * Tạo transaction mới với cả userID và vehicleID
+     * Kiểm tra nghiệp vụ và insert chạy trong 1 câu lệnh, trả về lý do cụ thể nếu không tạo được.
+     * Booking pending (status = 0) được đăng ký vào TransactionExpiryQueue để hết hạn đúng lúc expireAt.
+     * @return CREATED hoặc lý do không tạo được
+     * @throws SQLException nếu tham số không hợp lệ hoặc có lỗi database
+     */
+    public TransactionCreateResult tryCreateTransactionWithUserAndVehicle(int userID, int vehicleID, int amount, int pack, int stationID, int pinID, int status) throws SQLException {
         // Validate input parameters
         if (userID <= 0) {
             throw new SQLException("UserID must be greater than 0");
@@ -736,112 +660,42 @@ public class TransactionDAO {
             throw new SQLException("Status must be 0 (pending), 1 (completed), or 2 (failed)");
         }
 
-        // Validate business rules: kiểm tra vehicle tồn tại và thuộc về user
-        if (!isVehicleBelongsToUser(vehicleID, userID)) {
-            throw new SQLException("Vehicle " + vehicleID + " does not belong to user " + userID);
-        }
-
-        if (!isPinSlotInStation(pinID, stationID)) {
-            throw new SQLException("PinSlot " + pinID + " does not belong to Station " + stationID + " or pinSlot does not exist");
-        }
-
-        System.out.println("All validations passed for transaction creation with userID and vehicleID");
-
-        boolean success = false;
-        Connection conn = null;
-        PreparedStatement ptm = null;
-
-        // SQL với cả userID và vehicleID
-        String sql = "INSERT INTO [TestSchedule].[dbo].[Transaction] (userID, vehicleID, amount, pack, stationID, pinID, status, createAt, expireAt) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, GETDATE(), DATEADD(HOUR, 1, GETDATE()))";
-
-        System.out.println("Executing SQL: " + sql);
-        System.out.println("Parameters: userID=" + userID + ", vehicleID=" + vehicleID + ", amount=" + amount + ", pack=" + pack + 
-                          ", stationID=" + stationID + ", pinID=" + pinID + ", status=" + status);
-
         try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                
-                // Set parameters
+            TransactionCreateResult result = QueryExecutor.primary().queryOne(CREATE_VALIDATED_SQL, ptm -> {
                 ptm.setInt(1, userID);
                 ptm.setInt(2, vehicleID);
-                ptm.setInt(3, amount);
-                ptm.setInt(4, pack);
-                ptm.setInt(5, stationID);
-                ptm.setInt(6, pinID);
+                ptm.setInt(3, stationID);
+                ptm.setInt(4, pinID);
+                ptm.setInt(5, amount);
+                ptm.setInt(6, pack);
                 ptm.setInt(7, status);
+            }, rs -> {
+                TransactionCreateResult reason = TransactionCreateResult.valueOf(rs.getString("reason"));
+                if (reason.isSuccess() && status == 0) {
+                    // Booking pending hết hạn đúng lúc expireAt (TransactionExpiryService)
+                    TransactionExpiryQueue.register(rs.getInt("transactionID"), stationID, pinID, rs.getLong("expiresInMillis"));
+                }
+                return reason;
+            });
 
-                int rowsAffected = ptm.executeUpdate();
-                success = (rowsAffected > 0);
-
-                System.out.println("Transaction creation - UserID: " + userID + ", VehicleID: " + vehicleID + ", Amount: " + amount + 
-                                 ", Pack: " + pack + ", StationID: " + stationID + ", PinID: " + pinID + 
-                                 ", Status: " + status + ", Rows affected: " + rowsAffected);
-            }
-        } catch (ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException in createTransactionWithUserAndVehicle: " + e.getMessage());
-            throw new SQLException("Database driver not found");
+            System.out.println("Transaction creation - UserID: " + userID + ", VehicleID: " + vehicleID + ", Amount: " + amount +
+                             ", Pack: " + pack + ", StationID: " + stationID + ", PinID: " + pinID +
+                             ", Status: " + status + ", Result: " + result);
+            return result;
         } catch (SQLException e) {
             System.out.println("SQLException in createTransactionWithUserAndVehicle: " + e.getMessage());
             throw new SQLException("Error creating transaction: " + e.getMessage());
-        } finally {
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
         }
-        return success;
     }
 
-    // Helper method để validate vehicle thuộc về user
-    private boolean isVehicleBelongsToUser(int vehicleID, int userID) throws SQLException {
-        Connection conn = null;
-        PreparedStatement ptm = null;
-        ResultSet rs = null;
-        boolean belongs = false;
-
-        String sql = "SELECT userID FROM Vehicle WHERE vehicleID = ?";
-
-        try {
-            conn = DBUtils.getConnection();
-            if (conn != null) {
-                ptm = conn.prepareStatement(sql);
-                ptm.setInt(1, vehicleID);
-                rs = ptm.executeQuery();
-
-                if (rs.next()) {
-                    int vehicleOwnerID = rs.getInt("userID");
-                    belongs = (vehicleOwnerID == userID);
-                    
-                    if (!belongs) {
-                        System.out.println("Vehicle " + vehicleID + " belongs to user " + vehicleOwnerID + ", not " + userID);
-                    }
-                } else {
-                    System.out.println("Vehicle " + vehicleID + " does not exist");
-                }
-            }
-        } catch (ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException in isVehicleBelongsToUser: " + e.getMessage());
-            throw new SQLException("Database driver not found");
-        } catch (SQLException e) {
-            System.out.println("SQLException in isVehicleBelongsToUser: " + e.getMessage());
-            throw new SQLException("Error checking vehicle ownership: " + e.getMessage());
-        } finally {
-            if (rs != null) {
-                rs.close();
-            }
-            if (ptm != null) {
-                ptm.close();
-            }
-            if (conn != null) {
-                conn.close();
-            }
+    // Method để tạo transaction mới với cả userID và vehicleID
+    public boolean createTransactionWithUserAndVehicle(int userID, int vehicleID, int amount, int pack, int stationID, int pinID, int status) throws SQLException {
+        TransactionCreateResult result = tryCreateTransactionWithUserAndVehicle(userID, vehicleID, amount, pack, stationID, pinID, status);
+        if (!result.isSuccess()) {
+            throw new SQLException(result.getMessage() + " (vehicleID=" + vehicleID + ", userID=" + userID
+                    + ", pinID=" + pinID + ", stationID=" + stationID + ")");
         }
-        return belongs;
+        return true;
     }
 
 }
\ No newline at end of file
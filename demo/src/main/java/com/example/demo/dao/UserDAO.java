@@ -7,6 +7,8 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.example.demo.cache.TokenRevocationList;
+import com.example.demo.cache.UserRoleCache;
 import com.example.demo.dbUnits.DBUtils;
 import com.example.demo.dto.UserDTO;
 
@@ -217,6 +219,9 @@ public class UserDAO {
                 ptm.setInt(4, user.getUserID());
                 int rowsAffected = ptm.executeUpdate();
                 check = rowsAffected > 0;
+                // roleID có thể đã đổi -> xóa cache role và thu hồi token đang dùng
+                UserRoleCache.invalidate(user.getUserID());
+                TokenRevocationList.revokeUser(user.getUserID());
                 
                 System.out.println("update: " + rowsAffected + " rows affected - Updated user ID " + user.getUserID());
             }
@@ -451,6 +456,8 @@ public class UserDAO {
                 ptm.setInt(1, userID);
                 int rowsAffected = ptm.executeUpdate();
                 check = rowsAffected > 0;
+                UserRoleCache.invalidate(userID);
+                TokenRevocationList.revokeUser(userID);
 
                 System.out.println("updateStatus: " + rowsAffected + " rows affected - Updated status for user ID " + userID);
             }
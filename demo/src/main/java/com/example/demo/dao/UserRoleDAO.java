@@ -0,0 +1,48 @@
+package com.example.demo.dao;
+
+import java.sql.SQLException;
+
+import com.example.demo.cache.UserRoleCache;
+import com.example.demo.cache.UserRoleCache.UserRole;
+import com.example.demo.dbUnits.QueryExecutor;
+
+/**
+ * Tra cứu roleID / status của user cho các kiểm tra quyền, đọc qua UserRoleCache
+ * Chỉ query bảng users khi cache miss.
+ */
+public class UserRoleDAO {
+
+    private static final String SQL = "SELECT userID, roleID, status FROM users WHERE userID = ?";
+
+    /**
+     * @return role của user hoặc null nếu user không tồn tại
+     */
+    public UserRole getUserRole(int userID) throws SQLException {
+        UserRole cached = UserRoleCache.get(userID);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            long generation = UserRoleCache.currentGeneration();
+            UserRole role = QueryExecutor.primary().queryOne(SQL, ptm -> ptm.setInt(1, userID),
+                    rs -> new UserRole(rs.getInt("userID"), rs.getInt("roleID"), rs.getInt("status")));
+            if (role == null) {
+                UserRoleCache.recordMissingUser();
+                return null;
+            }
+            return UserRoleCache.put(role, generation);
+        } catch (SQLException e) {
+            System.err.println("getUserRole error: " + e.getMessage());
+            throw new SQLException("Error checking user role: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return roleID của user hoặc -1 nếu user không tồn tại
+     */
+    public int getRoleID(int userID) throws SQLException {
+        UserRole role = getUserRole(userID);
+        return role != null ? role.getRoleID() : -1;
+    }
+}
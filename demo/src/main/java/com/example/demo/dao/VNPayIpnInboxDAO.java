@@ -0,0 +1,189 @@
+package com.example.demo.dao;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.demo.dbUnits.QueryExecutor;
+import com.example.demo.dbUnits.StatementBinder;
+import com.example.demo.dto.VNPayIpnInboxDTO;
+
+/**
+ * DAO inbox IPN VNPay
+ * Database table: VNPayIpnInbox (sql/create_vnpay_ipn_inbox_table.sql)
+ */
+public class VNPayIpnInboxDAO {
+
+    // Kiểm tra payment trước (cùng round trip): không có vnp_TxnRef / sai số tiền thì trả lý do ngay cho VNPay
+    // (01 / 04), không ghi inbox. VNPay không gửi lại IPN đã nhận 00 nên không thể trả lý do này sau.
+    // Thêm IPN vào inbox nếu vnp_TxnRef chưa có, ngược lại trả về dòng đã có (IPN gửi lại)
+    // Dòng đã bỏ (status 2) được VNPay gửi lại: đưa về chờ xử lý với số lần thử từ đầu
+    private static final String ENQUEUE_SQL =
+            "SET NOCOUNT ON; SET XACT_ABORT ON; " +
+            "DECLARE @txnRef VARCHAR(64) = ?, @payload NVARCHAR(MAX) = ?, @amount BIGINT = ?; " +
+            "DECLARE @inboxID BIGINT, @status TINYINT, @result VARCHAR(24), @created BIT = 0, @requeued BIT = 0, @rejected BIT = 0; " +
+            "DECLARE @paymentFound BIT = 0, @paymentAmount BIGINT; " +
+            "SELECT TOP 1 @paymentFound = 1, @paymentAmount = vnp_Amount FROM dbo.VNPayPaymentDTO " +
+            "WHERE vnp_TxnRef = @txnRef ORDER BY createdAt DESC; " +
+            "IF @paymentFound = 0 " +
+            "    SELECT @result = 'ORDER_NOT_FOUND', @rejected = 1 " +
+            "ELSE IF @amount IS NOT NULL AND @paymentAmount IS NOT NULL AND @paymentAmount * 100 <> @amount " +
+            "    SELECT @result = 'INVALID_AMOUNT', @rejected = 1; " +
+            "IF @rejected = 1 " +
+            "BEGIN " +
+            "    SELECT CAST(NULL AS BIGINT) AS inboxID, @txnRef AS txnRef, CAST(NULL AS TINYINT) AS status, @result AS result, " +
+            "           @created AS created, @requeued AS requeued, @rejected AS rejected; " +
+            "    RETURN; " +
+            "END; " +
+            "BEGIN TRAN; " +
+            "SELECT @inboxID = inboxID, @status = status, @result = result " +
+            "FROM dbo.VNPayIpnInbox WITH (UPDLOCK, HOLDLOCK) WHERE txnRef = @txnRef; " +
+            "IF @inboxID IS NULL " +
+            "BEGIN " +
+            "    INSERT INTO dbo.VNPayIpnInbox (txnRef, payload) VALUES (@txnRef, @payload); " +
+            "    SELECT @inboxID = CAST(SCOPE_IDENTITY() AS BIGINT), @status = 0, @created = 1; " +
+            "END " +
+            "ELSE IF @status = 2 " +
+            "BEGIN " +
+            "    UPDATE dbo.VNPayIpnInbox SET status = 0, attempts = 0, payload = @payload, lastError = NULL, " +
+            "           lockedUntil = NULL, nextAttemptAt = SYSDATETIME() " +
+            "    WHERE inboxID = @inboxID; " +
+            "    SELECT @status = 0, @requeued = 1; " +
+            "END; " +
+            "COMMIT TRAN; " +
+            "SELECT @inboxID AS inboxID, @txnRef AS txnRef, @status AS status, @result AS result, @created AS created, " +
+            "       @requeued AS requeued, @rejected AS rejected";
+
+    // Lấy các IPN đến hạn theo thứ tự nhận, giữ lockedUntil để worker / node khác bỏ qua (READPAST)
+    // Worker chết giữa chừng: hết lockedUntil thì dòng được lấy lại
+    private static final String CLAIM_SQL =
+            "SET NOCOUNT ON; " +
+            "WITH due AS ( " +
+            "    SELECT TOP (?) inboxID, txnRef, payload, attempts, lockedUntil, receivedAt " +
+            "    FROM dbo.VNPayIpnInbox WITH (READPAST, UPDLOCK, ROWLOCK) " +
+            "    WHERE status = 0 AND nextAttemptAt <= SYSDATETIME() " +
+            "      AND (lockedUntil IS NULL OR lockedUntil <= SYSDATETIME()) " +
+            "    ORDER BY inboxID) " +
+            "UPDATE due SET lockedUntil = DATEADD(SECOND, ?, SYSDATETIME()), attempts = attempts + 1 " +
+            "OUTPUT INSERTED.inboxID, INSERTED.txnRef, INSERTED.payload, INSERTED.attempts, " +
+            "       DATEDIFF_BIG(MILLISECOND, INSERTED.receivedAt, SYSDATETIME()) AS lagMillis";
+
+    private static final String MARK_PROCESSED_SQL =
+            "UPDATE dbo.VNPayIpnInbox SET status = 1, result = ?, lastError = NULL, lockedUntil = NULL, processedAt = SYSDATETIME() " +
+            "WHERE inboxID = ?";
+
+    // Hết số lần thử thì chuyển status 2, còn lại hẹn lần thử sau
+    private static final String MARK_FAILED_SQL =
+            "UPDATE dbo.VNPayIpnInbox SET status = CASE WHEN attempts >= ? THEN 2 ELSE 0 END, " +
+            "       lastError = LEFT(?, 400), lockedUntil = NULL, nextAttemptAt = DATEADD(SECOND, ?, SYSDATETIME()) " +
+            "WHERE inboxID = ?";
+
+    private static final String QUEUE_STATS_SQL =
+            "SELECT " +
+            "    (SELECT COUNT(*) FROM dbo.VNPayIpnInbox WHERE status = 0) AS pending, " +
+            "    (SELECT ISNULL(DATEDIFF_BIG(MILLISECOND, MIN(receivedAt), SYSDATETIME()), 0) FROM dbo.VNPayIpnInbox WHERE status = 0) AS oldestPendingMillis, " +
+            "    (SELECT COUNT(*) FROM dbo.VNPayIpnInbox WHERE status = 2) AS dead";
+
+    private final QueryExecutor executor = QueryExecutor.primary();
+
+    /**
+     * Ghi IPN vào inbox (1 dòng / vnp_TxnRef) nếu có payment đúng vnp_TxnRef và số tiền
+     * @param callbackAmount vnp_Amount VNPay gửi về (= số tiền * 100), null = không kiểm tra
+     * @return dòng inbox, isCreated() = false nếu vnp_TxnRef đã có (status / result của lần trước),
+     *         isRequeued() = true nếu dòng đã bỏ được đưa về chờ xử lý,
+     *         isRejected() = true nếu không ghi inbox (result = ORDER_NOT_FOUND / INVALID_AMOUNT)
+     */
+    public VNPayIpnInboxDTO enqueue(String txnRef, String payload, Long callbackAmount) throws SQLException {
+        try {
+            return executor.queryOne(ENQUEUE_SQL, ptm -> {
+                ptm.setString(1, txnRef);
+                ptm.setString(2, payload);
+                if (callbackAmount != null) ptm.setLong(3, callbackAmount); else ptm.setNull(3, java.sql.Types.BIGINT);
+            }, rs -> {
+                VNPayIpnInboxDTO dto = new VNPayIpnInboxDTO();
+                dto.setInboxID(rs.getLong("inboxID"));
+                dto.setTxnRef(rs.getString("txnRef"));
+                dto.setStatus(rs.getInt("status"));
+                dto.setResult(rs.getString("result"));
+                dto.setCreated(rs.getBoolean("created"));
+                dto.setRequeued(rs.getBoolean("requeued"));
+                dto.setRejected(rs.getBoolean("rejected"));
+                return dto;
+            });
+        } catch (SQLException e) {
+            System.out.println("SQLException in enqueue: " + e.getMessage());
+            throw new SQLException("Error adding IPN to inbox: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lấy tối đa batchSize IPN đến hạn và khóa chúng trong lockSeconds giây
+     */
+    public List<VNPayIpnInboxDTO> claimDue(int batchSize, int lockSeconds) throws SQLException {
+        try {
+            return executor.query(CLAIM_SQL, ptm -> {
+                ptm.setInt(1, batchSize);
+                ptm.setInt(2, lockSeconds);
+            }, rs -> {
+                VNPayIpnInboxDTO dto = new VNPayIpnInboxDTO();
+                dto.setInboxID(rs.getLong("inboxID"));
+                dto.setTxnRef(rs.getString("txnRef"));
+                dto.setPayload(rs.getString("payload"));
+                dto.setAttempts(rs.getInt("attempts"));
+                dto.setLagMillis(rs.getLong("lagMillis"));
+                return dto;
+            });
+        } catch (SQLException e) {
+            System.out.println("SQLException in claimDue: " + e.getMessage());
+            throw new SQLException("Error claiming IPN inbox rows: " + e.getMessage());
+        }
+    }
+
+    public void markProcessed(long inboxID, String result) throws SQLException {
+        try {
+            executor.update(MARK_PROCESSED_SQL, ptm -> {
+                ptm.setString(1, result);
+                ptm.setLong(2, inboxID);
+            });
+        } catch (SQLException e) {
+            System.out.println("SQLException in markProcessed: " + e.getMessage());
+            throw new SQLException("Error marking IPN processed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi lỗi và hẹn thử lại sau retryDelaySeconds, đã thử maxAttempts lần thì bỏ (status 2)
+     */
+    public void markFailed(long inboxID, String error, int maxAttempts, long retryDelaySeconds) throws SQLException {
+        try {
+            executor.update(MARK_FAILED_SQL, ptm -> {
+                ptm.setInt(1, maxAttempts);
+                ptm.setString(2, error);
+                ptm.setLong(3, retryDelaySeconds);
+                ptm.setLong(4, inboxID);
+            });
+        } catch (SQLException e) {
+            System.out.println("SQLException in markFailed: " + e.getMessage());
+            throw new SQLException("Error marking IPN failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Số IPN đang chờ, tuổi của IPN chờ lâu nhất và số IPN đã bỏ
+     */
+    public Map<String, Object> getQueueStats() throws SQLException {
+        try {
+            return executor.queryOne(QUEUE_STATS_SQL, StatementBinder.NONE, rs -> {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("pending", rs.getInt("pending"));
+                stats.put("oldestPendingMillis", rs.getLong("oldestPendingMillis"));
+                stats.put("dead", rs.getInt("dead"));
+                return stats;
+            });
+        } catch (SQLException e) {
+            System.out.println("SQLException in getQueueStats: " + e.getMessage());
+            throw new SQLException("Error reading IPN inbox stats: " + e.getMessage());
+        }
+    }
+}
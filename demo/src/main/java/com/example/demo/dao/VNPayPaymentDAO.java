@@ -5,13 +5,92 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.QueryExecutor;
+import com.example.demo.dbUnits.RowHandler;
+import com.example.demo.dbUnits.StatementBinder;
+import com.example.demo.dto.VNPayCallbackResult;
 import com.example.demo.dto.VNPayPaymentDTO;
 
 public class VNPayPaymentDAO {
 
+    // Thống kê các payment thành công (status = 1), mới nhất trước
+    private static final String STATISTIC_SQL = "SELECT paymentID, packID, vnp_Amount, updatedAt, total, userID " +
+                     "FROM dbo.VNPayPaymentDTO where status = 1 ORDER BY createdAt DESC";
+
+    // Chuyển trạng thái payment theo callback: UPDATE có điều kiện (status = 0, đúng số tiền),
+    // không cập nhật được thì đọc lại dòng để biết lý do (không có / đã xử lý / sai số tiền)
+    // Payment đã bị job hết hạn (status 3) vẫn nhận callback thành công đúng số tiền: khách đã trả tiền thật
+    private static final String APPLY_CALLBACK_SQL =
+            "SET NOCOUNT ON; " +
+            "DECLARE @txnRef VARCHAR(64) = ?, @status INT = ?, @amount BIGINT = ?, @transactionNo VARCHAR(128) = ?, " +
+            "        @responseCode VARCHAR(8) = ?, @transactionStatus VARCHAR(8) = ?, @payDate VARCHAR(32) = ?, @bankCode VARCHAR(32) = ?; " +
+            "DECLARE @paymentID INT, @currentStatus INT, @reason VARCHAR(24); " +
+            "UPDATE dbo.VNPayPaymentDTO SET @paymentID = paymentID, status = @status, vnp_TransactionNo = @transactionNo, " +
+            "       vnp_ResponseCode = @responseCode, vnp_TransactionStatus = @transactionStatus, vnp_PayDate = @payDate, " +
+            "       vnp_BankCode = @bankCode, updatedAt = GETDATE() " +
+            "WHERE vnp_TxnRef = @txnRef AND (status = 0 OR (status = 3 AND @status = 1)) AND (@amount IS NULL OR vnp_Amount IS NULL OR vnp_Amount * 100 = @amount); " +
+            "IF @paymentID IS NOT NULL " +
+            "    SET @reason = CASE WHEN @status = 1 THEN 'CONFIRMED' ELSE 'PAYMENT_FAILED' END " +
+            "ELSE " +
+            "BEGIN " +
+            "    SELECT TOP 1 @currentStatus = status FROM dbo.VNPayPaymentDTO WHERE vnp_TxnRef = @txnRef ORDER BY createdAt DESC; " +
+            "    SET @reason = CASE WHEN @currentStatus IS NULL THEN 'ORDER_NOT_FOUND' " +
+            "                       WHEN @currentStatus = 0 OR (@currentStatus = 3 AND @status = 1) THEN 'INVALID_AMOUNT' " +
+            "                       ELSE 'ALREADY_CONFIRMED' END; " +
+            "END; " +
+            "SELECT @reason AS reason";
+
+    // Chuyển tối đa ? payment pending đã quá expiredAt + grace sang 3 (EXPIRED), seek trên IX_VNPayPaymentDTO_pending_expiredAt
+    // READPAST: bỏ qua dòng callback đang giữ khóa, lô sau sẽ lấy lại nếu vẫn còn pending
+    // Không hết hạn payment còn IPN trong inbox chưa xử lý xong (chờ retry / dead letter): backoff của inbox có thể dài hơn grace
+    // Database chưa tạo bảng VNPayIpnInbox (IPN xử lý đồng bộ) thì bỏ điều kiện inbox, câu UPDATE có inbox
+    // chỉ được biên dịch khi nhánh đó chạy nên không lỗi "Invalid object name"
+    // OUTPUT INTO bảng tạm (bảng có trigger không cho OUTPUT trả thẳng về client)
+    private static final String EXPIRE_PENDING_UPDATE =
+            "UPDATE TOP (@batchSize) p SET status = 3, updatedAt = GETDATE() " +
+            "OUTPUT DATEDIFF_BIG(MILLISECOND, DELETED.expiredAt, @cutoff) INTO @expired " +
+            "FROM dbo.VNPayPaymentDTO p WITH (ROWLOCK, READPAST) " +
+            "WHERE p.status = 0 AND p.expiredAt <= @cutoff";
+
+    private static final String EXPIRE_PENDING_SQL =
+            "SET NOCOUNT ON; " +
+            "DECLARE @batchSize INT = ?, @cutoff DATETIME = DATEADD(SECOND, -?, GETDATE()); " +
+            "DECLARE @expired TABLE (lagMillis BIGINT); " +
+            "IF OBJECT_ID('dbo.VNPayIpnInbox', 'U') IS NULL " +
+            "    " + EXPIRE_PENDING_UPDATE + " " +
+            "ELSE " +
+            "    " + EXPIRE_PENDING_UPDATE + " " +
+            "    AND NOT EXISTS (SELECT 1 FROM dbo.VNPayIpnInbox i WHERE i.txnRef = p.vnp_TxnRef AND i.status <> 1); " +
+            "SELECT COUNT(*) AS expired, ISNULL(MAX(lagMillis), 0) AS maxLagMillis FROM @expired";
+
+    // Payment pending đã quá hạn (chờ job) và payment quá hạn lâu nhất
+    private static final String OVERDUE_STATS_SQL =
+            "SELECT COUNT(*) AS overdue, ISNULL(DATEDIFF_BIG(MILLISECOND, MIN(expiredAt), GETDATE()), 0) AS oldestOverdueMillis " +
+            "FROM dbo.VNPayPaymentDTO WHERE status = 0 AND expiredAt <= DATEADD(SECOND, -?, GETDATE())";
+
+    /**
+     * Kết quả 1 lô hết hạn payment
+     */
+    public static final class ExpiryBatch {
+        private final int expired;
+        private final long maxLagMillis;
+
+        public ExpiryBatch(int expired, long maxLagMillis) {
+            this.expired = expired;
+            this.maxLagMillis = maxLagMillis;
+        }
+
+        public int getExpired() { return expired; }
+
+        // Thời gian payment chậm nhất trong lô đã chờ kể từ lúc đủ điều kiện hết hạn (expiredAt + grace)
+        public long getMaxLagMillis() { return maxLagMillis; }
+    }
+
     // Create payment record in database (legacy, no station/pin)
     public boolean createPayment(Integer userID, Integer servicePackID, String vnp_TxnRef, String orderInfo, Long vnp_Amount) throws SQLException {
         return createPayment(userID, servicePackID, vnp_TxnRef, orderInfo, vnp_Amount, 0, null);
@@ -79,34 +158,75 @@ public class VNPayPaymentDAO {
         return null;
     }
 
-    // Update payment status when payment is completed/failed
-    public boolean updatePaymentStatus(String vnp_TxnRef, int status, String vnp_TransactionNo, String vnp_ResponseCode, String vnp_TransactionStatus, String vnp_PayDate, String vnp_BankCode) throws SQLException {
-        System.out.println("=== VNPayPaymentDAO.updatePaymentStatus START ===");
-        System.out.println("Parameters: txnRef=" + vnp_TxnRef + ", status=" + status + ", transactionNo=" + vnp_TransactionNo + ", responseCode=" + vnp_ResponseCode);
-        
-        String sql = "UPDATE dbo.VNPayPaymentDTO SET status = ?, vnp_TransactionNo = ?, vnp_ResponseCode = ?, vnp_TransactionStatus = ?, vnp_PayDate = ?, vnp_BankCode = ?, updatedAt = GETDATE() WHERE vnp_TxnRef = ?";
+    /**
+     * Ghi kết quả callback VNPay (return URL / IPN) vào payment trong 1 round trip
+     * Chỉ payment đang pending (status = 0) và đúng số tiền mới được chuyển sang 1 (thành công) / 2 (thất bại),
+     * payment đã hết hạn (status = 3) chỉ nhận callback thành công (IPN đến sau khi job hết hạn chạy),
+     * callback gửi lại hoặc đến cùng lúc không ghi đè kết quả (trigger Subscription chỉ cộng lượt 1 lần)
+     * @param callbackAmount vnp_Amount VNPay gửi về (= số tiền * 100), null = không kiểm tra
+     */
+    public VNPayCallbackResult applyCallback(String vnp_TxnRef, int status, Long callbackAmount, String vnp_TransactionNo,
+            String vnp_ResponseCode, String vnp_TransactionStatus, String vnp_PayDate, String vnp_BankCode) throws SQLException {
+        try (Connection conn = DBUtils.getConnection(); PreparedStatement ptm = conn.prepareStatement(APPLY_CALLBACK_SQL)) {
+            ptm.setString(1, vnp_TxnRef);
+            ptm.setInt(2, status);
+            if (callbackAmount != null) ptm.setLong(3, callbackAmount); else ptm.setNull(3, java.sql.Types.BIGINT);
+            ptm.setString(4, vnp_TransactionNo);
+            ptm.setString(5, vnp_ResponseCode);
+            ptm.setString(6, vnp_TransactionStatus);
+            ptm.setString(7, vnp_PayDate);
+            ptm.setString(8, vnp_BankCode);
+            try (ResultSet rs = QueryExecutor.executeForResultSet(ptm)) {
+                if (!rs.next()) {
+                    throw new SQLException("Callback batch returned no result");
+                }
+                return VNPayCallbackResult.valueOf(rs.getString("reason"));
+            }
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("DB driver not found: " + e.getMessage());
+        } catch (SQLException e) {
+            System.out.println("ERROR: SQL Exception in applyCallback: " + e.getMessage());
+            throw new SQLException("Error applying VNPay callback: " + e.getMessage());
+        }
+    }
 
-        try (Connection conn = DBUtils.getConnection(); PreparedStatement ptm = conn.prepareStatement(sql)) {
-            ptm.setInt(1, status);
-            ptm.setString(2, vnp_TransactionNo);
-            ptm.setString(3, vnp_ResponseCode);
-            ptm.setString(4, vnp_TransactionStatus);
-            ptm.setString(5, vnp_PayDate);
-            ptm.setString(6, vnp_BankCode);
-            ptm.setString(7, vnp_TxnRef);
-
-            System.out.println("Executing SQL: " + sql);
-            int rows = ptm.executeUpdate();
-            System.out.println("Updated VNPayPayment status: txnRef=" + vnp_TxnRef + ", status=" + status + ", rows=" + rows);
-            System.out.println("=== VNPayPaymentDAO.updatePaymentStatus END ===");
-            return rows > 0;
+    /**
+     * Chuyển 1 lô payment pending quá hạn sang EXPIRED (status 3)
+     * @param graceSeconds chờ thêm sau expiredAt để IPN đến trễ của giao dịch đã thanh toán vẫn được ghi nhận
+     */
+    public ExpiryBatch expirePending(int batchSize, int graceSeconds) throws SQLException {
+        // Không dùng queryOne: setMaxRows(1) = SET ROWCOUNT 1, giới hạn luôn cả câu UPDATE trong batch
+        try (Connection conn = DBUtils.getConnection(); PreparedStatement ptm = conn.prepareStatement(EXPIRE_PENDING_SQL)) {
+            ptm.setInt(1, batchSize);
+            ptm.setInt(2, graceSeconds);
+            try (ResultSet rs = QueryExecutor.executeForResultSet(ptm)) {
+                if (!rs.next()) {
+                    throw new SQLException("Expiry batch returned no result");
+                }
+                return new ExpiryBatch(rs.getInt("expired"), rs.getLong("maxLagMillis"));
+            }
         } catch (ClassNotFoundException e) {
-            System.out.println("ERROR: DB driver not found: " + e.getMessage());
             throw new SQLException("DB driver not found: " + e.getMessage());
         } catch (SQLException e) {
-            System.out.println("ERROR: SQL Exception in updatePaymentStatus: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+            System.out.println("SQLException in expirePending: " + e.getMessage());
+            throw new SQLException("Error expiring pending VNPay payments: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Số payment pending đã quá hạn chưa được chuyển và tuổi của payment quá hạn lâu nhất
+     */
+    public Map<String, Object> getOverdueStats(int graceSeconds) throws SQLException {
+        try {
+            return QueryExecutor.primary().queryOne(OVERDUE_STATS_SQL, ptm -> ptm.setInt(1, graceSeconds), rs -> {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("overdue", rs.getInt("overdue"));
+                stats.put("oldestOverdueMillis", rs.getLong("oldestOverdueMillis"));
+                return stats;
+            });
+        } catch (SQLException e) {
+            System.out.println("SQLException in getOverdueStats: " + e.getMessage());
+            throw new SQLException("Error reading overdue VNPay payments: " + e.getMessage());
         }
     }
 
@@ -204,30 +324,13 @@ public class VNPayPaymentDAO {
         return 0;
     }
 
+    // Chỉ đọc -> chạy trên read replica nếu có cấu hình
     public List<VNPayPaymentDTO> getStatistic() throws SQLException {
-        List<VNPayPaymentDTO> history = new ArrayList<>();
-        String sql = "SELECT paymentID, packID, vnp_Amount, updatedAt, total, userID " +
-                     "FROM dbo.VNPayPaymentDTO where status = 1 ORDER BY createdAt DESC";
+        return QueryExecutor.replica().query(STATISTIC_SQL, StatementBinder.NONE, RowMappers.PAYMENT_STATISTIC);
+    }
 
-        try (Connection conn = DBUtils.getConnection(); PreparedStatement ptm = conn.prepareStatement(sql)) {
-            try (ResultSet rs = ptm.executeQuery()) {
-                while (rs.next()) {
-                    Integer packID = rs.getInt("packID");
-                    Integer paymentID = rs.getInt("paymentID");
-                    Long amount = rs.getLong("vnp_Amount");
-                    String updatedAt = rs.getString("updatedAt");
-                    Integer total = rs.getInt("total");
-                    Integer userID = rs.getInt("userID");
-                    
-                    // Sử dụng constructor cho payment history
-                    VNPayPaymentDTO dto = new VNPayPaymentDTO(packID, paymentID, amount, updatedAt, total, userID);
-                    history.add(dto);
-                }
-            }
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("DB driver not found: " + e.getMessage());
-        }
-        
-        return history;
+    // Export thống kê dạng streaming (không buffer cả list)
+    public int streamStatistic(RowHandler<VNPayPaymentDTO> handler) throws SQLException {
+        return QueryExecutor.replica().stream(STATISTIC_SQL, StatementBinder.NONE, RowMappers.PAYMENT_STATISTIC, handler);
     }
 }
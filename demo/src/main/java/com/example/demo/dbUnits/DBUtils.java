@@ -5,39 +5,298 @@
  */
 package com.example.demo.dbUnits;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
 /**
  * DBUtils for SQL Server connection
- * Giống như code cũ của bạn
+ * Khi chạy trong Spring, connection được lấy từ HikariCP pool (cấu hình spring.datasource.*
+ * trong application.properties, xem DataSourceConfig). Ngoài Spring context thì fallback
+ * về DriverManager giống như code cũ.
+ *
+ * Bulkhead: số connection primary được mượn cùng lúc bị giới hạn bởi 1 semaphore (app.db.max-concurrency).
+ * Khi chạy virtual thread, số request đồng thời không còn bị giới hạn bởi thread pool của Tomcat,
+ * semaphore giữ cho database không bị dồn quá nhiều câu lệnh; chờ quá lâu thì báo lỗi thay vì xếp hàng mãi.
+ * Permit được trả khi đóng connection. Connection giữ session lâu dài (getSessionConnection) không chiếm permit.
  * @author hd
  */
 public class DBUtils {
-    // Cấu hình SQL Server (giống như code cũ)
+    // Cấu hình SQL Server (fallback khi chưa có pool, giống như code cũ)
     private static final String DB_NAME = "TestSchedule";      // Tên database SQL Server
     private static final String USER_NAME = "sa";               // Username SQL Server
     private static final String PASSWORD = "12345";             // Password SQL Server
-    
+
+    // Connection pool dùng chung cho tất cả DAO
+    private static volatile DataSource dataSource;
+
+    // Pool của read replica (tùy chọn) cho các query chỉ đọc
+    private static volatile DataSource readDataSource;
+
+    // Metrics thời gian lấy connection từ pool
+    private static final LongAdder acquireCount = new LongAdder();
+    private static final LongAdder acquireFailures = new LongAdder();
+    private static final LongAdder acquireTotalNanos = new LongAdder();
+    private static final AtomicLong acquireMaxNanos = new AtomicLong();
+
+    // Bulkhead cho connection primary (null = không giới hạn ngoài pool)
+    private static volatile Semaphore dbPermits;
+    private static volatile int maxConcurrency;
+    private static volatile long maxWaitMillis;
+    private static final LongAdder bulkheadRejections = new LongAdder();
+
+    /**
+     * Đăng ký DataSource (pool) làm nguồn connection duy nhất cho các DAO
+     */
+    public static void setDataSource(DataSource ds) {
+        dataSource = ds;
+    }
+
+    public static DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Giới hạn số connection primary được mượn cùng lúc
+     * @param permits số câu lệnh database chạy đồng thời tối đa (<= 0 = không giới hạn)
+     * @param waitMillis thời gian chờ permit tối đa trước khi báo lỗi
+     */
+    public static void setMaxConcurrency(int permits, long waitMillis) {
+        maxConcurrency = Math.max(0, permits);
+        maxWaitMillis = waitMillis;
+        dbPermits = permits > 0 ? new Semaphore(permits) : null;
+    }
+
+    /**
+     * Đăng ký DataSource của read replica (null = đọc trên primary)
+     */
+    public static void setReadDataSource(DataSource ds) {
+        readDataSource = ds;
+    }
+
     /**
-     * Tạo kết nối đến SQL Server database
-     * @return Connection object
+     * Lấy kết nối đến SQL Server database
+     * @return Connection object (đóng connection sẽ trả nó về pool)
      * @throws ClassNotFoundException
      * @throws SQLException
      */
     public static Connection getConnection() throws ClassNotFoundException, SQLException {
-        Connection conn = null;
-        
+        DataSource ds = dataSource;
+        if (ds == null) {
+            return openDirectConnection();
+        }
+        Semaphore permits = dbPermits;
+        if (permits == null) {
+            return acquire(ds);
+        }
+        acquirePermit(permits);
+        try {
+            return withPermit(acquire(ds), permits);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Lấy connection primary để giữ trạng thái session lâu dài (application lock của JobLeaderLock)
+     * Không chiếm permit của bulkhead: connection này không bao giờ trả lại nên nếu giữ permit
+     * thì DAO vĩnh viễn mất bớt số câu lệnh đồng thời. Bỏ connection bằng evictConnection.
+     */
+    public static Connection getSessionConnection() throws ClassNotFoundException, SQLException {
+        DataSource ds = dataSource;
+        if (ds == null) {
+            return openDirectConnection();
+        }
+        return acquire(ds);
+    }
+
+    /**
+     * Lấy kết nối cho query chỉ đọc (không cần read-your-write)
+     * Dùng read replica nếu đã cấu hình, ngược lại dùng primary.
+     */
+    public static Connection getReadConnection() throws ClassNotFoundException, SQLException {
+        DataSource ds = readDataSource;
+        if (ds == null) {
+            return getConnection();
+        }
+        return acquire(ds);
+    }
+
+    private static Connection acquire(DataSource ds) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return ds.getConnection();
+        } catch (SQLException e) {
+            acquireFailures.increment();
+            throw e;
+        } finally {
+            recordAcquire(System.nanoTime() - start);
+        }
+    }
+
+    private static void acquirePermit(Semaphore permits) throws SQLException {
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                bulkheadRejections.increment();
+                throw new SQLException("Database is busy: no connection permit within " + maxWaitMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database permit", e);
+        }
+    }
+
+    // Bọc connection để close() trả permit đúng 1 lần
+    private static Connection withPermit(Connection conn, Semaphore permits) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new PermitConnection(conn, permits));
+    }
+
+    private static final class PermitConnection implements InvocationHandler {
+        final Connection delegate;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitConnection(Connection delegate, Semaphore permits) {
+            this.delegate = delegate;
+            this.permits = permits;
+        }
+
+        void releasePermit() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                try {
+                    delegate.close();
+                } finally {
+                    releasePermit();
+                }
+                return null;
+            }
+            try {
+                return method.invoke(delegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Bỏ hẳn connection khỏi pool thay vì trả lại (đóng connection vật lý, kết thúc session)
+     * Dùng cho connection giữ trạng thái session (application lock, ...) không được cho DAO khác mượn lại.
+     */
+    public static void evictConnection(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        PermitConnection permit = null;
+        Connection target = conn;
+        if (Proxy.isProxyClass(conn.getClass()) && Proxy.getInvocationHandler(conn) instanceof PermitConnection) {
+            permit = (PermitConnection) Proxy.getInvocationHandler(conn);
+            target = permit.delegate;
+        }
+        try {
+            DataSource ds = dataSource;
+            if (ds instanceof HikariDataSource) {
+                ((HikariDataSource) ds).evictConnection(target);
+            } else {
+                target.close();
+            }
+        } catch (SQLException e) {
+            System.out.println("Error evicting connection: " + e.getMessage());
+        } finally {
+            if (permit != null) {
+                permit.releasePermit();
+            }
+        }
+    }
+
+    // Kết nối trực tiếp không qua pool (code cũ)
+    private static Connection openDirectConnection() throws ClassNotFoundException, SQLException {
         // Load SQL Server JDBC Driver
         Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-        
+
         // Tạo SQL Server connection URL
         String url = "jdbc:sqlserver://localhost:1433;databaseName=" + DB_NAME + ";trustServerCertificate=true";
-        
+
         // Tạo connection với SQL Server
-        conn = DriverManager.getConnection(url, USER_NAME, PASSWORD);
-        
-        return conn;
+        return DriverManager.getConnection(url, USER_NAME, PASSWORD);
+    }
+
+    private static void recordAcquire(long nanos) {
+        acquireCount.increment();
+        acquireTotalNanos.add(nanos);
+        long max = acquireMaxNanos.get();
+        while (nanos > max && !acquireMaxNanos.compareAndSet(max, nanos)) {
+            max = acquireMaxNanos.get();
+        }
+    }
+
+    /**
+     * Thống kê connection pool: active / idle / waiting và thời gian lấy connection
+     */
+    public static Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        DataSource ds = dataSource;
+        stats.put("pooled", ds != null);
+        describePool(ds, stats);
+
+        long count = acquireCount.sum();
+        long totalNanos = acquireTotalNanos.sum();
+        stats.put("acquireCount", count);
+        stats.put("acquireFailures", acquireFailures.sum());
+        stats.put("acquireAvgMs", count == 0 ? 0.0 : (totalNanos / (double) count) / TimeUnit.MILLISECONDS.toNanos(1));
+        stats.put("acquireMaxMs", acquireMaxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1));
+
+        Semaphore permits = dbPermits;
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("availablePermits", permits != null ? permits.availablePermits() : null);
+        stats.put("waitingForPermit", permits != null ? permits.getQueueLength() : 0);
+        stats.put("bulkheadRejections", bulkheadRejections.sum());
+
+        DataSource readDs = readDataSource;
+        if (readDs != null) {
+            Map<String, Object> readStats = new LinkedHashMap<>();
+            describePool(readDs, readStats);
+            stats.put("readReplica", readStats);
+        }
+        return stats;
+    }
+
+    private static void describePool(DataSource ds, Map<String, Object> stats) {
+        if (ds instanceof HikariDataSource) {
+            HikariDataSource hikari = (HikariDataSource) ds;
+            stats.put("poolName", hikari.getPoolName());
+            stats.put("maximumPoolSize", hikari.getMaximumPoolSize());
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            if (pool != null) {
+                stats.put("activeConnections", pool.getActiveConnections());
+                stats.put("idleConnections", pool.getIdleConnections());
+                stats.put("totalConnections", pool.getTotalConnections());
+                stats.put("waitingThreads", pool.getThreadsAwaitingConnection());
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package com.example.demo.dbUnits;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lớp thực thi JDBC dùng chung cho các DAO
+ * Gom phần open/prepare/execute/close lặp lại ở mọi DAO vào một chỗ.
+ *
+ * - Connection lấy từ pool (DBUtils), đóng connection = trả về pool
+ * - Prepared statement được driver cache theo từng connection vật lý
+ *   (statementPoolingCacheSize trong application.properties), nên SQL giống nhau
+ *   không phải parse/prepare lại trên connection đã dùng trước đó
+ * - stream(): đọc ResultSet từng dòng, không buffer toàn bộ list
+ */
+public class QueryExecutor {
+
+    // Số dòng driver lấy mỗi lần khi stream
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    /**
+     * Nguồn connection (primary hoặc read replica)
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection open() throws ClassNotFoundException, SQLException;
+    }
+
+    private static final QueryExecutor PRIMARY = new QueryExecutor(DBUtils::getConnection);
+    private static final QueryExecutor REPLICA = new QueryExecutor(DBUtils::getReadConnection);
+
+    private final ConnectionSource connectionSource;
+
+    public QueryExecutor(ConnectionSource connectionSource) {
+        this.connectionSource = connectionSource;
+    }
+
+    /**
+     * Executor dùng database chính (đọc + ghi)
+     */
+    public static QueryExecutor primary() {
+        return PRIMARY;
+    }
+
+    /**
+     * Executor cho query chỉ đọc, chạy trên read replica nếu có cấu hình.
+     * Không dùng cho đọc ngay sau khi ghi (reserve rồi đọc lại, ...) vì replica có thể trễ.
+     */
+    public static QueryExecutor replica() {
+        return REPLICA;
+    }
+
+    /**
+     * Query trả về list DTO
+     */
+    public <T> List<T> query(String sql, StatementBinder binder, RowMapper<T> mapper) throws SQLException {
+        List<T> result = new ArrayList<>();
+        try (Connection conn = openConnection();
+             PreparedStatement ptm = conn.prepareStatement(sql)) {
+            binder.bind(ptm);
+            try (ResultSet rs = executeForResultSet(ptm)) {
+                while (rs.next()) {
+                    result.add(mapper.mapRow(rs));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Query trả về 1 DTO (dòng đầu tiên) hoặc null nếu không có dòng nào
+     */
+    public <T> T queryOne(String sql, StatementBinder binder, RowMapper<T> mapper) throws SQLException {
+        try (Connection conn = openConnection();
+             PreparedStatement ptm = conn.prepareStatement(sql)) {
+            binder.bind(ptm);
+            ptm.setMaxRows(1);
+            try (ResultSet rs = executeForResultSet(ptm)) {
+                return rs.next() ? mapper.mapRow(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * INSERT / UPDATE / DELETE, trả về số dòng bị ảnh hưởng
+     */
+    public int update(String sql, StatementBinder binder) throws SQLException {
+        try (Connection conn = openConnection();
+             PreparedStatement ptm = conn.prepareStatement(sql)) {
+            binder.bind(ptm);
+            return ptm.executeUpdate();
+        }
+    }
+
+    /**
+     * Đọc ResultSet dạng streaming: mỗi dòng được map rồi đưa ngay cho handler,
+     * bộ nhớ không tăng theo số dòng của bảng.
+     * @return số dòng đã xử lý
+     */
+    public <T> int stream(String sql, StatementBinder binder, RowMapper<T> mapper, RowHandler<T> handler) throws SQLException {
+        int count = 0;
+        try (Connection conn = openConnection();
+             PreparedStatement ptm = conn.prepareStatement(sql)) {
+            binder.bind(ptm);
+            ptm.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet rs = executeForResultSet(ptm)) {
+                while (rs.next()) {
+                    handler.handle(mapper.mapRow(rs));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Error streaming rows: " + e.getMessage(), e);
+        }
+        return count;
+    }
+
+    /**
+     * Thực thi statement và trả về ResultSet đầu tiên, bỏ qua các update count phía trước.
+     * Cho phép 1 câu SQL dạng batch (UPDATE ...; SELECT ...) chạy trong 1 round trip.
+     */
+    public static ResultSet executeForResultSet(PreparedStatement ptm) throws SQLException {
+        boolean isResultSet = ptm.execute();
+        while (!isResultSet) {
+            if (ptm.getUpdateCount() == -1) {
+                throw new SQLException("The statement did not return a result set");
+            }
+            isResultSet = ptm.getMoreResults();
+        }
+        return ptm.getResultSet();
+    }
+
+    private Connection openConnection() throws SQLException {
+        try {
+            Connection conn = connectionSource.open();
+            if (conn == null) {
+                throw new SQLException("Cannot open database connection");
+            }
+            return conn;
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Database driver not found: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.demo.dbUnits;
+
+/**
+ * Xử lý từng dòng khi đọc ResultSet dạng streaming (không buffer cả list)
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+    void handle(T row) throws Exception;
+}
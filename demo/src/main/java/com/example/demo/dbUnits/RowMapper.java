@@ -0,0 +1,12 @@
+package com.example.demo.dbUnits;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Chuyển một dòng ResultSet (dòng hiện tại) thành DTO
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T mapRow(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,14 @@
+package com.example.demo.dbUnits;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Gán giá trị cho các tham số (?) của PreparedStatement
+ */
+@FunctionalInterface
+public interface StatementBinder {
+    StatementBinder NONE = ptm -> { };
+
+    void bind(PreparedStatement ptm) throws SQLException;
+}
@@ -1,5 +1,7 @@
 package com.example.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * API Response DTO
  * Cấu trúc chuẩn cho tất cả API response
@@ -10,6 +12,10 @@ public class ApiResponse<T> {
     private T data;            // Dữ liệu (có thể là UserDTO, List, etc.)
     private String error;      // Chi tiết lỗi (nếu có)
     private long timestamp;    // Thời gian response
+
+    // Cursor để lấy trang tiếp theo (chỉ có ở API phân trang, null = hết dữ liệu)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
     
     // Constructors
     public ApiResponse() {
@@ -32,6 +38,12 @@ public class ApiResponse<T> {
         return new ApiResponse<>("success", message, data);
     }
     
+    public static <T> ApiResponse<T> success(String message, T data, String nextCursor) {
+        ApiResponse<T> response = new ApiResponse<>("success", message, data);
+        response.setNextCursor(nextCursor);
+        return response;
+    }
+    
     public static <T> ApiResponse<T> success(String message) {
         return new ApiResponse<>("success", message);
     }
@@ -87,4 +99,12 @@ public class ApiResponse<T> {
     public void setTimestamp(long timestamp) {
         this.timestamp = timestamp;
     }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
\ No newline at end of file
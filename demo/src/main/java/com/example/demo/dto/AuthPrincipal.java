@@ -0,0 +1,31 @@
+package com.example.demo.dto;
+
+/**
+ * Thông tin người gọi API lấy từ token đăng nhập (đã verify chữ ký)
+ * AuthTokenFilter gắn vào request attribute AuthTokenFilter.PRINCIPAL_ATTRIBUTE
+ */
+public class AuthPrincipal {
+    private final int userID;
+    private final int roleID;
+    private final int status;
+    private final long issuedAt;
+    private final long expiresAt;
+
+    public AuthPrincipal(int userID, int roleID, int status, long issuedAt, long expiresAt) {
+        this.userID = userID;
+        this.roleID = roleID;
+        this.status = status;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public int getUserID() { return userID; }
+
+    public int getRoleID() { return roleID; }
+
+    public int getStatus() { return status; }
+
+    public long getIssuedAt() { return issuedAt; }
+
+    public long getExpiresAt() { return expiresAt; }
+}
@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+/**
+ * PinStation kèm khoảng cách (km) tới vị trí tìm kiếm, dùng cho /pinStation/nearby
+ */
+public class NearbyStationDTO extends PinStationDTO {
+    private double distanceKm;
+
+    // Default constructor
+    public NearbyStationDTO() {}
+
+    public NearbyStationDTO(PinStationDTO station, double distanceKm) {
+        super(station.getStationID(), station.getStationName(), station.getLocation(), station.getStatus(),
+                station.getCreateAt(), station.getX(), station.getY(), station.getUserID());
+        this.distanceKm = distanceKm;
+    }
+
+    public double getDistanceKm() { return distanceKm; }
+    public void setDistanceKm(double distanceKm) { this.distanceKm = distanceKm; }
+}
@@ -0,0 +1,86 @@
+package com.example.demo.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Cursor cho keyset pagination theo (createAt DESC, transactionID DESC)
+ * Token gửi cho client là base64url của "createAtMillis:transactionID" ("" thay cho createAtMillis khi createAt NULL).
+ *
+ * DAO seek trực tiếp theo giá trị trong cursor ((createAt, transactionID) < (?, ?)), không đọc lại dòng neo,
+ * nên dòng neo bị xóa thì trang sau vẫn đúng. createAt NULL đứng cuối danh sách (SQL Server sắp NULL nhỏ nhất).
+ */
+public class PageCursor {
+
+    // Số dòng mặc định / tối đa mỗi trang
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    // null = dòng neo có createAt NULL
+    private final Long createAtMillis;
+    private final int transactionID;
+
+    public PageCursor(Long createAtMillis, int transactionID) {
+        this.createAtMillis = createAtMillis;
+        this.transactionID = transactionID;
+    }
+
+    /**
+     * Tạo cursor từ dòng cuối cùng của trang hiện tại
+     */
+    public static String encode(TransactionDTO last) {
+        Date createAt = last.getCreateAt();
+        String raw = (createAt != null ? String.valueOf(createAt.getTime()) : "") + ":" + last.getTransactionID();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Đọc cursor từ client
+     * @return null nếu không truyền cursor (trang đầu tiên)
+     * @throws IllegalArgumentException nếu cursor không hợp lệ
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.US_ASCII);
+            int sep = raw.indexOf(':');
+            Long createAtMillis = sep == 0 ? null : Long.valueOf(raw.substring(0, sep));
+            int transactionID = Integer.parseInt(raw.substring(sep + 1));
+            if (transactionID <= 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new PageCursor(createAtMillis, transactionID);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Giới hạn page size trong khoảng 1..MAX_PAGE_SIZE
+     */
+    public static int normalizePageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    public Long getCreateAtMillis() {
+        return createAtMillis;
+    }
+
+    /**
+     * createAt của dòng neo để bind vào câu seek, null nếu dòng neo có createAt NULL
+     */
+    public Timestamp getCreateAt() {
+        return createAtMillis != null ? new Timestamp(createAtMillis) : null;
+    }
+
+    public int getTransactionID() {
+        return transactionID;
+    }
+}
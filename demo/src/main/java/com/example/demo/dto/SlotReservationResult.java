@@ -0,0 +1,27 @@
+package com.example.demo.dto;
+
+/**
+ * Kết quả đặt chỗ / hủy đặt chỗ pin slot (compare-and-set 1 round trip)
+ */
+public enum SlotReservationResult {
+    RESERVED("Pin slot reserved successfully"),
+    UNRESERVED("Pin slot unreserved successfully"),
+    NOT_FOUND("Pin slot does not exist"),
+    NOT_AVAILABLE("Pin slot is not available (status must be 1)"),
+    NOT_CHARGED("Pin slot battery is not fully charged (pinStatus must be 1)"),
+    NOT_RESERVED("Pin slot is not currently reserved (status must be 2)");
+
+    private final String message;
+
+    SlotReservationResult(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isSuccess() {
+        return this == RESERVED || this == UNRESERVED;
+    }
+}
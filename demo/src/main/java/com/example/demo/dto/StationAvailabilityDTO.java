@@ -0,0 +1,59 @@
+package com.example.demo.dto;
+
+/**
+ * Số lượng pin slot theo trạng thái của 1 station
+ * - available: status = 1 và pinStatus = 1 (đặt chỗ được ngay)
+ * - reserved: status = 2
+ * - charging: pinStatus = 0
+ * - full: pinStatus = 1
+ */
+public class StationAvailabilityDTO {
+    private int stationID;
+    private int totalSlots;
+    private int available;
+    private int reserved;
+    private int charging;
+    private int full;
+
+    // Default constructor
+    public StationAvailabilityDTO() {}
+
+    public StationAvailabilityDTO(int stationID, int totalSlots, int available, int reserved, int charging, int full) {
+        this.stationID = stationID;
+        this.totalSlots = totalSlots;
+        this.available = available;
+        this.reserved = reserved;
+        this.charging = charging;
+        this.full = full;
+    }
+
+    public int getStationID() { return stationID; }
+    public void setStationID(int stationID) { this.stationID = stationID; }
+
+    public int getTotalSlots() { return totalSlots; }
+    public void setTotalSlots(int totalSlots) { this.totalSlots = totalSlots; }
+
+    public int getAvailable() { return available; }
+    public void setAvailable(int available) { this.available = available; }
+
+    public int getReserved() { return reserved; }
+    public void setReserved(int reserved) { this.reserved = reserved; }
+
+    public int getCharging() { return charging; }
+    public void setCharging(int charging) { this.charging = charging; }
+
+    public int getFull() { return full; }
+    public void setFull(int full) { this.full = full; }
+
+    @Override
+    public String toString() {
+        return "StationAvailabilityDTO{" +
+                "stationID=" + stationID +
+                ", totalSlots=" + totalSlots +
+                ", available=" + available +
+                ", reserved=" + reserved +
+                ", charging=" + charging +
+                ", full=" + full +
+                '}';
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.dto;
+
+/**
+ * Kết quả 1 lần swap pin (/api/swap/execute)
+ */
+public enum SwapResult {
+    SWAPPED("Battery swapped successfully"),
+    VEHICLE_NOT_FOUND("Vehicle does not exist"),
+    VEHICLE_NOT_OWNED("Vehicle does not belong to the user"),
+    NOT_ACTIVE_DRIVER("Vehicle owner is not an active driver (roleID must be 1 and status must be 1)"),
+    PIN_SLOT_NOT_FOUND("Pin slot does not exist"),
+    PIN_SLOT_NOT_IN_STATION("Pin slot does not belong to the station"),
+    PIN_SLOT_NOT_AVAILABLE("Pin slot is not available (must be available or reserved by this user)"),
+    PIN_SLOT_NOT_CHARGED("Pin slot battery is not fully charged (pinStatus must be 1)"),
+    NO_SUBSCRIPTION_BALANCE("User has no remaining swaps in subscription"),
+    IDEMPOTENCY_KEY_CONFLICT("Idempotency-Key was already used for a different swap");
+
+    private final String message;
+
+    SwapResult(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isSuccess() {
+        return this == SWAPPED;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.demo.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Kết quả /api/swap/execute
+ * - vehiclePin*: pin mới trên xe (lấy từ slot), slotPin*: pin cũ của xe đang nằm trong slot
+ * - replayed: true nếu Idempotency-Key đã swap trước đó (cùng tham số), dữ liệu trả về là kết quả của lần đó
+ * - Không swap được (kể cả IDEMPOTENCY_KEY_CONFLICT): transactionID, vehiclePin*, slotPin*, remainingTotal = null
+ * - latencyMillis: thời gian từng phần (lấy connection, round trip database, thời gian chạy trên server, tổng)
+ */
+public class SwapResultDTO {
+    private SwapResult result;
+    private boolean replayed;
+    private Integer transactionID;
+    private int userID;
+    private int vehicleID;
+    private int stationID;
+    private int pinID;
+    private Integer vehiclePinPercent;
+    private Integer vehiclePinHealth;
+    private Integer slotPinPercent;
+    private Integer slotPinHealth;
+    private Integer remainingTotal;
+    private Map<String, Double> latencyMillis = new LinkedHashMap<>();
+
+    // Default constructor
+    public SwapResultDTO() {}
+
+    public SwapResult getResult() { return result; }
+    public void setResult(SwapResult result) { this.result = result; }
+
+    @JsonIgnore
+    public boolean isSuccess() { return result != null && result.isSuccess(); }
+
+    public boolean isReplayed() { return replayed; }
+    public void setReplayed(boolean replayed) { this.replayed = replayed; }
+
+    public Integer getTransactionID() { return transactionID; }
+    public void setTransactionID(Integer transactionID) { this.transactionID = transactionID; }
+
+    public int getUserID() { return userID; }
+    public void setUserID(int userID) { this.userID = userID; }
+
+    public int getVehicleID() { return vehicleID; }
+    public void setVehicleID(int vehicleID) { this.vehicleID = vehicleID; }
+
+    public int getStationID() { return stationID; }
+    public void setStationID(int stationID) { this.stationID = stationID; }
+
+    public int getPinID() { return pinID; }
+    public void setPinID(int pinID) { this.pinID = pinID; }
+
+    public Integer getVehiclePinPercent() { return vehiclePinPercent; }
+    public void setVehiclePinPercent(Integer vehiclePinPercent) { this.vehiclePinPercent = vehiclePinPercent; }
+
+    public Integer getVehiclePinHealth() { return vehiclePinHealth; }
+    public void setVehiclePinHealth(Integer vehiclePinHealth) { this.vehiclePinHealth = vehiclePinHealth; }
+
+    public Integer getSlotPinPercent() { return slotPinPercent; }
+    public void setSlotPinPercent(Integer slotPinPercent) { this.slotPinPercent = slotPinPercent; }
+
+    public Integer getSlotPinHealth() { return slotPinHealth; }
+    public void setSlotPinHealth(Integer slotPinHealth) { this.slotPinHealth = slotPinHealth; }
+
+    public Integer getRemainingTotal() { return remainingTotal; }
+    public void setRemainingTotal(Integer remainingTotal) { this.remainingTotal = remainingTotal; }
+
+    public Map<String, Double> getLatencyMillis() { return latencyMillis; }
+    public void setLatencyMillis(Map<String, Double> latencyMillis) { this.latencyMillis = latencyMillis; }
+
+    @Override
+    public String toString() {
+        return "SwapResultDTO{" +
+                "result=" + result +
+                ", replayed=" + replayed +
+                ", transactionID=" + transactionID +
+                ", userID=" + userID +
+                ", vehicleID=" + vehicleID +
+                ", stationID=" + stationID +
+                ", pinID=" + pinID +
+                ", vehiclePinPercent=" + vehiclePinPercent +
+                ", vehiclePinHealth=" + vehiclePinHealth +
+                ", slotPinPercent=" + slotPinPercent +
+                ", slotPinHealth=" + slotPinHealth +
+                ", remainingTotal=" + remainingTotal +
+                ", latencyMillis=" + latencyMillis +
+                '}';
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.dto;
+
+/**
+ * Kết quả tạo transaction (kiểm tra + insert trong 1 round trip)
+ */
+public enum TransactionCreateResult {
+    CREATED("Transaction created successfully"),
+    VEHICLE_NOT_FOUND("Vehicle does not exist"),
+    VEHICLE_NOT_OWNED("Vehicle does not belong to the user"),
+    NOT_ACTIVE_DRIVER("Vehicle owner is not an active driver (roleID must be 1 and status must be 1)"),
+    PIN_SLOT_NOT_FOUND("Pin slot does not exist"),
+    PIN_SLOT_NOT_IN_STATION("Pin slot does not belong to the station");
+
+    private final String message;
+
+    TransactionCreateResult(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isSuccess() {
+        return this == CREATED;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class UserDTO {
     private int userID;
     private String Name;
@@ -9,6 +11,10 @@ public class UserDTO {
     private int roleID;
     private int status;  // 0: inactive, 1: active
 
+    // Token đăng nhập (chỉ có trong response /login)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String token;
+
     public UserDTO() {
         this.userID = 0;
         this.Name = "";
@@ -84,4 +90,12 @@ public class UserDTO {
     public void setStatus(int status) {
         this.status = status;
     }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
 }
@@ -0,0 +1,37 @@
+package com.example.demo.dto;
+
+/**
+ * Kết quả xử lý callback VNPay (return URL / IPN) - kiểm tra chữ ký + chuyển trạng thái payment 1 round trip
+ * rspCode là mã trả về cho VNPay ở IPN
+ */
+public enum VNPayCallbackResult {
+    CONFIRMED("00", "Confirm Success"),
+    PAYMENT_FAILED("00", "Confirm Success"),
+    ALREADY_CONFIRMED("02", "Order already confirmed"),
+    ORDER_NOT_FOUND("01", "Order not Found"),
+    INVALID_AMOUNT("04", "Invalid Amount"),
+    INVALID_SIGNATURE("97", "Invalid Checksum"),
+    // IPN đã lưu vào inbox (VNPayIpnInboxService) sau khi kiểm tra có payment và đúng số tiền, worker cập nhật payment sau
+    RECEIVED("00", "Confirm Success");
+
+    private final String rspCode;
+    private final String message;
+
+    VNPayCallbackResult(String rspCode, String message) {
+        this.rspCode = rspCode;
+        this.message = message;
+    }
+
+    public String getRspCode() {
+        return rspCode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // Callback này đã ghi trạng thái mới (1 = thành công, 2 = thất bại) cho payment
+    public boolean isApplied() {
+        return this == CONFIRMED || this == PAYMENT_FAILED;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.dto;
+
+/**
+ * 1 IPN VNPay trong inbox (bảng VNPayIpnInbox)
+ * status: 0 = chờ xử lý, 1 = đã xử lý, 2 = bỏ sau quá số lần thử
+ */
+public class VNPayIpnInboxDTO {
+    private long inboxID;
+    private String txnRef;
+    // Các field đã kiểm tra chữ ký, dạng name=value&... (URL encode UTF-8)
+    private String payload;
+    private int status;
+    private int attempts;
+    private String result;
+    // Thời gian từ lúc nhận IPN đến lúc worker lấy ra xử lý
+    private long lagMillis;
+    // true nếu vừa được thêm vào inbox (false = IPN gửi lại cùng vnp_TxnRef)
+    private boolean created;
+    // true nếu IPN gửi lại đưa dòng đã bỏ (status 2) về chờ xử lý
+    private boolean requeued;
+    // true nếu không ghi vào inbox vì không có payment / sai số tiền (result = ORDER_NOT_FOUND / INVALID_AMOUNT)
+    private boolean rejected;
+
+    public VNPayIpnInboxDTO() {
+    }
+
+    public long getInboxID() { return inboxID; }
+
+    public void setInboxID(long inboxID) { this.inboxID = inboxID; }
+
+    public String getTxnRef() { return txnRef; }
+
+    public void setTxnRef(String txnRef) { this.txnRef = txnRef; }
+
+    public String getPayload() { return payload; }
+
+    public void setPayload(String payload) { this.payload = payload; }
+
+    public int getStatus() { return status; }
+
+    public void setStatus(int status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public String getResult() { return result; }
+
+    public void setResult(String result) { this.result = result; }
+
+    public long getLagMillis() { return lagMillis; }
+
+    public void setLagMillis(long lagMillis) { this.lagMillis = lagMillis; }
+
+    public boolean isCreated() { return created; }
+
+    public void setCreated(boolean created) { this.created = created; }
+
+    public boolean isRequeued() { return requeued; }
+
+    public void setRequeued(boolean requeued) { this.requeued = requeued; }
+
+    public boolean isRejected() { return rejected; }
+
+    public void setRejected(boolean rejected) { this.rejected = rejected; }
+}
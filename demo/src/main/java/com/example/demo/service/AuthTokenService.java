@@ -0,0 +1,117 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.cache.TokenRevocationList;
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.dto.UserDTO;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Cấp và kiểm tra token đăng nhập ký bằng HMAC-SHA256 (stateless, không cần query database)
+ *
+ * Token = base64url(payload) + "." + base64url(HMAC(payload))
+ * payload = "userID:roleID:status:issuedAtMillis:expiresAtMillis"
+ *
+ * - Bắt buộc cấu hình app.auth.token-secret (giống nhau trên mọi node), không có thì không khởi động
+ * - Thu hồi (TokenRevocationList) chỉ có hiệu lực trên node đã cập nhật user, node khác chờ token hết hạn
+ */
+@Service
+public class AuthTokenService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    @Value("${app.auth.token-secret:}")
+    private String tokenSecret;
+
+    @Value("${app.auth.token-ttl-seconds:86400}")
+    private long tokenTtlSeconds;
+
+    // Mac đã init key dùng lại giữa các request (verify chạy ở mọi request có token)
+    private HmacSigner signer;
+
+    @PostConstruct
+    public void init() {
+        // Không dùng secret ngẫu nhiên theo process: node khác (và chính node này sau khi restart)
+        // sẽ trả 401 cho token đã cấp
+        if (tokenSecret == null || tokenSecret.isBlank()) {
+            throw new IllegalStateException("app.auth.token-secret (AUTH_TOKEN_SECRET) is not set, "
+                    + "configure the same secret on every node");
+        }
+        signer = new HmacSigner(HMAC_ALGORITHM, tokenSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getTokenTtlMillis() {
+        return tokenTtlSeconds * 1000;
+    }
+
+    /**
+     * Tạo token cho user vừa đăng nhập
+     */
+    public String issueToken(UserDTO user) {
+        long issuedAt = System.currentTimeMillis();
+        long expiresAt = issuedAt + getTokenTtlMillis();
+        String payload = user.getUserID() + ":" + user.getRoleID() + ":" + user.getStatus() + ":" + issuedAt + ":" + expiresAt;
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.US_ASCII);
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(sign(payloadBytes));
+    }
+
+    /**
+     * Kiểm tra chữ ký, hạn sử dụng và danh sách thu hồi
+     * @return principal hoặc null nếu token không hợp lệ
+     */
+    public AuthPrincipal verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payloadBytes = decoder.decode(token.substring(0, dot));
+            byte[] signature = decoder.decode(token.substring(dot + 1));
+            // So sánh thời gian hằng để không lộ chữ ký qua timing
+            if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+                return null;
+            }
+
+            String[] parts = new String(payloadBytes, StandardCharsets.US_ASCII).split(":");
+            if (parts.length != 5) {
+                return null;
+            }
+            AuthPrincipal principal = new AuthPrincipal(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]));
+
+            if (principal.getExpiresAt() < System.currentTimeMillis() || principal.getStatus() != 1) {
+                return null;
+            }
+            if (TokenRevocationList.isRevoked(principal.getUserID(), principal.getIssuedAt())) {
+                return null;
+            }
+            return principal;
+        } catch (IllegalArgumentException e) {
+            // Base64 hoặc số không hợp lệ
+            return null;
+        }
+    }
+
+    // Dọn danh sách thu hồi: token cấp trước thời điểm thu hồi đều đã hết hạn
+    @Scheduled(fixedRate = 3600000)
+    public void pruneRevocations() {
+        TokenRevocationList.prune(getTokenTtlMillis());
+    }
+
+    private byte[] sign(byte[] payload) {
+        return signer.sign(payload);
+    }
+}
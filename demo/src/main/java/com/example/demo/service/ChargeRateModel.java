@@ -0,0 +1,17 @@
+package com.example.demo.service;
+
+/**
+ * Mô hình tốc độ sạc pin dùng cho ChargingEngine
+ * Muốn thay mô hình mặc định thì khai báo bean implement interface này với @Primary.
+ */
+@FunctionalInterface
+public interface ChargeRateModel {
+
+    /**
+     * Tốc độ sạc tại mức pin hiện tại
+     * @param soc phần trăm pin hiện tại (0-100, có phần thập phân)
+     * @param pinHealth sức khỏe pin (0-100)
+     * @return số phần trăm pin tăng thêm mỗi phút
+     */
+    double percentPerMinute(double soc, int pinHealth);
+}
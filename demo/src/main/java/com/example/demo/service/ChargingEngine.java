@@ -0,0 +1,171 @@
+package com.example.demo.service;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.cache.ChargingStaleTracker;
+import com.example.demo.cache.PinSlotCache;
+import com.example.demo.dao.PinSlotDAO;
+import com.example.demo.dto.PinSlotDTO;
+
+/**
+ * Engine sạc pin chạy trong JVM, thay cho procedure dbo.UpdatePinPercent (bật bằng app.charging.engine.enabled)
+ *
+ * Mỗi lần tick():
+ * 1. Load toàn bộ slot lần đầu / khi bị đánh dấu / định kỳ mỗi app.charging.engine.full-reload-seconds,
+ *    hoặc chỉ đọc lại các slot bị thay đổi từ bên ngoài (ChargingStaleTracker)
+ *    ChargingStaleTracker chỉ thấy thay đổi trên node này, còn job chỉ chạy trên leader:
+ *    thay đổi qua node khác chỉ được thấy nhờ lần load định kỳ
+ * 2. Sạc các slot đang sạc theo thời gian thực đã trôi qua, tốc độ lấy từ ChargeRateModel
+ * 3. Ghi xuống database chỉ các slot có pinPercent / pinStatus thay đổi, bằng JDBC batch
+ */
+@Service
+public class ChargingEngine {
+
+    // 3 chu kỳ tick (1 phút, ScheduledJobs) không chạy thì coi như vừa nhận lại leader
+    private static final long RESUME_GAP_MILLIS = 180000;
+
+    @Autowired
+    private ChargeRateModel chargeRateModel;
+
+    @Value("${app.charging.engine.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.charging.engine.full-reload-seconds:300}")
+    private long fullReloadSeconds;
+
+    private final PinSlotDAO pinSlotDAO = new PinSlotDAO();
+    private final ChargingSimulation simulation = new ChargingSimulation();
+
+    private boolean loaded = false;
+    private long lastTickAt;
+    private long lastFullReloadAt;
+
+    // Metrics
+    private long ticks;
+    private long fullReloads;
+    private long refreshedSlots;
+    private long writtenRows;
+    private long conflicts;
+    private long lastTickMillis;
+    private int lastChangedRows;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Chạy 1 vòng sạc
+     * @return số slot đã ghi xuống database
+     */
+    public synchronized int tick() throws SQLException {
+        long start = System.currentTimeMillis();
+        long fullReloadMillis = fullReloadSeconds * 1000;
+        // Lâu không tick (mất leader rồi nhận lại, ...): node khác đã sạc trong khoảng đó
+        boolean resumed = loaded && start - lastTickAt > RESUME_GAP_MILLIS;
+
+        if (!loaded || ChargingStaleTracker.consumeAllStale() || resumed || start - lastFullReloadAt >= fullReloadMillis) {
+            // Load lại toàn bộ thì các pin lẻ đã đánh dấu cũng không cần đọc riêng
+            ChargingStaleTracker.drainStalePins();
+            try {
+                simulation.load(pinSlotDAO.getListPinSlot());
+            } catch (SQLException e) {
+                ChargingStaleTracker.markAllStale();
+                throw e;
+            }
+            fullReloads++;
+            lastFullReloadAt = start;
+            if (!loaded || resumed) {
+                loaded = true;
+                lastTickAt = start;
+            }
+        } else {
+            refreshStalePins();
+        }
+
+        double elapsedMinutes = (start - lastTickAt) / 60000.0;
+        lastTickAt = start;
+        List<ChargingSimulation.Change> changes = simulation.advance(elapsedMinutes, chargeRateModel);
+
+        List<Integer> conflictPins;
+        try {
+            conflictPins = pinSlotDAO.updateChargeBatch(changes);
+        } catch (SQLException e) {
+            // Không biết chunk nào đã ghi -> lần sau load lại toàn bộ từ database
+            ChargingStaleTracker.markAllStale();
+            throw e;
+        }
+        for (Integer pinID : conflictPins) {
+            ChargingStaleTracker.markPinStale(pinID);
+        }
+
+        Set<Integer> stations = new HashSet<>();
+        for (ChargingSimulation.Change change : changes) {
+            stations.add(change.getStationID());
+        }
+        for (Integer stationID : stations) {
+            PinSlotCache.invalidateStation(stationID);
+        }
+
+        int written = changes.size() - conflictPins.size();
+        ticks++;
+        writtenRows += written;
+        conflicts += conflictPins.size();
+        lastChangedRows = written;
+        lastTickMillis = System.currentTimeMillis() - start;
+        return written;
+    }
+
+    // Đọc lại các slot bị thay đổi ngoài engine (update, swap, ...)
+    private void refreshStalePins() throws SQLException {
+        List<Integer> stale = ChargingStaleTracker.drainStalePins();
+        if (stale.isEmpty()) {
+            return;
+        }
+        List<PinSlotDTO> slots;
+        try {
+            slots = pinSlotDAO.getPinSlotsByIds(stale);
+        } catch (SQLException e) {
+            for (Integer pinID : stale) {
+                ChargingStaleTracker.markPinStale(pinID);
+            }
+            throw e;
+        }
+        Set<Integer> found = new HashSet<>();
+        for (PinSlotDTO slot : slots) {
+            simulation.upsert(slot);
+            found.add(slot.getPinID());
+        }
+        for (Integer pinID : stale) {
+            if (!found.contains(pinID)) {
+                simulation.remove(pinID);
+            }
+        }
+        refreshedSlots += stale.size();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("fullReloadSeconds", fullReloadSeconds);
+        stats.put("rateModel", chargeRateModel.getClass().getSimpleName());
+        stats.put("trackedSlots", simulation.size());
+        stats.put("chargingSlots", simulation.chargingCount());
+        stats.put("ticks", ticks);
+        stats.put("fullReloads", fullReloads);
+        stats.put("refreshedSlots", refreshedSlots);
+        stats.put("writtenRows", writtenRows);
+        stats.put("conflicts", conflicts);
+        stats.put("lastChangedRows", lastChangedRows);
+        stats.put("lastTickMillis", lastTickMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.demo.dto.PinSlotDTO;
+
+/**
+ * Trạng thái sạc (SOC) của tất cả pin slot, không phụ thuộc database / Spring
+ *
+ * - Lưu dạng mảng song song theo index, pinID -> index qua map
+ * - Chỉ slot đang sạc (pinStatus = 0) nằm trong danh sách charging, advance() chỉ duyệt danh sách này
+ * - SOC giữ phần thập phân trong bộ nhớ, database chỉ lưu phần nguyên (pinPercent)
+ *   nên advance() chỉ trả về slot có pinPercent / pinStatus thực sự thay đổi
+ * - pinStatus suy ra từ pinPercent: >= 100 là 1 (đầy), còn lại là 0 (đang sạc)
+ *
+ * Không thread-safe, ChargingEngine gọi trong synchronized.
+ */
+public class ChargingSimulation {
+
+    // Bước tích phân tối đa (phút), tốc độ sạc phụ thuộc SOC nên chia nhỏ khoảng thời gian dài
+    private static final double MAX_STEP_MINUTES = 1.0;
+
+    /**
+     * Slot có pinPercent / pinStatus thay đổi sau 1 lần advance
+     */
+    public static final class Change {
+        private final int pinID;
+        private final int stationID;
+        private final int previousPercent;
+        private final int pinPercent;
+        private final int pinStatus;
+
+        Change(int pinID, int stationID, int previousPercent, int pinPercent, int pinStatus) {
+            this.pinID = pinID;
+            this.stationID = stationID;
+            this.previousPercent = previousPercent;
+            this.pinPercent = pinPercent;
+            this.pinStatus = pinStatus;
+        }
+
+        public int getPinID() { return pinID; }
+
+        public int getStationID() { return stationID; }
+
+        public int getPreviousPercent() { return previousPercent; }
+
+        public int getPinPercent() { return pinPercent; }
+
+        public int getPinStatus() { return pinStatus; }
+    }
+
+    private final Map<Integer, Integer> indexOfPin = new HashMap<>();
+
+    private int size;
+    private int[] pinIDs = new int[16];
+    private int[] stationIDs = new int[16];
+    private double[] soc = new double[16];
+    private int[] percent = new int[16];
+    private int[] health = new int[16];
+    private int[] pinStatus = new int[16];
+
+    // Danh sách index đang sạc và vị trí của mỗi index trong danh sách (-1 nếu không sạc)
+    private int chargingCount;
+    private int[] charging = new int[16];
+    private int[] chargingPosition = new int[16];
+
+    /**
+     * Thay toàn bộ trạng thái bằng dữ liệu vừa load
+     */
+    public void load(Collection<PinSlotDTO> slots) {
+        indexOfPin.clear();
+        size = 0;
+        chargingCount = 0;
+        for (PinSlotDTO slot : slots) {
+            upsert(slot);
+        }
+    }
+
+    /**
+     * Thêm hoặc cập nhật 1 slot từ dữ liệu database (bỏ phần thập phân SOC đang có)
+     */
+    public void upsert(PinSlotDTO slot) {
+        Integer existing = indexOfPin.get(slot.getPinID());
+        int index;
+        if (existing != null) {
+            index = existing;
+        } else {
+            ensureCapacity(size + 1);
+            index = size++;
+            indexOfPin.put(slot.getPinID(), index);
+            chargingPosition[index] = -1;
+        }
+        pinIDs[index] = slot.getPinID();
+        stationIDs[index] = slot.getStationID();
+        percent[index] = slot.getPinPercent();
+        soc[index] = slot.getPinPercent();
+        health[index] = slot.getPinHealth();
+        pinStatus[index] = slot.getPinStatus();
+        setCharging(index, slot.getPinStatus() == 0);
+    }
+
+    /**
+     * Bỏ slot không còn trong database
+     */
+    public void remove(int pinID) {
+        Integer removed = indexOfPin.remove(pinID);
+        if (removed == null) {
+            return;
+        }
+        int index = removed;
+        setCharging(index, false);
+
+        // Chuyển slot cuối vào chỗ trống để mảng luôn liền
+        int last = --size;
+        if (index != last) {
+            pinIDs[index] = pinIDs[last];
+            stationIDs[index] = stationIDs[last];
+            percent[index] = percent[last];
+            soc[index] = soc[last];
+            health[index] = health[last];
+            pinStatus[index] = pinStatus[last];
+            chargingPosition[index] = chargingPosition[last];
+            if (chargingPosition[index] >= 0) {
+                charging[chargingPosition[index]] = index;
+            }
+            indexOfPin.put(pinIDs[index], index);
+        }
+    }
+
+    /**
+     * Sạc tất cả slot đang sạc thêm elapsedMinutes phút
+     * @return các slot có pinPercent / pinStatus thay đổi (cần ghi xuống database)
+     */
+    public List<Change> advance(double elapsedMinutes, ChargeRateModel model) {
+        List<Change> changes = new ArrayList<>();
+        if (elapsedMinutes <= 0) {
+            return changes;
+        }
+
+        int i = 0;
+        while (i < chargingCount) {
+            int index = charging[i];
+            double value = soc[index];
+            double remaining = elapsedMinutes;
+            while (remaining > 0 && value < 100.0) {
+                double step = Math.min(MAX_STEP_MINUTES, remaining);
+                value += model.percentPerMinute(value, health[index]) * step;
+                remaining -= step;
+            }
+            value = Math.min(100.0, value);
+            soc[index] = value;
+
+            int newPercent = (int) value;
+            int newStatus = newPercent >= 100 ? 1 : 0;
+            if (newPercent != percent[index] || newStatus != pinStatus[index]) {
+                changes.add(new Change(pinIDs[index], stationIDs[index], percent[index], newPercent, newStatus));
+                percent[index] = newPercent;
+                pinStatus[index] = newStatus;
+            }
+
+            if (newStatus == 1) {
+                // Đầy pin: bỏ khỏi danh sách sạc, phần tử cuối được chuyển vào vị trí i nên không tăng i
+                setCharging(index, false);
+            } else {
+                i++;
+            }
+        }
+        return changes;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int chargingCount() {
+        return chargingCount;
+    }
+
+    /**
+     * pinPercent hiện tại của slot (-1 nếu không có)
+     */
+    public int percentOf(int pinID) {
+        Integer index = indexOfPin.get(pinID);
+        return index != null ? percent[index] : -1;
+    }
+
+    private void setCharging(int index, boolean isCharging) {
+        int position = chargingPosition[index];
+        if (isCharging && position < 0) {
+            charging[chargingCount] = index;
+            chargingPosition[index] = chargingCount++;
+        } else if (!isCharging && position >= 0) {
+            int lastIndex = charging[--chargingCount];
+            charging[position] = lastIndex;
+            chargingPosition[lastIndex] = position;
+            chargingPosition[index] = -1;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= pinIDs.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, pinIDs.length * 2);
+        pinIDs = Arrays.copyOf(pinIDs, newLength);
+        stationIDs = Arrays.copyOf(stationIDs, newLength);
+        soc = Arrays.copyOf(soc, newLength);
+        percent = Arrays.copyOf(percent, newLength);
+        health = Arrays.copyOf(health, newLength);
+        pinStatus = Arrays.copyOf(pinStatus, newLength);
+        charging = Arrays.copyOf(charging, newLength);
+        chargingPosition = Arrays.copyOf(chargingPosition, newLength);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mô hình sạc mặc định
+ * - Tốc độ cơ bản app.charging.base-rate-per-minute (mặc định 1%/phút, giống procedure UpdatePinPercent cũ)
+ * - Trên 80% giảm dần tuyến tính, còn 20% tốc độ khi gần đầy (giai đoạn sạc điện áp không đổi)
+ * - Pin càng "yếu" (pinHealth thấp) sạc càng chậm, tối thiểu 30% tốc độ
+ */
+@Component
+public class DefaultChargeRateModel implements ChargeRateModel {
+
+    private static final double TAPER_START_SOC = 80.0;
+    private static final double MIN_TAPER_FACTOR = 0.2;
+    private static final double MIN_HEALTH_FACTOR = 0.3;
+
+    private final double baseRatePerMinute;
+
+    public DefaultChargeRateModel(@Value("${app.charging.base-rate-per-minute:1.0}") double baseRatePerMinute) {
+        this.baseRatePerMinute = baseRatePerMinute;
+    }
+
+    @Override
+    public double percentPerMinute(double soc, int pinHealth) {
+        double taper = 1.0;
+        if (soc > TAPER_START_SOC) {
+            double progress = Math.min(1.0, (soc - TAPER_START_SOC) / (100.0 - TAPER_START_SOC));
+            taper = 1.0 - progress * (1.0 - MIN_TAPER_FACTOR);
+        }
+        double health = Math.max(MIN_HEALTH_FACTOR, Math.min(1.0, pinHealth / 100.0));
+        return baseRatePerMinute * taper * health;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Ký HMAC với 1 secret cố định, dùng lại các Mac đã init sẵn key
+ *
+ * Mac.getInstance + init (tạo key pad) tốn hơn nhiều so với doFinal trên chuỗi ngắn của VNPay.
+ * Mac không thread-safe nên giữ trong pool: lấy ra, ký, trả lại. Không dùng ThreadLocal vì khi bật
+ * virtual thread mỗi request là 1 thread mới, ThreadLocal sẽ init lại Mac mỗi lần.
+ */
+public final class HmacSigner {
+
+    // Số Mac tối đa giữ lại trong pool (dư thì bỏ cho GC)
+    private static final int MAX_POOLED = 64;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final String algorithm;
+    private final SecretKeySpec key;
+    private final ConcurrentLinkedQueue<Mac> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public HmacSigner(String algorithm, String secret) {
+        this(algorithm, secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public HmacSigner(String algorithm, byte[] secret) {
+        this.algorithm = algorithm;
+        this.key = new SecretKeySpec(secret, algorithm);
+        // Kiểm tra thuật toán / key ngay khi khởi tạo
+        release(newMac());
+    }
+
+    /**
+     * Chữ ký HMAC dạng hex chữ thường của data (UTF-8)
+     */
+    public String signHex(String data) {
+        return HEX.formatHex(sign(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public byte[] sign(byte[] data) {
+        Mac mac = pool.poll();
+        if (mac == null) {
+            mac = newMac();
+        } else {
+            pooled.decrementAndGet();
+        }
+        try {
+            // doFinal tự reset Mac về trạng thái sau init, dùng lại được ngay
+            return mac.doFinal(data);
+        } finally {
+            release(mac);
+        }
+    }
+
+    /**
+     * So sánh chữ ký hex nhận được (không phân biệt hoa thường) với chữ ký của data,
+     * thời gian so sánh không phụ thuộc vị trí ký tự sai
+     */
+    public boolean verifyHex(String data, String signatureHex) {
+        if (signatureHex == null) {
+            return false;
+        }
+        byte[] expected = signHex(data).getBytes(StandardCharsets.US_ASCII);
+        byte[] received = signatureHex.toLowerCase().getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, received);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + algorithm + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void release(Mac mac) {
+        if (pooled.incrementAndGet() <= MAX_POOLED) {
+            pool.offer(mac);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo.service;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Nơi lưu response theo Idempotency-Key (IdempotencyFilter)
+ *
+ * - claim(): lần đầu gặp key thì giữ key (đang xử lý), các lần sau nhận lại response đã lưu
+ * - complete(): lưu response sau khi xử lý xong
+ * - release(): bỏ key khi xử lý lỗi (5xx / exception) để client retry được
+ * Key đang xử lý quá leaseMillis (node chết giữa chừng) được coi như đã bỏ.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Response đã lưu của 1 request
+     */
+    final class StoredResponse {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        public StoredResponse(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public int getStatus() { return status; }
+
+        public String getContentType() { return contentType; }
+
+        public byte[] getBody() { return body; }
+    }
+
+    enum ClaimState {
+        // Key mới, request này được xử lý
+        ACQUIRED,
+        // Request khác cùng key đang xử lý
+        IN_PROGRESS,
+        // Đã xử lý xong, trả lại response đã lưu
+        COMPLETED,
+        // Key đã dùng cho request có tham số khác
+        FINGERPRINT_MISMATCH
+    }
+
+    final class Claim {
+        private final ClaimState state;
+        private final StoredResponse response;
+
+        public Claim(ClaimState state, StoredResponse response) {
+            this.state = state;
+            this.response = response;
+        }
+
+        public ClaimState getState() { return state; }
+
+        public StoredResponse getResponse() { return response; }
+    }
+
+    Claim claim(String key, String fingerprint) throws SQLException;
+
+    void complete(String key, StoredResponse response) throws SQLException;
+
+    void release(String key) throws SQLException;
+
+    /**
+     * Xóa các key đã hết hạn
+     * @return số key đã xóa
+     */
+    int purgeExpired() throws SQLException;
+
+    /**
+     * true nếu dữ liệu dùng chung giữa các node (chỉ cần 1 node dọn dẹp)
+     */
+    boolean isShared();
+
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,152 @@
+package com.example.demo.service;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * IdempotencyStore trong bộ nhớ của node hiện tại (1 instance)
+ * - Key đã có response: giới hạn maxEntries (bỏ key ít dùng nhất khi đầy), hết hạn sau ttlMillis
+ * - Key đang xử lý: giữ riêng, không bao giờ bị bỏ vì LRU (bỏ thì request gửi lại sẽ chạy song song),
+ *   tối đa maxInProgress key, đầy thì từ chối request mới (filter trả 503) cho tới khi request đang chạy xong
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private static final class Entry {
+        final String fingerprint;
+        final long expiresAt;
+        long leaseUntil;
+        StoredResponse response;
+
+        Entry(String fingerprint, long expiresAt, long leaseUntil) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+            this.leaseUntil = leaseUntil;
+        }
+    }
+
+    private final long ttlMillis;
+    private final long leaseMillis;
+    private final int maxEntries;
+    private final int maxInProgress;
+
+    // Key đang xử lý (response == null)
+    private final Map<String, Entry> inProgress = new HashMap<>();
+
+    // Key đã có response, access-order: phần tử đầu là key lâu không dùng nhất
+    private final LinkedHashMap<String, Entry> completed;
+
+    private long evictions;
+    private long inProgressRejected;
+
+    public InMemoryIdempotencyStore(long ttlMillis, long leaseMillis, int maxEntries, int maxInProgress) {
+        this.ttlMillis = ttlMillis;
+        this.leaseMillis = leaseMillis;
+        this.maxEntries = maxEntries;
+        this.maxInProgress = maxInProgress;
+        this.completed = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > InMemoryIdempotencyStore.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Claim claim(String key, String fingerprint) throws SQLException {
+        long now = System.currentTimeMillis();
+        Entry entry = completed.get(key);
+        if (entry != null && entry.expiresAt <= now) {
+            completed.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            entry = inProgress.get(key);
+            if (entry != null && entry.leaseUntil <= now) {
+                inProgress.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            if (inProgress.size() >= maxInProgress && purgeExpiredLeases(now) == 0) {
+                inProgressRejected++;
+                throw new SQLException("Too many idempotent requests in progress (" + maxInProgress + ")");
+            }
+            inProgress.put(key, new Entry(fingerprint, now + ttlMillis, now + leaseMillis));
+            return new Claim(ClaimState.ACQUIRED, null);
+        }
+        if (!entry.fingerprint.equals(fingerprint)) {
+            return new Claim(ClaimState.FINGERPRINT_MISMATCH, null);
+        }
+        if (entry.response == null) {
+            return new Claim(ClaimState.IN_PROGRESS, null);
+        }
+        return new Claim(ClaimState.COMPLETED, entry.response);
+    }
+
+    @Override
+    public synchronized void complete(String key, StoredResponse response) {
+        Entry entry = inProgress.remove(key);
+        if (entry != null) {
+            entry.response = response;
+            completed.put(key, entry);
+        }
+    }
+
+    @Override
+    public synchronized void release(String key) {
+        inProgress.remove(key);
+    }
+
+    @Override
+    public synchronized int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int purged = purgeExpiredLeases(now);
+        Iterator<Entry> it = completed.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiresAt <= now) {
+                it.remove();
+                purged++;
+            }
+        }
+        return purged;
+    }
+
+    // Request đang xử lý quá leaseMillis (thread chết / treo): cho xử lý lại
+    private int purgeExpiredLeases(long now) {
+        int purged = 0;
+        Iterator<Entry> it = inProgress.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().leaseUntil <= now) {
+                it.remove();
+                purged++;
+            }
+        }
+        return purged;
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "memory");
+        stats.put("entries", completed.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("evictions", evictions);
+        stats.put("inProgress", inProgress.size());
+        stats.put("maxInProgress", maxInProgress);
+        stats.put("inProgressRejected", inProgressRejected);
+        stats.put("ttlMillis", ttlMillis);
+        return stats;
+    }
+}
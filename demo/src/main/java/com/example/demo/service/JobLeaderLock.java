@@ -0,0 +1,158 @@
+package com.example.demo.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.QueryExecutor;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Bầu leader cho từng job khi chạy nhiều instance, dùng application lock của SQL Server (sp_getapplock)
+ *
+ * - Node nào lấy được lock "swp:job:<tên job>" (LockOwner = Session) thì chạy job đó
+ * - Tất cả lock của node (mọi job) nằm trên 1 connection riêng dùng chung,
+ *   giữ cho tới khi ứng dụng dừng hoặc connection bị đứt, khi đó SQL Server tự nhả mọi lock của session
+ *   và node khác lấy được ở lần chạy kế tiếp
+ * - Connection đang giữ lock không được trả về pool (session vẫn giữ lock), khi bỏ thì evict khỏi pool;
+ *   connection này không chiếm permit của bulkhead trong DBUtils
+ * - app.scheduling.leader-election.enabled=false: mọi node đều chạy (1 instance / môi trường dev)
+ */
+@Component
+public class JobLeaderLock {
+
+    private static final String RESOURCE_PREFIX = "swp:job:";
+
+    // @LockTimeout = 0: không chờ, node khác đang giữ thì trả về < 0 ngay
+    private static final String ACQUIRE_SQL =
+            "DECLARE @result INT; " +
+            "EXEC @result = sp_getapplock @Resource = ?, @LockMode = 'Exclusive', @LockOwner = 'Session', @LockTimeout = 0; " +
+            "SELECT @result AS result";
+
+    // Thời gian tối đa kiểm tra connection đang giữ lock còn sống (giây)
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    @Value("${app.scheduling.leader-election.enabled:true}")
+    private boolean enabled;
+
+    // Session giữ tất cả lock của node này (null = chưa mở / đã đứt)
+    private Connection session;
+
+    // Các resource đang giữ trên session
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return true nếu node này đang (hoặc vừa trở thành) leader của job
+     */
+    public boolean isLeader(String jobName) {
+        if (!enabled) {
+            return true;
+        }
+        return lock(RESOURCE_PREFIX + jobName);
+    }
+
+    /**
+     * Giữ (hoặc lấy mới) application lock trên session dùng chung
+     * @return true nếu node này đang giữ resource
+     */
+    public synchronized boolean lock(String resource) {
+        try {
+            return tryLock(resource);
+        } catch (ClassNotFoundException | SQLException e) {
+            System.out.println("Error acquiring application lock " + resource + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Như lock() nhưng ném lỗi kết nối database thay vì trả false,
+     * để phân biệt "node khác đang giữ" với "không lấy được connection"
+     */
+    public synchronized boolean tryLock(String resource) throws ClassNotFoundException, SQLException {
+        if (session != null && !isAlive(session)) {
+            // Session đứt -> SQL Server đã nhả tất cả lock, lấy lại từ đầu
+            System.out.println("Job leader lock session lost, released " + held);
+            held.clear();
+            discard(session);
+            session = null;
+        }
+        if (held.contains(resource)) {
+            return true;
+        }
+        try {
+            if (session == null) {
+                session = DBUtils.getSessionConnection();
+            }
+            try (PreparedStatement ptm = session.prepareStatement(ACQUIRE_SQL)) {
+                ptm.setString(1, resource);
+                try (ResultSet rs = QueryExecutor.executeForResultSet(ptm)) {
+                    if (rs.next() && rs.getInt("result") >= 0) {
+                        held.add(resource);
+                        System.out.println("Application lock acquired: " + resource);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            // Chưa giữ lock nào thì trả connection về pool, không giữ session rỗng
+            if (held.isEmpty() && session != null) {
+                closeQuietly(session);
+                session = null;
+            }
+        }
+    }
+
+    /**
+     * @return true nếu resource đang được giữ trên session (không query database)
+     */
+    public boolean isHeld(String resource) {
+        return held.contains(resource);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean holds(String jobName) {
+        return isHeld(RESOURCE_PREFIX + jobName);
+    }
+
+    @PreDestroy
+    public synchronized void releaseAll() {
+        if (session != null) {
+            discard(session);
+            session = null;
+        }
+        held.clear();
+    }
+
+    private boolean isAlive(Connection conn) {
+        try {
+            return conn.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Đóng hẳn connection vật lý = kết thúc session, SQL Server nhả tất cả lock của session đó
+    private static void discard(Connection conn) {
+        DBUtils.evictConnection(conn);
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.out.println("Error closing job leader lock connection: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.demo.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Chạy các scheduled job với:
+ * - Bỏ qua lần chạy nếu lần trước của cùng job chưa xong (không chồng nhau, không dồn hàng đợi)
+ * - Chỉ node leader của job chạy (JobLeaderLock), các node khác bỏ qua
+ * - Metrics theo job: số lần chạy / bỏ qua / lỗi, thời gian chạy, độ trễ so với lịch
+ */
+@Component
+public class JobRunner {
+
+    /**
+     * Công việc của 1 job
+     */
+    @FunctionalInterface
+    public interface Job {
+        void run() throws Exception;
+    }
+
+    @Autowired
+    private JobLeaderLock leaderLock;
+
+    private final Map<String, JobState> jobs = new ConcurrentHashMap<>();
+
+    private static final class JobState {
+        final AtomicBoolean running = new AtomicBoolean();
+        final LongAdder runs = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder skippedOverlap = new LongAdder();
+        final LongAdder skippedNotLeader = new LongAdder();
+        volatile long periodMillis;
+        volatile long lastTriggeredAt;
+        volatile long lastStartedAt;
+        volatile long lastDurationMillis;
+        volatile long maxDurationMillis;
+        volatile long lastLagMillis;
+        volatile long maxLagMillis;
+        volatile String lastError;
+    }
+
+    /**
+     * Chạy job nếu được phép
+     * @param periodMillis chu kỳ lịch của job, dùng để tính độ trễ (lag) so với lần kích hoạt trước
+     * @param leaderOnly true = chỉ chạy trên node đang giữ lock của job
+     * @return true nếu job đã chạy thành công
+     */
+    public boolean run(String jobName, long periodMillis, boolean leaderOnly, Job job) {
+        JobState state = jobs.computeIfAbsent(jobName, name -> new JobState());
+        state.periodMillis = periodMillis;
+
+        long triggeredAt = System.currentTimeMillis();
+        long previousTrigger = state.lastTriggeredAt;
+        state.lastTriggeredAt = triggeredAt;
+        if (previousTrigger > 0) {
+            // Trễ so với lịch: thread pool bận, GC, lần chạy trước quá lâu, ...
+            long lag = Math.max(0, triggeredAt - previousTrigger - periodMillis);
+            state.lastLagMillis = lag;
+            if (lag > state.maxLagMillis) {
+                state.maxLagMillis = lag;
+            }
+        }
+
+        if (!state.running.compareAndSet(false, true)) {
+            state.skippedOverlap.increment();
+            System.out.println("Scheduled job " + jobName + " skipped: previous run still in progress");
+            return false;
+        }
+        try {
+            if (leaderOnly && !leaderLock.isLeader(jobName)) {
+                state.skippedNotLeader.increment();
+                return false;
+            }
+
+            long start = System.currentTimeMillis();
+            state.lastStartedAt = start;
+            try {
+                job.run();
+                state.lastError = null;
+                return true;
+            } catch (Exception e) {
+                state.failures.increment();
+                state.lastError = e.toString();
+                System.out.println("Scheduled job " + jobName + " error: " + e);
+                return false;
+            } finally {
+                long duration = System.currentTimeMillis() - start;
+                state.runs.increment();
+                state.lastDurationMillis = duration;
+                if (duration > state.maxDurationMillis) {
+                    state.maxDurationMillis = duration;
+                }
+            }
+        } finally {
+            state.running.set(false);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("leaderElection", leaderLock.isEnabled());
+
+        Map<String, Object> byJob = new TreeMap<>();
+        jobs.forEach((name, state) -> {
+            Map<String, Object> job = new LinkedHashMap<>();
+            job.put("periodMillis", state.periodMillis);
+            job.put("leader", !leaderLock.isEnabled() || leaderLock.holds(name));
+            job.put("running", state.running.get());
+            job.put("runs", state.runs.sum());
+            job.put("failures", state.failures.sum());
+            job.put("skippedOverlap", state.skippedOverlap.sum());
+            job.put("skippedNotLeader", state.skippedNotLeader.sum());
+            job.put("lastStartedAt", state.lastStartedAt);
+            job.put("lastDurationMillis", state.lastDurationMillis);
+            job.put("maxDurationMillis", state.maxDurationMillis);
+            job.put("lastLagMillis", state.lastLagMillis);
+            job.put("maxLagMillis", state.maxLagMillis);
+            job.put("lastError", state.lastError);
+            byJob.put(name, job);
+        });
+        stats.put("jobs", byJob);
+        return stats;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.demo.dbUnits.RowHandler;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Service ghi danh sách lớn ra HTTP response dạng streaming
+ * Mỗi dòng đọc từ ResultSet được serialize ngay vào output, bộ nhớ không tăng theo số dòng.
+ * JSON trả về giữ nguyên cấu trúc ApiResponse: {status, message, data: [...], error, timestamp}
+ */
+@Service
+public class JsonStreamService {
+
+    /**
+     * Nguồn dữ liệu đọc từng dòng (thường là DAO.streamXxx)
+     */
+    @FunctionalInterface
+    public interface RowSource<T> {
+        int stream(RowHandler<T> handler) throws SQLException;
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public <T> ResponseEntity<StreamingResponseBody> streamList(String message, RowSource<T> source) {
+        long timestamp = System.currentTimeMillis();
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                // Khi lỗi giữa chừng không tự đóng mảng/object, để client nhận JSON dở dang thay vì JSON "hợp lệ" bị thiếu dữ liệu
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                gen.writeStartObject();
+                gen.writeStringField("status", "success");
+                gen.writeStringField("message", message);
+                gen.writeArrayFieldStart("data");
+                int count = source.stream(row -> gen.writeObject(row));
+                gen.writeEndArray();
+                gen.writeNullField("error");
+                gen.writeNumberField("timestamp", timestamp);
+                gen.writeEndObject();
+                System.out.println("JsonStreamService: streamed " + count + " rows - " + message);
+            } catch (SQLException e) {
+                // Header đã gửi đi nên không đổi được status code, ngắt response để client biết bị lỗi
+                System.out.println("Error streaming response: " + e.getMessage());
+                throw new IOException("Error streaming response: " + e.getMessage(), e);
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+}
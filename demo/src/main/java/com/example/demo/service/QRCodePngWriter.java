@@ -0,0 +1,146 @@
+package com.example.demo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Ghi BitMatrix của ZXing thành PNG đen trắng 1 bit/pixel, không qua BufferedImage / ImageIO
+ *
+ * PNG gồm: signature, IHDR (grayscale, bit depth 1), IDAT (các dòng pixel nén deflate), IEND.
+ * Bit 1 = trắng, 0 = đen (ô true của BitMatrix). Deflater, CRC32 và buffer dòng pixel được dùng lại
+ * qua pool (như HmacSigner), mỗi lần ghi chỉ cấp phát mảng byte kết quả.
+ */
+public final class QRCodePngWriter {
+
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+
+    // 4 byte length + 4 byte type + 4 byte CRC
+    private static final int CHUNK_OVERHEAD = 12;
+    private static final int IHDR_LENGTH = 13;
+
+    private static final int MAX_POOLED = 16;
+    private static final ConcurrentLinkedQueue<Encoder> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private QRCodePngWriter() {
+    }
+
+    public static byte[] toPng(BitMatrix matrix) {
+        Encoder encoder = POOL.poll();
+        if (encoder == null) {
+            encoder = new Encoder();
+        } else {
+            POOLED.decrementAndGet();
+        }
+        try {
+            return encoder.encode(matrix);
+        } finally {
+            if (POOLED.incrementAndGet() <= MAX_POOLED) {
+                POOL.offer(encoder);
+            } else {
+                POOLED.decrementAndGet();
+                encoder.deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Trạng thái dùng lại giữa các lần ghi (không thread-safe, mỗi lần ghi mượn 1 encoder)
+     */
+    private static final class Encoder {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        final CRC32 crc = new CRC32();
+        BitArray row = new BitArray(0);
+        // Các dòng pixel, mỗi dòng bắt đầu bằng byte filter 0 (None)
+        byte[] scanlines = new byte[0];
+        byte[] compressed = new byte[0];
+
+        byte[] encode(BitMatrix matrix) {
+            int width = matrix.getWidth();
+            int height = matrix.getHeight();
+            int rowBytes = (width + 7) >>> 3;
+            int rawLength = (rowBytes + 1) * height;
+            if (scanlines.length < rawLength) {
+                scanlines = new byte[rawLength];
+            }
+
+            int p = 0;
+            for (int y = 0; y < height; y++) {
+                row = matrix.getRow(y, row);
+                scanlines[p++] = 0;
+                for (int xb = 0; xb < rowBytes; xb++) {
+                    int b = 0;
+                    int x = xb << 3;
+                    int end = Math.min(x + 8, width);
+                    for (int bit = 0; x < end; x++, bit++) {
+                        if (!row.get(x)) {
+                            b |= 0x80 >>> bit;
+                        }
+                    }
+                    scanlines[p++] = (byte) b;
+                }
+            }
+
+            int compressedLength = deflate(rawLength);
+
+            byte[] png = new byte[PNG_SIGNATURE.length + CHUNK_OVERHEAD + IHDR_LENGTH
+                    + CHUNK_OVERHEAD + compressedLength + CHUNK_OVERHEAD];
+            System.arraycopy(PNG_SIGNATURE, 0, png, 0, PNG_SIGNATURE.length);
+            int pos = PNG_SIGNATURE.length;
+
+            // IHDR: width, height, bit depth 1, color type 0 (grayscale), compression 0, filter 0, interlace 0
+            byte[] header = new byte[IHDR_LENGTH];
+            putInt(header, 0, width);
+            putInt(header, 4, height);
+            header[8] = 1;
+            pos = writeChunk(png, pos, IHDR, header, IHDR_LENGTH);
+            pos = writeChunk(png, pos, IDAT, compressed, compressedLength);
+            writeChunk(png, pos, IEND, header, 0);
+            return png;
+        }
+
+        private int deflate(int rawLength) {
+            if (compressed.length < 64) {
+                compressed = new byte[Math.max(1024, rawLength / 4)];
+            }
+            deflater.reset();
+            deflater.setInput(scanlines, 0, rawLength);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            return length;
+        }
+
+        private int writeChunk(byte[] png, int pos, byte[] type, byte[] data, int length) {
+            putInt(png, pos, length);
+            System.arraycopy(type, 0, png, pos + 4, 4);
+            System.arraycopy(data, 0, png, pos + 8, length);
+            crc.reset();
+            crc.update(png, pos + 4, 4 + length);
+            putInt(png, pos + 8 + length, (int) crc.getValue());
+            return pos + CHUNK_OVERHEAD + length;
+        }
+
+        private static void putInt(byte[] buffer, int pos, int value) {
+            buffer[pos] = (byte) (value >>> 24);
+            buffer[pos + 1] = (byte) (value >>> 16);
+            buffer[pos + 2] = (byte) (value >>> 8);
+            buffer[pos + 3] = (byte) value;
+        }
+    }
+}
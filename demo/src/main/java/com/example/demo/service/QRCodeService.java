@@ -2,15 +2,10 @@ package com.example.demo.service;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.Base64;
 
 /**
@@ -25,18 +20,13 @@ public class QRCodeService {
     /**
      * Tạo QR code từ text và trả về base64 string
      */
-    public String generateQRCodeBase64(String text) throws WriterException, IOException {
+    public String generateQRCodeBase64(String text) throws WriterException {
         // Tạo QR code matrix
         QRCodeWriter qrCodeWriter = new QRCodeWriter();
         BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, QR_CODE_WIDTH, QR_CODE_HEIGHT);
         
-        // Convert matrix thành BufferedImage
-        BufferedImage qrImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
-        
-        // Convert BufferedImage thành base64 string
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(qrImage, "PNG", baos);
-        byte[] imageBytes = baos.toByteArray();
+        // Ghi matrix thành PNG 1 bit rồi convert thành base64 string
+        byte[] imageBytes = QRCodePngWriter.toPng(bitMatrix);
         
         return "data:image/png;base64," + Base64.getEncoder().encodeToString(imageBytes);
     }
@@ -47,7 +37,7 @@ public class QRCodeService {
     public String generateVNPayQRCode(String paymentUrl) {
         try {
             return generateQRCodeBase64(paymentUrl);
-        } catch (WriterException | IOException e) {
+        } catch (WriterException e) {
             System.err.println("Error generating QR code: " + e.getMessage());
             return null;
         }
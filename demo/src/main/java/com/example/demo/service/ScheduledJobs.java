@@ -0,0 +1,118 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.dao.PinSlotDAO;
+import com.example.demo.dao.RatingDAO;
+import com.example.demo.dao.TransactionDAO;
+
+/**
+ * Các job định kỳ chạy trên database (trước đây nằm trong PinSlotController / TransactionController)
+ * Chạy qua JobRunner: thread pool riêng (SchedulingConfig), không chồng lần chạy, chỉ node leader chạy.
+ */
+@Component
+public class ScheduledJobs {
+
+    private static final long UPDATE_PIN_PERCENT_PERIOD = 60000;
+    private static final long UPDATE_EXPIRED_TRANSACTIONS_PERIOD = 60000;
+    private static final long PURGE_IDEMPOTENCY_KEYS_PERIOD = 3600000;
+    private static final long EXPIRE_VNPAY_PAYMENTS_PERIOD = 60000;
+    private static final long REBUILD_RATING_AGGREGATES_PERIOD = 300000;
+
+    @Autowired
+    private JobRunner jobRunner;
+
+    // Engine sạc pin trong JVM (thay procedure UpdatePinPercent khi được bật)
+    @Autowired
+    private ChargingEngine chargingEngine;
+
+    // Nơi lưu Idempotency-Key (IdempotencyFilter)
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    // Hết hạn payment VNPay bỏ dở
+    @Autowired
+    private VNPayPaymentExpiryService vnpayPaymentExpiryService;
+
+    private final PinSlotDAO pinSlotDAO = new PinSlotDAO();
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+    private final RatingDAO ratingDAO = new RatingDAO();
+
+    /**
+     * Tự động sạc pin mỗi phút (procedure UpdatePinPercent hoặc ChargingEngine)
+     */
+    @Scheduled(fixedRate = UPDATE_PIN_PERCENT_PERIOD)
+    public void updatePinPercent() {
+        jobRunner.run("updatePinPercent", UPDATE_PIN_PERCENT_PERIOD, true, () -> {
+            // Bật app.charging.engine.enabled thì sạc bằng engine trong JVM thay cho procedure
+            if (chargingEngine.isEnabled()) {
+                int written = chargingEngine.tick();
+                System.out.println("Scheduled update: charging engine updated " + written + " pin slots at " + new java.util.Date());
+                return;
+            }
+
+            boolean check = pinSlotDAO.updatePinPercent();
+            if (check) {
+                System.out.println("Scheduled update: PinSlotDB procedure executed successfully at " + new java.util.Date());
+            } else {
+                System.out.println("Scheduled update: PinSlotDB procedure execution failed at " + new java.util.Date());
+            }
+        });
+    }
+
+    /**
+     * Đối soát transaction hết hạn mỗi phút (procedure UpdateExpiredTransactions)
+     * Booking tạo qua API đã được TransactionExpiryService hết hạn đúng lúc expireAt,
+     * job này chỉ còn dọn các transaction bị bỏ sót (tạo ngoài JVM, lỗi database, ...)
+     */
+    @Scheduled(fixedRate = UPDATE_EXPIRED_TRANSACTIONS_PERIOD)
+    public void updateExpiredTransactions() {
+        jobRunner.run("updateExpiredTransactions", UPDATE_EXPIRED_TRANSACTIONS_PERIOD, true, () -> {
+            boolean success = transactionDAO.updateExpiredTransactions();
+            if (success) {
+                System.out.println("Scheduled update: UpdateExpiredTransactions procedure executed successfully at " + new java.util.Date());
+            } else {
+                System.out.println("Scheduled update: UpdateExpiredTransactions procedure execution failed at " + new java.util.Date());
+            }
+        });
+    }
+
+    /**
+     * Xóa Idempotency-Key hết hạn mỗi giờ
+     * Store dùng chung (jdbc) chỉ cần node leader dọn, store trong bộ nhớ thì node nào cũng dọn phần của mình
+     */
+    @Scheduled(fixedRate = PURGE_IDEMPOTENCY_KEYS_PERIOD)
+    public void purgeIdempotencyKeys() {
+        jobRunner.run("purgeIdempotencyKeys", PURGE_IDEMPOTENCY_KEYS_PERIOD, idempotencyStore.isShared(), () -> {
+            int purged = idempotencyStore.purgeExpired();
+            System.out.println("Scheduled update: purged " + purged + " expired idempotency keys at " + new java.util.Date());
+        });
+    }
+
+    /**
+     * Load lại thống kê rating trong bộ nhớ mỗi 5 phút (RatingAggregates)
+     * Chạy trên mọi node: thống kê giữ riêng từng node, rating ghi qua node khác chỉ thấy sau lần load này
+     */
+    @Scheduled(fixedRate = REBUILD_RATING_AGGREGATES_PERIOD, initialDelay = REBUILD_RATING_AGGREGATES_PERIOD)
+    public void rebuildRatingAggregates() {
+        jobRunner.run("rebuildRatingAggregates", REBUILD_RATING_AGGREGATES_PERIOD, false, ratingDAO::rebuildRatingAggregates);
+    }
+
+    /**
+     * Chuyển payment VNPay pending quá hạn sang EXPIRED mỗi phút, theo từng lô
+     */
+    @Scheduled(fixedRate = EXPIRE_VNPAY_PAYMENTS_PERIOD)
+    public void expireVNPayPayments() {
+        if (!vnpayPaymentExpiryService.isEnabled()) {
+            return;
+        }
+        jobRunner.run("expireVNPayPayments", EXPIRE_VNPAY_PAYMENTS_PERIOD, true, () -> {
+            int expired = vnpayPaymentExpiryService.sweep();
+            if (expired > 0) {
+                System.out.println("Scheduled update: expired " + expired + " pending VNPay payments at " + new java.util.Date());
+            }
+        });
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo.service;
+
+import java.sql.SQLException;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.dao.RatingDAO;
+
+/**
+ * Load sẵn các cache / thống kê trong bộ nhớ khi ứng dụng khởi động xong
+ * Lỗi khi load chỉ ghi log, các DAO sẽ tự load lại ở lần đọc đầu tiên.
+ */
+@Component
+public class StartupCacheLoader {
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCaches() {
+        try {
+            new RatingDAO().rebuildRatingAggregates();
+        } catch (SQLException e) {
+            System.out.println("Error loading rating aggregates at startup: " + e.getMessage());
+        }
+    }
+}
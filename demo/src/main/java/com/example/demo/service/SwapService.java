@@ -0,0 +1,98 @@
+package com.example.demo.service;
+
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dao.SwapDAO;
+import com.example.demo.dto.SwapResult;
+import com.example.demo.dto.SwapResultDTO;
+
+/**
+ * Thực hiện swap qua SwapDAO và thống kê latency từng phần (/api/metrics/swap)
+ */
+@Service
+public class SwapService {
+
+    private final SwapDAO swapDAO = new SwapDAO();
+
+    private final Map<SwapResult, LongAdder> results = new EnumMap<>(SwapResult.class);
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+
+    // Tổng / max của 1 phần latency (micro giây)
+    private static final class Phase {
+        final LongAdder totalMicros = new LongAdder();
+        final AtomicLong maxMicros = new AtomicLong();
+
+        void record(double millis) {
+            long micros = (long) (millis * 1000);
+            totalMicros.add(micros);
+            maxMicros.accumulateAndGet(micros, Math::max);
+        }
+    }
+
+    public SwapService() {
+        for (SwapResult result : SwapResult.values()) {
+            results.put(result, new LongAdder());
+        }
+        for (String phase : new String[] { "connectionAcquire", "database", "databaseServer", "total" }) {
+            phases.put(phase, new Phase());
+        }
+    }
+
+    public SwapResultDTO executeSwap(String requestKey, int userID, int vehicleID, int stationID, int pinID, int pack, int amount) throws SQLException {
+        long start = System.nanoTime();
+        SwapResultDTO dto;
+        try {
+            dto = swapDAO.executeSwap(requestKey, userID, vehicleID, stationID, pinID, pack, amount);
+        } catch (SQLException e) {
+            failures.increment();
+            throw e;
+        }
+        dto.getLatencyMillis().put("total", (System.nanoTime() - start) / 1e6);
+
+        results.get(dto.getResult()).increment();
+        if (dto.isReplayed()) {
+            replays.increment();
+        }
+        dto.getLatencyMillis().forEach((name, millis) -> {
+            Phase phase = phases.get(name);
+            if (phase != null) {
+                phase.record(millis);
+            }
+        });
+        return dto;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = 0;
+        Map<String, Long> byResult = new LinkedHashMap<>();
+        for (Map.Entry<SwapResult, LongAdder> entry : results.entrySet()) {
+            long n = entry.getValue().sum();
+            byResult.put(entry.getKey().name(), n);
+            count += n;
+        }
+        stats.put("swaps", count);
+        stats.put("replays", replays.sum());
+        stats.put("failures", failures.sum());
+        stats.put("results", byResult);
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        for (Map.Entry<String, Phase> entry : phases.entrySet()) {
+            Map<String, Object> phase = new LinkedHashMap<>();
+            phase.put("avgMs", count == 0 ? 0.0 : entry.getValue().totalMicros.sum() / 1000.0 / count);
+            phase.put("maxMs", entry.getValue().maxMicros.get() / 1000.0);
+            latency.put(entry.getKey(), phase);
+        }
+        stats.put("latency", latency);
+        return stats;
+    }
+}
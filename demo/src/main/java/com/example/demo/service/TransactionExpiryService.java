@@ -0,0 +1,108 @@
+package com.example.demo.service;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.cache.TransactionExpiryQueue;
+import com.example.demo.dao.TransactionDAO;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Hết hạn booking đúng thời điểm expireAt thay vì chờ job UpdateExpiredTransactions mỗi phút
+ *
+ * - Khi khởi động: đăng ký lại tất cả transaction pending vào TransactionExpiryQueue
+ * - 1 worker thread chờ deadline gần nhất và chỉ cập nhật đúng transaction đó (status 0 -> 2)
+ * - Lỗi database: đăng ký lại sau RETRY_DELAY_MILLIS
+ * - Job UpdateExpiredTransactions vẫn chạy để dọn các transaction tạo ngoài JVM này
+ */
+@Service
+public class TransactionExpiryService {
+
+    private static final long RETRY_DELAY_MILLIS = 5_000;
+
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+
+    private volatile Thread worker;
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    // Độ trễ giữa expireAt và lúc database được cập nhật của lần gần nhất
+    private volatile long lastLagMillis;
+    private volatile int reloadedAtStartup = -1;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        try {
+            reloadedAtStartup = transactionDAO.registerPendingExpiries();
+            System.out.println("Registered " + reloadedAtStartup + " pending transactions for expiry");
+        } catch (SQLException e) {
+            System.out.println("Error loading pending transactions at startup: " + e.getMessage());
+        }
+
+        Thread thread = new Thread(this::run, "transaction-expiry");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = worker;
+        worker = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        while (worker == Thread.currentThread()) {
+            TransactionExpiryQueue.Expiry expiry;
+            try {
+                expiry = TransactionExpiryQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            expire(expiry);
+        }
+    }
+
+    private void expire(TransactionExpiryQueue.Expiry expiry) {
+        try {
+            if (transactionDAO.expireTransaction(expiry)) {
+                expired.increment();
+                lastLagMillis = System.currentTimeMillis() - expiry.getExpireAtMillis();
+                System.out.println("Transaction " + expiry.getTransactionID() + " expired");
+            } else {
+                skipped.increment();
+            }
+        } catch (SQLException e) {
+            failures.increment();
+            TransactionExpiryQueue.register(expiry.getTransactionID(), expiry.getStationID(), expiry.getPinID(), RETRY_DELAY_MILLIS);
+        } catch (RuntimeException e) {
+            // Không để worker chết vì 1 transaction lỗi
+            failures.increment();
+            System.out.println("Unexpected error expiring transaction " + expiry.getTransactionID() + ": " + e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(TransactionExpiryQueue.getStats());
+        Thread thread = worker;
+        stats.put("running", thread != null && thread.isAlive());
+        stats.put("reloadedAtStartup", reloadedAtStartup);
+        stats.put("expired", expired.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("failures", failures.sum());
+        stats.put("lastLagMillis", lastLagMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.demo.service;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sinh vnp_TxnRef không trùng, tăng dần, không khóa
+ *
+ * ID 63 bit: [41 bit millisecond từ 2025-01-01][10 bit node][12 bit sequence]
+ * - Cùng millisecond: sequence tăng (4096 ID / ms / node), hết sequence thì mượn millisecond kế tiếp
+ * - Đồng hồ lùi (NTP chỉnh giờ): tiếp tục từ giá trị trước đó, không sinh lại ID cũ
+ * - Node khác nhau (app.vnpay.txn-ref.node-id 0..1023) không bao giờ trùng nhau
+ * - Không cấu hình node id: thuê 1 node id chưa ai dùng bằng sp_getapplock "swp:txn-ref-node:<n>"
+ *   trên session của JobLeaderLock (lần sinh ID đầu tiên), mất session thì thuê lại;
+ *   không thuê được thì ném IllegalStateException, không tự đoán node id
+ * - JobLeaderLock.isHeld chỉ đọc bộ nhớ (session đứt chỉ bị phát hiện ở lần tryLock sau):
+ *   lease kiểm tra quá LEASE_CHECK_MILLIS thì xác nhận lại session bằng tryLock trước khi cấp ID,
+ *   không xác nhận được thì ném IllegalStateException thay vì cấp ID với node id có thể đã thuộc node khác
+ * - Tắt leader election (1 instance / môi trường dev): node id 0
+ * vnp_TxnRef = "VNP" + ID dạng số (tối đa 22 ký tự, VNPay cho phép 100, cột vnp_TxnRef VARCHAR(64))
+ */
+@Component
+public class TxnRefGenerator {
+
+    public static final String PREFIX = "VNP";
+
+    private static final long EPOCH_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final String NODE_LEASE_PREFIX = "swp:txn-ref-node:";
+
+    // Thời gian tối đa tin lease mà không kiểm tra lại session
+    static final long LEASE_CHECK_MILLIS = 5000;
+
+    // -1 = chưa thuê được node id
+    private volatile int nodeId;
+    private final LongSupplier clock;
+    private final JobLeaderLock leaseLock;
+    // Resource sp_getapplock đang giữ cho nodeId (null = node id cấu hình sẵn, không cần thuê)
+    private volatile String leasedResource;
+    // Thời điểm (clock) lease được thuê / xác nhận lần cuối
+    private volatile long leaseCheckedAt;
+
+    // (millisecond << SEQUENCE_BITS) | sequence của ID cấp gần nhất
+    private final AtomicLong last = new AtomicLong();
+
+    @Autowired
+    public TxnRefGenerator(@Value("${app.vnpay.txn-ref.node-id:-1}") int nodeId, JobLeaderLock leaseLock) {
+        this(nodeId, leaseLock, System::currentTimeMillis);
+    }
+
+    TxnRefGenerator(int nodeId, LongSupplier clock) {
+        this(checkNodeId(nodeId), null, clock);
+    }
+
+    TxnRefGenerator(int configuredNodeId, JobLeaderLock leaseLock, LongSupplier clock) {
+        this.nodeId = configuredNodeId < 0 ? -1 : checkNodeId(configuredNodeId);
+        this.leaseLock = leaseLock;
+        this.clock = clock;
+    }
+
+    /**
+     * @return vnp_TxnRef mới, ví dụ VNP123456789012345678
+     */
+    public String next() {
+        return PREFIX + nextId();
+    }
+
+    public long nextId() {
+        int node = nodeId;
+        String leased = leasedResource;
+        if (node < 0 || (leased != null && (!leaseLock.isHeld(leased) || !leaseFresh()))) {
+            node = leaseNodeId();
+        }
+        long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long prev;
+        long next;
+        do {
+            prev = last.get();
+            next = Math.max(prev + 1, now);
+        } while (!last.compareAndSet(prev, next));
+        long millis = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | ((long) node << SEQUENCE_BITS) | sequence;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Thời điểm (epoch millis) mã hóa trong vnp_TxnRef do generator này sinh ra
+     */
+    public static long timestampOf(String txnRef) {
+        long id = Long.parseLong(txnRef.substring(PREFIX.length()));
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    private boolean leaseFresh() {
+        long elapsed = clock.getAsLong() - leaseCheckedAt;
+        return elapsed >= 0 && elapsed < LEASE_CHECK_MILLIS;
+    }
+
+    private synchronized int leaseNodeId() {
+        if (nodeId >= 0 && leasedResource == null) {
+            return nodeId;
+        }
+        if (nodeId >= 0 && leaseLock.isHeld(leasedResource)) {
+            if (leaseFresh()) {
+                return nodeId;
+            }
+            // tryLock kiểm tra session còn sống, session đứt thì lấy lại (hoặc trả false nếu node khác đã giữ)
+            try {
+                if (leaseLock.tryLock(leasedResource)) {
+                    leaseCheckedAt = clock.getAsLong();
+                    return nodeId;
+                }
+            } catch (ClassNotFoundException | SQLException e) {
+                throw new IllegalStateException("Cannot confirm vnp_TxnRef node id lease " + leasedResource + ": " + e.getMessage(), e);
+            }
+        }
+        if (!leaseLock.isEnabled()) {
+            nodeId = 0;
+            System.out.println("app.vnpay.txn-ref.node-id not set and leader election disabled, using node id 0");
+            return 0;
+        }
+        if (leasedResource != null) {
+            System.out.println("vnp_TxnRef node id lease lost: " + leasedResource);
+        }
+        // Ưu tiên thuê lại node id cũ
+        int start = Math.max(nodeId, 0);
+        try {
+            for (int i = 0; i <= MAX_NODE_ID; i++) {
+                int candidate = (start + i) & MAX_NODE_ID;
+                String resource = NODE_LEASE_PREFIX + candidate;
+                if (leaseLock.tryLock(resource)) {
+                    leaseCheckedAt = clock.getAsLong();
+                    leasedResource = resource;
+                    nodeId = candidate;
+                    return candidate;
+                }
+            }
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IllegalStateException("Cannot lease a vnp_TxnRef node id: " + e.getMessage(), e);
+        }
+        throw new IllegalStateException("No free vnp_TxnRef node id, all " + (MAX_NODE_ID + 1) + " are leased");
+    }
+
+    private static int checkNodeId(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        return nodeId;
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.demo.service;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dao.VNPayIpnInboxDAO;
+import com.example.demo.dto.VNPayCallbackResult;
+import com.example.demo.dto.VNPayIpnInboxDTO;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Inbox cho IPN VNPay: trả lời VNPay ngay, cập nhật payment ở worker
+ *
+ * - /vnpay/ipn: kiểm tra chữ ký (không chạm database), rồi trong 1 round trip kiểm tra payment và ghi 1 dòng
+ *   vào VNPayIpnInbox, trả RspCode 00. Không có vnp_TxnRef / sai số tiền thì trả 01 / 04 ngay và không ghi inbox
+ *   (VNPay không gửi lại IPN đã nhận 00). IPN gửi lại cùng vnp_TxnRef đã xử lý xong thì trả kết quả lần trước,
+ *   đã bỏ thì đưa về chờ xử lý
+ * - Worker (app.vnpay.ipn-inbox.workers thread) lấy IPN đến hạn theo lô, gọi VNPayService.applyVerifiedCallback
+ * - Lỗi database: thử lại với backoff tăng dần, quá max-attempts lần thì chuyển status 2 (lastError)
+ * - Không ghi được inbox (database lỗi / chưa tạo bảng): xử lý đồng bộ như trước
+ */
+@Service
+public class VNPayIpnInboxService {
+
+    // Thời gian giữ 1 dòng đã lấy ra, worker chết thì sau thời gian này dòng được lấy lại
+    private static final int LOCK_SECONDS = 60;
+    private static final long MAX_RETRY_DELAY_SECONDS = 300;
+
+    @Autowired
+    private VNPayService vnpayService;
+
+    @Value("${app.vnpay.ipn-inbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.vnpay.ipn-inbox.workers:2}")
+    private int workers;
+
+    @Value("${app.vnpay.ipn-inbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${app.vnpay.ipn-inbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${app.vnpay.ipn-inbox.poll-interval-ms:5000}")
+    private long pollIntervalMillis;
+
+    private final VNPayIpnInboxDAO inboxDAO = new VNPayIpnInboxDAO();
+
+    // Đánh thức worker khi có IPN mới (node khác ghi inbox thì worker tự thấy sau poll-interval-ms)
+    private final Semaphore signals = new Semaphore(0);
+
+    private volatile ExecutorService workerPool;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder requeued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder synchronousFallbacks = new LongAdder();
+    private final LongAdder claimFailures = new LongAdder();
+    // Độ trễ từ lúc nhận IPN đến lúc payment được cập nhật
+    private final LongAdder totalLagMillis = new LongAdder();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile long lastLagMillis;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger index = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "vnpay-ipn-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workerPool = pool;
+        for (int i = 0; i < workers; i++) {
+            pool.submit(this::runWorker);
+        }
+        System.out.println("VNPay IPN inbox started with " + workers + " workers");
+    }
+
+    @PreDestroy
+    public void stop() {
+        ExecutorService pool = workerPool;
+        workerPool = null;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Nhận 1 IPN: kiểm tra chữ ký rồi ghi inbox
+     * @return kết quả trả cho VNPay (RECEIVED khi đã lưu inbox)
+     * @throws SQLException nếu không ghi được inbox và xử lý đồng bộ cũng lỗi (VNPay sẽ gửi lại)
+     */
+    public VNPayCallbackResult receive(Map<String, String[]> parameterMap) throws SQLException {
+        Map<String, String> fields = vnpayService.verifyCallback(parameterMap);
+        if (fields == null) {
+            return VNPayCallbackResult.INVALID_SIGNATURE;
+        }
+        if (!enabled || workerPool == null) {
+            return vnpayService.applyVerifiedCallback(fields);
+        }
+
+        VNPayIpnInboxDTO entry;
+        try {
+            entry = inboxDAO.enqueue(fields.get("vnp_TxnRef"), encode(fields), VNPayService.parseAmount(fields.get("vnp_Amount")));
+        } catch (SQLException e) {
+            synchronousFallbacks.increment();
+            return vnpayService.applyVerifiedCallback(fields);
+        }
+
+        if (entry.isRejected()) {
+            rejected.increment();
+            return VNPayCallbackResult.valueOf(entry.getResult());
+        }
+        if (entry.isCreated()) {
+            received.increment();
+            signals.release();
+            return VNPayCallbackResult.RECEIVED;
+        }
+        duplicates.increment();
+        if (entry.isRequeued()) {
+            requeued.increment();
+            signals.release();
+            return VNPayCallbackResult.RECEIVED;
+        }
+        if (entry.getStatus() == 1 && entry.getResult() != null) {
+            return VNPayCallbackResult.valueOf(entry.getResult());
+        }
+        return VNPayCallbackResult.RECEIVED;
+    }
+
+    private void runWorker() {
+        activeWorkers.incrementAndGet();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // Lô đầy thì lấy tiếp ngay, ngược lại chờ IPN mới hoặc đến lần poll sau
+                if (processDue() < batchSize) {
+                    signals.tryAcquire(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Lấy 1 lô IPN đến hạn và xử lý
+     * @return số IPN đã lấy ra (0 nếu không lấy được do lỗi database)
+     */
+    int processDue() {
+        List<VNPayIpnInboxDTO> batch;
+        try {
+            batch = inboxDAO.claimDue(batchSize, LOCK_SECONDS);
+        } catch (SQLException e) {
+            claimFailures.increment();
+            System.out.println("VNPay IPN worker cannot claim inbox rows, retrying in " + pollIntervalMillis + " ms: " + e.getMessage());
+            return 0;
+        }
+        for (VNPayIpnInboxDTO entry : batch) {
+            process(entry);
+        }
+        return batch.size();
+    }
+
+    private void process(VNPayIpnInboxDTO entry) {
+        long start = System.nanoTime();
+        try {
+            VNPayCallbackResult result = vnpayService.applyVerifiedCallback(decode(entry.getPayload()));
+            inboxDAO.markProcessed(entry.getInboxID(), result.name());
+            processed.increment();
+            long lag = entry.getLagMillis() + (System.nanoTime() - start) / 1_000_000;
+            lastLagMillis = lag;
+            totalLagMillis.add(lag);
+            maxLagMillis.accumulateAndGet(lag, Math::max);
+        } catch (SQLException | RuntimeException e) {
+            fail(entry, e);
+        }
+    }
+
+    private void fail(VNPayIpnInboxDTO entry, Exception cause) {
+        if (entry.getAttempts() >= maxAttempts) {
+            deadLettered.increment();
+            System.out.println("VNPay IPN " + entry.getTxnRef() + " failed after " + entry.getAttempts() + " attempts: " + cause.getMessage());
+        } else {
+            retried.increment();
+        }
+        try {
+            inboxDAO.markFailed(entry.getInboxID(), String.valueOf(cause.getMessage()), maxAttempts, retryDelaySeconds(entry.getAttempts()));
+        } catch (SQLException e) {
+            // Không ghi được lỗi: dòng vẫn bị khóa đến lockedUntil rồi được lấy lại
+            System.out.println("VNPay IPN " + entry.getTxnRef() + " will be retried after lock timeout: " + e.getMessage());
+        }
+    }
+
+    // 2, 4, 8, ... giây, tối đa MAX_RETRY_DELAY_SECONDS
+    static long retryDelaySeconds(int attempts) {
+        return Math.min(MAX_RETRY_DELAY_SECONDS, 1L << Math.min(attempts, 20));
+    }
+
+    // Field đã ký -> name=value&... (URL encode UTF-8) để lưu inbox
+    static String encode(Map<String, String> fields) {
+        StringBuilder sb = new StringBuilder(512);
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8))
+                    .append('=')
+                    .append(URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+
+    static Map<String, String> decode(String payload) {
+        Map<String, String> fields = new TreeMap<>();
+        for (String pair : payload.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                fields.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return fields;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("workers", activeWorkers.get());
+        try {
+            stats.putAll(inboxDAO.getQueueStats());
+        } catch (SQLException e) {
+            stats.put("queueError", e.getMessage());
+        }
+        long count = processed.sum();
+        stats.put("received", received.sum());
+        stats.put("duplicates", duplicates.sum());
+        stats.put("processed", count);
+        stats.put("retried", retried.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("requeued", requeued.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("synchronousFallbacks", synchronousFallbacks.sum());
+        stats.put("claimFailures", claimFailures.sum());
+        stats.put("lastLagMillis", lastLagMillis);
+        stats.put("avgLagMillis", count == 0 ? 0.0 : (double) totalLagMillis.sum() / count);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        return stats;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.service;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.dao.VNPayPaymentDAO;
+
+/**
+ * Hết hạn payment VNPay bỏ dở: status 0 (PENDING) quá expiredAt -> 3 (EXPIRED)
+ *
+ * - Chạy định kỳ qua ScheduledJobs (chỉ node leader), mỗi lần tối đa max-batches lô x batch-size payment
+ *   để không giữ khóa lâu trên VNPayPaymentDTO, lô không đầy nghĩa là đã hết payment quá hạn
+ * - Chỉ hết hạn sau expiredAt + grace-seconds: IPN của giao dịch thanh toán sát giờ vẫn đến kịp
+ * - Bỏ qua payment còn IPN chưa xử lý trong VNPayIpnInbox (đang chờ retry) nếu database có bảng inbox
+ *   (sql/create_vnpay_ipn_inbox_table.sql, không có bảng thì IPN xử lý đồng bộ nên không cần kiểm tra);
+ *   IPN thành công đến sau khi đã hết hạn vẫn chuyển 3 -> 1 (VNPayPaymentDAO.applyCallback)
+ * - Cần index sql/create_vnpay_payment_expiry_index.sql
+ */
+@Service
+public class VNPayPaymentExpiryService {
+
+    @Value("${app.vnpay.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.vnpay.expiry.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.vnpay.expiry.max-batches:20}")
+    private int maxBatches;
+
+    @Value("${app.vnpay.expiry.grace-seconds:300}")
+    private int graceSeconds;
+
+    private final VNPayPaymentDAO vnpayPaymentDAO = new VNPayPaymentDAO();
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile int lastRunExpired;
+    private volatile long lastRunMillis;
+    // Độ trễ từ lúc payment đủ điều kiện hết hạn đến lúc được cập nhật (payment chậm nhất của lần chạy gần nhất)
+    private volatile long lastLagMillis;
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hết hạn các payment quá hạn theo từng lô
+     * @return số payment đã chuyển sang EXPIRED
+     */
+    public int sweep() throws SQLException {
+        long start = System.nanoTime();
+        int total = 0;
+        long runLag = 0;
+        try {
+            for (int i = 0; i < maxBatches; i++) {
+                VNPayPaymentDAO.ExpiryBatch batch = vnpayPaymentDAO.expirePending(batchSize, graceSeconds);
+                batches.increment();
+                total += batch.getExpired();
+                runLag = Math.max(runLag, batch.getMaxLagMillis());
+                if (batch.getExpired() < batchSize) {
+                    break;
+                }
+            }
+        } catch (SQLException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            runs.increment();
+            expired.add(total);
+            lastRunExpired = total;
+            lastRunMillis = (System.nanoTime() - start) / 1_000_000;
+            if (total > 0) {
+                lastLagMillis = runLag;
+                maxLagMillis.accumulateAndGet(runLag, Math::max);
+            }
+        }
+        return total;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("batchSize", batchSize);
+        stats.put("graceSeconds", graceSeconds);
+        try {
+            stats.putAll(vnpayPaymentDAO.getOverdueStats(graceSeconds));
+        } catch (SQLException e) {
+            stats.put("overdueError", e.getMessage());
+        }
+        stats.put("runs", runs.sum());
+        stats.put("batches", batches.sum());
+        stats.put("expired", expired.sum());
+        stats.put("failures", failures.sum());
+        stats.put("lastRunExpired", lastRunExpired);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("lastLagMillis", lastLagMillis);
+        stats.put("maxLagMillis", maxLagMillis.get());
+        return stats;
+    }
+}
@@ -1,17 +1,11 @@
 package com.example.demo.service;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.Base64;
 
-import javax.imageio.ImageIO;
-
 import org.springframework.stereotype.Service;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 
@@ -155,15 +149,12 @@ public class VNPayQRCodeService {
     /**
      * Generate QR code image from data
      */
-    private String generateQRCodeBase64(String qrData) throws WriterException, IOException {
+    static String generateQRCodeBase64(String qrData) throws WriterException {
         QRCodeWriter qrCodeWriter = new QRCodeWriter();
         BitMatrix bitMatrix = qrCodeWriter.encode(qrData, BarcodeFormat.QR_CODE, QR_CODE_WIDTH, QR_CODE_HEIGHT);
         
-        BufferedImage qrImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
-        
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(qrImage, "PNG", baos);
-        byte[] imageBytes = baos.toByteArray();
+        // Ghi PNG 1 bit trực tiếp từ BitMatrix (không qua BufferedImage / ImageIO)
+        byte[] imageBytes = QRCodePngWriter.toPng(bitMatrix);
         
         return "data:image/png;base64," + Base64.getEncoder().encodeToString(imageBytes);
     }
@@ -3,42 +3,58 @@ package com.example.demo.service;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Enumeration;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.TimeZone;
 import java.util.TreeMap;
-
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.example.demo.config.VNPayConfig;
+import com.example.demo.dto.VNPayCallbackResult;
 import com.example.demo.dto.VNPayPaymentDTO;
 import com.example.demo.dto.VNPayPaymentResponseDTO;
 
-import jakarta.servlet.http.HttpServletRequest;
-
 /**
  * VNPay Service - Đơn giản hơn PayOS rất nhiều!
  * Chỉ cần 3 method chính: create, buildUrl, verify
  */
 @Service
 public class VNPayService {
+
+    private static final String HMAC_SHA512 = "HmacSHA512";
+
+    // Ký / kiểm tra chữ ký VNPay (URL thanh toán, return, IPN)
+    private static final HmacSigner VNPAY_SIGNER = new HmacSigner(HMAC_SHA512, VNPayConfig.VNP_HASH_SECRET);
     
     @Autowired
     private VNPayQRCodeService vnpayQRCodeService;
 
+    @Autowired
+    private TxnRefGenerator txnRefGenerator;
+
+    // Số callback theo kết quả và tổng thời gian ghi database (/api/metrics/vnpayCallback)
+    private final Map<VNPayCallbackResult, LongAdder> callbackResults = new EnumMap<>(VNPayCallbackResult.class);
+    private final LongAdder callbackMicros = new LongAdder();
+
+    public VNPayService() {
+        for (VNPayCallbackResult result : VNPayCallbackResult.values()) {
+            callbackResults.put(result, new LongAdder());
+        }
+    }
+
     // DAO for persistence
     private final com.example.demo.dao.VNPayPaymentDAO vnpayPaymentDAO = new com.example.demo.dao.VNPayPaymentDAO();
     
@@ -107,7 +123,7 @@ public class VNPayService {
      */
     public String createPayment(Integer userID, Integer packID, Double amountVND, String orderInfo, Integer total) {
         // Generate unique transaction reference
-        String vnp_TxnRef = generateTxnRef();
+        String vnp_TxnRef = txnRefGenerator.next();
         
         // Amount để lưu DB (giữ nguyên VND, không nhân 100)
         Long vnp_Amount = Math.round(amountVND);
@@ -273,102 +289,6 @@ public class VNPayService {
     }
     
 
-    public boolean verifyPayment(HttpServletRequest request) {
-        System.out.println("=== VNPayService.verifyPayment START ===");
-        
-        Map<String, String> params = new TreeMap<>();
-        
-        // Get all parameters except vnp_SecureHash
-        Enumeration<String> paramNames = request.getParameterNames();
-        while (paramNames.hasMoreElements()) {
-            String paramName = paramNames.nextElement();
-            if (!paramName.equals("vnp_SecureHash")) {
-                params.put(paramName, request.getParameter(paramName));
-            }
-        }
-        
-        System.out.println("Parameters for verification: " + params);
-        
-        // Build query string
-        StringBuilder query = new StringBuilder();
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            if (query.length() > 0) {
-                query.append("&");
-            }
-            try {
-                query.append(entry.getKey()).append("=").append(URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8.toString()));
-            } catch (UnsupportedEncodingException e) {
-                System.out.println("ERROR: Encoding failed: " + e.getMessage());
-                return false;
-            }
-        }
-        
-        // Generate expected hash
-        String expectedHash = hmacSHA512(VNPayConfig.VNP_HASH_SECRET, query.toString());
-        String receivedHash = request.getParameter("vnp_SecureHash");
-        
-        System.out.println("Query string: " + query.toString());
-        System.out.println("Expected hash: " + expectedHash);
-        System.out.println("Received hash: " + receivedHash);
-        boolean isValid = expectedHash.equals(receivedHash);
-        System.out.println("Signature valid: " + isValid);
-        System.out.println("=== VNPayService.verifyPayment END ===");
-        
-        return isValid;
-    }
-    
-    /**
-     * Process successful payment return
-     */
-    public boolean processPaymentReturn(HttpServletRequest request) {
-        // Verify signature first
-        if (!verifyPayment(request)) {
-            System.out.println("VNPay signature verification failed");
-            return false;
-        }
-        
-        // Get payment info
-        String vnp_TxnRef = request.getParameter("vnp_TxnRef");
-        String vnp_ResponseCode = request.getParameter("vnp_ResponseCode");
-        String vnp_TransactionStatus = request.getParameter("vnp_TransactionStatus");
-        String vnp_TransactionNo = request.getParameter("vnp_TransactionNo");
-        String vnp_PayDate = request.getParameter("vnp_PayDate");
-        String vnp_BankCode = request.getParameter("vnp_BankCode");
-        
-        // Check if payment is successful
-        boolean isSuccess = VNPayConfig.SUCCESS_CODE.equals(vnp_ResponseCode) && 
-                           VNPayConfig.TRANSACTION_SUCCESS.equals(vnp_TransactionStatus);
-        
-        if (isSuccess) {
-            // Update payment status to SUCCESS using DAO
-            try {
-                vnpayPaymentDAO.updatePaymentStatus(vnp_TxnRef, 1, // 1 = SUCCESS
-                                                   vnp_TransactionNo, vnp_ResponseCode, 
-                                                   vnp_TransactionStatus, vnp_PayDate, vnp_BankCode);
-                System.out.println("Payment updated successfully for txnRef: " + vnp_TxnRef);
-            } catch (Exception e) {
-                System.err.println("Failed to update payment status: " + e.getMessage());
-            }
-            
-            System.out.println("VNPay payment successful: " + vnp_TxnRef);
-            return true;
-        } else {
-            // Update payment status to FAILED using DAO
-            try {
-                vnpayPaymentDAO.updatePaymentStatus(vnp_TxnRef, 2, // 2 = FAILED
-                                                   vnp_TransactionNo, vnp_ResponseCode, 
-                                                   vnp_TransactionStatus, vnp_PayDate, vnp_BankCode);
-                System.out.println("Payment marked as failed for txnRef: " + vnp_TxnRef);
-            } catch (Exception e) {
-                System.err.println("Failed to update payment status: " + e.getMessage());
-            }
-            // vnpayPaymentDAO.updatePaymentFailed(vnp_TxnRef, vnp_ResponseCode, vnp_TransactionStatus);
-            
-            System.out.println("VNPay payment failed: " + vnp_TxnRef + ", Code: " + vnp_ResponseCode);
-            return false;
-        }
-    }
-    
     /**
      * Get payment by transaction reference
      */
@@ -384,161 +304,110 @@ public class VNPayService {
    
     // Helper methods
     
-    /**
-     * Generate unique transaction reference
-     */
-    private String generateTxnRef() {
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
-        String timestamp = formatter.format(new Date());
-        int random = new Random().nextInt(1000);
-        return "VNP" + timestamp + String.format("%03d", random);
-    }
-    
     /**
      * HMAC SHA512 hash function - Theo code mẫu chính thức VNPay
+     * Secret VNPay dùng signer có sẵn Mac đã init (HmacSigner), không tạo Mac + SecretKeySpec mỗi lần ký
      */
     public static String hmacSHA512(String key, String data) {
-        try {
-            Mac mac = Mac.getInstance("HmacSHA512");
-            SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
-            mac.init(secretKeySpec);
-            byte[] result = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            
-            // Convert to hex string
-            StringBuilder sb = new StringBuilder();
-            for (byte b : result) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-            
-        } catch (Exception e) {
-            throw new RuntimeException("Error generating HMAC SHA512", e);
+        if (VNPayConfig.VNP_HASH_SECRET.equals(key)) {
+            return VNPAY_SIGNER.signHex(data);
         }
+        return new HmacSigner(HMAC_SHA512, key).signHex(data);
     }
 
     /**
-     * Process VNPay payment response and update status
+     * Xử lý callback VNPay (return URL và IPN dùng chung)
+     * Đọc tham số 1 lần, tính chữ ký 1 lần, chuyển trạng thái payment 0 -> 1/2 bằng 1 lệnh có điều kiện
+     * (callback đến sau / đến cùng lúc không ghi đè, trigger Subscription chỉ chạy 1 lần)
+     * Hash data theo code mẫu VNPay: tên và giá trị encode US_ASCII, sắp xếp theo tên, bỏ giá trị rỗng và vnp_SecureHash/vnp_SecureHashType
+     * @param parameterMap request.getParameterMap() của callback
+     * @throws SQLException nếu có lỗi database (VNPay sẽ gửi lại IPN)
      */
-    public boolean processPaymentResponse(Map<String, String> vnpParams) {
-        try {
-            System.out.println("=== VNPayService.processPaymentResponse START ===");
-            System.out.println("Input params: " + vnpParams);
-            
-            String vnp_TxnRef = vnpParams.get("vnp_TxnRef");
-            String vnp_ResponseCode = vnpParams.get("vnp_ResponseCode");
-            String vnp_TransactionNo = vnpParams.get("vnp_TransactionNo");
-            String vnp_TransactionStatus = vnpParams.get("vnp_TransactionStatus");
-            String vnp_PayDate = vnpParams.get("vnp_PayDate");
-            String vnp_BankCode = vnpParams.get("vnp_BankCode");
-            
-            System.out.println("Extracted params: txnRef=" + vnp_TxnRef + ", responseCode=" + vnp_ResponseCode + ", transactionStatus=" + vnp_TransactionStatus);
-            
-            // Determine status based on response code
-            int status;
-            if ("00".equals(vnp_ResponseCode)) {
-                status = 1; // SUCCESS
-                System.out.println("Payment SUCCESS - setting status to 1");
-            } else {
-                status = 2; // FAILED
-                System.out.println("Payment FAILED - setting status to 2");
-            }
-            
-            // Update payment status in database
-            System.out.println("Calling DAO updatePaymentStatus...");
-            boolean result = vnpayPaymentDAO.updatePaymentStatus(vnp_TxnRef, status, vnp_TransactionNo, 
-                                                     vnp_ResponseCode, vnp_TransactionStatus, 
-                                                     vnp_PayDate, vnp_BankCode);
-            System.out.println("DAO updatePaymentStatus result: " + result);
-            System.out.println("=== VNPayService.processPaymentResponse END ===");
-            return result;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+    public VNPayCallbackResult processCallback(Map<String, String[]> parameterMap) throws SQLException {
+        Map<String, String> fields = verifyCallback(parameterMap);
+        if (fields == null) {
+            return VNPayCallbackResult.INVALID_SIGNATURE;
         }
+        return applyVerifiedCallback(fields);
     }
 
     /**
-     * Verify VNPay signature
+     * Kiểm tra chữ ký callback VNPay (không chạm database)
+     * @return các field đã ký (không có vnp_SecureHash / vnp_SecureHashType), null nếu chữ ký sai
      */
-    public boolean verifyPaymentSignature(Map<String, String> vnpParams) {
-        String vnp_SecureHash = vnpParams.get("vnp_SecureHash");
-        vnpParams.remove("vnp_SecureHash");
-        vnpParams.remove("vnp_SecureHashType");
-        
-        // Build hash data
-        StringBuilder hashData = new StringBuilder();
-        vnpParams.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .forEach(entry -> {
-                if (hashData.length() > 0) {
-                    hashData.append("&");
-                }
-                hashData.append(entry.getKey()).append("=").append(entry.getValue());
-            });
-        
-        String signValue = hmacSHA512(VNPayConfig.VNP_HASH_SECRET, hashData.toString());
-        return signValue.equals(vnp_SecureHash);
-    }
-
-    /**
-     * Handle VNPay callback - update payment status (Subscription will be updated by DB trigger)
-     */
-    public String handleVnPayCallback(Map<String, String> vnpParams) {
-        try {
-            System.out.println("=== VNPay Callback Handler Started ===");
-            System.out.println("Received params: " + vnpParams);
-            
-            // Verify signature
-            if (!verifyPaymentSignature(new HashMap<>(vnpParams))) {
-                System.out.println("❌ Invalid signature");
-                return "Invalid signature";
+    public Map<String, String> verifyCallback(Map<String, String[]> parameterMap) {
+        TreeMap<String, String> fields = new TreeMap<>();
+        for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
+            String[] values = entry.getValue();
+            if (values != null && values.length > 0 && values[0] != null && !values[0].isEmpty()) {
+                fields.put(entry.getKey(), values[0]);
             }
-            System.out.println("✅ Signature verified");
-
-            String txnRef = vnpParams.get("vnp_TxnRef");
-            String responseCode = vnpParams.get("vnp_ResponseCode");
-            String transactionStatus = vnpParams.get("vnp_TransactionStatus");
-            
-            System.out.println("TxnRef: " + txnRef + ", ResponseCode: " + responseCode + ", TransactionStatus: " + transactionStatus);
+        }
+        String secureHash = fields.remove("vnp_SecureHash");
+        fields.remove("vnp_SecureHashType");
 
-            // Find payment by txnRef
-            VNPayPaymentDTO payment = vnpayPaymentDAO.getPaymentByTxnRef(txnRef);
-            if (payment == null) {
-                System.out.println("❌ Payment not found for txnRef: " + txnRef);
-                return "Payment not found";
+        StringBuilder hashData = new StringBuilder(512);
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            if (hashData.length() > 0) {
+                hashData.append('&');
             }
-            System.out.println("✅ Payment found: userID=" + payment.getUserID() + ", total=" + payment.getTotal() + ", status=" + payment.getStatus());
+            hashData.append(URLEncoder.encode(entry.getKey(), StandardCharsets.US_ASCII))
+                    .append('=')
+                    .append(URLEncoder.encode(entry.getValue(), StandardCharsets.US_ASCII));
+        }
 
-            // Idempotency: if already SUCCESS, don't apply again
-            if (payment.getStatus() == 1) {
-                System.out.println("⚠️ Payment already processed (status=1), skipping");
-                return "00"; // Already processed
-            }
+        if (!VNPAY_SIGNER.verifyHex(hashData.toString(), secureHash)) {
+            callbackResults.get(VNPayCallbackResult.INVALID_SIGNATURE).increment();
+            System.out.println("VNPay callback txnRef=" + fields.get("vnp_TxnRef") + ", result=" + VNPayCallbackResult.INVALID_SIGNATURE);
+            return null;
+        }
+        return fields;
+    }
 
-            // Determine new status
-            int status = "00".equals(responseCode) && "00".equals(transactionStatus) ? 1 : 2; // 1 success, 2 failed
-            System.out.println("New status determined: " + status);
+    /**
+     * Ghi kết quả callback đã kiểm tra chữ ký (verifyCallback) vào payment - 1 round trip
+     */
+    public VNPayCallbackResult applyVerifiedCallback(Map<String, String> fields) throws SQLException {
+        long start = System.nanoTime();
+        String responseCode = fields.get("vnp_ResponseCode");
+        String transactionStatus = fields.get("vnp_TransactionStatus");
+        int status = VNPayConfig.SUCCESS_CODE.equals(responseCode)
+                && VNPayConfig.TRANSACTION_SUCCESS.equals(transactionStatus) ? 1 : 2; // 1 success, 2 failed
+        VNPayCallbackResult result = vnpayPaymentDAO.applyCallback(fields.get("vnp_TxnRef"), status, parseAmount(fields.get("vnp_Amount")),
+                fields.get("vnp_TransactionNo"), responseCode, transactionStatus,
+                fields.get("vnp_PayDate"), fields.get("vnp_BankCode"));
 
-            // Update payment status (DB trigger will handle Subscription update automatically)
-            boolean updated = vnpayPaymentDAO.updatePaymentStatus(txnRef, status, vnpParams.get("vnp_TransactionNo"),
-                responseCode, transactionStatus, vnpParams.get("vnp_PayDate"), vnpParams.get("vnp_BankCode"));
-            if (!updated) {
-                System.out.println("❌ Failed to update payment status");
-                return "Failed to update payment";
-            }
-            System.out.println("✅ Payment status updated");
-            
-            if (status == 1 && payment.getTotal() != null && payment.getTotal() > 0 && payment.getUserID() != null) {
-                System.out.println("✅ DB Trigger will automatically update Subscription table for userID=" + payment.getUserID() + ", total=" + payment.getTotal());
-            }
+        callbackResults.get(result).increment();
+        callbackMicros.add((System.nanoTime() - start) / 1000);
+        System.out.println("VNPay callback txnRef=" + fields.get("vnp_TxnRef") + ", responseCode=" + responseCode + ", result=" + result);
+        return result;
+    }
 
-            System.out.println("=== VNPay Callback Handler Completed ===");
-            return "00"; // Success
+    // vnp_Amount của VNPay = số tiền * 100, không đọc được thì coi như sai số tiền
+    static Long parseAmount(String vnpAmount) {
+        if (vnpAmount == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(vnpAmount);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
 
-        } catch (Exception e) {
-            System.out.println("❌ Exception in handleVnPayCallback: " + e.getMessage());
-            e.printStackTrace();
-            return "Error processing callback: " + e.getMessage();
+    public Map<String, Object> getCallbackStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = 0;
+        Map<String, Long> byResult = new LinkedHashMap<>();
+        for (Map.Entry<VNPayCallbackResult, LongAdder> entry : callbackResults.entrySet()) {
+            long n = entry.getValue().sum();
+            byResult.put(entry.getKey().name(), n);
+            count += n;
         }
+        stats.put("callbacks", count);
+        stats.put("results", byResult);
+        long applied = count - byResult.get(VNPayCallbackResult.INVALID_SIGNATURE.name());
+        stats.put("avgDatabaseMs", applied == 0 ? 0.0 : callbackMicros.sum() / 1000.0 / applied);
+        return stats;
     }
-}
\ No newline at end of file
+}
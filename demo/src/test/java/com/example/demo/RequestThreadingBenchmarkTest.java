@@ -0,0 +1,140 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.FakeDatabase;
+
+/**
+ * So sánh thread-per-request (Tomcat platform thread pool) với spring.threads.virtual.enabled=true
+ * trên đường đi thật của request: HTTP -> Tomcat -> filter -> TransactionController -> TransactionDAO -> DBUtils
+ *
+ * Mỗi chế độ khởi động ứng dụng trên port ngẫu nhiên, database là FakeDatabase giữ connection DB_MILLIS ms mỗi câu lệnh
+ * (không cần SQL Server). CLIENTS client gửi đồng thời, in throughput, p50 / p99 và số connection mượn cùng lúc tối đa.
+ * Chỉ in số liệu, không assert hiệu năng. Chạy bằng: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class RequestThreadingBenchmarkTest {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int DB_PERMITS = 100;
+    private static final long DB_MILLIS = 20;
+    private static final int CLIENTS = 1_000;
+    private static final int REQUESTS_PER_CLIENT = 10;
+    private static final String PATH = "/api/transaction/getByStation?stationID=1";
+
+    @AfterEach
+    void tearDown() {
+        DBUtils.setDataSource(null);
+        DBUtils.setMaxConcurrency(0, 0);
+    }
+
+    @Test
+    void platformThreadPool() throws Exception {
+        runLoad("platform threads (" + TOMCAT_MAX_THREADS + ")", false, 0);
+    }
+
+    @Test
+    void virtualThreads() throws Exception {
+        runLoad("virtual threads", true, 0);
+    }
+
+    @Test
+    void virtualThreadsWithBulkhead() throws Exception {
+        FakeDatabase database = runLoad("virtual threads + bulkhead (" + DB_PERMITS + ")", true, DB_PERMITS);
+        assertTrue(database.getMaxInUse() <= DB_PERMITS, "max connections in use: " + database.getMaxInUse());
+    }
+
+    private FakeDatabase runLoad(String label, boolean virtualThreads, int maxConcurrency) throws Exception {
+        // Tham số dòng lệnh để ghi đè application.properties
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                "--app.db.max-concurrency=" + maxConcurrency,
+                "--app.auth.token-secret=benchmark-secret",
+                "--app.scheduling.leader-election.enabled=false",
+                // Log DEBUG mỗi request của Spring MVC chiếm phần lớn thời gian, không đo phần đó
+                "--logging.level.org.springframework.web=INFO");
+        try {
+            // DataSourceConfig đã gắn pool thật lúc khởi động, thay bằng database giả
+            FakeDatabase database = new FakeDatabase(call -> {
+                if (call.getSql().contains("FROM dbo.[Transaction]")) {
+                    try {
+                        Thread.sleep(DB_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted", e);
+                    }
+                }
+                return List.of();
+            }).install();
+            String url = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + PATH;
+
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                HttpClient http = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .executor(clients)
+                        .build();
+                // Làm nóng JIT / connection trước khi đo
+                sendAll(http, clients, url, 1);
+
+                long start = System.nanoTime();
+                long[] latencies = sendAll(http, clients, url, REQUESTS_PER_CLIENT);
+                long elapsed = System.nanoTime() - start;
+                Arrays.sort(latencies);
+                int requests = latencies.length;
+                System.out.printf("Request benchmark [%s]: %d requests in %d ms, %.0f req/s, p50 %.1f ms, p99 %.1f ms, max %.1f ms, max DB connections %d%n",
+                        label, requests, elapsed / 1_000_000, requests / (elapsed / 1e9),
+                        latencies[requests / 2] / 1e6, latencies[requests * 99 / 100] / 1e6, latencies[requests - 1] / 1e6,
+                        database.getMaxInUse());
+            }
+            return database;
+        } finally {
+            context.close();
+        }
+    }
+
+    // CLIENTS client, mỗi client gửi tuần tự requestsPerClient request, trả về độ trễ từng request (ns)
+    private long[] sendAll(HttpClient http, ExecutorService clients, String url, int requestsPerClient) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).GET().build();
+        List<Future<long[]>> futures = new ArrayList<>(CLIENTS);
+        for (int c = 0; c < CLIENTS; c++) {
+            futures.add(clients.submit(() -> {
+                long[] latencies = new long[requestsPerClient];
+                for (int i = 0; i < requestsPerClient; i++) {
+                    long sentAt = System.nanoTime();
+                    HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                    latencies[i] = System.nanoTime() - sentAt;
+                    assertEquals(200, response.statusCode(), response.body());
+                }
+                return latencies;
+            }));
+        }
+        long[] all = new long[CLIENTS * requestsPerClient];
+        for (int c = 0; c < CLIENTS; c++) {
+            System.arraycopy(futures.get(c).get(120, TimeUnit.SECONDS), 0, all, c * requestsPerClient, requestsPerClient);
+        }
+        return all;
+    }
+}
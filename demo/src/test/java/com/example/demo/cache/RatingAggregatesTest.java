@@ -0,0 +1,54 @@
+package com.example.demo.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Thứ tự beginWrite / load / INSERT / record: không mất rating và không đếm 2 lần
+ */
+class RatingAggregatesTest {
+
+    private static final int STATION = 7;
+
+    @BeforeEach
+    void setUp() {
+        assertTrue(RatingAggregates.rebuild(Map.of(STATION, new int[] {0, 0, 0, 1, 0, 0}), RatingAggregates.currentVersion()));
+    }
+
+    @Test
+    void ratingRecordedAfterLoadIsCounted() {
+        long writeVersion = RatingAggregates.beginWrite();
+        RatingAggregates.record(STATION, 5, writeVersion);
+
+        assertTrue(RatingAggregates.isLoaded());
+        assertEquals(1, RatingAggregates.getHistogram(STATION)[5]);
+    }
+
+    @Test
+    void loadStartedBeforeInsertIsDiscarded() {
+        long loadedAt = RatingAggregates.currentVersion();
+        long writeVersion = RatingAggregates.beginWrite();
+        // Load đọc database trước khi INSERT commit: không có rating 5 sao
+        assertFalse(RatingAggregates.rebuild(Map.of(STATION, new int[] {0, 0, 0, 1, 0, 0}), loadedAt));
+        RatingAggregates.record(STATION, 5, writeVersion);
+
+        assertEquals(1, RatingAggregates.getHistogram(STATION)[5]);
+    }
+
+    @Test
+    void loadThatMayHaveSeenInsertIsNotCountedTwice() {
+        long writeVersion = RatingAggregates.beginWrite();
+        // Load bắt đầu sau beginWrite và đã đọc được rating vừa INSERT
+        assertTrue(RatingAggregates.rebuild(Map.of(STATION, new int[] {0, 0, 0, 1, 0, 1}), RatingAggregates.currentVersion()));
+        RatingAggregates.record(STATION, 5, writeVersion);
+
+        assertFalse(RatingAggregates.isLoaded());
+        assertEquals(1, RatingAggregates.getHistogram(STATION)[5]);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.demo.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.dto.NearbyStationDTO;
+import com.example.demo.dto.PinStationDTO;
+
+/**
+ * So sánh kết quả spatial index với duyệt toàn bộ (brute force) trên 10k station
+ */
+class StationSpatialIndexTest {
+
+    private static final int STATIONS = 10_000;
+    private static final int QUERIES = 500;
+
+    private final Random random = new Random(42);
+    private List<PinStationDTO> stations;
+    private StationSpatialIndex index;
+
+    @BeforeEach
+    void setUp() {
+        stations = new ArrayList<>();
+        for (int i = 1; i <= STATIONS; i++) {
+            // Khoảng lãnh thổ Việt Nam, 1 phần station inactive
+            float x = (float) (102 + random.nextDouble() * 8);
+            float y = (float) (8.5 + random.nextDouble() * 15);
+            int status = i % 10 == 0 ? 0 : 1;
+            stations.add(new PinStationDTO(i, "Station " + i, "Location " + i, status, null, x, y, null));
+        }
+        index = new StationSpatialIndex(StationSpatialIndex.DEFAULT_CELL_DEGREES);
+        index.rebuild(stations, index.currentVersion());
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        for (int q = 0; q < QUERIES; q++) {
+            double lat = 8.5 + random.nextDouble() * 15;
+            double lng = 102 + random.nextDouble() * 8;
+            int k = 1 + random.nextInt(20);
+
+            List<NearbyStationDTO> expected = bruteForce(lat, lng, Double.MAX_VALUE, k);
+            List<NearbyStationDTO> actual = index.nearest(lat, lng, k, null);
+            assertSameStations(expected, actual);
+        }
+    }
+
+    @Test
+    void withinRadiusMatchesBruteForce() {
+        for (int q = 0; q < QUERIES; q++) {
+            double lat = 8.5 + random.nextDouble() * 15;
+            double lng = 102 + random.nextDouble() * 8;
+            double radiusKm = 1 + random.nextDouble() * 50;
+
+            List<NearbyStationDTO> expected = bruteForce(lat, lng, radiusKm, Integer.MAX_VALUE);
+            List<NearbyStationDTO> actual = index.withinRadius(lat, lng, radiusKm, 0);
+            assertSameStations(expected, actual);
+        }
+    }
+
+    @Test
+    void incrementalUpdatesAreVisible() {
+        PinStationDTO moved = stations.get(0);
+        PinStationDTO updated = new PinStationDTO(moved.getStationID(), moved.getStationName(), moved.getLocation(), 1,
+                null, 0.5f, 0.5f, null);
+        index.upsert(updated);
+        List<NearbyStationDTO> nearest = index.nearest(0.5, 0.5, 1, null);
+        assertEquals(moved.getStationID(), nearest.get(0).getStationID());
+
+        // Đổi sang inactive thì không còn trong index
+        updated.setStatus(0);
+        index.upsert(updated);
+        assertTrue(index.withinRadius(0.5, 0.5, 10, 0).isEmpty());
+        assertEquals(STATIONS - STATIONS / 10 - 1, index.size());
+    }
+
+    @Test
+    void wrapsAroundAntimeridian() {
+        StationSpatialIndex small = new StationSpatialIndex(StationSpatialIndex.DEFAULT_CELL_DEGREES);
+        List<PinStationDTO> list = new ArrayList<>();
+        list.add(new PinStationDTO(1, "East", "E", 1, null, 179.99f, 0f, null));
+        list.add(new PinStationDTO(2, "West", "W", 1, null, -179.99f, 0f, null));
+        for (int i = 3; i < 1000; i++) {
+            list.add(new PinStationDTO(i, "Far " + i, "F", 1, null, (float) (i % 100), 45f, null));
+        }
+        small.rebuild(list, small.currentVersion());
+
+        List<NearbyStationDTO> result = small.withinRadius(0, 179.995, 5, 0);
+        assertEquals(2, result.size());
+    }
+
+    // Micro-benchmark chỉ in thời gian, không chạy trong build thường (mvn test -Pbenchmark)
+    @Tag("benchmark")
+    @Test
+    void benchmarkAgainstBruteForce() {
+        double[][] points = new double[QUERIES][2];
+        for (int q = 0; q < QUERIES; q++) {
+            points[q][0] = 8.5 + random.nextDouble() * 15;
+            points[q][1] = 102 + random.nextDouble() * 8;
+        }
+
+        // Warm-up
+        for (int round = 0; round < 3; round++) {
+            for (double[] p : points) {
+                index.nearest(p[0], p[1], 10, null);
+                bruteForce(p[0], p[1], Double.MAX_VALUE, 10);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (double[] p : points) {
+            index.nearest(p[0], p[1], 10, null);
+        }
+        long indexNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (double[] p : points) {
+            bruteForce(p[0], p[1], Double.MAX_VALUE, 10);
+        }
+        long bruteNanos = System.nanoTime() - start;
+
+        System.out.println("StationSpatialIndex benchmark (" + STATIONS + " stations, k=10): index "
+                + String.format("%.1f", indexNanos / 1000.0 / QUERIES) + " us/query, brute force "
+                + String.format("%.1f", bruteNanos / 1000.0 / QUERIES) + " us/query");
+    }
+
+    private List<NearbyStationDTO> bruteForce(double lat, double lng, double radiusKm, int k) {
+        List<NearbyStationDTO> result = new ArrayList<>();
+        for (PinStationDTO station : stations) {
+            if (station.getStatus() != 1) {
+                continue;
+            }
+            double distance = StationSpatialIndex.distanceKm(lat, lng, station.getY(), station.getX());
+            if (distance <= radiusKm) {
+                result.add(new NearbyStationDTO(station, distance));
+            }
+        }
+        result.sort(Comparator.comparingDouble(NearbyStationDTO::getDistanceKm));
+        return result.size() > k ? result.subList(0, k) : result;
+    }
+
+    private static void assertSameStations(List<NearbyStationDTO> expected, List<NearbyStationDTO> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDistanceKm(), actual.get(i).getDistanceKm(), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.demo.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.cache.TokenRevocationList;
+import com.example.demo.cache.UserRoleCache;
+import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.FakeDatabase;
+import com.example.demo.dto.AuthPrincipal;
+import com.example.demo.dto.UserDTO;
+import com.example.demo.service.AuthTokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Token đăng nhập: tham số userID / adminID phải khớp token (staff / admin theo role trong token mới được đổi userID),
+ * không query users và không nạp role trong token vào UserRoleCache, API report / service pack bắt buộc token,
+ * /api/login không đi qua filter
+ */
+class AuthTokenFilterTest {
+
+    private final AuthTokenService authTokenService = new AuthTokenService();
+    private final AuthTokenFilter filter = new AuthTokenFilter();
+    private final AtomicReference<Object> principal = new AtomicReference<>();
+
+    // Filter không được query database: mọi câu lệnh đều bị đếm
+    private final FakeDatabase database = new FakeDatabase(
+            call -> List.of(FakeDatabase.row("userID", 5, "roleID", 1, "status", 1)));
+
+    private final HttpServlet controller = new HttpServlet() {
+        @Override
+        protected void service(HttpServletRequest req, HttpServletResponse resp) {
+            principal.set(req.getAttribute(AuthTokenFilter.PRINCIPAL_ATTRIBUTE));
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(authTokenService, "tokenSecret", "test-secret");
+        ReflectionTestUtils.setField(authTokenService, "tokenTtlSeconds", 3600L);
+        authTokenService.init();
+        ReflectionTestUtils.setField(filter, "authTokenService", authTokenService);
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper());
+        UserRoleCache.invalidateAll();
+        database.install();
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserRoleCache.invalidateAll();
+        DBUtils.setDataSource(null);
+    }
+
+    @Test
+    void matchingTokenSetsPrincipalWithoutDatabase() throws Exception {
+        MockHttpServletResponse response = send("/api/transaction/create", tokenFor(5, 1), "userID", "5");
+
+        assertEquals(200, response.getStatus());
+        assertEquals(5, ((AuthPrincipal) principal.get()).getUserID());
+        assertEquals(0, database.getStatements());
+        // Role trong token không được nạp vào cache dùng chung
+        assertNull(UserRoleCache.get(5));
+    }
+
+    @Test
+    void adminIDMustMatchToken() throws Exception {
+        assertEquals(403, send("/api/report/all", tokenFor(5, 3), "adminID", "9").getStatus());
+        assertEquals(403, send("/api/servicePack/create", tokenFor(5, 3), "adminUserID", "9").getStatus());
+        assertNull(principal.get());
+    }
+
+    @Test
+    void otherUserIDNeedsStaffRoleFromToken() throws Exception {
+        assertEquals(403, send("/api/transaction/create", tokenFor(5, 1), "userID", "9").getStatus());
+        assertEquals(200, send("/api/transaction/create", tokenFor(5, 2), "userID", "9").getStatus());
+        assertEquals(0, database.getStatements());
+    }
+
+    @Test
+    void callerCheckedEndpointsRequireToken() throws Exception {
+        assertEquals(401, send("/api/report/all", null, "adminID", "5").getStatus());
+        assertEquals(401, send("/api/servicePack/updateStatus", null, "adminUserID", "5").getStatus());
+        // API khác vẫn cho qua khi không có token
+        assertEquals(200, send("/api/servicePack/list", null, null, null).getStatus());
+    }
+
+    @Test
+    void revokedTokenIsRejected() throws Exception {
+        String token = tokenFor(5, 3);
+        Thread.sleep(2);
+        TokenRevocationList.revokeUser(5);
+
+        assertEquals(401, send("/api/report/all", token, null, null).getStatus());
+    }
+
+    @Test
+    void loginIsNotFiltered() throws Exception {
+        MockHttpServletResponse response = send("/api/login", "Bearer expired.token", null, null);
+
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void missingSecretFailsStartup() {
+        AuthTokenService unconfigured = new AuthTokenService();
+        ReflectionTestUtils.setField(unconfigured, "tokenSecret", " ");
+
+        assertThrows(IllegalStateException.class, unconfigured::init);
+    }
+
+    @Test
+    void tokenIssuedInRevocationMillisecondIsAccepted() {
+        // Lặp đến khi revokeUser chạy trọn trong 1 millisecond (đăng nhập lại ngay sau khi cập nhật user)
+        long revokedAt;
+        do {
+            revokedAt = System.currentTimeMillis();
+            TokenRevocationList.revokeUser(77);
+        } while (System.currentTimeMillis() != revokedAt);
+
+        assertFalse(TokenRevocationList.isRevoked(77, revokedAt));
+        assertTrue(TokenRevocationList.isRevoked(77, revokedAt - 1));
+    }
+
+    private String tokenFor(int userID, int roleID) {
+        UserDTO user = new UserDTO();
+        user.setUserID(userID);
+        user.setRoleID(roleID);
+        user.setStatus(1);
+        return "Bearer " + authTokenService.issueToken(user);
+    }
+
+    private MockHttpServletResponse send(String path, String authorization, String parameter, String value)
+            throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        if (parameter != null) {
+            request.setParameter(parameter, value);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(controller));
+        return response;
+    }
+}
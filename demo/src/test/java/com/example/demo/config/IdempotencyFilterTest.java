@@ -0,0 +1,195 @@
+package com.example.demo.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.service.IdempotencyStore.ClaimState;
+import com.example.demo.service.IdempotencyStore.StoredResponse;
+import com.example.demo.service.InMemoryIdempotencyStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Request gửi lại cùng Idempotency-Key không được chạy lại controller,
+ * trừ khi lần trước lỗi (response lỗi không được lưu)
+ */
+class IdempotencyFilterTest {
+
+    private static final String PATH = "/api/transaction/create";
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private IdempotencyFilter filter;
+    private int nextStatus;
+    // null = {"execution": n}
+    private String nextBody;
+
+    // Giả lập controller: mỗi lần chạy trả về số thứ tự lần chạy
+    private final HttpServlet controller = new HttpServlet() {
+        @Override
+        protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            int n = executions.incrementAndGet();
+            resp.setStatus(nextStatus);
+            resp.setContentType("application/json");
+            resp.getWriter().write(nextBody != null ? nextBody : "{\"execution\":" + n + "}");
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        filter = new IdempotencyFilter();
+        ReflectionTestUtils.setField(filter, "store", new InMemoryIdempotencyStore(60_000, 60_000, 100, 100));
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "paths", Set.of(PATH));
+        nextStatus = 200;
+    }
+
+    @Test
+    void duplicateIsReplayedWithoutExecuting() throws Exception {
+        MockHttpServletResponse first = send("key-1", "7");
+        MockHttpServletResponse second = send("key-1", "7");
+
+        assertEquals(1, executions.get());
+        assertEquals(200, second.getStatus());
+        assertEquals(first.getContentAsString(), second.getContentAsString());
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals("true", second.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void clientErrorIsNotStored() throws Exception {
+        nextStatus = 400;
+        send("key-1", "7");
+        nextStatus = 200;
+        MockHttpServletResponse second = send("key-1", "7");
+
+        assertEquals(2, executions.get());
+        assertEquals(200, second.getStatus());
+    }
+
+    @Test
+    void apiErrorWithOkStatusIsNotStored() throws Exception {
+        // /vnpay/create trả HTTP 200 + ApiResponse.error khi database quá tải
+        nextBody = "{\"status\":\"error\",\"message\":\"Database is busy\"}";
+        send("key-1", "7");
+        nextBody = null;
+        MockHttpServletResponse second = send("key-1", "7");
+
+        assertEquals(2, executions.get());
+        assertNull(second.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void inProgressKeysAreNeverEvictedAndAreBounded() throws Exception {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(60_000, 60_000, 1, 2);
+        store.claim("a", "f");
+        store.claim("b", "f");
+        assertThrows(SQLException.class, () -> store.claim("c", "f"));
+
+        // Đầy key đã xong (maxEntries = 1) không làm mất key đang xử lý
+        store.complete("a", new StoredResponse(200, null, new byte[0]));
+        store.claim("c", "f");
+        store.complete("c", new StoredResponse(200, null, new byte[0]));
+        assertEquals(ClaimState.IN_PROGRESS, store.claim("b", "f").getState());
+        assertEquals(ClaimState.COMPLETED, store.claim("c", "f").getState());
+        assertEquals(ClaimState.ACQUIRED, store.claim("a", "f").getState());
+    }
+
+    @Test
+    void cachedBodySupportsReadListener() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", PATH);
+        request.setContentType("application/json");
+        request.setContent("{\"userID\":7}".getBytes(StandardCharsets.UTF_8));
+        request.addHeader(IdempotencyFilter.HEADER, "key-1");
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        boolean[] allRead = new boolean[1];
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                ServletInputStream in = req.getInputStream();
+                in.setReadListener(new ReadListener() {
+                    @Override
+                    public void onDataAvailable() throws IOException {
+                        while (in.isReady() && !in.isFinished()) {
+                            read.write(in.read());
+                        }
+                    }
+
+                    @Override
+                    public void onAllDataRead() {
+                        allRead[0] = true;
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+                });
+            }
+        }));
+
+        assertEquals("{\"userID\":7}", read.toString(StandardCharsets.UTF_8));
+        assertTrue(allRead[0]);
+    }
+
+    @Test
+    void serverErrorIsNotStored() throws Exception {
+        nextStatus = 500;
+        send("key-1", "7");
+        nextStatus = 200;
+        MockHttpServletResponse second = send("key-1", "7");
+
+        assertEquals(2, executions.get());
+        assertEquals(200, second.getStatus());
+    }
+
+    @Test
+    void sameKeyWithDifferentParametersIsRejected() throws Exception {
+        send("key-1", "7");
+        MockHttpServletResponse second = send("key-1", "8");
+
+        assertEquals(1, executions.get());
+        assertEquals(422, second.getStatus());
+    }
+
+    @Test
+    void requestsWithoutKeyAreNotDeduplicated() throws Exception {
+        send(null, "7");
+        send(null, "7");
+
+        assertEquals(2, executions.get());
+    }
+
+    private MockHttpServletResponse send(String key, String userID) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", PATH);
+        request.setParameter("userID", userID);
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.HEADER, key);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(controller));
+        return response;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.demo.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.example.demo.dto.SlotReservationResult;
+
+/**
+ * Stress test đặt chỗ pin slot đồng thời, chạy trên SQL Server thật
+ * Bật bằng biến môi trường: STRESS_DB_URL, STRESS_DB_USER, STRESS_DB_PASSWORD,
+ * STRESS_PIN_ID, STRESS_USER_ID, STRESS_VEHICLE_ID (pin slot sẽ bị reset về available + full)
+ *
+ * Đây là harness chạy tay, build thường bỏ qua (không có STRESS_DB_URL). Chỉ concurrentReserveBooksSlotExactlyOnce
+ * kiểm tra kết quả (đúng 1 lượt đặt thắng); reserveUnreserveThroughput chỉ in số liệu để so sánh thủ công
+ * giữa 2 lần chạy trên cùng database, không có baseline nên không dùng làm bằng chứng hiệu năng.
+ */
+@EnabledIfEnvironmentVariable(named = "STRESS_DB_URL", matches = ".+")
+class PinSlotReservationStressTest {
+
+    private static final int THREADS = 32;
+    private static final long THROUGHPUT_MILLIS = 5_000;
+
+    private static StressDatabase database;
+    private static int pinID;
+    private static int userID;
+    private static int vehicleID;
+
+    private final PinSlotDAO dao = new PinSlotDAO();
+
+    @BeforeAll
+    static void setUp() {
+        pinID = StressDatabase.intEnv("STRESS_PIN_ID");
+        userID = StressDatabase.intEnv("STRESS_USER_ID");
+        vehicleID = StressDatabase.intEnv("STRESS_VEHICLE_ID");
+        database = StressDatabase.open(THREADS);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        try {
+            resetSlot();
+        } finally {
+            database.close();
+        }
+    }
+
+    private static void resetSlot() throws Exception {
+        try (Connection conn = database.getDataSource().getConnection();
+                PreparedStatement ptm = conn.prepareStatement(
+                        "UPDATE dbo.pinSlot SET status = 1, pinStatus = 1, userID = NULL, vehicleID = NULL WHERE pinID = ?")) {
+            ptm.setInt(1, pinID);
+            assertEquals(1, ptm.executeUpdate(), "STRESS_PIN_ID must exist");
+        }
+    }
+
+    @Test
+    void concurrentReserveBooksSlotExactlyOnce() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            resetSlot();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            List<Future<SlotReservationResult>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return dao.tryReservePinSlot(pinID, userID, vehicleID);
+                }));
+            }
+            start.countDown();
+
+            int reserved = 0;
+            for (Future<SlotReservationResult> future : futures) {
+                SlotReservationResult result = future.get();
+                if (result == SlotReservationResult.RESERVED) {
+                    reserved++;
+                } else {
+                    assertEquals(SlotReservationResult.NOT_AVAILABLE, result);
+                }
+            }
+            pool.shutdown();
+            assertEquals(1, reserved, "round " + round + ": slot must be booked exactly once");
+        }
+    }
+
+    @Test
+    void reserveUnreserveThroughput() throws Exception {
+        resetSlot();
+        AtomicLong reservations = new AtomicLong();
+        long deadline = System.currentTimeMillis() + THROUGHPUT_MILLIS;
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            pool.submit(() -> {
+                while (System.currentTimeMillis() < deadline) {
+                    if (dao.tryReservePinSlot(pinID, userID, vehicleID).isSuccess()) {
+                        reservations.incrementAndGet();
+                        dao.tryUnreservePinSlot(pinID);
+                    }
+                }
+                return null;
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(THROUGHPUT_MILLIS + 30_000, TimeUnit.MILLISECONDS));
+
+        double perSecond = reservations.get() * 1000.0 / THROUGHPUT_MILLIS;
+        System.out.println("PinSlotReservationStressTest: " + reservations.get() + " reservations, "
+                + String.format("%.1f", perSecond) + " reservations/sec with " + THREADS + " threads");
+        assertTrue(reservations.get() > 0);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.dao;
+
+import javax.sql.DataSource;
+
+import com.example.demo.dbUnits.DBUtils;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Database SQL Server thật cho các harness chạy tay (PinSlotReservationStressTest, TransactionCreateBenchmarkTest)
+ * Cấu hình qua biến môi trường STRESS_DB_URL, STRESS_DB_USER, STRESS_DB_PASSWORD và STRESS_* của từng harness.
+ * open() trỏ DBUtils vào pool mới, close() đóng pool và trả DBUtils về data source trước đó.
+ */
+final class StressDatabase implements AutoCloseable {
+
+    private final HikariDataSource dataSource;
+    private final DataSource previous;
+
+    private StressDatabase(HikariDataSource dataSource, DataSource previous) {
+        this.dataSource = dataSource;
+        this.previous = previous;
+    }
+
+    static StressDatabase open(int maxPoolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(System.getenv("STRESS_DB_URL"));
+        config.setUsername(System.getenv("STRESS_DB_USER"));
+        config.setPassword(System.getenv("STRESS_DB_PASSWORD"));
+        config.setMaximumPoolSize(maxPoolSize);
+        HikariDataSource dataSource = new HikariDataSource(config);
+        DataSource previous = DBUtils.getDataSource();
+        DBUtils.setDataSource(dataSource);
+        return new StressDatabase(dataSource, previous);
+    }
+
+    static int intEnv(String name) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalStateException(name + " must be set for this harness");
+        }
+        return Integer.parseInt(value.trim());
+    }
+
+    DataSource getDataSource() {
+        return dataSource;
+    }
+
+    @Override
+    public void close() {
+        // Trả lại data source cũ trước khi đóng pool để không còn ai mượn connection từ pool đã đóng
+        if (DBUtils.getDataSource() == dataSource) {
+            DBUtils.setDataSource(previous);
+        }
+        dataSource.close();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.example.demo.dto.TransactionCreateResult;
+
+/**
+ * Đo số booking tạo được mỗi giây qua createTransactionWithUserAndVehicle (kiểm tra + insert 1 round trip)
+ * Chạy trên SQL Server thật, bật bằng biến môi trường giống PinSlotReservationStressTest:
+ * STRESS_DB_URL, STRESS_DB_USER, STRESS_DB_PASSWORD, STRESS_PIN_ID, STRESS_USER_ID, STRESS_VEHICLE_ID, STRESS_STATION_ID
+ * (vehicle phải thuộc user là driver đang hoạt động, pin slot thuộc station). Các transaction tạo ra bị xóa sau khi chạy.
+ *
+ * Đây là harness chạy tay, build thường bỏ qua (không có STRESS_DB_URL). bookingsPerSecond chỉ in số liệu,
+ * không có baseline nên không dùng làm bằng chứng hiệu năng; rejectionsReturnPreciseReason kiểm tra lý do từ chối.
+ */
+@EnabledIfEnvironmentVariable(named = "STRESS_DB_URL", matches = ".+")
+class TransactionCreateBenchmarkTest {
+
+    private static final int THREADS = 16;
+    private static final long THROUGHPUT_MILLIS = 5_000;
+
+    private static StressDatabase database;
+    private static int pinID;
+    private static int userID;
+    private static int vehicleID;
+    private static int stationID;
+    private static Timestamp startedAt;
+
+    private final TransactionDAO dao = new TransactionDAO();
+
+    @BeforeAll
+    static void setUp() {
+        pinID = StressDatabase.intEnv("STRESS_PIN_ID");
+        userID = StressDatabase.intEnv("STRESS_USER_ID");
+        vehicleID = StressDatabase.intEnv("STRESS_VEHICLE_ID");
+        stationID = StressDatabase.intEnv("STRESS_STATION_ID");
+        database = StressDatabase.open(THREADS);
+        startedAt = new Timestamp(System.currentTimeMillis() - 1_000);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        try (Connection conn = database.getDataSource().getConnection();
+                PreparedStatement ptm = conn.prepareStatement(
+                        "DELETE FROM dbo.[Transaction] WHERE userID = ? AND vehicleID = ? AND createAt >= ?")) {
+            ptm.setInt(1, userID);
+            ptm.setInt(2, vehicleID);
+            ptm.setTimestamp(3, startedAt);
+            ptm.executeUpdate();
+        } finally {
+            database.close();
+        }
+    }
+
+    @Test
+    void rejectionsReturnPreciseReason() throws Exception {
+        assertEquals(TransactionCreateResult.VEHICLE_NOT_FOUND,
+                dao.tryCreateTransactionWithUserAndVehicle(userID, Integer.MAX_VALUE, 1000, 1, stationID, pinID, 0));
+        assertEquals(TransactionCreateResult.VEHICLE_NOT_OWNED,
+                dao.tryCreateTransactionWithUserAndVehicle(Integer.MAX_VALUE, vehicleID, 1000, 1, stationID, pinID, 0));
+        assertEquals(TransactionCreateResult.PIN_SLOT_NOT_FOUND,
+                dao.tryCreateTransactionWithUserAndVehicle(userID, vehicleID, 1000, 1, stationID, Integer.MAX_VALUE, 0));
+        assertEquals(TransactionCreateResult.PIN_SLOT_NOT_IN_STATION,
+                dao.tryCreateTransactionWithUserAndVehicle(userID, vehicleID, 1000, 1, Integer.MAX_VALUE, pinID, 0));
+    }
+
+    @Test
+    void bookingsPerSecond() throws Exception {
+        AtomicLong created = new AtomicLong();
+        long deadline = System.currentTimeMillis() + THROUGHPUT_MILLIS;
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            pool.submit(() -> {
+                while (System.currentTimeMillis() < deadline) {
+                    // status 1 để không đăng ký hết hạn cho dữ liệu test
+                    if (dao.tryCreateTransactionWithUserAndVehicle(userID, vehicleID, 1000, 1, stationID, pinID, 1).isSuccess()) {
+                        created.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(THROUGHPUT_MILLIS + 30_000, TimeUnit.MILLISECONDS));
+
+        double perSecond = created.get() * 1000.0 / THROUGHPUT_MILLIS;
+        System.out.println("TransactionCreateBenchmarkTest: " + created.get() + " bookings, "
+                + String.format("%.1f", perSecond) + " bookings/sec with " + THREADS + " threads");
+        assertTrue(created.get() > 0);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo.dbUnits;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Kiểm tra bulkhead của DBUtils: số connection mượn cùng lúc không vượt quá số permit,
+ * chờ quá lâu thì báo lỗi, connection giữ session (application lock) không chiếm permit
+ */
+class DBUtilsBulkheadTest {
+
+    private final FakeDatabase database = new FakeDatabase();
+
+    @AfterEach
+    void resetDBUtils() {
+        DBUtils.setMaxConcurrency(0, 0);
+        DBUtils.setDataSource(null);
+    }
+
+    @Test
+    void permitsCapConcurrentConnections() throws Exception {
+        database.install();
+        DBUtils.setMaxConcurrency(5, 5_000);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                futures.add(executor.submit(() -> {
+                    try (Connection conn = DBUtils.getConnection()) {
+                        Thread.sleep(1);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        assertTrue(database.getMaxInUse() <= 5, "max connections in use: " + database.getMaxInUse());
+        assertEquals(0, database.getInUse());
+        assertEquals(5, DBUtils.getPoolStats().get("availablePermits"));
+    }
+
+    @Test
+    void waitingTooLongIsRejectedAndDoubleCloseReleasesOnce() throws Exception {
+        database.install();
+        DBUtils.setMaxConcurrency(1, 50);
+
+        Connection held = DBUtils.getConnection();
+        SQLException busy = assertThrows(SQLException.class, DBUtils::getConnection);
+        assertTrue(busy.getMessage().contains("busy"));
+
+        held.close();
+        held.close();
+        assertEquals(1, DBUtils.getPoolStats().get("availablePermits"));
+        DBUtils.getConnection().close();
+    }
+
+    @Test
+    void sessionConnectionsDoNotHoldPermits() throws Exception {
+        database.install();
+        DBUtils.setMaxConcurrency(1, 50);
+
+        // Connection giữ application lock (JobLeaderLock) không chiếm permit của DAO
+        Connection session = DBUtils.getSessionConnection();
+        assertEquals(1, DBUtils.getPoolStats().get("availablePermits"));
+        DBUtils.getConnection().close();
+
+        DBUtils.evictConnection(session);
+        assertEquals(1, DBUtils.getPoolStats().get("availablePermits"));
+        assertEquals(0, database.getInUse());
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.demo.dbUnits;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+/**
+ * Database giả cho unit test (dùng chung cho các test DAO / service / DBUtils)
+ *
+ * - DataSource / Connection / PreparedStatement / ResultSet là dynamic proxy, không cần SQL Server
+ * - Mỗi câu lệnh gọi Responder với SQL + tham số đã bind: trả List dòng (ResultSet) hoặc Integer (update count)
+ * - Đếm connection mở / đang mượn / tối đa cùng lúc và số statement, ghi lại từng câu lệnh đã chạy
+ * - Method JDBC chưa hỗ trợ thì ném UnsupportedOperationException để test thấy ngay
+ */
+public final class FakeDatabase {
+
+    /**
+     * 1 câu lệnh đã chạy: SQL và tham số theo vị trí
+     */
+    public static final class Call {
+        private final String sql;
+        private final Map<Integer, Object> parameters = new HashMap<>();
+
+        Call(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public Object parameter(int index) {
+            return parameters.get(index);
+        }
+
+        public Map<Integer, Object> getParameters() {
+            return parameters;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Responder {
+        /**
+         * @return List&lt;Map&lt;String, Object&gt;&gt; các dòng trả về, hoặc Integer số dòng bị ảnh hưởng
+         */
+        Object respond(Call call) throws SQLException;
+    }
+
+    private final Responder responder;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger maxInUse = new AtomicInteger();
+    private final List<Call> calls = Collections.synchronizedList(new ArrayList<>());
+
+    public FakeDatabase(Responder responder) {
+        this.responder = responder;
+    }
+
+    /**
+     * Database chỉ cho mượn connection, không chạy câu lệnh nào
+     */
+    public FakeDatabase() {
+        this(call -> {
+            throw new UnsupportedOperationException("Unexpected statement: " + call.getSql());
+        });
+    }
+
+    /**
+     * 1 dòng kết quả: row("expired", 3, "maxLagMillis", 100L)
+     */
+    public static Map<String, Object> row(Object... columnsAndValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            row.put((String) columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    /**
+     * Gắn vào DBUtils (nhớ gọi DBUtils.setDataSource(null) ở @AfterEach)
+     */
+    public FakeDatabase install() {
+        DBUtils.setDataSource(dataSource());
+        return this;
+    }
+
+    public DataSource dataSource() {
+        return proxy(DataSource.class, (p, m, a) -> {
+            if (!"getConnection".equals(m.getName())) {
+                throw new UnsupportedOperationException(m.getName());
+            }
+            connections.incrementAndGet();
+            maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+            return connection();
+        });
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    public int getMaxInUse() {
+        return maxInUse.get();
+    }
+
+    public int getStatements() {
+        return calls.size();
+    }
+
+    public List<Call> getCalls() {
+        synchronized (calls) {
+            return new ArrayList<>(calls);
+        }
+    }
+
+    public Call lastCall() {
+        synchronized (calls) {
+            return calls.isEmpty() ? null : calls.get(calls.size() - 1);
+        }
+    }
+
+    private Connection connection() {
+        boolean[] closed = new boolean[1];
+        return proxy(Connection.class, (p, m, a) -> switch (m.getName()) {
+            case "prepareStatement" -> statement(new Call((String) a[0]));
+            case "close" -> {
+                if (!closed[0]) {
+                    closed[0] = true;
+                    inUse.decrementAndGet();
+                }
+                yield null;
+            }
+            case "isClosed" -> closed[0];
+            case "isValid" -> !closed[0];
+            default -> throw new UnsupportedOperationException(m.getName());
+        });
+    }
+
+    private PreparedStatement statement(Call call) {
+        // Kết quả của lần execute gần nhất
+        Object[] result = new Object[1];
+        return proxy(PreparedStatement.class, (p, m, a) -> switch (m.getName()) {
+            case "setString", "setInt", "setLong", "setBoolean", "setTimestamp", "setObject", "setBigDecimal" -> {
+                call.parameters.put((Integer) a[0], a[1]);
+                yield null;
+            }
+            case "setNull" -> {
+                call.parameters.put((Integer) a[0], null);
+                yield null;
+            }
+            case "setMaxRows", "setFetchSize", "setQueryTimeout" -> null;
+            case "execute" -> {
+                result[0] = run(call);
+                yield result[0] instanceof List;
+            }
+            case "executeQuery" -> resultSet(rowsOf(run(call)));
+            case "executeUpdate" -> {
+                Object updated = run(call);
+                yield updated instanceof Integer ? updated : 0;
+            }
+            case "getResultSet" -> result[0] instanceof List ? resultSet(rowsOf(result[0])) : null;
+            case "getUpdateCount" -> result[0] instanceof Integer ? result[0] : -1;
+            case "getMoreResults" -> {
+                result[0] = null;
+                yield false;
+            }
+            case "close" -> null;
+            default -> throw new UnsupportedOperationException(m.getName());
+        });
+    }
+
+    private Object run(Call call) throws SQLException {
+        calls.add(call);
+        return responder.respond(call);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> rowsOf(Object result) {
+        return result instanceof List ? (List<Map<String, Object>>) result : List.of();
+    }
+
+    private ResultSet resultSet(List<Map<String, Object>> rows) {
+        Iterator<Map<String, Object>> iterator = rows.iterator();
+        Object[] state = new Object[2]; // [0] dòng hiện tại, [1] giá trị đọc gần nhất (wasNull)
+        return proxy(ResultSet.class, (p, m, a) -> {
+            switch (m.getName()) {
+                case "next":
+                    state[0] = iterator.hasNext() ? iterator.next() : null;
+                    return state[0] != null;
+                case "close":
+                    return null;
+                case "wasNull":
+                    return state[1] == null;
+                default:
+                    break;
+            }
+            if (!m.getName().startsWith("get") || a == null || !(a[0] instanceof String)) {
+                throw new UnsupportedOperationException(m.getName());
+            }
+            @SuppressWarnings("unchecked")
+            Object value = ((Map<String, Object>) state[0]).get((String) a[0]);
+            state[1] = value;
+            return switch (m.getName()) {
+                case "getInt" -> value == null ? 0 : ((Number) value).intValue();
+                case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+                case "getBoolean" -> value instanceof Boolean b ? b : value != null && ((Number) value).intValue() != 0;
+                case "getString" -> value == null ? null : value.toString();
+                case "getObject" -> a.length > 1 && value instanceof Number n && a[1] == Integer.class ? n.intValue() : value;
+                default -> value;
+            };
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.dto.PinSlotDTO;
+
+/**
+ * Kiểm tra ChargingSimulation và đo thời gian 1 vòng sạc với 100k slot
+ */
+class ChargingSimulationTest {
+
+    private final ChargeRateModel model = new DefaultChargeRateModel(1.0);
+
+    private static PinSlotDTO slot(int pinID, int percent, int health, int pinStatus) {
+        return new PinSlotDTO(pinID, percent, health, pinStatus, 1, null, null, pinID % 100);
+    }
+
+    @Test
+    void onlyChargingSlotsAdvance() {
+        ChargingSimulation simulation = new ChargingSimulation();
+        List<PinSlotDTO> slots = new ArrayList<>();
+        slots.add(slot(1, 50, 100, 0));
+        slots.add(slot(2, 100, 100, 1));
+        slots.add(slot(3, 70, 100, 1));
+        simulation.load(slots);
+
+        List<ChargingSimulation.Change> changes = simulation.advance(5, model);
+        assertEquals(1, changes.size());
+        assertEquals(1, changes.get(0).getPinID());
+        assertEquals(50, changes.get(0).getPreviousPercent());
+        assertEquals(55, changes.get(0).getPinPercent());
+        assertEquals(70, simulation.percentOf(3));
+    }
+
+    @Test
+    void fractionalProgressIsNotWrittenUntilPercentChanges() {
+        ChargingSimulation simulation = new ChargingSimulation();
+        List<PinSlotDTO> slots = new ArrayList<>();
+        slots.add(slot(1, 50, 50, 0)); // pinHealth 50 -> 0.5%/phút
+        simulation.load(slots);
+
+        assertTrue(simulation.advance(1, model).isEmpty());
+        assertEquals(1, simulation.advance(1, model).size());
+        assertEquals(51, simulation.percentOf(1));
+    }
+
+    @Test
+    void fullSlotSwitchesStatusAndStopsCharging() {
+        ChargingSimulation simulation = new ChargingSimulation();
+        List<PinSlotDTO> slots = new ArrayList<>();
+        slots.add(slot(1, 99, 100, 0));
+        slots.add(slot(2, 10, 100, 0));
+        simulation.load(slots);
+
+        List<ChargingSimulation.Change> changes = simulation.advance(10, model);
+        ChargingSimulation.Change full = changes.stream().filter(c -> c.getPinID() == 1).findFirst().orElseThrow();
+        assertEquals(100, full.getPinPercent());
+        assertEquals(1, full.getPinStatus());
+        assertEquals(1, simulation.chargingCount());
+
+        // Swap đưa pin yếu vào slot 1 -> đọc lại từ database, sạc tiếp
+        simulation.upsert(slot(1, 20, 100, 0));
+        assertEquals(2, simulation.chargingCount());
+        simulation.remove(2);
+        assertEquals(1, simulation.chargingCount());
+        assertEquals(1, simulation.size());
+        assertEquals(30, simulation.advance(10, model).get(0).getPinPercent());
+    }
+
+    @Test
+    void rateSlowsDownAboveEightyPercent() {
+        double normal = model.percentPerMinute(50, 100);
+        double tapered = model.percentPerMinute(95, 100);
+        double weakBattery = model.percentPerMinute(50, 60);
+        assertEquals(1.0, normal, 1e-9);
+        assertTrue(tapered < normal);
+        assertEquals(0.6, weakBattery, 1e-9);
+    }
+
+    // Micro-benchmark chỉ in thời gian, không chạy trong build thường (mvn test -Pbenchmark)
+    @Tag("benchmark")
+    @Test
+    void benchmarkHundredThousandSlots() {
+        Random random = new Random(7);
+        List<PinSlotDTO> slots = new ArrayList<>();
+        for (int pinID = 1; pinID <= 100_000; pinID++) {
+            // Khoảng 60% slot đang sạc
+            boolean charging = random.nextInt(10) < 6;
+            int percent = charging ? random.nextInt(100) : 100;
+            slots.add(slot(pinID, percent, 60 + random.nextInt(41), charging ? 0 : 1));
+        }
+        ChargingSimulation simulation = new ChargingSimulation();
+        long start = System.nanoTime();
+        simulation.load(slots);
+        long loadNanos = System.nanoTime() - start;
+
+        int ticks = 30;
+        long changed = 0;
+        start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            changed += simulation.advance(1, model).size();
+        }
+        long tickNanos = (System.nanoTime() - start) / ticks;
+
+        System.out.println("ChargingSimulation benchmark (100000 slots): load " + loadNanos / 1_000_000 + " ms, "
+                + String.format("%.2f", tickNanos / 1_000_000.0) + " ms/tick, "
+                + changed / ticks + " changed rows/tick, " + simulation.chargingCount() + " still charging");
+        assertTrue(changed > 0);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.config.VNPayConfig;
+
+/**
+ * So sánh HmacSigner với cách ký cũ của VNPayService (Mac.getInstance + SecretKeySpec + String.format mỗi lần)
+ * Kết quả phải giống hệt nhau, benchmark in ra thời gian ký trung bình của 2 cách.
+ */
+class HmacSignerTest {
+
+    private static final int SAMPLES = 2_000;
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void matchesLegacyImplementation() {
+        HmacSigner signer = new HmacSigner("HmacSHA512", VNPayConfig.VNP_HASH_SECRET);
+        for (String data : sampleHashData()) {
+            assertEquals(legacyHmacSHA512(VNPayConfig.VNP_HASH_SECRET, data), signer.signHex(data));
+            assertEquals(legacyHmacSHA512(VNPayConfig.VNP_HASH_SECRET, data), VNPayService.hmacSHA512(VNPayConfig.VNP_HASH_SECRET, data));
+        }
+        assertEquals(legacyHmacSHA512("other-secret", "a=1"), VNPayService.hmacSHA512("other-secret", "a=1"));
+    }
+
+    @Test
+    void concurrentSigningMatchesLegacy() throws Exception {
+        HmacSigner signer = new HmacSigner("HmacSHA512", VNPayConfig.VNP_HASH_SECRET);
+        List<String> samples = sampleHashData();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (String data : samples) {
+                        assertEquals(legacyHmacSHA512(VNPayConfig.VNP_HASH_SECRET, data), signer.signHex(data));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Micro-benchmark chỉ in thời gian, không chạy trong build thường (mvn test -Pbenchmark)
+    @Tag("benchmark")
+    @Test
+    void benchmarkAgainstLegacy() {
+        HmacSigner signer = new HmacSigner("HmacSHA512", VNPayConfig.VNP_HASH_SECRET);
+        List<String> samples = sampleHashData();
+
+        double legacy = nanosPerSign(samples, data -> legacyHmacSHA512(VNPayConfig.VNP_HASH_SECRET, data));
+        double pooled = nanosPerSign(samples, signer::signHex);
+        System.out.printf("HMAC-SHA512 benchmark: legacy %.0f ns/op, HmacSigner %.0f ns/op (%.1fx)%n",
+                legacy, pooled, legacy / pooled);
+    }
+
+    private double nanosPerSign(List<String> samples, UnaryOperator<String> sign) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += sign.apply(samples.get(i % samples.size())).length();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += sign.apply(samples.get(i % samples.size())).length();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals((long) (WARMUP_ITERATIONS + ITERATIONS) * 128, sink);
+        return (double) elapsed / ITERATIONS;
+    }
+
+    // Chuỗi hash data giống tham số VNPay gửi về (đã encode, sắp xếp theo tên)
+    private List<String> sampleHashData() {
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < SAMPLES; i++) {
+            samples.add("vnp_Amount=" + (10_000 + random.nextInt(5_000_000)) * 100
+                    + "&vnp_BankCode=NCB&vnp_OrderInfo=Thanh+toan+goi+" + random.nextInt(100)
+                    + "&vnp_PayDate=2025" + (100_000_000 + random.nextInt(899_999_999))
+                    + "&vnp_ResponseCode=00&vnp_TmnCode=" + VNPayConfig.VNP_TMN_CODE
+                    + "&vnp_TransactionNo=" + random.nextInt(99_999_999)
+                    + "&vnp_TxnRef=VNP2025" + random.nextInt(999_999_999));
+        }
+        return samples;
+    }
+
+    // Cách ký trước đây của VNPayService.hmacSHA512
+    private static String legacyHmacSHA512(String key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA512");
+            SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
+            mac.init(secretKeySpec);
+            byte[] result = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : result) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new RuntimeException("Error generating HMAC SHA512", e);
+        }
+    }
+}
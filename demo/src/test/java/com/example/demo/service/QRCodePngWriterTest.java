@@ -0,0 +1,155 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+/**
+ * So sánh QRCodePngWriter với cách tạo QR cũ (BufferedImage + ImageIO PNG)
+ * PNG phải đọc lại được bằng ImageIO với đúng từng pixel, benchmark in ra thời gian và số byte cấp phát mỗi QR.
+ */
+class QRCodePngWriterTest {
+
+    private static final int SAMPLES = 64;
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 500;
+
+    @Test
+    void pngDecodesToSamePixels() throws Exception {
+        for (BitMatrix matrix : sampleMatrices()) {
+            assertSamePixels(matrix, QRCodePngWriter.toPng(matrix));
+        }
+        // Chiều rộng không chia hết cho 8
+        BitMatrix odd = new QRCodeWriter().encode("odd", BarcodeFormat.QR_CODE, 61, 61);
+        assertSamePixels(odd, QRCodePngWriter.toPng(odd));
+    }
+
+    @Test
+    void concurrentWritesAreIndependent() throws Exception {
+        List<BitMatrix> matrices = sampleMatrices();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (BitMatrix matrix : matrices) {
+                        assertSamePixels(matrix, QRCodePngWriter.toPng(matrix));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void paymentUrlQrIsPngDataUri() {
+        String qrCode = new VNPayQRCodeService().generatePaymentUrlQRCode(sampleUrl(1));
+        assertNotNull(qrCode);
+        assertEquals(true, qrCode.startsWith("data:image/png;base64,"));
+    }
+
+    // Micro-benchmark chỉ in thời gian và byte cấp phát, không chạy trong build thường (mvn test -Pbenchmark)
+    @Tag("benchmark")
+    @Test
+    void benchmarkAgainstLegacy() throws Exception {
+        List<BitMatrix> matrices = sampleMatrices();
+
+        double[] legacy = measure(matrices, QRCodePngWriterTest::legacyPng);
+        double[] direct = measure(matrices, QRCodePngWriter::toPng);
+        System.out.printf("QR PNG benchmark: legacy %.0f us/op %.0f B/op, QRCodePngWriter %.0f us/op %.0f B/op (%.1fx faster)%n",
+                legacy[0] / 1000, legacy[1], direct[0] / 1000, direct[1], legacy[0] / direct[0]);
+    }
+
+    // {ns/op, byte cấp phát/op} của thread hiện tại
+    private double[] measure(List<BitMatrix> matrices, Function<BitMatrix, byte[]> write) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += write.apply(matrices.get(i % matrices.size())).length;
+        }
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += write.apply(matrices.get(i % matrices.size())).length;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        assertEquals(true, sink > 0);
+        return new double[] { (double) elapsed / ITERATIONS, (double) allocated / ITERATIONS };
+    }
+
+    private void assertSamePixels(BitMatrix matrix, byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull(image);
+        assertEquals(matrix.getWidth(), image.getWidth());
+        assertEquals(matrix.getHeight(), image.getHeight());
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                int expected = matrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF;
+                assertEquals(expected, image.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    // Payment URL 300x300 giống VNPayService.createPaymentWithQR
+    private List<BitMatrix> sampleMatrices() throws Exception {
+        QRCodeWriter writer = new QRCodeWriter();
+        List<BitMatrix> matrices = new ArrayList<>();
+        for (int i = 0; i < SAMPLES; i++) {
+            matrices.add(writer.encode(sampleUrl(i), BarcodeFormat.QR_CODE, 300, 300));
+        }
+        return matrices;
+    }
+
+    private static String sampleUrl(int i) {
+        return "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html?vnp_Amount=" + (5_000_000 + i * 100)
+                + "&vnp_Command=pay&vnp_CreateDate=20251012120000&vnp_CurrCode=VND&vnp_IpAddr=127.0.0.1"
+                + "&vnp_Locale=vn&vnp_OrderInfo=Thanh+toan+goi+" + i + "&vnp_OrderType=other"
+                + "&vnp_TxnRef=VNP20251012120000" + i
+                + "&vnp_SecureHash=" + Base64.getEncoder().encodeToString(new byte[48]).replace('=', 'a') + i;
+    }
+
+    // Cách tạo PNG trước đây (MatrixToImageWriter.toBufferedImage + ImageIO.write)
+    private static byte[] legacyPng(BitMatrix matrix) {
+        try {
+            BufferedImage image = new BufferedImage(matrix.getWidth(), matrix.getHeight(), BufferedImage.TYPE_INT_RGB);
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                for (int y = 0; y < matrix.getHeight(); y++) {
+                    image.setRGB(x, y, matrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF);
+                }
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ImageIO.write(image, "PNG", baos);
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing legacy PNG", e);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * TxnRefGenerator: 1 triệu ID sinh đồng thời từ 2 node không trùng, ID của mỗi thread tăng dần
+ */
+class TxnRefGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 125_000;
+
+    @Test
+    void millionConcurrentIdsAcrossTwoNodesAreUnique() throws Exception {
+        TxnRefGenerator node1 = new TxnRefGenerator(1, System::currentTimeMillis);
+        TxnRefGenerator node2 = new TxnRefGenerator(2, System::currentTimeMillis);
+        long[][] generated = new long[THREADS][IDS_PER_THREAD];
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                long[] ids = generated[t];
+                TxnRefGenerator generator = t % 2 == 0 ? node1 : node2;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long[] all = new long[THREADS * IDS_PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 1; i < IDS_PER_THREAD; i++) {
+                assertTrue(generated[t][i] > generated[t][i - 1], "thread " + t + " not monotonic at " + i);
+            }
+            System.arraycopy(generated[t], 0, all, t * IDS_PER_THREAD, IDS_PER_THREAD);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(all[i] != all[i - 1], "duplicate id " + all[i]);
+        }
+    }
+
+    @Test
+    void clockGoingBackwardsKeepsIncreasing() {
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        TxnRefGenerator generator = new TxnRefGenerator(7, now::get);
+        long first = generator.nextId();
+        now.addAndGet(-5_000);
+        long second = generator.nextId();
+        assertTrue(second > first);
+    }
+
+    @Test
+    void sequenceOverflowBorrowsNextMillisecond() {
+        TxnRefGenerator generator = new TxnRefGenerator(3, () -> 1_800_000_000_000L);
+        long previous = generator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void txnRefFitsVNPayLimitsAndEncodesTime() {
+        long now = System.currentTimeMillis();
+        TxnRefGenerator generator = new TxnRefGenerator(TxnRefGenerator.MAX_NODE_ID, () -> now);
+        String txnRef = generator.next();
+
+        assertTrue(txnRef.startsWith(TxnRefGenerator.PREFIX));
+        assertTrue(txnRef.length() <= 22, txnRef);
+        assertTrue(txnRef.matches("[A-Z0-9]+"), txnRef);
+        assertEquals(now, TxnRefGenerator.timestampOf(txnRef));
+    }
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new TxnRefGenerator(TxnRefGenerator.MAX_NODE_ID + 1, System::currentTimeMillis));
+    }
+
+    @Test
+    void unconfiguredNodeLeasesFirstFreeIdAndReleasesOnSessionLoss() {
+        FakeLock lock = new FakeLock();
+        lock.takenElsewhere.add("swp:txn-ref-node:0");
+        lock.takenElsewhere.add("swp:txn-ref-node:1");
+        TxnRefGenerator generator = new TxnRefGenerator(-1, lock, System::currentTimeMillis);
+
+        generator.nextId();
+        assertEquals(2, generator.getNodeId());
+        generator.nextId();
+        assertEquals(3, lock.attempts, "lease is reused while held");
+
+        // Mất session: thuê lại, ưu tiên node id cũ
+        lock.held.clear();
+        generator.nextId();
+        assertEquals(2, generator.getNodeId());
+    }
+
+    @Test
+    void leaseOlderThanCheckIntervalIsConfirmedBeforeIssuing() {
+        FakeLock lock = new FakeLock();
+        AtomicLong now = new AtomicLong(1_800_000_000_000L);
+        TxnRefGenerator generator = new TxnRefGenerator(-1, lock, now::get);
+        generator.nextId();
+        assertEquals(0, generator.getNodeId());
+
+        // Session đứt, node khác thuê node id 0, isHeld vẫn true cho tới lần tryLock sau
+        lock.sessionLost = true;
+        lock.takenElsewhere.add("swp:txn-ref-node:0");
+        now.addAndGet(TxnRefGenerator.LEASE_CHECK_MILLIS - 1);
+        generator.nextId();
+        assertEquals(1, lock.attempts, "fresh lease is trusted without a query");
+
+        now.addAndGet(1);
+        generator.nextId();
+        assertEquals(1, generator.getNodeId());
+    }
+
+    @Test
+    void unconfirmedLeaseStopsIssuingIds() {
+        FakeLock lock = new FakeLock();
+        AtomicLong now = new AtomicLong(1_800_000_000_000L);
+        TxnRefGenerator generator = new TxnRefGenerator(-1, lock, now::get);
+        generator.nextId();
+
+        lock.failWith = new SQLException("connection refused");
+        now.addAndGet(TxnRefGenerator.LEASE_CHECK_MILLIS);
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    void unconfiguredNodeFailsWhenNoIdCanBeLeased() {
+        FakeLock lock = new FakeLock();
+        lock.failWith = new SQLException("connection refused");
+        TxnRefGenerator generator = new TxnRefGenerator(-1, lock, System::currentTimeMillis);
+
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    void unconfiguredNodeWithoutLeaderElectionUsesZero() {
+        FakeLock lock = new FakeLock();
+        lock.enabled = false;
+        TxnRefGenerator generator = new TxnRefGenerator(-1, lock, System::currentTimeMillis);
+
+        generator.nextId();
+        assertEquals(0, generator.getNodeId());
+        assertEquals(0, lock.attempts);
+    }
+
+    // JobLeaderLock giả: resource trong takenElsewhere do node khác giữ
+    private static class FakeLock extends JobLeaderLock {
+        final Set<String> takenElsewhere = new HashSet<>();
+        final Set<String> held = new HashSet<>();
+        boolean enabled = true;
+        // Lần tryLock sau phát hiện session đứt và bỏ hết lock đang giữ (như JobLeaderLock)
+        boolean sessionLost;
+        SQLException failWith;
+        int attempts;
+
+        @Override
+        public synchronized boolean tryLock(String resource) throws SQLException {
+            attempts++;
+            if (failWith != null) {
+                throw failWith;
+            }
+            if (sessionLost) {
+                held.clear();
+                sessionLost = false;
+            }
+            if (held.contains(resource)) {
+                return true;
+            }
+            if (takenElsewhere.contains(resource)) {
+                return false;
+            }
+            held.add(resource);
+            return true;
+        }
+
+        @Override
+        public boolean isHeld(String resource) {
+            return held.contains(resource);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.config.VNPayConfig;
+import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.FakeDatabase;
+import com.example.demo.dto.VNPayCallbackResult;
+
+/**
+ * Callback VNPay: chữ ký đúng -> đúng 1 round trip database, chữ ký sai -> không chạm database
+ */
+class VNPayCallbackTest {
+
+    // Database giả: câu lệnh callback luôn trả reason CONFIRMED
+    private final FakeDatabase database = new FakeDatabase(call -> List.of(FakeDatabase.row("reason", "CONFIRMED")));
+
+    private final VNPayService vnpayService = new VNPayService();
+
+    @BeforeEach
+    void setUp() {
+        database.install();
+    }
+
+    @AfterEach
+    void resetDBUtils() {
+        DBUtils.setDataSource(null);
+    }
+
+    @Test
+    void validCallbackAppliesStatusInOneRoundTrip() throws Exception {
+        Map<String, String[]> callback = signedCallback(sampleFields(), false);
+
+        assertEquals(VNPayCallbackResult.CONFIRMED, vnpayService.processCallback(callback));
+        assertEquals(1, database.getConnections());
+        assertEquals(1, database.getStatements());
+        assertEquals("VNP20251012120000123", database.lastCall().parameter(1));
+        assertEquals(1, database.lastCall().parameter(2));
+        assertEquals(5_000_000L, database.lastCall().parameter(3));
+    }
+
+    @Test
+    void uppercaseSignatureIsAccepted() throws Exception {
+        assertEquals(VNPayCallbackResult.CONFIRMED, vnpayService.processCallback(signedCallback(sampleFields(), true)));
+    }
+
+    @Test
+    void tamperedCallbackIsRejectedWithoutDatabase() throws Exception {
+        Map<String, String[]> callback = signedCallback(sampleFields(), false);
+        callback.put("vnp_Amount", new String[] { "100" });
+
+        assertEquals(VNPayCallbackResult.INVALID_SIGNATURE, vnpayService.processCallback(callback));
+        assertEquals(0, database.getConnections());
+    }
+
+    @Test
+    void missingSignatureIsRejected() throws Exception {
+        Map<String, String[]> callback = signedCallback(sampleFields(), false);
+        callback.remove("vnp_SecureHash");
+
+        assertEquals(VNPayCallbackResult.INVALID_SIGNATURE, vnpayService.processCallback(callback));
+        assertEquals(0, database.getConnections());
+    }
+
+    static Map<String, String> sampleFields() {
+        Map<String, String> fields = new TreeMap<>();
+        fields.put("vnp_Amount", "5000000");
+        fields.put("vnp_BankCode", "NCB");
+        fields.put("vnp_OrderInfo", "Thanh toan goi 3 luot");
+        fields.put("vnp_PayDate", "20251012120500");
+        fields.put("vnp_ResponseCode", "00");
+        fields.put("vnp_TmnCode", VNPayConfig.VNP_TMN_CODE);
+        fields.put("vnp_TransactionNo", "14226112");
+        fields.put("vnp_TransactionStatus", "00");
+        fields.put("vnp_TxnRef", "VNP20251012120000123");
+        return fields;
+    }
+
+    // Ký theo code mẫu VNPay: tên và giá trị encode US_ASCII, sắp xếp theo tên, nối bằng &
+    static Map<String, String[]> signedCallback(Map<String, String> fields, boolean uppercase) {
+        StringBuilder hashData = new StringBuilder();
+        Map<String, String[]> parameterMap = new HashMap<>();
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            if (hashData.length() > 0) {
+                hashData.append('&');
+            }
+            hashData.append(URLEncoder.encode(entry.getKey(), StandardCharsets.US_ASCII)).append('=')
+                    .append(URLEncoder.encode(entry.getValue(), StandardCharsets.US_ASCII));
+            parameterMap.put(entry.getKey(), new String[] { entry.getValue() });
+        }
+        String hash = VNPayService.hmacSHA512(VNPayConfig.VNP_HASH_SECRET, hashData.toString());
+        parameterMap.put("vnp_SecureHash", new String[] { uppercase ? hash.toUpperCase() : hash });
+        parameterMap.put("vnp_SecureHashType", new String[] { "HmacSHA512" });
+        return parameterMap;
+    }
+}
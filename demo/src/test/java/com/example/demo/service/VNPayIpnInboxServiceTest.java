@@ -0,0 +1,246 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.FakeDatabase;
+import com.example.demo.dto.VNPayCallbackResult;
+
+/**
+ * Inbox IPN: nhận -> ghi inbox -> worker cập nhật payment và ack, IPN gửi lại, thử lại khi lỗi, dead letter,
+ * không có payment / sai số tiền thì trả lý do ngay và không ghi inbox;
+ * payload lưu trong inbox phải đọc lại đúng các field VNPay đã ký, backoff tăng dần và có giới hạn
+ */
+class VNPayIpnInboxServiceTest {
+
+    private static final String TXN_REF = "VNP20251012120000123";
+
+    // Bảng VNPayIpnInbox trong bộ nhớ, câu lệnh được mô phỏng theo điều kiện của SQL thật
+    private static final class InboxRow {
+        long inboxID;
+        String txnRef;
+        String payload;
+        int status;
+        int attempts;
+        String result;
+        long retryDelaySeconds;
+    }
+
+    private final Map<String, InboxRow> inbox = new LinkedHashMap<>();
+    // Lỗi trả về khi cập nhật payment (null = thành công)
+    private String paymentError;
+    // vnp_Amount của payment TXN_REF trong VNPayPaymentDTO (null = không có payment)
+    private Long paymentAmount = 50_000L;
+
+    private final FakeDatabase database = new FakeDatabase(this::respond);
+    private final VNPayIpnInboxService service = new VNPayIpnInboxService();
+    private final ExecutorService idleWorkers = Executors.newSingleThreadExecutor();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "vnpayService", new VNPayService());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "batchSize", 20);
+        ReflectionTestUtils.setField(service, "maxAttempts", 2);
+        // Không chạy worker thật, test gọi processDue() thay cho worker
+        ReflectionTestUtils.setField(service, "workerPool", idleWorkers);
+        database.install();
+    }
+
+    @AfterEach
+    void tearDown() {
+        idleWorkers.shutdownNow();
+        DBUtils.setDataSource(null);
+    }
+
+    @Test
+    void receivedIpnIsAckedByWorker() throws Exception {
+        assertEquals(VNPayCallbackResult.RECEIVED, receive());
+        assertEquals(0, row().status);
+
+        assertEquals(1, service.processDue());
+        assertEquals(1, row().status);
+        assertEquals("CONFIRMED", row().result);
+        assertEquals(0, service.processDue());
+        assertEquals(1L, service.getStats().get("processed"));
+    }
+
+    @Test
+    void duplicateDeliveryDoesNotCreateWork() throws Exception {
+        receive();
+        // Gửi lại khi chưa xử lý: vẫn 1 dòng, trả RECEIVED
+        assertEquals(VNPayCallbackResult.RECEIVED, receive());
+        assertEquals(1, inbox.size());
+
+        service.processDue();
+        // Gửi lại sau khi xử lý: trả kết quả lần trước, không xử lý lại
+        assertEquals(VNPayCallbackResult.CONFIRMED, receive());
+        assertEquals(0, service.processDue());
+        assertEquals(2L, service.getStats().get("duplicates"));
+    }
+
+    @Test
+    void failedProcessingIsRetriedWithBackoff() throws Exception {
+        paymentError = "Deadlock victim";
+        receive();
+
+        assertEquals(1, service.processDue());
+        assertEquals(0, row().status);
+        assertEquals(1, row().attempts);
+        assertEquals(VNPayIpnInboxService.retryDelaySeconds(1), row().retryDelaySeconds);
+
+        paymentError = null;
+        service.processDue();
+        assertEquals(1, row().status);
+        assertEquals(1L, service.getStats().get("retried"));
+    }
+
+    @Test
+    void deadLetteredIpnIsRequeuedOnRedelivery() throws Exception {
+        paymentError = "Database is busy";
+        receive();
+        service.processDue();
+        service.processDue();
+        assertEquals(2, row().status);
+        assertEquals(1L, service.getStats().get("deadLettered"));
+
+        // VNPay gửi lại IPN: dòng đã bỏ được đưa về chờ xử lý với số lần thử từ đầu
+        paymentError = null;
+        assertEquals(VNPayCallbackResult.RECEIVED, receive());
+        assertEquals(0, row().status);
+        assertEquals(0, row().attempts);
+
+        assertEquals(1, service.processDue());
+        assertEquals(1, row().status);
+        assertEquals("CONFIRMED", row().result);
+    }
+
+    @Test
+    void unknownOrderIsRejectedWithoutInbox() throws Exception {
+        paymentAmount = null;
+
+        assertEquals(VNPayCallbackResult.ORDER_NOT_FOUND, receive());
+        assertEquals("01", VNPayCallbackResult.ORDER_NOT_FOUND.getRspCode());
+        assertEquals(0, inbox.size());
+        assertEquals(0, service.processDue());
+    }
+
+    @Test
+    void wrongAmountIsRejectedWithoutInbox() throws Exception {
+        // VNPay gửi 5.000.000 (= 50.000 * 100), payment ghi 40.000
+        paymentAmount = 40_000L;
+
+        assertEquals(VNPayCallbackResult.INVALID_AMOUNT, receive());
+        assertEquals(0, inbox.size());
+        assertEquals(1L, service.getStats().get("rejected"));
+    }
+
+    @Test
+    void payloadRoundTripsSignedFields() {
+        Map<String, String> fields = new TreeMap<>();
+        fields.put("vnp_Amount", "5000000");
+        fields.put("vnp_OrderInfo", "Thanh toán gói 3 lượt & đổi pin = 100%");
+        fields.put("vnp_PayDate", "20251012120500");
+        fields.put("vnp_TxnRef", TXN_REF);
+
+        assertEquals(fields, VNPayIpnInboxService.decode(VNPayIpnInboxService.encode(fields)));
+    }
+
+    @Test
+    void retryDelayGrowsAndIsCapped() {
+        assertEquals(2, VNPayIpnInboxService.retryDelaySeconds(1));
+        assertEquals(16, VNPayIpnInboxService.retryDelaySeconds(4));
+        assertEquals(300, VNPayIpnInboxService.retryDelaySeconds(9));
+        assertEquals(300, VNPayIpnInboxService.retryDelaySeconds(1000));
+    }
+
+    private VNPayCallbackResult receive() throws SQLException {
+        return service.receive(VNPayCallbackTest.signedCallback(VNPayCallbackTest.sampleFields(), false));
+    }
+
+    private InboxRow row() {
+        return inbox.get(TXN_REF);
+    }
+
+    private Object respond(FakeDatabase.Call call) throws SQLException {
+        String sql = call.getSql();
+        if (sql.contains("INSERT INTO dbo.VNPayIpnInbox")) {
+            String txnRef = (String) call.parameter(1);
+            Long amount = (Long) call.parameter(3);
+            String rejection = paymentAmount == null ? "ORDER_NOT_FOUND"
+                    : amount != null && paymentAmount * 100 != amount ? "INVALID_AMOUNT" : null;
+            if (rejection != null && sql.contains("@rejected = 1")) {
+                return List.of(FakeDatabase.row("inboxID", null, "txnRef", txnRef, "status", null,
+                        "result", rejection, "created", false, "requeued", false, "rejected", true));
+            }
+            InboxRow row = inbox.get(txnRef);
+            boolean created = row == null;
+            boolean requeued = false;
+            if (created) {
+                row = new InboxRow();
+                row.inboxID = inbox.size() + 1;
+                row.txnRef = txnRef;
+                row.payload = (String) call.parameter(2);
+                inbox.put(txnRef, row);
+            } else if (row.status == 2 && sql.contains("ELSE IF @status = 2")) {
+                row.status = 0;
+                row.attempts = 0;
+                row.payload = (String) call.parameter(2);
+                requeued = true;
+            }
+            return List.of(FakeDatabase.row("inboxID", row.inboxID, "txnRef", row.txnRef, "status", row.status,
+                    "result", row.result, "created", created, "requeued", requeued, "rejected", false));
+        }
+        if (sql.contains("WITH due")) {
+            List<Map<String, Object>> claimed = new ArrayList<>();
+            for (InboxRow row : inbox.values()) {
+                if (row.status == 0) {
+                    row.attempts++;
+                    claimed.add(FakeDatabase.row("inboxID", row.inboxID, "txnRef", row.txnRef, "payload", row.payload,
+                            "attempts", row.attempts, "lagMillis", 0L));
+                }
+            }
+            return claimed;
+        }
+        if (sql.contains("SET status = 1, result = ?")) {
+            InboxRow row = byID((Long) call.parameter(2));
+            row.status = 1;
+            row.result = (String) call.parameter(1);
+            return 1;
+        }
+        if (sql.contains("THEN 2 ELSE 0 END")) {
+            InboxRow row = byID((Long) call.parameter(4));
+            row.status = row.attempts >= (Integer) call.parameter(1) ? 2 : 0;
+            row.retryDelaySeconds = (Long) call.parameter(3);
+            return 1;
+        }
+        if (sql.contains("@transactionNo")) {
+            if (paymentError != null) {
+                throw new SQLException(paymentError);
+            }
+            return List.of(FakeDatabase.row("reason", "CONFIRMED"));
+        }
+        if (sql.contains("AS dead")) {
+            return List.of(FakeDatabase.row("pending", 0, "oldestPendingMillis", 0L, "dead", 0));
+        }
+        throw new UnsupportedOperationException(sql);
+    }
+
+    private InboxRow byID(long inboxID) {
+        return inbox.values().stream().filter(row -> row.inboxID == inboxID).findFirst().orElseThrow();
+    }
+}
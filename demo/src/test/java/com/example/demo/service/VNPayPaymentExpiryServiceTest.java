@@ -0,0 +1,135 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.dbUnits.DBUtils;
+import com.example.demo.dbUnits.FakeDatabase;
+import com.example.demo.dto.VNPayCallbackResult;
+
+/**
+ * Job hết hạn payment: chạy từng lô cho tới khi gặp lô không đầy hoặc hết max-batches,
+ * không hết hạn payment còn IPN chờ xử lý, IPN thành công đến sau khi hết hạn vẫn được ghi nhận
+ */
+class VNPayPaymentExpiryServiceTest {
+
+    // Số payment mỗi lô trả về (expired, maxLagMillis)
+    private final Deque<long[]> batches = new ArrayDeque<>();
+
+    // Database giả: mỗi câu lệnh hết hạn lấy 1 lô từ batches, câu thống kê trả 0
+    private final FakeDatabase database = new FakeDatabase(call -> {
+        if (!call.getSql().contains("UPDATE TOP")) {
+            return List.of(FakeDatabase.row("overdue", 0, "oldestOverdueMillis", 0L));
+        }
+        long[] batch = batches.isEmpty() ? new long[] { 0, 0 } : batches.poll();
+        return List.of(FakeDatabase.row("expired", (int) batch[0], "maxLagMillis", batch[1]));
+    });
+
+    private final VNPayPaymentExpiryService service = new VNPayPaymentExpiryService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+        ReflectionTestUtils.setField(service, "maxBatches", 3);
+        ReflectionTestUtils.setField(service, "graceSeconds", 300);
+        database.install();
+    }
+
+    @AfterEach
+    void resetDBUtils() {
+        DBUtils.setDataSource(null);
+    }
+
+    @Test
+    void stopsAtFirstPartialBatch() throws Exception {
+        batches.add(new long[] { 100, 4_000 });
+        batches.add(new long[] { 37, 9_000 });
+
+        assertEquals(137, service.sweep());
+        assertEquals(2, database.getStatements());
+
+        Map<String, Object> stats = service.getStats();
+        assertEquals(137L, stats.get("expired"));
+        assertEquals(9_000L, stats.get("lastLagMillis"));
+    }
+
+    @Test
+    void boundedByMaxBatches() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            batches.add(new long[] { 100, 1_000 });
+        }
+
+        assertEquals(300, service.sweep());
+        assertEquals(3, database.getStatements());
+    }
+
+    @Test
+    void nothingOverdueRunsOneBatch() throws Exception {
+        batches.add(new long[] { 0, 0 });
+
+        assertEquals(0, service.sweep());
+        assertEquals(1, database.getStatements());
+    }
+
+    @Test
+    void expiredThenIpnArrivesIsConfirmed() throws Exception {
+        // 1 payment trong database giả, câu lệnh được mô phỏng theo điều kiện WHERE của SQL thật
+        int[] paymentStatus = { 0 };
+        boolean[] ipnWaitingInInbox = { true };
+        new FakeDatabase(call -> {
+            String sql = call.getSql();
+            if (sql.contains("UPDATE TOP")) {
+                boolean skipsInbox = sql.contains("NOT EXISTS (SELECT 1 FROM dbo.VNPayIpnInbox i WHERE i.txnRef = p.vnp_TxnRef AND i.status <> 1)");
+                int count = paymentStatus[0] == 0 && !(skipsInbox && ipnWaitingInInbox[0]) ? 1 : 0;
+                if (count == 1) {
+                    paymentStatus[0] = 3;
+                }
+                return List.of(FakeDatabase.row("expired", count, "maxLagMillis", 0L));
+            }
+            int newStatus = (Integer) call.parameter(2);
+            boolean applies = paymentStatus[0] == 0
+                    || (paymentStatus[0] == 3 && newStatus == 1 && sql.contains("(status = 0 OR (status = 3 AND @status = 1))"));
+            if (applies) {
+                paymentStatus[0] = newStatus;
+            }
+            String reason = applies ? (newStatus == 1 ? "CONFIRMED" : "PAYMENT_FAILED") : "ALREADY_CONFIRMED";
+            return List.of(FakeDatabase.row("reason", reason));
+        }).install();
+
+        // IPN đang chờ retry trong inbox: job không hết hạn payment
+        assertEquals(0, service.sweep());
+        assertEquals(0, paymentStatus[0]);
+
+        // Inbox không còn gì (IPN chưa tới): hết hạn
+        ipnWaitingInInbox[0] = false;
+        assertEquals(1, service.sweep());
+        assertEquals(3, paymentStatus[0]);
+
+        // IPN thất bại đến muộn không đổi trạng thái, IPN thành công đến muộn -> SUCCESS
+        VNPayService vnpayService = new VNPayService();
+        assertEquals(VNPayCallbackResult.ALREADY_CONFIRMED, vnpayService.applyVerifiedCallback(ipn("24", "02")));
+        assertEquals(3, paymentStatus[0]);
+        assertEquals(VNPayCallbackResult.CONFIRMED, vnpayService.applyVerifiedCallback(ipn("00", "00")));
+        assertEquals(1, paymentStatus[0]);
+    }
+
+    private Map<String, String> ipn(String responseCode, String transactionStatus) {
+        Map<String, String> fields = new TreeMap<>();
+        fields.put("vnp_Amount", "5000000");
+        fields.put("vnp_ResponseCode", responseCode);
+        fields.put("vnp_TransactionStatus", transactionStatus);
+        fields.put("vnp_TxnRef", "VNP20251012120000123");
+        return fields;
+    }
+}